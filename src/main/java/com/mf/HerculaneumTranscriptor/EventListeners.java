@@ -2,6 +2,7 @@ package com.mf.HerculaneumTranscriptor;
 
 import com.mf.HerculaneumTranscriptor.domain.User;
 import com.mf.HerculaneumTranscriptor.repository.UserRepository;
+import com.mf.HerculaneumTranscriptor.search.UserSearchIndex;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
@@ -24,6 +25,7 @@ public class EventListeners {
 
   private final UserRepository userRepository;
   private final PasswordEncoder passwordEncoder;
+  private final UserSearchIndex userSearchIndex;
 
   // Event listener to create a root profile on startup if it doesn't exist
   // In case the root password or username is changed in the configuration file, the root profile will be updated
@@ -42,7 +44,7 @@ public class EventListeners {
       root.setPasswordHash(rootPasswordHash);
       root.setPermissions(UserInfo.PermissionsEnum.ROOT);
 
-      userRepository.save(root);
+      userSearchIndex.put(userRepository.save(root));
     } else {
       root = possibleRoot.get();
 
@@ -52,7 +54,7 @@ public class EventListeners {
 
         root.setPasswordHash(rootPasswordHash);
         root.setUsername(rootUsername);
-        userRepository.save(root);
+        userSearchIndex.put(userRepository.save(root));
       }
     }
   }
@@ -2,8 +2,12 @@ package com.mf.HerculaneumTranscriptor;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.retry.annotation.EnableRetry;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
+@EnableRetry
 public class HerculaneumTranscriptorApplication {
 
 	public static void main(String[] args) {
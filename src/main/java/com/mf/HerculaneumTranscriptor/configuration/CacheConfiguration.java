@@ -0,0 +1,57 @@
+package com.mf.HerculaneumTranscriptor.configuration;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import com.mf.HerculaneumTranscriptor.domain.Scroll;
+import com.mf.HerculaneumTranscriptor.domain.User;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cache.spi.RegionFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.CacheManager;
+import java.time.Duration;
+import java.util.List;
+import java.util.OptionalLong;
+
+/**
+ * Second-level cache of Hibernate, holding users and scrolls (and the IDs of their usernames and scroll IDs)
+ * in memory across transactions, as they are read on nearly every request but rarely change.
+ * <p>
+ * Changes made through Hibernate update the cache when their transaction commits. Entries also expire
+ * after a while, which bounds how long changes made by other instances of the backend go unseen.
+ */
+@Configuration
+public class CacheConfiguration {
+  @Value("${api.cache.maxEntries}")
+  private long maxEntries;
+  @Value("${api.cache.timeToLive}")
+  private Duration timeToLive;
+
+  @Bean(destroyMethod = "close")
+  public CacheManager hibernateCacheManager() {
+    // A provider of our own, so that each application context gets its own caches
+    CaffeineCachingProvider provider = new CaffeineCachingProvider();
+    CacheManager cacheManager = provider.getCacheManager(provider.getDefaultURI(), getClass().getClassLoader());
+
+    for (String region : List.of(User.CACHE_REGION, User.NATURAL_ID_CACHE_REGION, Scroll.CACHE_REGION,
+            Scroll.NATURAL_ID_CACHE_REGION, RegionFactory.DEFAULT_QUERY_RESULTS_REGION_UNQUALIFIED_NAME))
+      cacheManager.createCache(region, new CaffeineConfiguration<>()
+              .setMaximumSize(OptionalLong.of(maxEntries))
+              .setExpireAfterWrite(OptionalLong.of(timeToLive.toNanos()))
+              .setStoreByValue(false));
+
+    // Cached query results are checked against the last update time of their tables, which must never be evicted
+    cacheManager.createCache(RegionFactory.DEFAULT_UPDATE_TIMESTAMPS_REGION_UNQUALIFIED_NAME,
+            new CaffeineConfiguration<>().setStoreByValue(false));
+
+    return cacheManager;
+  }
+
+  @Bean
+  public HibernatePropertiesCustomizer hibernateCacheCustomizer(CacheManager hibernateCacheManager) {
+    return properties -> properties.put(ConfigSettings.CACHE_MANAGER, hibernateCacheManager);
+  }
+}
@@ -1,5 +1,6 @@
 package com.mf.HerculaneumTranscriptor.configuration;
 
+import com.mf.HerculaneumTranscriptor.controller.UserController;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
@@ -16,7 +17,7 @@ public class CorsConfiguration {
         registry.addMapping("/**") // Apply to all endpoints
                 .allowedOrigins("*") // Allow requests from any origin (JWT security prevents CSRF)
                 .allowedMethods("GET", "POST", "PUT", "DELETE", "OPTIONS")
-                .exposedHeaders("Authorization");
+                .exposedHeaders("Authorization", UserController.NEXT_CURSOR_HEADER);
       }
     };
   }
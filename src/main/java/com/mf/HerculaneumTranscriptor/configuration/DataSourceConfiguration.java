@@ -0,0 +1,71 @@
+package com.mf.HerculaneumTranscriptor.configuration;
+
+import com.mf.HerculaneumTranscriptor.datasource.ReadRouting;
+import com.mf.HerculaneumTranscriptor.datasource.ReplicaRoutingDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits database traffic between the primary and its read replicas when replicas are configured.
+ * Otherwise, the single data source configured by Spring Boot is used for everything.
+ */
+@Configuration
+@ConditionalOnExpression("!'${api.datasource.replicas:}'.isBlank()")
+public class DataSourceConfiguration {
+  @Value("${api.datasource.replicas}")
+  private List<String> replicaUrls;
+  @Value("${api.datasource.maxReplicaLag}")
+  private Duration maxReplicaLag;
+  @Value("${api.datasource.replicaLagQuery}")
+  private String replicaLagQuery;
+
+  @Bean(destroyMethod = "close")
+  public ReplicaRoutingDataSource replicaRoutingDataSource(DataSourceProperties properties, Environment environment,
+                                                           ReadRouting readRouting, MeterRegistry meterRegistry) {
+    HikariDataSource primary = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    primary.setPoolName("primary");
+    // Pool settings still apply to the primary, as they do without replicas
+    Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(primary));
+    // These pools are hidden behind the routing data source, so Spring Boot does not report their metrics itself
+    primary.setMetricRegistry(meterRegistry);
+
+    // Replicas are reached with the credentials of the primary
+    List<DataSource> replicas = new ArrayList<>();
+    for (int i = 0; i < replicaUrls.size(); i++) {
+      HikariDataSource replica = properties.initializeDataSourceBuilder().type(HikariDataSource.class)
+              .url(replicaUrls.get(i).strip())
+              .build();
+      replica.setPoolName("replica-" + i);
+      replica.setReadOnly(true);
+      replica.setMetricRegistry(meterRegistry);
+      replicas.add(replica);
+    }
+
+    ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(primary, replicas, readRouting, replicaLagQuery, maxReplicaLag);
+    routing.checkReplicaLag();
+    return routing;
+  }
+
+  // The connection is only taken from the primary or a replica on the first statement,
+  // once the transaction is known to be read-only or not
+  @Bean
+  @Primary
+  public DataSource dataSource(ReplicaRoutingDataSource replicaRoutingDataSource) {
+    return new LazyConnectionDataSourceProxy(replicaRoutingDataSource);
+  }
+}
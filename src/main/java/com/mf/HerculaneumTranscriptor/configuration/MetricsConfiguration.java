@@ -0,0 +1,37 @@
+package com.mf.HerculaneumTranscriptor.configuration;
+
+import io.micrometer.common.KeyValue;
+import io.micrometer.common.KeyValues;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.server.observation.DefaultServerRequestObservationConvention;
+import org.springframework.http.server.observation.ServerRequestObservationContext;
+import org.springframework.http.server.observation.ServerRequestObservationConvention;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerMapping;
+
+/**
+ * Metrics exported to Prometheus, on top of those Spring Boot records by itself
+ * (repository invocations, connection pools, Hibernate statistics and the JVM).
+ */
+@Configuration
+public class MetricsConfiguration {
+  public static final String OPERATION_TAG = "operation";
+
+  // Tags the timings of HTTP requests with the OpenAPI operationId of their endpoint, which is
+  // the name of the method generated for it. Requests that reached no endpoint are tagged "none".
+  @Bean
+  public ServerRequestObservationConvention operationIdObservationConvention() {
+    return new DefaultServerRequestObservationConvention() {
+      @Override
+      public KeyValues getLowCardinalityKeyValues(ServerRequestObservationContext context) {
+        return super.getLowCardinalityKeyValues(context).and(KeyValue.of(OPERATION_TAG, operationId(context)));
+      }
+    };
+  }
+
+  static String operationId(ServerRequestObservationContext context) {
+    return context.getCarrier().getAttribute(HandlerMapping.BEST_MATCHING_HANDLER_ATTRIBUTE) instanceof HandlerMethod handler ?
+            handler.getMethod().getName() : "none";
+  }
+}
@@ -1,8 +1,12 @@
 package com.mf.HerculaneumTranscriptor.configuration;
 
 import com.mf.HerculaneumTranscriptor.security.JwtAuthenticationFilter;
+import com.mf.HerculaneumTranscriptor.security.PasswordHashCalibrator;
 import io.jsonwebtoken.io.Decoders;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
 import io.jsonwebtoken.security.Keys;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -12,18 +16,28 @@ import org.springframework.security.config.annotation.method.configuration.Enabl
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
 import org.springframework.security.config.http.SessionCreationPolicy;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 
 import javax.crypto.SecretKey;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 @Configuration
 @EnableMethodSecurity
 public class SecurityConfiguration {
   @Value( "${security.secret}" )
   private String jwtSecret;
+  @Value( "${api.user.import.hashingThreads}" )
+  private int hashingThreads;
+  @Value( "${security.passwordHashing.algorithm}" )
+  private String hashingAlgorithm;
+  @Value( "${security.passwordHashing.targetLatency}" )
+  private Duration hashingTargetLatency;
+  @Value( "${security.passwordHashing.argon2Memory}" )
+  private int argon2Memory;
 
   @Bean
   public SecretKey secretKey() {
@@ -31,9 +45,20 @@ public class SecurityConfiguration {
     return Keys.hmacShaKeyFor(keyBytes);
   }
 
+  // The cost of hashing is calibrated to the hardware on startup.
+  // Web slice tests have no meter registry, hashes are then timed in the global one.
   @Bean
-  public PasswordEncoder passwordEncoder() {
-    return new BCryptPasswordEncoder();
+  public PasswordEncoder passwordEncoder(ObjectProvider<MeterRegistry> meterRegistry) {
+    return new PasswordHashCalibrator(hashingAlgorithm, hashingTargetLatency, argon2Memory)
+            .calibratedEncoder(meterRegistry.getIfAvailable(() -> Metrics.globalRegistry));
+  }
+
+  // Password hashing is CPU bound, so bulk imports spread it over a pool no larger than the number of cores
+  @Bean(destroyMethod = "shutdown")
+  public ExecutorService passwordHashingExecutor() {
+    int threads = hashingThreads > 0 ? hashingThreads : Runtime.getRuntime().availableProcessors();
+    return TracingConfiguration.propagatingContext(
+            Executors.newFixedThreadPool(threads, Thread.ofPlatform().name("hashing-", 0).factory()));
   }
 
   @Bean
@@ -48,6 +73,11 @@ public class SecurityConfiguration {
                     // Defining public endpoints
                     .requestMatchers("/register", "/error").permitAll()
                     .requestMatchers(HttpMethod.POST,"/user").permitAll() // Matches the POST login endpoint
+                    // Scraped by Prometheus. Only these two actuator endpoints are exposed,
+                    // and the reverse proxy should keep /actuator from being reached from outside
+                    .requestMatchers("/actuator/health", "/actuator/prometheus").permitAll()
+                    // Flight recordings reveal the usernames of recent requests, among others
+                    .requestMatchers("/actuator/flightrecording").hasAnyRole("ROOT", "ADMIN")
 
                     // Any other request must be authenticated
                     // The fine-grained rules are handled by @PreAuthorize.
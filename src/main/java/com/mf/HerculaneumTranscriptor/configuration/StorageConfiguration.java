@@ -0,0 +1,84 @@
+package com.mf.HerculaneumTranscriptor.configuration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.checksums.RequestChecksumCalculation;
+import software.amazon.awssdk.core.checksums.ResponseChecksumValidation;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.S3Configuration;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+
+import java.net.URI;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+@Configuration
+public class StorageConfiguration {
+  @Value("${api.scrolls.storageThreads}")
+  private int storageThreads;
+  @Value("${spring.threads.virtual.enabled:false}")
+  private boolean virtualThreads;
+
+  @Value("${api.scrolls.s3.region}")
+  private String s3Region;
+  @Value("${api.scrolls.s3.endpoint:}")
+  private String s3Endpoint;
+  @Value("${api.scrolls.s3.accessKey:}")
+  private String s3AccessKey;
+  @Value("${api.scrolls.s3.secretKey:}")
+  private String s3SecretKey;
+
+  // Image storage I/O is completed on this pool, so request threads never wait on it.
+  // Unlike other pools, it does not carry over the trace of the request: completions of storage calls finish
+  // their request on this pool, which must not happen within the trace restored for another task.
+  // Tasks and continuations of storage calls restore the trace of their request themselves while they run,
+  // see TracingConfiguration.inCurrentContext. The spans of storage calls are opened on the request thread
+  // and end when the call completes regardless.
+  // With virtual threads, each completion gets one of its own rather than waiting for a thread of the pool.
+  @Bean(destroyMethod = "shutdown")
+  public ExecutorService storageExecutor() {
+    if (virtualThreads)
+      return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("storage-", 0).factory());
+    return Executors.newFixedThreadPool(storageThreads, Thread.ofPlatform().name("storage-", 0).factory());
+  }
+
+  @Bean
+  @ConditionalOnProperty(name = "api.scrolls.storage", havingValue = "s3")
+  public S3AsyncClient s3AsyncClient() {
+    var builder = S3AsyncClient.builder()
+            .region(Region.of(s3Region))
+            // Only compute checksums when S3 requires them, as S3-compatible stores may not support them
+            .requestChecksumCalculation(RequestChecksumCalculation.WHEN_REQUIRED)
+            .responseChecksumValidation(ResponseChecksumValidation.WHEN_REQUIRED);
+
+    // Without explicit credentials, the default AWS provider chain (environment, profile, etc.) is used
+    if (!s3AccessKey.isBlank())
+      builder.credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create(s3AccessKey, s3SecretKey)));
+
+    // S3-compatible stores are reached through their own endpoint, with the bucket in the path
+    if (!s3Endpoint.isBlank())
+      builder.endpointOverride(URI.create(s3Endpoint)).forcePathStyle(true);
+
+    return builder.build();
+  }
+
+  @Bean
+  @ConditionalOnProperty(name = "api.scrolls.storage", havingValue = "s3")
+  public S3Presigner s3Presigner() {
+    var builder = S3Presigner.builder().region(Region.of(s3Region));
+
+    if (!s3AccessKey.isBlank())
+      builder.credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create(s3AccessKey, s3SecretKey)));
+
+    if (!s3Endpoint.isBlank())
+      builder.endpointOverride(URI.create(s3Endpoint))
+              .serviceConfiguration(S3Configuration.builder().pathStyleAccessEnabled(true).build());
+
+    return builder.build();
+  }
+}
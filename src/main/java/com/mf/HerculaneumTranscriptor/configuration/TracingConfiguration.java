@@ -0,0 +1,62 @@
+package com.mf.HerculaneumTranscriptor.configuration;
+
+import com.mf.HerculaneumTranscriptor.tracing.FileSpanExporter;
+import io.micrometer.context.ContextExecutorService;
+import io.micrometer.context.ContextSnapshot;
+import io.micrometer.context.ContextSnapshotFactory;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Function;
+
+/**
+ * Traces requests through OpenTelemetry, with spans for the JWT filter, the authorization checks of SecurityLogic,
+ * every service method and storage call (annotated with @Observed) and every JDBC statement.
+ * <p>
+ * Spans are exported over OTLP when management.otlp.tracing.endpoint is set, and to a local file when
+ * api.tracing.file is set, which works offline.
+ */
+@Configuration
+public class TracingConfiguration {
+  private static final ContextSnapshotFactory CONTEXT_SNAPSHOTS = ContextSnapshotFactory.builder().build();
+
+  @Bean
+  @ConditionalOnExpression("!'${api.tracing.file:}'.isBlank()")
+  public SpanExporter fileSpanExporter(@Value("${api.tracing.file}") Path file) throws IOException {
+    return new FileSpanExporter(file);
+  }
+
+  /**
+   * Wraps a thread pool so that tasks run within the trace of the thread that submitted them.
+   */
+  public static ExecutorService propagatingContext(ExecutorService executor) {
+    return ContextExecutorService.wrap(executor, CONTEXT_SNAPSHOTS);
+  }
+
+  /**
+   * Wraps a task so that it runs within the trace of the thread calling this, whichever thread runs it.
+   * The trace is only restored while the task runs, unlike on pools wrapped by propagatingContext.
+   */
+  public static Runnable inCurrentContext(Runnable task) {
+    return CONTEXT_SNAPSHOTS.captureAll().wrap(task);
+  }
+
+  /**
+   * Wraps the continuation of an asynchronous call so that it runs within the trace of the thread calling this,
+   * whichever thread completes the call. The trace is only restored while the continuation runs.
+   */
+  public static <T, R> Function<T, R> inCurrentContext(Function<T, R> continuation) {
+    ContextSnapshot snapshot = CONTEXT_SNAPSHOTS.captureAll();
+    return value -> {
+      try (ContextSnapshot.Scope scope = snapshot.setThreadLocals()) {
+        return continuation.apply(value);
+      }
+    };
+  }
+}
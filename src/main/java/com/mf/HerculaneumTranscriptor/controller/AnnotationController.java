@@ -11,6 +11,7 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.RestController;
 
+import javax.validation.ValidationException;
 import java.util.Date;
 import java.util.UUID;
 
@@ -32,15 +33,38 @@ public class AnnotationController implements AnnotationsApi {
   }
 
   @Override
-  public ResponseEntity<RegionUpdateResponse> getScrollRegions(String scrollId, Date since) {
-    RegionUpdateResponse response = annotationService.getScrollRegions(scrollId, since);
+  public ResponseEntity<RegionUpdateResponse> getScrollRegions(String scrollId, Date since, Date asOf) {
+    RegionUpdateResponse response = annotationService.getScrollRegions(scrollId, since, asOf);
     return ResponseEntity.ok(response);
   }
 
+  /**
+   * Reads the version of a region from an If-Match header.
+   *
+   * @return The version, or null if any version matches.
+   * @throws ValidationException if the header does not hold a version.
+   */
+  private static Long parseVersion(String ifMatch) throws ValidationException {
+    if (ifMatch == null || ifMatch.isBlank() || ifMatch.strip().equals("*"))
+      return null;
+
+    // Versions are sent back as they were received in the ETag, which is quoted and may be marked as weak
+    String version = ifMatch.strip();
+    if (version.startsWith("W/"))
+      version = version.substring(2);
+    version = version.replace("\"", "");
+
+    try {
+      return Long.parseLong(version);
+    } catch (NumberFormatException e) {
+      throw new ValidationException("If-Match must hold the version of the region");
+    }
+  }
+
   @Override
-  public ResponseEntity<BoxRegion> updateRegion(String scrollId, UUID regionId, NewBoxRegion newBoxRegion) {
-    BoxRegion region = annotationService.updateRegion(scrollId, regionId, newBoxRegion);
-    return ResponseEntity.ok(region);
+  public ResponseEntity<BoxRegion> updateRegion(String scrollId, UUID regionId, NewBoxRegion newBoxRegion, String ifMatch) {
+    BoxRegion region = annotationService.updateRegion(scrollId, regionId, newBoxRegion, parseVersion(ifMatch));
+    return ResponseEntity.ok().eTag(String.valueOf(region.getVersion())).body(region);
   }
 
   @Override
@@ -0,0 +1,38 @@
+package com.mf.HerculaneumTranscriptor.controller;
+
+import com.mf.HerculaneumTranscriptor.service.CommentService;
+import comment.api.CommentsApi;
+import comment.dto.Comment;
+import comment.dto.CommentContent;
+import comment.dto.CommentUpdateResponse;
+import lombok.AllArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Date;
+import java.util.UUID;
+
+@RestController
+@AllArgsConstructor
+public class CommentController implements CommentsApi {
+  private final CommentService commentService;
+
+  @Override
+  public ResponseEntity<Comment> addCommentToRegion(String scrollId, UUID regionId, CommentContent commentContent) {
+    Comment comment = commentService.addComment(scrollId, regionId, commentContent);
+    return new ResponseEntity<>(comment, HttpStatus.CREATED);
+  }
+
+  @Override
+  public ResponseEntity<Void> deleteComment(String scrollId, UUID regionId, UUID commentId) {
+    commentService.deleteComment(scrollId, regionId, commentId);
+    return ResponseEntity.noContent().build();
+  }
+
+  @Override
+  public ResponseEntity<CommentUpdateResponse> getRegionComments(String scrollId, UUID regionId, Date since, String cursor) {
+    CommentUpdateResponse response = commentService.getRegionComments(scrollId, regionId, since, cursor);
+    return ResponseEntity.ok(response);
+  }
+}
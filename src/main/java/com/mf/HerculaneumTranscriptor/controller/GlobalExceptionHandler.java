@@ -1,9 +1,16 @@
 package com.mf.HerculaneumTranscriptor.controller;
 
+import com.mf.HerculaneumTranscriptor.domain.Annotation;
+import com.mf.HerculaneumTranscriptor.domain.Scroll;
+import com.mf.HerculaneumTranscriptor.domain.User;
+import com.mf.HerculaneumTranscriptor.exception.ConstraintViolations;
+import com.mf.HerculaneumTranscriptor.exception.ResourceModifiedException;
 import com.mf.HerculaneumTranscriptor.exception.ResourceNotFoundException;
 import com.mf.HerculaneumTranscriptor.exception.ResourceAlreadyExistsException;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.authorization.AuthorizationDeniedException;
 import org.springframework.web.bind.MethodArgumentNotValidException;
@@ -18,13 +25,25 @@ import java.util.Map;
 
 @ControllerAdvice
 public class GlobalExceptionHandler {
+  // Conflicts reported when a unique constraint rejects an insert or update
+  private static final Map<String, String> UNIQUE_CONSTRAINT_MESSAGES = Map.of(
+          User.USERNAME_CONSTRAINT, "Username is already taken",
+          Scroll.SCROLL_ID_CONSTRAINT, "A scroll with the same ID already exists",
+          Annotation.REGION_ID_CONSTRAINT, "A region with the same ID already exists");
+
   private ResponseEntity<Object> buildResponseBody(HttpStatus status, String errorType, String message) {
+    return buildResponseBody(status, errorType, message, Map.of());
+  }
+
+  private ResponseEntity<Object> buildResponseBody(HttpStatus status, String errorType, String message,
+                                                   Map<String, Object> details) {
     // Create a clear, structured JSON error response body
     Map<String, Object> body = new LinkedHashMap<>();
     body.put("timestamp", LocalDateTime.now());
     body.put("status", status.value());
     body.put("error", errorType);
     body.put("message", message);
+    body.putAll(details);
 
     return new ResponseEntity<>(body, status);
   }
@@ -36,6 +55,30 @@ public class GlobalExceptionHandler {
     return buildResponseBody(HttpStatus.CONFLICT, "Resource conflict", ex.getMessage());
   }
 
+  @ExceptionHandler(DataIntegrityViolationException.class)
+  public ResponseEntity<Object> handleDataIntegrityViolation(DataIntegrityViolationException ex, WebRequest request) {
+    // Uniqueness is enforced by the database, so taken usernames and IDs are only found out when the row is written.
+    // Other violations, e.g. of not-null or foreign key constraints, are not conflicts and are left unhandled.
+    String constraintName = ConstraintViolations.violatedConstraint(ex);
+    for (Map.Entry<String, String> constraint : UNIQUE_CONSTRAINT_MESSAGES.entrySet())
+      if (constraintName.contains(constraint.getKey()))
+        return handleUserAlreadyExists(new ResourceAlreadyExistsException(constraint.getValue()), request);
+
+    throw ex;
+  }
+
+  @ExceptionHandler(ResourceModifiedException.class)
+  public ResponseEntity<Object> handleResourceModified(ResourceModifiedException ex, WebRequest request) {
+    // The current state lets the client merge its changes without fetching the resource again
+    return buildResponseBody(HttpStatus.CONFLICT, "Resource modified", ex.getMessage(), Map.of("current", ex.getCurrent()));
+  }
+
+  @ExceptionHandler(ObjectOptimisticLockingFailureException.class)
+  public ResponseEntity<Object> handleOptimisticLockingFailure(ObjectOptimisticLockingFailureException ex, WebRequest request) {
+    // Concurrent updates are retried a few times before giving up
+    return buildResponseBody(HttpStatus.CONFLICT, "Resource modified", "The resource is being changed concurrently, try again");
+  }
+
   @ExceptionHandler(ResourceNotFoundException.class)
   public ResponseEntity<Object> handleResourceNotFound(ResourceNotFoundException ex, WebRequest request) {
 
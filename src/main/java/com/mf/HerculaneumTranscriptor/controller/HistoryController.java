@@ -0,0 +1,29 @@
+package com.mf.HerculaneumTranscriptor.controller;
+
+import annotation.api.HistoryApi;
+import com.mf.HerculaneumTranscriptor.service.RegionHistoryService;
+import lombok.AllArgsConstructor;
+import org.springframework.core.io.Resource;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.UUID;
+
+@RestController
+@AllArgsConstructor
+public class HistoryController implements HistoryApi {
+  private final RegionHistoryService regionHistoryService;
+
+  @Override
+  public ResponseEntity<Resource> getRegionHistory(String scrollId, UUID regionId, Long fromRevision) {
+    Resource history = regionHistoryService.streamRegionHistory(scrollId, regionId, fromRevision);
+    return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(history);
+  }
+
+  @Override
+  public ResponseEntity<Resource> getScrollHistory(String scrollId) {
+    Resource history = regionHistoryService.streamScrollHistory(scrollId);
+    return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(history);
+  }
+}
@@ -12,8 +12,8 @@ import scroll.dto.NewScroll;
 import scroll.dto.Scroll;
 
 import java.io.IOException;
-import java.net.URI;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @AllArgsConstructor
@@ -21,39 +21,35 @@ public class ScrollController implements ScrollsApi {
   private final ScrollService scrollService;
 
   @Override
-  public ResponseEntity<Scroll> createScroll(NewScroll metadata, MultipartFile inkImage) throws IOException {
-    Scroll scroll = scrollService.createScroll(metadata, inkImage);
-    return ResponseEntity.ok(scroll);
+  public CompletableFuture<ResponseEntity<Scroll>> createScroll(NewScroll metadata, MultipartFile inkImage) throws IOException {
+    return scrollService.createScroll(metadata, inkImage).thenApply(ResponseEntity::ok);
   }
 
   @Override
-  public ResponseEntity<Void> deleteScroll(String scrollId) throws IOException {
-    scrollService.deleteScroll(scrollId);
-    return ResponseEntity.ok().build();
+  public CompletableFuture<ResponseEntity<Void>> deleteScroll(String scrollId) throws IOException {
+    return scrollService.deleteScroll(scrollId).thenApply(ignored -> ResponseEntity.ok().build());
   }
 
   @Override
-  public ResponseEntity<List<Scroll>> getAllScrolls() {
+  public CompletableFuture<ResponseEntity<List<Scroll>>> getAllScrolls() {
     List<Scroll> scrolls = scrollService.getAllScrolls();
-    return ResponseEntity.ok(scrolls);
+    return CompletableFuture.completedFuture(ResponseEntity.ok(scrolls));
   }
 
   @Override
-  public ResponseEntity<Resource> getScrollImage(String scrollId) throws IOException {
-    Resource inkImageResource = scrollService.getScrollImage(scrollId);
-    return ResponseEntity.ok(inkImageResource);
+  public CompletableFuture<ResponseEntity<Resource>> getScrollImage(String scrollId) throws IOException {
+    return scrollService.getScrollImage(scrollId).thenApply(ResponseEntity::ok);
   }
 
   @Override
-  public ResponseEntity<Void> getScrollImageURL(String scrollId) {
-    URI imageURL = scrollService.getScrollImageURL(scrollId);
-
-    return ResponseEntity.status(HttpStatus.FOUND).location(imageURL).build();
+  public CompletableFuture<ResponseEntity<Void>> getScrollImageURL(String scrollId) {
+    return scrollService.getScrollImageURL(scrollId)
+            .thenApply(imageURL -> ResponseEntity.status(HttpStatus.FOUND).location(imageURL).build());
   }
 
   @Override
-  public ResponseEntity<Scroll> updateScroll(String scrollId, NewScroll newScroll) {
+  public CompletableFuture<ResponseEntity<Scroll>> updateScroll(String scrollId, NewScroll newScroll) {
     Scroll scroll = scrollService.updateScroll(scrollId, newScroll);
-    return ResponseEntity.ok(scroll);
+    return CompletableFuture.completedFuture(ResponseEntity.ok(scroll));
   }
 }
@@ -1,9 +1,12 @@
 package com.mf.HerculaneumTranscriptor.controller;
 
 import com.mf.HerculaneumTranscriptor.dto.AuthenticationResponse;
+import com.mf.HerculaneumTranscriptor.dto.UserListing;
 import com.mf.HerculaneumTranscriptor.service.UserService;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.AllArgsConstructor;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import user.api.UserApi;
 import user.dto.*;
 import org.springframework.http.ResponseEntity;
@@ -15,7 +18,10 @@ import java.util.List;
 @RestController
 @AllArgsConstructor
 public class UserController implements UserApi {
+  public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
   private final UserService userService;
+  private final HttpServletRequest request;
 
   @Override
   public ResponseEntity<UserInfo> createUser(UserRegisterInfo userRegisterInfo) {
@@ -27,6 +33,14 @@ public class UserController implements UserApi {
             .body(authInfo.getUserInfo());
   }
 
+  @Override
+  public ResponseEntity<List<UserImportResult>> createUsers(String body) {
+    // Both formats arrive as plain text, the content type tells them apart
+    MediaType contentType = MediaType.parseMediaType(request.getContentType());
+
+    return ResponseEntity.ok(userService.importUsers(body, contentType));
+  }
+
   @Override
   public ResponseEntity<Void> deleteUser(String username) {
     userService.deleteUserByUsername(username);
@@ -35,9 +49,18 @@ public class UserController implements UserApi {
   }
 
   @Override
-  public ResponseEntity<List<UserInfo>> getAllUsers(Integer index) {
-    List<UserInfo> users = userService.findAllUsers(index);
-    return ResponseEntity.ok(users);
+  public ResponseEntity<List<UserInfo>> getAllUsers(Integer index, String cursor, String query) {
+    if (query != null)
+      return ResponseEntity.ok(userService.searchUsers(query));
+
+    UserListing listing = userService.findAllUsers(index, cursor);
+
+    // The cursor of the next slice is only sent when there are more users to list
+    ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+    if (listing.getNextCursor() != null)
+      response.header(NEXT_CURSOR_HEADER, listing.getNextCursor());
+
+    return response.body(listing.getUsers());
   }
 
   @Override
@@ -0,0 +1,466 @@
+package com.mf.HerculaneumTranscriptor.dataset;
+
+import com.mf.HerculaneumTranscriptor.domain.ImageMetadata;
+import com.mf.HerculaneumTranscriptor.domain.Scroll;
+import com.mf.HerculaneumTranscriptor.repository.ScrollRepository;
+import com.mf.HerculaneumTranscriptor.repository.UserRepository;
+import com.mf.HerculaneumTranscriptor.storage.ImageMetadataInputStream;
+import com.mf.HerculaneumTranscriptor.storage.ScrollImageStorage;
+import com.mf.HerculaneumTranscriptor.storage.StorageOutbox;
+import org.postgresql.PGConnection;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import user.dto.UserInfo;
+
+import javax.imageio.ImageIO;
+import javax.sql.DataSource;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Fills the database with synthetic users, scrolls, regions and votes on startup when the dataset profile is active,
+ * so that benchmarks and load tests run against scrolls as large as the largest ones being annotated.
+ * <p>
+ * Everything generated follows from the seed: the same seed and sizes always give the same rows, dated relative to
+ * when they are generated. Regions lie on lines of text in columns across the scroll image, with Greek transcriptions.
+ * A few prolific users author most of them, most regions get a few votes and some get many, and the votes on a region
+ * mostly agree with each other. The certainty of each region is the average of its votes, as if they were cast
+ * through the API.
+ * <p>
+ * Regions and their votes are written in chunks, each in a transaction of its own, by several threads at once.
+ * Chunks are streamed with COPY on PostgreSQL and sent in JDBC batches on other databases. Regions get no history,
+ * as if they were written before it was recorded.
+ * <p>
+ * Nothing is generated when the users of a previous run already exist.
+ */
+@Component
+@Profile("dataset")
+public class DatasetGenerator implements ApplicationRunner {
+  private static final String USERNAME_PREFIX = "dataset-user-";
+  private static final String SCROLL_ID_PREFIX = "dataset-scroll-";
+  // Rows sent in each JDBC batch
+  private static final int BATCH_SIZE = 1000;
+  // Allocation size of the ID sequences of Hibernate
+  private static final int ID_ALLOCATION_SIZE = 50;
+  private static final Duration HISTORY_LENGTH = Duration.ofDays(365);
+
+  private static final String[] FIRST_NAMES = {"Alexandros", "Eleni", "Giorgos", "Maria", "Nikos", "Sofia",
+          "Dimitris", "Katerina", "Yannis", "Anna", "Kostas", "Ioanna"};
+  private static final String[] LAST_NAMES = {"Papadopoulos", "Nikolaidis", "Georgiou", "Dimitriou", "Ioannou",
+          "Vlachos", "Karagiannis", "Oikonomou", "Antoniou", "Makris"};
+  // From the most frequent to the least, see skewed
+  private static final String[] WORDS = {"καὶ", "τὸ", "τῆς", "δὲ", "οὐ", "περὶ", "ἡδονή", "λόγος", "ψυχῆς",
+          "φιλοδήμου", "ἐπικούρου", "μουσικῆς", "ποιημάτων", "θεῶν", "εὐσεβείας", "[...]", "ῥητορικῆς", "ὀργῆς"};
+
+  private static final List<String> USER_COLUMNS =
+          List.of("id", "username", "first_name", "last_name", "contact", "password_hash", "permissions");
+  private static final List<String> ANNOTATION_COLUMNS = List.of("id", "region_id", "author_user_id", "scroll_id",
+          "transcription", "x", "y", "width", "height", "certainty_score", "comment_count", "created_at",
+          "updated_at", "version");
+  private static final List<String> VOTE_COLUMNS = List.of("annotation_id", "user_id", "vote_value");
+
+  private final DataSource dataSource;
+  private final UserRepository userRepository;
+  private final ScrollRepository scrollRepository;
+  private final ScrollImageStorage scrollImageStorage;
+  private final StorageOutbox storageOutbox;
+  private final PasswordEncoder passwordEncoder;
+  private final TransactionTemplate transaction;
+
+  @Value("${api.dataset.seed}")
+  private long seed;
+  @Value("${api.dataset.users}")
+  private int users;
+  @Value("${api.dataset.scrolls}")
+  private int scrolls;
+  @Value("${api.dataset.regionsPerScroll}")
+  private int regionsPerScroll;
+  @Value("${api.dataset.votesPerRegion}")
+  private double votesPerRegion;
+  @Value("${api.dataset.imageWidth}")
+  private int imageWidth;
+  @Value("${api.dataset.imageHeight}")
+  private int imageHeight;
+  @Value("${api.dataset.threads}")
+  private int threads;
+  @Value("${api.dataset.chunkSize}")
+  private int chunkSize;
+  @Value("${api.dataset.password}")
+  private String password;
+
+  /**
+   * A synthetic region and the votes cast on it, users being referred to by their index among the generated ones.
+   */
+  record Region(UUID regionId, int author, String transcription, float x, float y, float width, float height,
+                float certaintyScore, Instant createdAt, Instant updatedAt, long version, List<CastVote> votes) {}
+
+  record CastVote(int voter, int value) {}
+
+  /**
+   * Lines of text in columns across a scroll image, sized so that the regions of the scroll about cover them once.
+   */
+  record Layout(float marginX, float marginY, int columns, float columnSpan, float columnWidth, int lines,
+                float lineHeight) {
+    static Layout of(int imageWidth, int imageHeight, int regions) {
+      float marginX = imageWidth * 0.02f;
+      float marginY = imageHeight * 0.05f;
+      float textWidth = imageWidth - 2 * marginX;
+      float textHeight = imageHeight - 2 * marginY;
+
+      // Columns of papyri are a little over half as wide as they are tall, with a tenth of their width between them
+      int columns = Math.max(1, Math.round(textWidth / (textHeight * 0.6f)));
+      float columnSpan = textWidth / columns;
+      float columnWidth = columnSpan * 0.9f;
+
+      // Regions are about three times wider than tall, and lines a quarter taller than them
+      float regionArea = columns * columnWidth * textHeight / Math.max(regions, 1);
+      int lines = Math.max(1, (int) (textHeight / (1.25f * (float) Math.sqrt(regionArea / 3))));
+      return new Layout(marginX, marginY, columns, columnSpan, columnWidth, lines, textHeight / lines);
+    }
+  }
+
+  public DatasetGenerator(DataSource dataSource, UserRepository userRepository, ScrollRepository scrollRepository,
+                          ScrollImageStorage scrollImageStorage, StorageOutbox storageOutbox,
+                          PasswordEncoder passwordEncoder, PlatformTransactionManager transactionManager) {
+    this.dataSource = dataSource;
+    this.userRepository = userRepository;
+    this.scrollRepository = scrollRepository;
+    this.scrollImageStorage = scrollImageStorage;
+    this.storageOutbox = storageOutbox;
+    this.passwordEncoder = passwordEncoder;
+    this.transaction = new TransactionTemplate(transactionManager);
+  }
+
+  private static String username(int index) {
+    return USERNAME_PREFIX + index;
+  }
+
+  /**
+   * @return an index below n, log-uniformly distributed so that the first ones are drawn far more often than the
+   * rest, as the most active users or the most frequent words are.
+   */
+  static int skewed(Random random, int n) {
+    return (int) Math.pow(n + 1, random.nextDouble()) - 1;
+  }
+
+  /**
+   * @return a count following a geometric distribution of the given mean, at most max.
+   */
+  static int geometric(Random random, double mean, int max) {
+    if (mean <= 0)
+      return 0;
+    double count = Math.log(1 - random.nextDouble()) / Math.log(mean / (mean + 1));
+    return (int) Math.min(count, max);
+  }
+
+  private static UUID randomUuid(Random random) {
+    // Version 4 and IETF variant, as UUID.randomUUID gives
+    long mostSignificant = (random.nextLong() & ~0xF000L) | 0x4000L;
+    long leastSignificant = (random.nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+    return new UUID(mostSignificant, leastSignificant);
+  }
+
+  /**
+   * Samples the regions of a chunk.
+   *
+   * @param users Number of users, who author and vote on the regions.
+   * @param votesPerRegion Mean number of votes on a region.
+   * @param generatedAt Regions are created within the year before it.
+   */
+  static List<Region> sampleRegions(Random random, int count, Layout layout, int users, double votesPerRegion,
+                                    Instant generatedAt) {
+    List<Region> regions = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      UUID regionId = randomUuid(random);
+      int author = skewed(random, users);
+
+      int column = random.nextInt(layout.columns());
+      int line = random.nextInt(layout.lines());
+      float height = layout.lineHeight() * (0.6f + 0.3f * random.nextFloat());
+      float width = Math.min(layout.columnWidth(), height * (1.5f + 3 * random.nextFloat()));
+      float x = layout.marginX() + column * layout.columnSpan() + random.nextFloat() * (layout.columnWidth() - width);
+      float y = layout.marginY() + line * layout.lineHeight() + random.nextFloat() * (layout.lineHeight() - height);
+
+      StringBuilder transcription = new StringBuilder();
+      int words = 1 + random.nextInt(4);
+      for (int word = 0; word < words; word++)
+        transcription.append(word == 0 ? "" : " ").append(WORDS[skewed(random, WORDS.length)]);
+
+      // Most transcriptions are legible and voted up, the others are mostly voted down
+      boolean legible = random.nextDouble() < 0.85;
+      int voteCount = geometric(random, votesPerRegion, users);
+      List<CastVote> votes = new ArrayList<>(voteCount);
+      for (int voter : distinct(random, voteCount, users))
+        votes.add(new CastVote(voter, legible ? 5 - skewed(random, 6) : skewed(random, 6)));
+      float certaintyScore = votes.isEmpty() ? 0 :
+              (float) votes.stream().mapToInt(CastVote::value).average().orElseThrow();
+
+      Instant createdAt = generatedAt.minusSeconds((long) (random.nextDouble() * HISTORY_LENGTH.toSeconds()));
+      // A third of the regions were edited after being created, each edit and vote giving them a new version
+      int edits = random.nextDouble() < 0.3 ? 1 + random.nextInt(3) : 0;
+      Instant updatedAt = edits == 0 ? createdAt : createdAt.plusSeconds(
+              (long) (random.nextDouble() * Duration.between(createdAt, generatedAt).toSeconds()));
+
+      regions.add(new Region(regionId, author, transcription.toString(), x, y, width, height, certaintyScore,
+              createdAt, updatedAt, edits + votes.size(), votes));
+    }
+    return regions;
+  }
+
+  /**
+   * @return count distinct indexes below n, in the order they were drawn.
+   */
+  private static Set<Integer> distinct(Random random, int count, int n) {
+    // Floyd's algorithm, which draws each index once
+    Set<Integer> drawn = new LinkedHashSet<>();
+    for (int bound = n - count; bound < n; bound++) {
+      int index = random.nextInt(bound + 1);
+      drawn.add(drawn.contains(index) ? bound : index);
+    }
+    return drawn;
+  }
+
+  /**
+   * @return a PNG of sparse ink-like noise, which compresses about as poorly as actual ink predictions.
+   */
+  static byte[] inkImage(Random random, int width, int height) throws IOException {
+    BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+    byte[] pixels = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+    for (int i = 0; i < pixels.length; i++)
+      if (random.nextInt(16) == 0)
+        pixels[i] = (byte) random.nextInt(256);
+
+    ByteArrayOutputStream png = new ByteArrayOutputStream();
+    ImageIO.write(image, "png", png);
+    return png.toByteArray();
+  }
+
+  @Override
+  public void run(ApplicationArguments args) throws Exception {
+    if (users < 1)
+      throw new IllegalStateException("The dataset needs at least one user");
+    if (!userRepository.findUsernamesIn(List.of(username(0))).isEmpty()) {
+      System.out.println("Dataset already generated, skipping.");
+      return;
+    }
+
+    long start = System.nanoTime();
+    Instant generatedAt = Instant.now();
+    // Seeds are drawn in order before anything runs concurrently, so that they do not depend on scheduling
+    Random random = new Random(seed);
+
+    long firstUserId = insertUsers(new Random(random.nextLong()));
+
+    Layout layout = Layout.of(imageWidth, imageHeight, regionsPerScroll);
+    long firstRegionId = reserveIds("annotations_seq", (long) scrolls * regionsPerScroll);
+    long regionCount = 0;
+    long voteCount = 0;
+    List<Future<Long>> chunks = new ArrayList<>();
+    try (ExecutorService executor = Executors.newFixedThreadPool(threads)) {
+      for (int s = 0; s < scrolls; s++) {
+        Long scrollKey = createScroll(s, new Random(random.nextLong()));
+
+        for (int offset = 0; offset < regionsPerScroll; offset += chunkSize) {
+          long chunkSeed = random.nextLong();
+          int count = Math.min(chunkSize, regionsPerScroll - offset);
+          long firstId = firstRegionId + regionCount;
+          chunks.add(executor.submit(() -> insertRegions(new Random(chunkSeed), count, layout, scrollKey,
+                  firstId, firstUserId, generatedAt)));
+          regionCount += count;
+        }
+      }
+
+      for (Future<Long> chunk : chunks) {
+        try {
+          voteCount += chunk.get();
+        } catch (ExecutionException e) {
+          executor.shutdownNow();
+          throw e.getCause() instanceof Exception cause ? cause : e;
+        }
+      }
+    }
+
+    System.out.println("Dataset generated in " + Duration.ofNanos(System.nanoTime() - start).toSeconds() + "s: " +
+            users + " users, " + scrolls + " scrolls, " + regionCount + " regions and " + voteCount + " votes.");
+  }
+
+  /**
+   * @return the ID of the first generated user, the others following it.
+   */
+  private long insertUsers(Random random) throws SQLException, IOException {
+    long firstId = reserveIds("users_seq", users);
+    // Hashing is made slow on purpose, so every user shares the same hash
+    String passwordHash = passwordEncoder.encode(password);
+
+    List<Object[]> rows = new ArrayList<>(users);
+    for (int i = 0; i < users; i++)
+      rows.add(new Object[]{firstId + i, username(i), FIRST_NAMES[random.nextInt(FIRST_NAMES.length)],
+              LAST_NAMES[random.nextInt(LAST_NAMES.length)], username(i) + "@dataset.invalid", passwordHash,
+              UserInfo.PermissionsEnum.WRITE.ordinal()});
+
+    try (Connection connection = dataSource.getConnection()) {
+      connection.setAutoCommit(false);
+      insert(connection, "users", USER_COLUMNS, rows);
+      connection.commit();
+    }
+    return firstId;
+  }
+
+  /**
+   * Creates a scroll as the API does, its image being uploaded by the outbox worker.
+   *
+   * @return the primary key of the scroll.
+   */
+  private Long createScroll(int index, Random random) throws IOException {
+    byte[] image = inkImage(random, imageWidth, imageHeight);
+    String scrollId = SCROLL_ID_PREFIX + index;
+
+    return transaction.execute(status -> {
+      Scroll scroll = new Scroll();
+      scroll.setScrollId(scrollId);
+      scroll.setDisplayName("Synthetic Scroll " + index);
+      scroll.setDescription("Generated with seed " + seed);
+      scroll.setImagePath(scrollImageStorage.locate(scrollId, "png"));
+
+      try (ImageMetadataInputStream content = new ImageMetadataInputStream(new ByteArrayInputStream(image))) {
+        storageOutbox.enqueuePut(scroll.getImagePath(), content);
+        scroll.setImageMetadata(content.getMetadata());
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      return scrollRepository.save(scroll).getId();
+    });
+  }
+
+  /**
+   * Samples a chunk of regions and inserts them along with their votes, in a transaction of its own.
+   *
+   * @return the number of votes inserted.
+   */
+  private long insertRegions(Random random, int count, Layout layout, Long scrollKey, long firstId, long firstUserId,
+                             Instant generatedAt) throws SQLException, IOException {
+    List<Region> regions = sampleRegions(random, count, layout, users, votesPerRegion, generatedAt);
+
+    List<Object[]> annotationRows = new ArrayList<>(regions.size());
+    List<Object[]> voteRows = new ArrayList<>();
+    for (int i = 0; i < regions.size(); i++) {
+      Region region = regions.get(i);
+      long id = firstId + i;
+      annotationRows.add(new Object[]{id, region.regionId(), firstUserId + region.author(), scrollKey,
+              region.transcription(), region.x(), region.y(), region.width(), region.height(),
+              region.certaintyScore(), 0, utc(region.createdAt()), utc(region.updatedAt()), region.version()});
+      for (CastVote vote : region.votes())
+        voteRows.add(new Object[]{id, firstUserId + vote.voter(), vote.value()});
+    }
+
+    try (Connection connection = dataSource.getConnection()) {
+      connection.setAutoCommit(false);
+      insert(connection, "annotations", ANNOTATION_COLUMNS, annotationRows);
+      insert(connection, "votes", VOTE_COLUMNS, voteRows);
+      connection.commit();
+    }
+    return voteRows.size();
+  }
+
+  private static OffsetDateTime utc(Instant instant) {
+    return instant.atOffset(ZoneOffset.UTC);
+  }
+
+  /**
+   * Inserts rows into a table, streamed with COPY on PostgreSQL and sent in JDBC batches elsewhere.
+   */
+  private static void insert(Connection connection, String table, List<String> columns, List<Object[]> rows)
+          throws SQLException, IOException {
+    if (rows.isEmpty())
+      return;
+
+    if (connection.isWrapperFor(PGConnection.class)) {
+      StringBuilder csv = new StringBuilder();
+      for (Object[] row : rows) {
+        for (int c = 0; c < row.length; c++) {
+          if (c > 0)
+            csv.append(',');
+          // Strings are quoted as they may hold commas, other values never do
+          if (row[c] instanceof String text)
+            csv.append('"').append(text.replace("\"", "\"\"")).append('"');
+          else
+            csv.append(row[c]);
+        }
+        csv.append('\n');
+      }
+      connection.unwrap(PGConnection.class).getCopyAPI().copyIn("COPY " + table + " (" + String.join(", ", columns) +
+              ") FROM STDIN WITH (FORMAT csv)", new StringReader(csv.toString()));
+      return;
+    }
+
+    String sql = "INSERT INTO " + table + " (" + String.join(", ", columns) + ") VALUES (" +
+            String.join(", ", Collections.nCopies(columns.size(), "?")) + ")";
+    try (PreparedStatement statement = connection.prepareStatement(sql)) {
+      for (int i = 0; i < rows.size(); i++) {
+        Object[] row = rows.get(i);
+        for (int c = 0; c < row.length; c++)
+          statement.setObject(c + 1, row[c]);
+        statement.addBatch();
+        if ((i + 1) % BATCH_SIZE == 0 || i == rows.size() - 1)
+          statement.executeBatch();
+      }
+    }
+  }
+
+  /**
+   * Reserves a range of IDs from a sequence for generated rows, past the blocks of IDs it already handed out to
+   * running instances of the backend, and moves the sequence past the range so that none of them takes it later.
+   *
+   * @return the first ID of the range.
+   */
+  private long reserveIds(String sequence, long count) throws SQLException {
+    try (Connection connection = dataSource.getConnection();
+         Statement statement = connection.createStatement()) {
+      connection.setAutoCommit(false);
+      // On PostgreSQL, altering the sequence blocks the instances asking it for IDs until the range is reserved
+      statement.execute("ALTER SEQUENCE " + sequence + " INCREMENT BY " + ID_ALLOCATION_SIZE);
+      long firstId;
+      try (ResultSet result = statement.executeQuery(connection.isWrapperFor(PGConnection.class) ?
+              "SELECT nextval('" + sequence + "')" : "SELECT NEXT VALUE FOR " + sequence)) {
+        result.next();
+        firstId = result.getLong(1);
+      }
+      // Hibernate allocates IDs in blocks, ending or starting at the value it reads, so no block reaches the value
+      // read here and the next value read must be a whole block past the range
+      statement.execute("ALTER SEQUENCE " + sequence + " RESTART WITH " + (firstId + count + ID_ALLOCATION_SIZE));
+      connection.commit();
+      return firstId;
+    }
+  }
+}
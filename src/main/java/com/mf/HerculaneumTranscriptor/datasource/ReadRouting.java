@@ -0,0 +1,109 @@
+package com.mf.HerculaneumTranscriptor.datasource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Decides whether the read-only work of the current thread may be served by a read replica.
+ * <p>
+ * Replicas apply the changes of the primary with some delay, so after a user changes data their reads go to the
+ * primary for a while (the read-your-writes window), and code that must see the latest data can run on the primary.
+ * The user is the one the current request is authenticated as, set by the JWT filter.
+ */
+@Component
+public class ReadRouting {
+  @Value("${api.datasource.replicas:}")
+  private List<String> replicas;
+  @Value("${api.datasource.readYourWritesWindow}")
+  private Duration readYourWritesWindow;
+  @Value("${api.datasource.maxReplicaLag}")
+  private Duration maxReplicaLag;
+
+  // Until when each user that recently changed data reads from the primary
+  private final Map<String, Instant> primaryReadsUntil = new ConcurrentHashMap<>();
+  private final ThreadLocal<String> currentUser = new ThreadLocal<>();
+  private final ThreadLocal<Boolean> primaryOnly = ThreadLocal.withInitial(() -> false);
+
+  /**
+   * Sets the user the work of the current thread is done for, until cleared.
+   */
+  public void setCurrentUser(String username) {
+    currentUser.set(username);
+  }
+
+  public void clearCurrentUser() {
+    currentUser.remove();
+  }
+
+  /**
+   * Runs work whose reads must see the latest committed data, so they are never served by a replica.
+   */
+  public <T> T onPrimary(Supplier<T> work) {
+    boolean previous = primaryOnly.get();
+    primaryOnly.set(true);
+    try {
+      return work.get();
+    } finally {
+      primaryOnly.set(previous);
+    }
+  }
+
+  /**
+   * @return True if the reads of the current thread must go to the primary.
+   */
+  boolean mustReadFromPrimary() {
+    if (primaryOnly.get())
+      return true;
+
+    String username = currentUser.get();
+    Instant until = username == null ? null : primaryReadsUntil.get(username);
+    if (until == null)
+      return false;
+
+    if (until.isAfter(Instant.now()))
+      return true;
+
+    primaryReadsUntil.remove(username, until);
+    return false;
+  }
+
+  /**
+   * Opens the read-your-writes window of the current user once the current transaction commits.
+   */
+  void recordWriteOnCommit() {
+    String username = currentUser.get();
+    if (username == null || !TransactionSynchronizationManager.isSynchronizationActive())
+      return;
+
+    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+      @Override
+      public void afterCommit() {
+        primaryReadsUntil.put(username, Instant.now().plus(readYourWritesWindow));
+      }
+    });
+  }
+
+  /**
+   * Forgets the users whose read-your-writes window is over.
+   */
+  void pruneExpiredWindows() {
+    Instant now = Instant.now();
+    primaryReadsUntil.values().removeIf(until -> !until.isAfter(now));
+  }
+
+  /**
+   * @return How far behind the primary the data read in a read-only transaction may be.
+   */
+  public Duration staleness() {
+    return replicas.isEmpty() ? Duration.ZERO : maxReplicaLag;
+  }
+}
@@ -0,0 +1,153 @@
+package com.mf.HerculaneumTranscriptor.datasource;
+
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Data source sending the connections of read-only transactions to read replicas, and every other one to the primary.
+ * <p>
+ * Replicas are used in turn, skipping those lagging too far behind the primary or failing to connect.
+ * Reads go to the primary when no replica is usable or when {@link ReadRouting} requires it.
+ * The lag of each replica is measured by {@link #checkReplicaLag()}, and replicas are not used until first measured.
+ * <p>
+ * Transactions get their connection when they begin, before they are known to be read-only,
+ * so this data source must be wrapped in a LazyConnectionDataSourceProxy.
+ */
+public class ReplicaRoutingDataSource extends AbstractDataSource implements Closeable {
+  private final DataSource primary;
+  private final List<Replica> replicas = new ArrayList<>();
+  private final ReadRouting readRouting;
+  private final String lagQuery;
+  private final Duration maxLag;
+  private final AtomicInteger next = new AtomicInteger();
+
+  private static final class Replica {
+    private final String name;
+    private final DataSource dataSource;
+    // Null until measured, or while the replica cannot be reached
+    private volatile Duration lag;
+
+    private Replica(String name, DataSource dataSource) {
+      this.name = name;
+      this.dataSource = dataSource;
+    }
+  }
+
+  /**
+   * @param primary The data source of the primary database.
+   * @param replicas The data sources of the read replicas.
+   * @param readRouting Decides when reads must go to the primary.
+   * @param lagQuery Query returning how far behind the primary a replica is, in seconds.
+   * @param maxLag Replicas lagging further behind are not used.
+   */
+  public ReplicaRoutingDataSource(DataSource primary, List<DataSource> replicas, ReadRouting readRouting,
+                                  String lagQuery, Duration maxLag) {
+    this.primary = primary;
+    for (int i = 0; i < replicas.size(); i++)
+      this.replicas.add(new Replica("replica-" + i, replicas.get(i)));
+    this.readRouting = readRouting;
+    this.lagQuery = lagQuery;
+    this.maxLag = maxLag;
+  }
+
+  /**
+   * Picks the replica serving the current connection, or null if it must come from the primary.
+   */
+  private Replica route() {
+    if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+      readRouting.recordWriteOnCommit();
+      return null;
+    }
+
+    if (replicas.isEmpty() || readRouting.mustReadFromPrimary())
+      return null;
+
+    int start = Math.floorMod(next.getAndIncrement(), replicas.size());
+    for (int i = 0; i < replicas.size(); i++) {
+      Replica replica = replicas.get((start + i) % replicas.size());
+      Duration lag = replica.lag;
+      if (lag != null && lag.compareTo(maxLag) <= 0)
+        return replica;
+    }
+
+    return null;
+  }
+
+  private interface ConnectionSource {
+    Connection connect(DataSource dataSource) throws SQLException;
+  }
+
+  private Connection connect(ConnectionSource source) throws SQLException {
+    Replica replica = route();
+
+    if (replica != null)
+      try {
+        return source.connect(replica.dataSource);
+      } catch (SQLException e) {
+        // Not used again until the next lag check reaches it
+        replica.lag = null;
+        System.out.println("Could not connect to " + replica.name + ", reading from the primary: " + e.getMessage());
+      }
+
+    return source.connect(primary);
+  }
+
+  @Override
+  public Connection getConnection() throws SQLException {
+    return connect(DataSource::getConnection);
+  }
+
+  @Override
+  public Connection getConnection(String username, String password) throws SQLException {
+    return connect(dataSource -> dataSource.getConnection(username, password));
+  }
+
+  /**
+   * Measures how far behind the primary each replica is.
+   */
+  @Scheduled(fixedDelayString = "${api.datasource.lagCheckInterval}")
+  public void checkReplicaLag() {
+    for (Replica replica : replicas) {
+      try (Connection connection = replica.dataSource.getConnection();
+           Statement statement = connection.createStatement();
+           ResultSet result = statement.executeQuery(lagQuery)) {
+        result.next();
+        Duration lag = Duration.ofMillis(Math.round(result.getDouble(1) * 1000));
+
+        if (lag.compareTo(maxLag) > 0 && (replica.lag == null || replica.lag.compareTo(maxLag) <= 0))
+          System.out.println(replica.name + " is " + lag.toMillis() + " ms behind the primary, reading from the primary.");
+        replica.lag = lag;
+      } catch (SQLException e) {
+        if (replica.lag != null)
+          System.out.println("Could not check the lag of " + replica.name + ", reading from the primary: " + e.getMessage());
+        replica.lag = null;
+      }
+    }
+
+    readRouting.pruneExpiredWindows();
+  }
+
+  // Closes the connection pools
+  @Override
+  public void close() throws IOException {
+    for (Replica replica : replicas)
+      if (replica.dataSource instanceof Closeable closeable)
+        closeable.close();
+
+    if (primary instanceof Closeable closeable)
+      closeable.close();
+  }
+}
@@ -14,9 +14,16 @@ import java.util.HashSet;
 import java.util.Set;
 import java.util.UUID;
 
-@Entity @Table(name = "ANNOTATIONS")
+@Entity @Table(name = "ANNOTATIONS",
+        uniqueConstraints = @UniqueConstraint(name = Annotation.REGION_ID_CONSTRAINT, columnNames = "regionId"),
+        indexes = {
+                @Index(name = "idx_annotations_scroll_updated_at", columnList = "scroll_id, updatedAt"),
+                @Index(name = "idx_annotations_author", columnList = "author_user_id")
+        })
 @Getter @Setter @AllArgsConstructor @NoArgsConstructor
 public class Annotation {
+  public static final String REGION_ID_CONSTRAINT = "uk_annotations_region_id";
+
   @Id
   @GeneratedValue(strategy= GenerationType.AUTO)
   private Long id;
@@ -38,6 +45,12 @@ public class Annotation {
   @Column(nullable = false, columnDefinition = "float default 0")
   private float certaintyScore = 0.0f;
 
+  // Kept up to date by the comment service, so that region lists need not count the comments of each region.
+  // Only changed in place by AnnotationRepository.addToCommentCount, never written back by updates of the region,
+  // which would overwrite the comments made since it was read.
+  @Column(nullable = false, updatable = false)
+  private int commentCount = 0;
+
   @OneToMany(mappedBy = "annotation", cascade = CascadeType.ALL, orphanRemoval = true, fetch = FetchType.LAZY)
   private Set<Vote> votes = new HashSet<>();
 
@@ -48,4 +61,9 @@ public class Annotation {
   @UpdateTimestamp
   @Column(nullable = false)
   private Instant updatedAt;
+
+  // Incremented on every update, which fails if another transaction updated the region since it was read
+  @Version
+  @Column(nullable = false)
+  private Long version;
 }
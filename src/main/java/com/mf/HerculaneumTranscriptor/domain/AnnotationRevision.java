@@ -0,0 +1,59 @@
+package com.mf.HerculaneumTranscriptor.domain;
+
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * A change made to a region, as recorded by {@link com.mf.HerculaneumTranscriptor.history.RegionHistory}.
+ * Regions are referenced by their public IDs instead of foreign keys, so that their history outlives them.
+ */
+@Entity @Table(name = "ANNOTATION_REVISIONS",
+        indexes = {
+                @Index(name = "idx_annotation_revisions_region", columnList = "regionId, revision"),
+                @Index(name = "idx_annotation_revisions_scroll", columnList = "scrollId, regionId, revision"),
+                @Index(name = "idx_annotation_revisions_scroll_created_at", columnList = "scrollId, createdAt")
+        })
+@Getter @Setter @AllArgsConstructor @NoArgsConstructor
+public class AnnotationRevision {
+  public enum Operation { CREATE, UPDATE, VOTE, DELETE }
+
+  @Id
+  @GeneratedValue(strategy= GenerationType.AUTO)
+  private Long id;
+
+  @Column(nullable = false)
+  private UUID regionId;
+
+  // Internal ID of the scroll of the region
+  @Column(nullable = false)
+  private Long scrollId;
+
+  // Version of the region after the change
+  @Column(nullable = false)
+  private long revision;
+
+  @Enumerated(EnumType.STRING)
+  @Column(nullable = false)
+  private Operation operation;
+
+  // Username of the user who made the change
+  private String editor;
+
+  @Column(nullable = false)
+  private Instant createdAt;
+
+  // Whether the changes hold the whole state of the region, rather than only what changed since the previous revision
+  @Column(nullable = false)
+  private boolean snapshot;
+
+  // JSON object with the fields of the region, see RegionState
+  @Column(nullable = false, length = 4096)
+  private String changes;
+}
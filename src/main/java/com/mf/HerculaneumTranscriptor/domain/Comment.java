@@ -0,0 +1,45 @@
+package com.mf.HerculaneumTranscriptor.domain;
+
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.Instant;
+import java.util.UUID;
+
+@Entity @Table(name = "COMMENTS",
+        uniqueConstraints = @UniqueConstraint(name = Comment.COMMENT_ID_CONSTRAINT, columnNames = "commentId"),
+        indexes = {
+                @Index(name = "idx_comments_annotation_id", columnList = "annotation_id, id"),
+                @Index(name = "idx_comments_annotation_created_at", columnList = "annotation_id, createdAt"),
+                @Index(name = "idx_comments_author", columnList = "author_user_id")
+        })
+@Getter @Setter @AllArgsConstructor @NoArgsConstructor
+public class Comment {
+  public static final String COMMENT_ID_CONSTRAINT = "uk_comments_comment_id";
+
+  // Numbered by the database in insertion order, which clients follow to sync the comments of a region
+  @Id
+  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  private Long id;
+  private UUID commentId;
+
+  @ManyToOne(fetch = FetchType.LAZY)
+  @JoinColumn(name = "annotation_id", nullable = false)
+  private Annotation annotation;
+
+  @ManyToOne(fetch = FetchType.EAGER)
+  @JoinColumn(name = "author_user_id", nullable = false)
+  private User author;
+
+  @Column(nullable = false, length = 1024)
+  private String text;
+
+  @CreationTimestamp
+  @Column(nullable = false, updatable = false)
+  private Instant createdAt;
+}
@@ -0,0 +1,24 @@
+package com.mf.HerculaneumTranscriptor.domain;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Embeddable // Stored in the columns of the scroll it describes
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class ImageMetadata {
+  // Dimensions in pixels, null if the format of the image is not recognized
+  private Integer width;
+  private Integer height;
+  // Bits per sample of each channel
+  private Integer bitDepth;
+  // SHA-256 of the image file, in hexadecimal
+  @Column(length = 64)
+  private String checksum;
+}
@@ -5,24 +5,38 @@ import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
 
 import java.time.Instant;
 import java.util.List;
 
-@Entity @Table(name="SCROLLS")
+@Entity @Table(name="SCROLLS", uniqueConstraints = @UniqueConstraint(name = Scroll.SCROLL_ID_CONSTRAINT, columnNames = "scrollId"))
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = Scroll.CACHE_REGION)
+@NaturalIdCache(region = Scroll.NATURAL_ID_CACHE_REGION)
 @Getter @Setter @AllArgsConstructor @NoArgsConstructor
 public class Scroll {
+  public static final String SCROLL_ID_CONSTRAINT = "uk_scrolls_scroll_id";
+  public static final String CACHE_REGION = "scrolls";
+  public static final String NATURAL_ID_CACHE_REGION = "scroll-ids";
+
   @Id
   @GeneratedValue(strategy= GenerationType.AUTO)
   private Long id;
 
+  @NaturalId(mutable = true)
   private String scrollId;
   private String displayName;
   private String description;
   private String imagePath;
   private String thumbnailUrl;
 
+  @Embedded
+  private ImageMetadata imageMetadata;
+
   @CreationTimestamp
   private Instant createdAt;
 
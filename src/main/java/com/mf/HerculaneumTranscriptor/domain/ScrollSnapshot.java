@@ -0,0 +1,34 @@
+package com.mf.HerculaneumTranscriptor.domain;
+
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+
+/**
+ * The regions of a scroll as they stood at some time, as rebuilt from their history by
+ * {@link com.mf.HerculaneumTranscriptor.history.ScrollTimeline}. Its regions are {@link ScrollSnapshotRegion}s.
+ */
+@Entity @Table(name = "SCROLL_SNAPSHOTS",
+        indexes = @Index(name = "idx_scroll_snapshots_scroll_covered_until", columnList = "scrollId, coveredUntil"))
+@Getter @Setter @AllArgsConstructor @NoArgsConstructor
+public class ScrollSnapshot {
+  @Id
+  @GeneratedValue(strategy= GenerationType.AUTO)
+  private Long id;
+
+  // Internal ID of the scroll, which is not referenced so that snapshots are kept along with the region history
+  @Column(nullable = false)
+  private Long scrollId;
+
+  // Every revision made up to this time is included, and none made after it
+  @Column(nullable = false)
+  private Instant coveredUntil;
+
+  @Column(nullable = false)
+  private int regionCount;
+}
@@ -0,0 +1,25 @@
+package com.mf.HerculaneumTranscriptor.domain;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+
+/**
+ * The claim of an instance of the backend on taking the next {@link ScrollSnapshot} of a scroll,
+ * so that instances do not take the same snapshot at the same time.
+ */
+@Entity @Table(name = "SCROLL_SNAPSHOT_CLAIMS")
+@Getter @Setter @AllArgsConstructor @NoArgsConstructor
+public class ScrollSnapshotClaim {
+  // Internal ID of the scroll, which is not referenced, as for its snapshots
+  @Id
+  private Long scrollId;
+
+  // Once this time has passed, the instance is taken to have died and another one may claim the scroll
+  @Column(nullable = false)
+  private Instant claimedUntil;
+}
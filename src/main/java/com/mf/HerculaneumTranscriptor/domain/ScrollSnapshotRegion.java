@@ -0,0 +1,42 @@
+package com.mf.HerculaneumTranscriptor.domain;
+
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * A region as it stood when its {@link ScrollSnapshot} was taken.
+ */
+@Entity @Table(name = "SCROLL_SNAPSHOT_REGIONS",
+        indexes = @Index(name = "idx_scroll_snapshot_regions_snapshot", columnList = "snapshot_id, id"))
+@Getter @Setter @AllArgsConstructor @NoArgsConstructor
+public class ScrollSnapshotRegion {
+  @Id
+  @GeneratedValue(strategy= GenerationType.AUTO)
+  private Long id;
+
+  @ManyToOne(fetch = FetchType.LAZY)
+  @JoinColumn(name = "snapshot_id", nullable = false, foreignKey = @ForeignKey(name = "fk_scroll_snapshot_regions_snapshot"))
+  private ScrollSnapshot snapshot;
+
+  @Column(nullable = false)
+  private UUID regionId;
+
+  // Version of the region at the time of the snapshot
+  @Column(nullable = false)
+  private long revision;
+
+  // Time of the last revision of the region
+  @Column(nullable = false)
+  private Instant updatedAt;
+
+  // Every field of the region, see RegionState
+  @Column(nullable = false, length = 4096)
+  private String state;
+}
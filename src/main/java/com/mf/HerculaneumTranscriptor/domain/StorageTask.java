@@ -0,0 +1,49 @@
+package com.mf.HerculaneumTranscriptor.domain;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * A pending image storage side effect, recorded in the same transaction as the scroll change that caused it
+ * and carried out later by the storage outbox worker.
+ */
+@Entity @Table(name="STORAGE_OUTBOX", indexes = {
+        @Index(name = "idx_storage_outbox_next_attempt", columnList = "nextAttemptAt"),
+        @Index(name = "idx_storage_outbox_location", columnList = "location")
+})
+@Getter @Setter @AllArgsConstructor @NoArgsConstructor
+public class StorageTask {
+  public enum Operation { PUT, DELETE }
+
+  @Id
+  @GeneratedValue(strategy= GenerationType.AUTO)
+  private Long id;
+
+  @Enumerated(EnumType.STRING)
+  private Operation operation;
+
+  // Storage location of the image the operation applies to
+  private String location;
+  // For PUT operations, the local file holding the image until it is stored
+  private String stagedPath;
+  // For PUT operations, the instance of the backend whose staging directory holds the file, the only one that can store it
+  private String stagedBy;
+
+  private int attempts;
+  // Null once the task has used all its attempts, so it is kept for inspection but not retried
+  private Instant nextAttemptAt;
+  // Identifies the worker run currently carrying out the task
+  private UUID claimToken;
+  @Column(length = 1024)
+  private String lastError;
+
+  @CreationTimestamp
+  private Instant createdAt;
+}
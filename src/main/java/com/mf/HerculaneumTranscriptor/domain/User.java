@@ -5,17 +5,30 @@ import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
 import user.dto.UserInfo;
 
 import java.util.Objects;
 
-@Entity @Table(name="USERS")
+@Entity @Table(name="USERS",
+        uniqueConstraints = @UniqueConstraint(name = User.USERNAME_CONSTRAINT, columnNames = "username"),
+        indexes = @Index(name = "idx_users_username_id", columnList = "username, id")) // Backs keyset pagination of the user list
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = User.CACHE_REGION)
+@NaturalIdCache(region = User.NATURAL_ID_CACHE_REGION)
 @Getter @Setter @AllArgsConstructor @NoArgsConstructor
 public class User {
+  public static final String USERNAME_CONSTRAINT = "uk_users_username";
+  public static final String CACHE_REGION = "users";
+  public static final String NATURAL_ID_CACHE_REGION = "usernames";
+
   @Id
   @GeneratedValue(strategy= GenerationType.AUTO)
   private Long id;
 
+  @NaturalId(mutable = true)
   private String username;
   private String firstName;
   private String lastName;
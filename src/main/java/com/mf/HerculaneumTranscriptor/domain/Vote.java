@@ -3,20 +3,21 @@ package com.mf.HerculaneumTranscriptor.domain;
 
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.springframework.data.domain.Persistable;
 
 import java.io.Serializable;
 
 @Entity
-@Table(name = "VOTES")
+@Table(name = "VOTES", indexes = @Index(name = "idx_votes_user", columnList = "user_id"))
 @Getter
 @Setter
-@AllArgsConstructor
 @NoArgsConstructor
 @IdClass(Vote.VoteId.class) // Specifies the composite primary key class
-public class Vote {
+public class Vote implements Persistable<Vote.VoteId> {
   // COMPOSITE PRIMARY KEY
   @Id
   @ManyToOne(fetch = FetchType.LAZY)
@@ -30,7 +31,36 @@ public class Vote {
 
   private int voteValue; // The 0-5 score
 
+  // Its key is always set, so a new vote would otherwise be looked up before being inserted
+  @Transient
+  private boolean isNew = true;
+
+  public Vote(User user, Annotation annotation, int voteValue) {
+    this.user = user;
+    this.annotation = annotation;
+    this.voteValue = voteValue;
+  }
+
+  @PostLoad
+  @PostPersist
+  void markNotNew() {
+    isNew = false;
+  }
+
+  @Override
+  public VoteId getId() {
+    return new VoteId(user.getId(), annotation.getId());
+  }
+
+  @Override
+  public boolean isNew() {
+    return isNew;
+  }
+
   // A static nested class to represent the composite key
+  @NoArgsConstructor
+  @AllArgsConstructor
+  @EqualsAndHashCode
   public static class VoteId implements Serializable {
     private Long user;
     private Long annotation;
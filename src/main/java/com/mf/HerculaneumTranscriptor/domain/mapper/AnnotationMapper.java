@@ -14,8 +14,10 @@ public interface AnnotationMapper {
   @Mapping(target = "author", ignore = true)   // Set by the service
   @Mapping(target = "scroll", ignore = true)   // Set by the service
   @Mapping(target = "certaintyScore", ignore = true) // Defaults to 0
+  @Mapping(target = "commentCount", ignore = true) // Defaults to 0
   @Mapping(target = "createdAt", ignore = true)
   @Mapping(target = "updatedAt", ignore = true)
+  @Mapping(target = "version", ignore = true)
   @Mapping(source = "coordinates", target = "coordinates") // Maps the nested coordinates DTO
   Annotation newBoxRegionDtoToAnnotationEntity(NewBoxRegion newBoxRegion);
 
@@ -0,0 +1,11 @@
+package com.mf.HerculaneumTranscriptor.domain.mapper;
+
+import com.mf.HerculaneumTranscriptor.domain.Comment;
+import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+
+@Mapper(componentModel = "spring")
+public interface CommentMapper {
+  @Mapping(source = "author.username", target = "authorUsername")
+  comment.dto.Comment commentEntityToCommentDto(Comment comment);
+}
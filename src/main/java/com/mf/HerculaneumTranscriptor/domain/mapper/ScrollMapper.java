@@ -12,6 +12,7 @@ import java.net.URISyntaxException;
 public interface ScrollMapper {
   @Mapping(target = "imagePath", ignore = true) // This will be set manually in the service.
   @Mapping(target = "createdAt", ignore = true) // The database generates the timestamp.
+  @Mapping(target = "imageMetadata", ignore = true) // This is read from the image in the service.
   Scroll newScrollDtoToScrollEntity(NewScroll newScroll);
 
   scroll.dto.Scroll scrollEntityToScrollDto(Scroll scroll);
@@ -0,0 +1,15 @@
+package com.mf.HerculaneumTranscriptor.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.Setter;
+import user.dto.UserInfo;
+
+import java.util.List;
+
+// This DTO encapsulates a slice of the user list and the cursor to continue listing from, if any
+@Getter @Setter @AllArgsConstructor
+public class UserListing {
+  private List<UserInfo> users;
+  private String nextCursor;
+}
@@ -0,0 +1,25 @@
+package com.mf.HerculaneumTranscriptor.exception;
+
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.util.Locale;
+
+/**
+ * Tells which constraint of the database rejected a write.
+ */
+public final class ConstraintViolations {
+  private ConstraintViolations() {}
+
+  /**
+   * @param e The exception raised by the rejected write.
+   * @return The name of the violated constraint in lowercase, which some databases report qualified (e.g. with the
+   *         schema) or in uppercase, so it should be matched with contains. Empty if the name is not known.
+   */
+  public static String violatedConstraint(DataIntegrityViolationException e) {
+    for (Throwable cause = e; cause != null; cause = cause.getCause())
+      if (cause instanceof ConstraintViolationException violation && violation.getConstraintName() != null)
+        return violation.getConstraintName().toLowerCase(Locale.ROOT);
+    return "";
+  }
+}
@@ -0,0 +1,21 @@
+package com.mf.HerculaneumTranscriptor.exception;
+
+/**
+ * This exception is thrown when a resource is updated based on a version of it that is no longer the current one.
+ */
+public class ResourceModifiedException extends RuntimeException {
+  private final Object current;
+
+  /**
+   * @param message The description of the conflict.
+   * @param current The current state of the resource, returned to the client.
+   */
+  public ResourceModifiedException(String message, Object current) {
+    super(message);
+    this.current = current;
+  }
+
+  public Object getCurrent() {
+    return current;
+  }
+}
@@ -0,0 +1,12 @@
+package com.mf.HerculaneumTranscriptor.history;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * A region as it stood at some time, rebuilt from its history.
+ *
+ * @param revision The version of the region at that time.
+ * @param updatedAt The time of that version.
+ */
+public record HistoricRegion(UUID regionId, long revision, Instant updatedAt, RegionState state) {}
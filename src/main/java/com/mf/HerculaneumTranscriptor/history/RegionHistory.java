@@ -0,0 +1,65 @@
+package com.mf.HerculaneumTranscriptor.history;
+
+import com.mf.HerculaneumTranscriptor.domain.Annotation;
+import com.mf.HerculaneumTranscriptor.domain.AnnotationRevision;
+import com.mf.HerculaneumTranscriptor.repository.AnnotationRevisionRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+
+/**
+ * Records every change made to a region as an {@link AnnotationRevision}.
+ * <p>
+ * Revisions are written in the transaction of the change they record, so that a change is in the history if and only
+ * if it commits, and nothing is lost when the backend crashes. Concurrent changes to a region are serialized by its
+ * version, so each revision directly follows the one recorded before it.
+ * <p>
+ * Most revisions only hold what changed since the previous one. A full snapshot is written every few revisions,
+ * and whenever the previous revision is missing (e.g. for regions created before the history was kept),
+ * so that rebuilding a region never goes back further than that.
+ */
+@Component
+@RequiredArgsConstructor
+public class RegionHistory {
+  private final AnnotationRevisionRepository revisionRepository;
+
+  @Value("${api.regions.history.snapshotInterval}")
+  private int snapshotInterval;
+
+  /**
+   * Records a change made to a region, in the current transaction.
+   *
+   * @param annotation The region after the change, flushed so that it carries its new version.
+   * @param operation The kind of change.
+   * @param before The region before the change, or null if it was created.
+   */
+  public void record(Annotation annotation, AnnotationRevision.Operation operation, RegionState before) {
+    RegionState after = operation == AnnotationRevision.Operation.DELETE ? null : RegionState.of(annotation);
+    // Changes that leave the region as it was do not give it a new version
+    if (after != null && after.equals(before))
+      return;
+
+    Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+    // A deletion does not change the version of the region, so it is numbered after its last change
+    long revision = operation == AnnotationRevision.Operation.DELETE ? annotation.getVersion() + 1 : annotation.getVersion();
+
+    boolean snapshot = operation != AnnotationRevision.Operation.UPDATE && operation != AnnotationRevision.Operation.VOTE ||
+            revision % snapshotInterval == 0 ||
+            !revisionRepository.existsByRegionIdAndRevision(annotation.getRegionId(), revision - 1);
+
+    String changes;
+    if (after == null)
+      changes = before.toJson(); // Deleted regions keep their last state
+    else if (snapshot)
+      changes = after.toJson();
+    else
+      changes = RegionState.diff(before, after);
+
+    revisionRepository.save(new AnnotationRevision(null, annotation.getRegionId(), annotation.getScroll().getId(),
+            revision, operation, authentication != null ? authentication.getName() : null, Instant.now(), snapshot, changes));
+  }
+}
@@ -0,0 +1,187 @@
+package com.mf.HerculaneumTranscriptor.history;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.mf.HerculaneumTranscriptor.domain.Annotation;
+import com.mf.HerculaneumTranscriptor.domain.Coordinates;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * The fields of a region that are kept in its history, and their encoding as the changes of a revision.
+ * <p>
+ * Snapshots hold every field. Other revisions only hold the fields that changed, with transcriptions
+ * given as the replacement of a single span of text ({@code {"at": 3, "del": 2, "ins": "ab"}}) whenever
+ * that is shorter than the new text.
+ * <p>
+ * The author and creation time of a region never change, so they are only held by snapshots.
+ */
+public record RegionState(String transcription, Float x, Float y, Float width, Float height, float certaintyScore,
+                          String author, Instant createdAt) {
+  public static final String TRANSCRIPTION = "transcription";
+  public static final String X = "x";
+  public static final String Y = "y";
+  public static final String WIDTH = "width";
+  public static final String HEIGHT = "height";
+  public static final String CERTAINTY_SCORE = "certaintyScore";
+  public static final String AUTHOR = "author";
+  public static final String CREATED_AT = "createdAt";
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+  private static final JsonNodeFactory NODES = JsonNodeFactory.instance;
+
+  public static RegionState of(Annotation annotation) {
+    Coordinates coordinates = annotation.getCoordinates();
+    String author = annotation.getAuthor() != null ? annotation.getAuthor().getUsername() : null;
+    if (coordinates == null)
+      return new RegionState(annotation.getTranscription(), null, null, null, null, annotation.getCertaintyScore(),
+              author, annotation.getCreatedAt());
+
+    return new RegionState(annotation.getTranscription(), coordinates.getX(), coordinates.getY(),
+            coordinates.getWidth(), coordinates.getHeight(), annotation.getCertaintyScore(),
+            author, annotation.getCreatedAt());
+  }
+
+  /**
+   * @return every field of the state, as stored in snapshots.
+   */
+  public String toJson() {
+    ObjectNode json = NODES.objectNode();
+    json.put(TRANSCRIPTION, transcription);
+    json.put(X, x);
+    json.put(Y, y);
+    json.put(WIDTH, width);
+    json.put(HEIGHT, height);
+    json.put(CERTAINTY_SCORE, certaintyScore);
+    json.put(AUTHOR, author);
+    json.put(CREATED_AT, createdAt != null ? createdAt.toString() : null);
+    return json.toString();
+  }
+
+  /**
+   * @return the fields that differ between two states, as stored in revisions that are not snapshots.
+   */
+  public static String diff(RegionState before, RegionState after) {
+    ObjectNode json = NODES.objectNode();
+    if (!Objects.equals(before.transcription, after.transcription))
+      json.set(TRANSCRIPTION, diffText(before.transcription, after.transcription));
+    if (!Objects.equals(before.x, after.x))
+      json.put(X, after.x);
+    if (!Objects.equals(before.y, after.y))
+      json.put(Y, after.y);
+    if (!Objects.equals(before.width, after.width))
+      json.put(WIDTH, after.width);
+    if (!Objects.equals(before.height, after.height))
+      json.put(HEIGHT, after.height);
+    if (before.certaintyScore != after.certaintyScore)
+      json.put(CERTAINTY_SCORE, after.certaintyScore);
+    return json.toString();
+  }
+
+  private static JsonNode diffText(String before, String after) {
+    if (before == null || after == null)
+      return NODES.textNode(after);
+
+    // Only the span between the common prefix and suffix of both texts changed.
+    // Spans never start or end between the two halves of a surrogate pair.
+    int shorter = Math.min(before.length(), after.length());
+    int prefix = 0;
+    while (prefix < shorter && before.charAt(prefix) == after.charAt(prefix))
+      prefix++;
+    if (prefix > 0 && Character.isHighSurrogate(before.charAt(prefix - 1)))
+      prefix--;
+
+    int suffix = 0;
+    while (suffix < shorter - prefix &&
+            before.charAt(before.length() - 1 - suffix) == after.charAt(after.length() - 1 - suffix))
+      suffix++;
+    if (suffix > 0 && Character.isLowSurrogate(before.charAt(before.length() - suffix)))
+      suffix--;
+
+    String inserted = after.substring(prefix, after.length() - suffix);
+    ObjectNode edit = NODES.objectNode();
+    edit.put("at", prefix);
+    edit.put("del", before.length() - prefix - suffix);
+    edit.put("ins", inserted);
+
+    return edit.toString().length() < NODES.textNode(after).toString().length() ? edit : NODES.textNode(after);
+  }
+
+  /**
+   * Applies the changes of a revision, be it a snapshot or not.
+   *
+   * @param changes The changes, as returned by {@link #toJson()} or {@link #diff(RegionState, RegionState)}.
+   * @return the state after the changes.
+   */
+  public RegionState apply(String changes) {
+    JsonNode json;
+    try {
+      json = MAPPER.readTree(changes);
+    } catch (JsonProcessingException e) {
+      throw new IllegalStateException("Malformed region revision: " + changes, e);
+    }
+
+    String newTranscription = transcription;
+    JsonNode text = json.get(TRANSCRIPTION);
+    if (text != null) {
+      if (text.isObject()) {
+        int at = text.get("at").asInt();
+        newTranscription = transcription.substring(0, at) + text.get("ins").asText() +
+                transcription.substring(at + text.get("del").asInt());
+      } else newTranscription = textField(json, TRANSCRIPTION);
+    }
+
+    String newAuthor = json.has(AUTHOR) ? textField(json, AUTHOR) : author;
+    Instant newCreatedAt = json.has(CREATED_AT) && !json.get(CREATED_AT).isNull() ?
+            Instant.parse(json.get(CREATED_AT).asText()) : createdAt;
+
+    return new RegionState(newTranscription,
+            floatField(json, X, x), floatField(json, Y, y),
+            floatField(json, WIDTH, width), floatField(json, HEIGHT, height),
+            json.has(CERTAINTY_SCORE) ? json.get(CERTAINTY_SCORE).floatValue() : certaintyScore,
+            newAuthor, newCreatedAt);
+  }
+
+  private static String textField(JsonNode json, String field) {
+    return json.get(field).isNull() ? null : json.get(field).asText();
+  }
+
+  private static Float floatField(JsonNode json, String field, Float current) {
+    if (!json.has(field))
+      return current;
+    return json.get(field).isNull() ? null : json.get(field).floatValue();
+  }
+
+  /**
+   * @return the names of the fields that differ between two states, besides the author and creation time.
+   */
+  public static List<String> changedFields(RegionState before, RegionState after) {
+    List<String> fields = new ArrayList<>();
+    if (!Objects.equals(before.transcription, after.transcription))
+      fields.add(TRANSCRIPTION);
+    if (!Objects.equals(before.x, after.x))
+      fields.add(X);
+    if (!Objects.equals(before.y, after.y))
+      fields.add(Y);
+    if (!Objects.equals(before.width, after.width))
+      fields.add(WIDTH);
+    if (!Objects.equals(before.height, after.height))
+      fields.add(HEIGHT);
+    if (before.certaintyScore != after.certaintyScore)
+      fields.add(CERTAINTY_SCORE);
+    return fields;
+  }
+
+  /**
+   * The state of regions before their first revision, which is always a snapshot.
+   */
+  public static RegionState empty() {
+    return new RegionState(null, null, null, null, null, 0.0f, null, null);
+  }
+}
@@ -0,0 +1,109 @@
+package com.mf.HerculaneumTranscriptor.history;
+
+import annotation.dto.Coordinates;
+import annotation.dto.NewBoxRegion;
+import annotation.dto.RegionRevision;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mf.HerculaneumTranscriptor.domain.AnnotationRevision;
+import org.springframework.data.domain.Slice;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.util.Date;
+import java.util.Enumeration;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+
+/**
+ * Newline-delimited JSON of {@link RegionRevision}s, with the state of their region rebuilt from their changes.
+ * Revisions are fetched a page at a time while the stream is read, so that long histories are never held in memory.
+ */
+public class RevisionStream implements Enumeration<InputStream> {
+  /**
+   * Fetches the revisions right after a (regionId, revision) key, in that order.
+   */
+  @FunctionalInterface
+  public interface PageFetcher {
+    Slice<AnnotationRevision> fetch(UUID regionId, long revision);
+  }
+
+  private final PageFetcher fetcher;
+  private final ObjectMapper objectMapper;
+  private final long fromRevision;
+
+  private UUID lastRegionId;
+  private long lastRevision;
+  private RegionState state = RegionState.empty();
+  private boolean hasMore = true;
+
+  /**
+   * @param fetcher Fetches the pages of revisions.
+   * @param objectMapper Writes the revisions.
+   * @param firstRegionId The region to start from.
+   * @param firstRevision The revision to start from, which must be a snapshot unless it is the first one of its region.
+   * @param fromRevision Revisions numbered before this one are only used to rebuild the state of their region.
+   */
+  public RevisionStream(PageFetcher fetcher, ObjectMapper objectMapper, UUID firstRegionId, long firstRevision,
+                        long fromRevision) {
+    this.fetcher = fetcher;
+    this.objectMapper = objectMapper;
+    this.fromRevision = fromRevision;
+    this.lastRegionId = firstRegionId;
+    this.lastRevision = firstRevision - 1;
+  }
+
+  public InputStream toInputStream() {
+    return new SequenceInputStream(this);
+  }
+
+  @Override
+  public boolean hasMoreElements() {
+    return hasMore;
+  }
+
+  @Override
+  public InputStream nextElement() {
+    if (!hasMore)
+      throw new NoSuchElementException();
+
+    Slice<AnnotationRevision> page = fetcher.fetch(lastRegionId, lastRevision);
+    hasMore = page.hasNext();
+
+    ByteArrayOutputStream lines = new ByteArrayOutputStream();
+    try {
+      for (AnnotationRevision revision : page) {
+        if (!revision.getRegionId().equals(lastRegionId))
+          state = RegionState.empty();
+        RegionState previous = state;
+        state = state.apply(revision.getChanges());
+        lastRegionId = revision.getRegionId();
+        lastRevision = revision.getRevision();
+
+        if (revision.getRevision() >= fromRevision) {
+          objectMapper.writeValue(lines, toDto(revision, previous, state));
+          lines.write('\n');
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+
+    return new ByteArrayInputStream(lines.toByteArray());
+  }
+
+  private static RegionRevision toDto(AnnotationRevision revision, RegionState previous, RegionState state) {
+    Coordinates coordinates = state.x() == null ? null :
+            new Coordinates().x(state.x()).y(state.y()).width(state.width()).height(state.height());
+
+    return new RegionRevision(revision.getRegionId(), revision.getRevision(),
+            RegionRevision.OperationEnum.fromValue(revision.getOperation().name().toLowerCase()),
+            Date.from(revision.getCreatedAt()), RegionState.changedFields(previous, state),
+            new NewBoxRegion(coordinates, state.transcription()))
+            .editor(revision.getEditor())
+            .certaintyScore(state.certaintyScore());
+  }
+}
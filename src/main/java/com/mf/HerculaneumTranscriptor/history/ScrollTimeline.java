@@ -0,0 +1,265 @@
+package com.mf.HerculaneumTranscriptor.history;
+
+import com.mf.HerculaneumTranscriptor.domain.AnnotationRevision;
+import com.mf.HerculaneumTranscriptor.domain.Scroll;
+import com.mf.HerculaneumTranscriptor.domain.ScrollSnapshot;
+import com.mf.HerculaneumTranscriptor.domain.ScrollSnapshotRegion;
+import com.mf.HerculaneumTranscriptor.repository.AnnotationRevisionRepository;
+import com.mf.HerculaneumTranscriptor.repository.ScrollRepository;
+import com.mf.HerculaneumTranscriptor.repository.ScrollSnapshotClaimRepository;
+import com.mf.HerculaneumTranscriptor.repository.ScrollSnapshotRegionRepository;
+import com.mf.HerculaneumTranscriptor.repository.ScrollSnapshotRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * Rebuilds the regions of a scroll as they stood at any time, from the region history kept by {@link RegionHistory}.
+ * <p>
+ * The regions are taken from the last {@link ScrollSnapshot} of the scroll before that time, and the revisions
+ * made since are replayed onto them in a single pass, those of each region in the order of their numbers.
+ * A background worker takes a new snapshot of each scroll once enough revisions were made since its last one,
+ * which bounds how many revisions are ever replayed. Each scroll is claimed by one instance of the backend while its snapshot is taken.
+ * <p>
+ * A revision is committed a little after it is made, possibly after a snapshot covering its time was taken.
+ * Revisions made within a safety lag before the snapshot are thus replayed again, and those of a region
+ * that the snapshot already holds are told apart by their revision number rather than by their time.
+ * Regions created before the history was kept start from a base revision of their state at that time.
+ */
+@Component
+public class ScrollTimeline {
+  private final AnnotationRevisionRepository revisionRepository;
+  private final ScrollSnapshotRepository snapshotRepository;
+  private final ScrollSnapshotRegionRepository snapshotRegionRepository;
+  private final ScrollRepository scrollRepository;
+  private final ScrollSnapshotClaimRepository claimRepository;
+  private final TransactionTemplate transaction;
+  private final TransactionTemplate readOnlyTransaction;
+
+  @Value("${api.regions.history.pageSize}")
+  private int pageSize;
+  @Value("${api.regions.asOf.snapshotInterval}")
+  private long snapshotInterval;
+  @Value("${api.regions.asOf.snapshotLag}")
+  private Duration snapshotLag;
+  @Value("${api.regions.asOf.snapshotLease}")
+  private Duration snapshotLease;
+
+  public ScrollTimeline(AnnotationRevisionRepository revisionRepository, ScrollSnapshotRepository snapshotRepository,
+                        ScrollSnapshotRegionRepository snapshotRegionRepository, ScrollRepository scrollRepository,
+                        ScrollSnapshotClaimRepository claimRepository, PlatformTransactionManager transactionManager) {
+    this.revisionRepository = revisionRepository;
+    this.snapshotRepository = snapshotRepository;
+    this.snapshotRegionRepository = snapshotRegionRepository;
+    this.scrollRepository = scrollRepository;
+    this.claimRepository = claimRepository;
+    this.transaction = new TransactionTemplate(transactionManager);
+    this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+    this.readOnlyTransaction.setReadOnly(true);
+  }
+
+  /**
+   * Rebuilds the regions of a scroll as they stood at some time.
+   * Each page of snapshot regions and revisions is read in a transaction of its own.
+   *
+   * @param scrollId The internal ID of the scroll.
+   * @param time The time to rebuild the regions at.
+   * @return the regions that existed at that time, oldest first.
+   */
+  public List<HistoricRegion> regionsAt(Long scrollId, Instant time) {
+    Map<UUID, HistoricRegion> regions = new HashMap<>();
+    // Revision each region stands at, from the snapshot and the revisions replayed since
+    Map<UUID, Long> applied = new HashMap<>();
+    // Changes read before the revision they follow, waiting for it
+    Map<UUID, NavigableMap<Long, AnnotationRevision>> pending = new HashMap<>();
+    Optional<ScrollSnapshot> snapshot = readOnlyTransaction.execute(status ->
+            snapshotRepository.findFirstByScrollIdAndCoveredUntilLessThanEqualOrderByCoveredUntilDesc(scrollId, time));
+
+    Instant lastCreatedAt = Instant.EPOCH;
+    if (snapshot.isPresent()) {
+      // Revisions committed after the snapshot was taken may have been made before the time it covers
+      lastCreatedAt = snapshot.get().getCoveredUntil().minus(snapshotLag);
+      long lastId = 0;
+      Slice<ScrollSnapshotRegion> page;
+      do {
+        long after = lastId;
+        page = readOnlyTransaction.execute(status -> snapshotRegionRepository
+                .findBySnapshotIdAndIdGreaterThanOrderByIdAsc(snapshot.get().getId(), after, PageRequest.ofSize(pageSize)));
+        for (ScrollSnapshotRegion region : page) {
+          regions.put(region.getRegionId(), new HistoricRegion(region.getRegionId(), region.getRevision(),
+                  region.getUpdatedAt(), RegionState.empty().apply(region.getState())));
+          applied.put(region.getRegionId(), region.getRevision());
+          lastId = region.getId();
+        }
+      } while (page.hasNext());
+    }
+
+    // Revisions are read in the order of their times, which come from the clocks of different instances,
+    // so the revisions of a region may be read out of order and are applied in the order of their numbers
+    long lastId = Long.MAX_VALUE;
+    Slice<AnnotationRevision> page;
+    do {
+      Instant afterCreatedAt = lastCreatedAt;
+      long afterId = lastId;
+      page = readOnlyTransaction.execute(status -> revisionRepository
+              .findScrollRevisionsMadeAfter(scrollId, afterCreatedAt, afterId, time, PageRequest.ofSize(pageSize)));
+      for (AnnotationRevision revision : page) {
+        replay(regions, applied, pending, revision);
+        lastCreatedAt = revision.getCreatedAt();
+        lastId = revision.getId();
+      }
+    } while (page.hasNext());
+
+    List<HistoricRegion> result = new ArrayList<>(regions.values());
+    result.sort(Comparator.comparing((HistoricRegion region) -> region.state().createdAt(),
+            Comparator.nullsFirst(Comparator.naturalOrder())).thenComparing(HistoricRegion::regionId));
+    return result;
+  }
+
+  /**
+   * Applies a revision onto its region, once the region stands at the revision before it. Changes whose previous
+   * revision is never read are left out, and the region stays as it was until its next snapshot revision.
+   */
+  private static void replay(Map<UUID, HistoricRegion> regions, Map<UUID, Long> applied,
+                             Map<UUID, NavigableMap<Long, AnnotationRevision>> pending, AnnotationRevision revision) {
+    UUID regionId = revision.getRegionId();
+    Long last = applied.get(regionId);
+    if (last != null && revision.getRevision() <= last)
+      return; // Already part of the state of the region
+
+    // Snapshot revisions hold the whole region, creations and deletions included, so they follow any revision
+    if (!revision.isSnapshot() && (last == null || revision.getRevision() != last + 1)) {
+      pending.computeIfAbsent(regionId, id -> new TreeMap<>()).put(revision.getRevision(), revision);
+      return;
+    }
+    apply(regions, revision);
+    long current = revision.getRevision();
+
+    NavigableMap<Long, AnnotationRevision> waiting = pending.get(regionId);
+    if (waiting != null) {
+      waiting.headMap(current, true).clear();
+      AnnotationRevision next;
+      while ((next = waiting.remove(current + 1)) != null) {
+        apply(regions, next);
+        current = next.getRevision();
+      }
+      if (waiting.isEmpty())
+        pending.remove(regionId);
+    }
+    applied.put(regionId, current);
+  }
+
+  private static void apply(Map<UUID, HistoricRegion> regions, AnnotationRevision revision) {
+    UUID regionId = revision.getRegionId();
+    if (revision.getOperation() == AnnotationRevision.Operation.DELETE) {
+      regions.remove(regionId);
+      return;
+    }
+
+    HistoricRegion previous = regions.get(regionId);
+    if (!revision.isSnapshot() && previous == null)
+      return;
+    RegionState base = revision.isSnapshot() ? RegionState.empty() : previous.state();
+    regions.put(regionId, new HistoricRegion(regionId, revision.getRevision(), revision.getCreatedAt(),
+            base.apply(revision.getChanges())));
+  }
+
+  /**
+   * Takes a snapshot of the regions of a scroll, covering the revisions made up to the given time.
+   *
+   * @param scrollId The internal ID of the scroll.
+   * @param coveredUntil The time the snapshot stands at.
+   * @return the snapshot.
+   */
+  public ScrollSnapshot takeSnapshot(Long scrollId, Instant coveredUntil) {
+    List<HistoricRegion> regions = regionsAt(scrollId, coveredUntil);
+
+    return transaction.execute(status -> {
+      ScrollSnapshot snapshot = snapshotRepository.save(new ScrollSnapshot(null, scrollId, coveredUntil, regions.size()));
+      snapshotRegionRepository.saveAll(regions.stream()
+              .map(region -> new ScrollSnapshotRegion(null, snapshot, region.regionId(), region.revision(),
+                      region.updatedAt(), region.state().toJson()))
+              .toList());
+      return snapshot;
+    });
+  }
+
+  private boolean needsSnapshot(Long scrollId, Instant coveredUntil) {
+    Long revisionsSince = readOnlyTransaction.execute(status -> {
+      Instant lastCoveredUntil = snapshotRepository
+              .findFirstByScrollIdAndCoveredUntilLessThanEqualOrderByCoveredUntilDesc(scrollId, coveredUntil)
+              .map(ScrollSnapshot::getCoveredUntil)
+              .orElse(Instant.EPOCH);
+      return revisionRepository.countByScrollIdAndCreatedAtGreaterThanAndCreatedAtLessThanEqual(
+              scrollId, lastCoveredUntil, coveredUntil);
+    });
+    return revisionsSince != null && revisionsSince >= snapshotInterval;
+  }
+
+  /**
+   * Claims a scroll for taking its snapshot, unless another instance of the backend claimed it already.
+   *
+   * @return the time the claim ends, or null if the scroll is claimed by another instance.
+   */
+  private Instant claim(Long scrollId) {
+    Instant now = Instant.now();
+    // Stored with microsecond precision, and compared when the claim is released
+    Instant claimedUntil = now.plus(snapshotLease).truncatedTo(ChronoUnit.MICROS);
+    try {
+      return transaction.execute(status -> claimRepository.claim(scrollId, now, claimedUntil) > 0 ||
+              !claimRepository.existsById(scrollId) && claimRepository.insert(scrollId, claimedUntil) > 0) ?
+              claimedUntil : null;
+    } catch (DataIntegrityViolationException e) {
+      return null; // Claimed for the first time by another instance meanwhile
+    }
+  }
+
+  /**
+   * Takes a snapshot of every scroll with enough revisions made since its last one.
+   */
+  @Scheduled(fixedDelayString = "${api.regions.asOf.snapshotCheckInterval}")
+  public void takeSnapshots() {
+    // Revisions are committed a little after they are made, so the most recent ones may be missing yet
+    Instant coveredUntil = Instant.now().minus(snapshotLag);
+
+    for (Scroll scroll : scrollRepository.findAll()) {
+      Long scrollId = scroll.getId();
+      if (!needsSnapshot(scrollId, coveredUntil))
+        continue;
+
+      Instant claimedUntil = claim(scrollId);
+      if (claimedUntil == null)
+        continue;
+
+      try {
+        // Another instance may have taken the snapshot between the check and the claim
+        if (needsSnapshot(scrollId, coveredUntil)) {
+          ScrollSnapshot snapshot = takeSnapshot(scrollId, coveredUntil);
+          System.out.println("Took a snapshot of " + snapshot.getRegionCount() + " regions of scroll " + scroll.getScrollId());
+        }
+      } catch (RuntimeException e) {
+        System.out.println("Could not take a snapshot of scroll " + scroll.getScrollId() + ": " + e.getMessage());
+      } finally {
+        transaction.executeWithoutResult(status -> claimRepository.release(scrollId, claimedUntil, Instant.now()));
+      }
+    }
+  }
+}
@@ -0,0 +1,51 @@
+package com.mf.HerculaneumTranscriptor.profiling;
+
+import lombok.AllArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.web.WebEndpointResponse;
+import org.springframework.boot.actuate.endpoint.web.annotation.WebEndpoint;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Dumps the continuous flight recording on demand at /actuator/flightrecording, to be opened with JDK Mission Control
+ * or {@code jfr print}. Only root and admin users may dump it, see SecurityConfiguration.
+ */
+@Component
+@WebEndpoint(id = "flightrecording")
+@AllArgsConstructor
+public class FlightRecordingEndpoint {
+  private final FlightRecording flightRecording;
+
+  @ReadOperation(produces = "application/octet-stream")
+  public WebEndpointResponse<Resource> dump() throws IOException {
+    if (!flightRecording.isRecording())
+      return new WebEndpointResponse<>(WebEndpointResponse.STATUS_NOT_FOUND);
+
+    RequestAttributes request = RequestContextHolder.getRequestAttributes();
+    if (request == null)
+      throw new IllegalStateException("Flight recordings can only be dumped within a request");
+
+    // The dump is deleted once the request is completed, whether it was sent, failed or only asked for its headers
+    Path file = Files.createTempFile("recording-", ".jfr");
+    request.registerDestructionCallback(file.toString(), () -> delete(file), RequestAttributes.SCOPE_REQUEST);
+    flightRecording.dump(file);
+
+    return new WebEndpointResponse<>(new FileSystemResource(file));
+  }
+
+  private static void delete(Path file) {
+    try {
+      Files.deleteIfExists(file);
+    } catch (IOException e) {
+      System.out.println("Could not delete flight recording dump " + file + ": " + e.getMessage());
+    }
+  }
+}
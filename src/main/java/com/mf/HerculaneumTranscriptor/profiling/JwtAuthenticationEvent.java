@@ -0,0 +1,31 @@
+package com.mf.HerculaneumTranscriptor.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight recorder event of a request authenticated by its JWT.
+ */
+@Name("herculaneum.JwtAuthentication")
+@Label("JWT Authentication")
+@Category({"Herculaneum Transcriptor", "Security"})
+@StackTrace(false)
+public class JwtAuthenticationEvent extends Event {
+  @Label("Username")
+  public String username;
+
+  @Label("Valid")
+  public boolean valid;
+
+  @Label("Verify Time")
+  @Timespan(Timespan.NANOSECONDS)
+  public long verifyTime;
+
+  @Label("Lookup Time")
+  @Timespan(Timespan.NANOSECONDS)
+  public long lookupTime;
+}
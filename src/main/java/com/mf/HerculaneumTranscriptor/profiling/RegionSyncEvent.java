@@ -0,0 +1,38 @@
+package com.mf.HerculaneumTranscriptor.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight recorder event of a client fetching the regions of a scroll, or those changed since its last sync.
+ */
+@Name("herculaneum.RegionSync")
+@Label("Region Sync")
+@Category({"Herculaneum Transcriptor", "Regions"})
+@StackTrace(false)
+public class RegionSyncEvent extends Event {
+  @Label("Scroll")
+  public String scrollId;
+
+  @Label("Delta")
+  @Description("Whether only the regions changed since the last sync were fetched")
+  public boolean delta;
+
+  @Label("Rows")
+  @Description("Regions read from the database, and returned")
+  public int rows;
+
+  @Label("Query Time")
+  @Timespan(Timespan.NANOSECONDS)
+  public long queryTime;
+
+  @Label("Mapping Time")
+  @Description("Time spent turning the regions read into their DTOs")
+  @Timespan(Timespan.NANOSECONDS)
+  public long mappingTime;
+}
@@ -0,0 +1,38 @@
+package com.mf.HerculaneumTranscriptor.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight recorder event of a vote on a region, one per attempt when concurrent votes make it retry.
+ */
+@Name("herculaneum.RegionVote")
+@Label("Region Vote")
+@Category({"Herculaneum Transcriptor", "Regions"})
+@StackTrace(false)
+public class RegionVoteEvent extends Event {
+  @Label("Scroll")
+  public String scrollId;
+
+  @Label("Region")
+  public String regionId;
+
+  @Label("Attempt")
+  @Description("1 for the first attempt, more when concurrent votes changed the region meanwhile")
+  public int attempt;
+
+  @Label("Aggregate Time")
+  @Description("Time spent writing the vote and averaging the votes on the region")
+  @Timespan(Timespan.NANOSECONDS)
+  public long aggregateTime;
+
+  @Label("Lock Wait")
+  @Description("Time spent writing the new certainty of the region, which waits for the row lock of concurrent votes")
+  @Timespan(Timespan.NANOSECONDS)
+  public long lockWait;
+}
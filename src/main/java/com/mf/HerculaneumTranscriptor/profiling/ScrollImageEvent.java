@@ -0,0 +1,34 @@
+package com.mf.HerculaneumTranscriptor.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event of the ink image of a scroll being staged for upload, or fetched to be downloaded.
+ * Fetches last until the image is ready to be streamed, which includes loading it into the cache.
+ */
+@Name("herculaneum.ScrollImage")
+@Label("Scroll Image")
+@Category({"Herculaneum Transcriptor", "Storage"})
+@StackTrace(false)
+public class ScrollImageEvent extends Event {
+  public static final String UPLOAD = "upload";
+  public static final String DOWNLOAD = "download";
+
+  @Label("Scroll")
+  public String scrollId;
+
+  @Label("Operation")
+  @Description("upload or download")
+  public String operation;
+
+  @Label("Bytes")
+  @Description("-1 when the length of a streamed image is not known")
+  @DataAmount
+  public long bytes;
+}
@@ -1,26 +1,43 @@
 package com.mf.HerculaneumTranscriptor.repository;
 
 import com.mf.HerculaneumTranscriptor.domain.Annotation;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
-import org.springframework.data.repository.CrudRepository;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
-import java.util.Date;
+import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
-public interface AnnotationRepository extends CrudRepository<Annotation, Long> {
+public interface AnnotationRepository extends JpaRepository<Annotation, Long> {
+  // The author and scroll are fetched along with the annotation, rather than by one more select each
+  @EntityGraph(attributePaths = {"author", "scroll"})
   Optional<Annotation> findByRegionId(UUID regionId);
 
-  // The following methods look into the field scroll.scrollId
+  // The following methods look into the field scroll.scrollId.
+  // Authors are fetched in the same select, rather than by one more select per author.
+  @EntityGraph(attributePaths = "author")
   List<Annotation> findByScrollScrollId(String scrollId);
-  List<Annotation> findByScrollScrollIdAndUpdatedAtAfter(String scrollId, Date timestamp);
+  @EntityGraph(attributePaths = "author")
+  List<Annotation> findByScrollScrollIdAndUpdatedAtAfter(String scrollId, Instant timestamp);
 
   boolean existsByRegionId(UUID regionId);
 
-  // When a scroll is deleted, this will delete all annotations associated with it
-  @Transactional
-  @Modifying
-  long deleteByScrollScrollId(String scrollId);
+  // Adds to the comment count of an annotation in place, so that concurrent comments are all counted.
+  // The annotation counts as updated for region syncs, but its version is kept as its content did not change,
+  // and updates of the annotation do not write its comment count, see Annotation.commentCount.
+  // Annotations already loaded would keep their previous count, so they are detached.
+  @Modifying(flushAutomatically = true, clearAutomatically = true)
+  @Query("UPDATE Annotation a SET a.commentCount = a.commentCount + :delta, a.updatedAt = :now WHERE a.id = :id")
+  int addToCommentCount(@Param("id") Long id, @Param("delta") int delta, @Param("now") Instant now);
+
+  // When a scroll is deleted, this deletes all annotations associated with it in a single statement,
+  // without loading them. Their votes must be deleted first.
+  // Annotations already loaded would be left referencing the scroll being deleted, so they are detached.
+  @Modifying(flushAutomatically = true, clearAutomatically = true)
+  @Query("DELETE FROM Annotation a WHERE a.scroll.id = :scrollId")
+  int deleteByScrollId(@Param("scrollId") Long scrollId);
 }
@@ -0,0 +1,55 @@
+package com.mf.HerculaneumTranscriptor.repository;
+
+import com.mf.HerculaneumTranscriptor.domain.AnnotationRevision;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+public interface AnnotationRevisionRepository extends JpaRepository<AnnotationRevision, Long> {
+  boolean existsByScrollIdAndRegionId(Long scrollId, UUID regionId);
+
+  boolean existsByRegionIdAndRevision(UUID regionId, long revision);
+
+  /**
+   * Finds the last snapshot of a region up to a given revision, from which later revisions can be rebuilt.
+   */
+  Optional<AnnotationRevision> findFirstByScrollIdAndRegionIdAndSnapshotTrueAndRevisionLessThanEqualOrderByRevisionDesc(
+          Long scrollId, UUID regionId, long revision);
+
+  /**
+   * Finds the revisions of a region that come right after the given one, in revision order.
+   * @param pageable contains the page size; the page number should be 0.
+   */
+  Slice<AnnotationRevision> findByScrollIdAndRegionIdAndRevisionGreaterThanOrderByRevisionAsc(
+          Long scrollId, UUID regionId, long revision, Pageable pageable);
+
+  /**
+   * Finds the revisions of the regions of a scroll that come right after the given (regionId, revision) key,
+   * in (regionId, revision) order.
+   * @param pageable contains the page size; the page number should be 0.
+   */
+  @Query("SELECT r FROM AnnotationRevision r WHERE r.scrollId = :scrollId AND " +
+          "(r.regionId > :regionId OR (r.regionId = :regionId AND r.revision > :revision)) ORDER BY r.regionId, r.revision")
+  Slice<AnnotationRevision> findScrollRevisionsAfter(@Param("scrollId") Long scrollId, @Param("regionId") UUID regionId,
+                                                     @Param("revision") long revision, Pageable pageable);
+
+  /**
+   * Finds the revisions of the regions of a scroll made up to a given time that come right after the given
+   * (createdAt, id) key, in the order they were made.
+   * @param pageable contains the page size; the page number should be 0.
+   */
+  @Query("SELECT r FROM AnnotationRevision r WHERE r.scrollId = :scrollId AND r.createdAt <= :until AND " +
+          "(r.createdAt > :createdAt OR (r.createdAt = :createdAt AND r.id > :id)) ORDER BY r.createdAt, r.id")
+  Slice<AnnotationRevision> findScrollRevisionsMadeAfter(@Param("scrollId") Long scrollId, @Param("createdAt") Instant createdAt,
+                                                         @Param("id") long id, @Param("until") Instant until,
+                                                         Pageable pageable);
+
+  long countByScrollIdAndCreatedAtGreaterThanAndCreatedAtLessThanEqual(Long scrollId, Instant after, Instant until);
+}
@@ -0,0 +1,44 @@
+package com.mf.HerculaneumTranscriptor.repository;
+
+import com.mf.HerculaneumTranscriptor.domain.Comment;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.Optional;
+import java.util.UUID;
+
+public interface CommentRepository extends JpaRepository<Comment, Long> {
+  Optional<Comment> findByCommentId(UUID commentId);
+
+  /**
+   * Finds the comments of an annotation that come right after the given id, in id order, along with their authors.
+   * @param annotationId the internal ID of the annotation.
+   * @param id the id of the last comment already fetched, or 0 to start from the first one.
+   * @param pageable contains the page size; the page number should be 0.
+   * @return a Slice of Comments ordered by id.
+   */
+  @Query("SELECT c FROM Comment c JOIN FETCH c.author WHERE c.annotation.id = :annotationId AND c.id > :id ORDER BY c.id")
+  Slice<Comment> findAllAfter(@Param("annotationId") Long annotationId, @Param("id") Long id, Pageable pageable);
+
+  /**
+   * Finds the last comment of an annotation created up to a given time, to continue syncing from there.
+   * @return the id of that comment, or 0 if there is none.
+   */
+  @Query("SELECT COALESCE(MAX(c.id), 0) FROM Comment c WHERE c.annotation.id = :annotationId AND c.createdAt <= :timestamp")
+  long findLastIdCreatedUpTo(@Param("annotationId") Long annotationId, @Param("timestamp") Instant timestamp);
+
+  // Deletes the comments of an annotation in a single statement, without loading them
+  @Modifying
+  @Query("DELETE FROM Comment c WHERE c.annotation.id = :annotationId")
+  int deleteByAnnotationId(@Param("annotationId") Long annotationId);
+
+  // Deletes the comments on every annotation of a scroll in a single statement, without loading them
+  @Modifying
+  @Query("DELETE FROM Comment c WHERE c.annotation.id IN (SELECT a.id FROM Annotation a WHERE a.scroll.id = :scrollId)")
+  int deleteByScrollId(@Param("scrollId") Long scrollId);
+}
@@ -0,0 +1,14 @@
+package com.mf.HerculaneumTranscriptor.repository;
+
+import com.mf.HerculaneumTranscriptor.domain.Scroll;
+
+import java.util.Optional;
+
+/**
+ * Lookups of scrolls by their public scroll ID, which is their natural ID.
+ * They are answered by the second-level cache when the scroll is in it, without querying the database.
+ */
+public interface ScrollNaturalIdLookup {
+  Optional<Scroll> findByScrollId(String scrollId);
+  Boolean existsByScrollId(String scrollId);
+}
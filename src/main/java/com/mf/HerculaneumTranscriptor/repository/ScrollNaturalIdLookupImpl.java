@@ -0,0 +1,26 @@
+package com.mf.HerculaneumTranscriptor.repository;
+
+import com.mf.HerculaneumTranscriptor.domain.Scroll;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.Session;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Optional;
+
+// Transactional like the query methods Spring Data implements, so that the session stays open during the lookup
+@Transactional(readOnly = true)
+class ScrollNaturalIdLookupImpl implements ScrollNaturalIdLookup {
+  @PersistenceContext
+  private EntityManager entityManager;
+
+  @Override
+  public Optional<Scroll> findByScrollId(String scrollId) {
+    return entityManager.unwrap(Session.class).bySimpleNaturalId(Scroll.class).loadOptional(scrollId);
+  }
+
+  @Override
+  public Boolean existsByScrollId(String scrollId) {
+    return findByScrollId(scrollId).isPresent();
+  }
+}
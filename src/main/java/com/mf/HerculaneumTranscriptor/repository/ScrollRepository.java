@@ -1,11 +1,19 @@
 package com.mf.HerculaneumTranscriptor.repository;
 
 import com.mf.HerculaneumTranscriptor.domain.Scroll;
-import org.springframework.data.repository.CrudRepository;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 
-import java.util.Optional;
+import java.util.List;
 
-public interface ScrollRepository extends CrudRepository<Scroll, Long> {
-  Optional<Scroll> findByScrollId(String scrollId);
-  Boolean existsByScrollId(String scrollId);
+public interface ScrollRepository extends JpaRepository<Scroll, Long>, ScrollNaturalIdLookup {
+  /**
+   * Finds every scroll. The result is kept in the query cache until the scrolls table changes.
+   * @return a List of all Scrolls.
+   */
+  @Override
+  @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+  List<Scroll> findAll();
 }
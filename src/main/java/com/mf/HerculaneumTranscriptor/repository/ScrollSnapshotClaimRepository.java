@@ -0,0 +1,29 @@
+package com.mf.HerculaneumTranscriptor.repository;
+
+import com.mf.HerculaneumTranscriptor.domain.ScrollSnapshotClaim;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.time.Instant;
+
+public interface ScrollSnapshotClaimRepository extends JpaRepository<ScrollSnapshotClaim, Long> {
+  // Claims a scroll whose previous claim ended. Only one of the instances claiming it at the same time updates it.
+  @Modifying
+  @Query("""
+          UPDATE ScrollSnapshotClaim c SET c.claimedUntil = :claimedUntil
+          WHERE c.scrollId = :scrollId AND c.claimedUntil <= :now""")
+  int claim(Long scrollId, Instant now, Instant claimedUntil);
+
+  // Claims a scroll that was never claimed. Instances inserting it at the same time violate the primary key.
+  @Modifying
+  @Query("INSERT INTO ScrollSnapshotClaim (scrollId, claimedUntil) VALUES (:scrollId, :claimedUntil)")
+  int insert(Long scrollId, Instant claimedUntil);
+
+  // Ends a claim early, unless it ended already and was taken over since
+  @Modifying
+  @Query("""
+          UPDATE ScrollSnapshotClaim c SET c.claimedUntil = :now
+          WHERE c.scrollId = :scrollId AND c.claimedUntil = :claimedUntil""")
+  int release(Long scrollId, Instant claimedUntil, Instant now);
+}
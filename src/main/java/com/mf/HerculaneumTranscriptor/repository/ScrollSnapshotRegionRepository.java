@@ -0,0 +1,14 @@
+package com.mf.HerculaneumTranscriptor.repository;
+
+import com.mf.HerculaneumTranscriptor.domain.ScrollSnapshotRegion;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface ScrollSnapshotRegionRepository extends JpaRepository<ScrollSnapshotRegion, Long> {
+  /**
+   * Finds the regions of a snapshot that come right after the given internal ID, in ID order.
+   * @param pageable contains the page size; the page number should be 0.
+   */
+  Slice<ScrollSnapshotRegion> findBySnapshotIdAndIdGreaterThanOrderByIdAsc(Long snapshotId, Long id, Pageable pageable);
+}
@@ -0,0 +1,14 @@
+package com.mf.HerculaneumTranscriptor.repository;
+
+import com.mf.HerculaneumTranscriptor.domain.ScrollSnapshot;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.time.Instant;
+import java.util.Optional;
+
+public interface ScrollSnapshotRepository extends JpaRepository<ScrollSnapshot, Long> {
+  /**
+   * Finds the last snapshot of a scroll taken up to a given time, from which its regions at that time are rebuilt.
+   */
+  Optional<ScrollSnapshot> findFirstByScrollIdAndCoveredUntilLessThanEqualOrderByCoveredUntilDesc(Long scrollId, Instant time);
+}
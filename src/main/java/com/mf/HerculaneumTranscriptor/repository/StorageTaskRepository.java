@@ -0,0 +1,46 @@
+package com.mf.HerculaneumTranscriptor.repository;
+
+import com.mf.HerculaneumTranscriptor.domain.StorageTask;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+public interface StorageTaskRepository extends JpaRepository<StorageTask, Long> {
+  // Due tasks, oldest first. A task waits while an older live task exists for the same location,
+  // so that operations on an image are carried out in the order they were recorded.
+  // Images staged by other instances are not on the local disk of this one, so only their stagers can store them.
+  // Those whose stager is gone are given up by giveUpAbandoned, so that they no longer hold back later tasks.
+  @Query("""
+          SELECT t.id FROM StorageTask t
+          WHERE t.nextAttemptAt <= :now
+            AND (t.stagedBy IS NULL OR t.stagedBy = :instanceId)
+            AND NOT EXISTS (SELECT 1 FROM StorageTask o
+                            WHERE o.location = t.location AND o.id < t.id AND o.nextAttemptAt IS NOT NULL)
+          ORDER BY t.id""")
+  List<Long> findDueTaskIds(Instant now, String instanceId, Pageable pageable);
+
+  // Claims the given tasks until the lease ends. Tasks claimed meanwhile by another worker are no longer due and are skipped.
+  @Transactional
+  @Modifying
+  @Query("""
+          UPDATE StorageTask t SET t.claimToken = :claimToken, t.nextAttemptAt = :leaseEnd
+          WHERE t.id IN :ids AND t.nextAttemptAt <= :now""")
+  int claim(List<Long> ids, UUID claimToken, Instant now, Instant leaseEnd);
+
+  List<StorageTask> findByClaimTokenOrderById(UUID claimToken);
+
+  // Gives up on images staged by other instances that were due for too long without being claimed,
+  // e.g. because their stager was replaced by an instance of another name, which cannot read its staging directory.
+  @Transactional
+  @Modifying
+  @Query("""
+          UPDATE StorageTask t SET t.nextAttemptAt = NULL, t.claimToken = NULL, t.lastError = :error
+          WHERE t.stagedBy <> :instanceId AND t.nextAttemptAt <= :abandonedBefore""")
+  int giveUpAbandoned(String instanceId, Instant abandonedBefore, String error);
+}
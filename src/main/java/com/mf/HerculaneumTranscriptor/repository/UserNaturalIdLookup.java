@@ -0,0 +1,14 @@
+package com.mf.HerculaneumTranscriptor.repository;
+
+import com.mf.HerculaneumTranscriptor.domain.User;
+
+import java.util.Optional;
+
+/**
+ * Lookups of users by their username, which is their natural ID.
+ * They are answered by the second-level cache when the user is in it, without querying the database.
+ */
+public interface UserNaturalIdLookup {
+  Optional<User> findByUsername(String username);
+  Boolean existsByUsername(String username);
+}
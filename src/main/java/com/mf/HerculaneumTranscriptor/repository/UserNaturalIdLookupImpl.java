@@ -0,0 +1,26 @@
+package com.mf.HerculaneumTranscriptor.repository;
+
+import com.mf.HerculaneumTranscriptor.domain.User;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.Session;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Optional;
+
+// Keeps the session open for the lookup when called outside a transaction
+@Transactional(readOnly = true)
+class UserNaturalIdLookupImpl implements UserNaturalIdLookup {
+  @PersistenceContext
+  private EntityManager entityManager;
+
+  @Override
+  public Optional<User> findByUsername(String username) {
+    return entityManager.unwrap(Session.class).bySimpleNaturalId(User.class).loadOptional(username);
+  }
+
+  @Override
+  public Boolean existsByUsername(String username) {
+    return findByUsername(username).isPresent();
+  }
+}
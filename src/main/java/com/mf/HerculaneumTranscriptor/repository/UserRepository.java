@@ -1,23 +1,48 @@
 package com.mf.HerculaneumTranscriptor.repository;
 
 import com.mf.HerculaneumTranscriptor.domain.User;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
-import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import user.dto.UserInfo;
 
+import java.util.Collection;
 import java.util.Optional;
+import java.util.Set;
 
-public interface UserRepository extends CrudRepository<User, Long> {
-  Boolean existsByUsername(String username);
-  Optional<User> findByUsername(String username);
+public interface UserRepository extends JpaRepository<User, Long>, UserNaturalIdLookup {
   Optional<User> findByPermissions(UserInfo.PermissionsEnum permissions);
 
   /**
-   * Finds a set of users at an index and returns them in a paginated format.
-   * @param pageable contains page number, page size, and sorting info.
-   * @return a Page of Users, which includes the list for the current page
-   *         and total number of pages/elements.
+   * Finds which of the given usernames are already taken, in a single query.
+   * @param usernames the usernames to check.
+   * @return the subset of usernames that belong to existing users.
    */
-  Page<User> findAll(Pageable pageable);
+  @Query("SELECT u.username FROM User u WHERE u.username IN :usernames")
+  Set<String> findUsernamesIn(@Param("usernames") Collection<String> usernames);
+
+  /**
+   * Finds a slice of users in (username, id) order, skipping the rows of the previous pages with an offset.
+   * Unlike a Page, a Slice does not issue a count query; it only fetches one extra row to know if there is more.
+   * Used for the first slice of a listing, and for the deprecated index of listings that do not use cursors,
+   * whose cost grows with its depth.
+   * @param pageable contains the page size and the page number.
+   * @return a Slice of Users ordered by username and id.
+   */
+  Slice<User> findAllByOrderByUsernameAscIdAsc(Pageable pageable);
+
+  /**
+   * Finds the users that come right after the given (username, id) key, in (username, id) order.
+   * The key is compared against the index instead of skipping rows with an offset,
+   * so the cost of fetching a slice does not grow with its depth, and users inserted meanwhile do not shift it.
+   * @param username the username of the last user already listed.
+   * @param id the id of the last user already listed.
+   * @param pageable contains the page size; the page number should be 0.
+   * @return a Slice of Users ordered by username and id.
+   */
+  @Query("SELECT u FROM User u WHERE u.username > :username OR (u.username = :username AND u.id > :id) " +
+          "ORDER BY u.username, u.id")
+  Slice<User> findAllAfter(@Param("username") String username, @Param("id") Long id, Pageable pageable);
 }
@@ -4,7 +4,9 @@ import com.mf.HerculaneumTranscriptor.domain.Annotation;
 import com.mf.HerculaneumTranscriptor.domain.User;
 import com.mf.HerculaneumTranscriptor.domain.Vote;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.util.Optional;
 
@@ -15,4 +17,14 @@ public interface VoteRepository extends JpaRepository<Vote, Vote.VoteId> {
   // More efficient than fetching vote entities and averaging in Java.
   @Query("SELECT AVG(v.voteValue) FROM Vote v WHERE v.annotation.id = :annotationId")
   Float calculateAverageVote(Long annotationId);
+
+  // Deletes the votes on an annotation in a single statement, without loading them
+  @Modifying
+  @Query("DELETE FROM Vote v WHERE v.annotation.id = :annotationId")
+  int deleteByAnnotationId(@Param("annotationId") Long annotationId);
+
+  // Deletes the votes on every annotation of a scroll in a single statement, without loading them
+  @Modifying
+  @Query("DELETE FROM Vote v WHERE v.annotation.id IN (SELECT a.id FROM Annotation a WHERE a.scroll.id = :scrollId)")
+  int deleteByScrollId(@Param("scrollId") Long scrollId);
 }
@@ -0,0 +1,248 @@
+package com.mf.HerculaneumTranscriptor.search;
+
+import com.mf.HerculaneumTranscriptor.domain.User;
+import com.mf.HerculaneumTranscriptor.domain.mapper.UserMapper;
+import com.mf.HerculaneumTranscriptor.repository.UserRepository;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import user.dto.UserInfo;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * In-memory index answering user searches over username, first name, last name and contact without querying the database.
+ * Queries of at least three characters match anywhere in a field through a trigram index,
+ * while shorter queries only match the start of a field through a sorted map of the field values.
+ * <p>
+ * The index is built when the application starts and kept up to date by the user service.
+ * Changes made inside a transaction are visible right away and undone if the transaction rolls back.
+ */
+@Component
+public class UserSearchIndex {
+  private static final int GRAM_LENGTH = 3;
+
+  // Ranks of a match, lower is better
+  private static final int EXACT_USERNAME = 0;
+  private static final int USERNAME_PREFIX = 1;
+  private static final int FIELD_PREFIX = 2;
+  private static final int SUBSTRING = 3;
+
+  private final UserRepository userRepository;
+  private final UserMapper userMapper;
+
+  private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+  private final Map<Long, Entry> entries = new HashMap<>();
+  private final Map<String, Set<Long>> grams = new HashMap<>();
+  private final NavigableMap<String, Set<Long>> values = new TreeMap<>();
+
+  /**
+   * The indexed form of a user: its public information and its searchable fields in lowercase, username first.
+   */
+  private record Entry(Long id, UserInfo info, List<String> fields) {
+    String username() {
+      return fields.getFirst();
+    }
+  }
+
+  private record Match(Entry entry, int rank) {}
+
+  public UserSearchIndex(UserRepository userRepository, UserMapper userMapper) {
+    this.userRepository = userRepository;
+    this.userMapper = userMapper;
+  }
+
+  private static String normalize(String text) {
+    return text.toLowerCase(Locale.ROOT);
+  }
+
+  private static Set<String> gramsOf(String text) {
+    Set<String> result = new HashSet<>();
+    for (int i = 0; i + GRAM_LENGTH <= text.length(); i++)
+      result.add(text.substring(i, i + GRAM_LENGTH));
+    return result;
+  }
+
+  private static void link(Map<String, Set<Long>> postings, String key, Long id) {
+    postings.computeIfAbsent(key, k -> new HashSet<>()).add(id);
+  }
+
+  private static void unlink(Map<String, Set<Long>> postings, String key, Long id) {
+    Set<Long> ids = postings.get(key);
+    if (ids != null && ids.remove(id) && ids.isEmpty())
+      postings.remove(key);
+  }
+
+  private Entry entryOf(User user) {
+    List<String> fields = Stream.of(user.getUsername(), user.getFirstName(), user.getLastName(), user.getContact())
+            .map(field -> field == null ? "" : normalize(field))
+            .toList();
+
+    return new Entry(user.getId(), userMapper.userToUserInfo(user), fields);
+  }
+
+  /**
+   * Replaces the entry of a user, or removes it when the replacement is null.
+   * Must be called while holding the write lock.
+   *
+   * @return The entry previously held for the user, if any.
+   */
+  private Entry replace(Long id, Entry replacement) {
+    Entry previous = replacement == null ? entries.remove(id) : entries.put(id, replacement);
+
+    if (previous != null)
+      for (String field : previous.fields()) {
+        unlink(values, field, id);
+        gramsOf(field).forEach(gram -> unlink(grams, gram, id));
+      }
+
+    if (replacement != null)
+      for (String field : replacement.fields()) {
+        if (field.isEmpty())
+          continue;
+        link(values, field, id);
+        gramsOf(field).forEach(gram -> link(grams, gram, id));
+      }
+
+    return previous;
+  }
+
+  private Entry replaceLocked(Long id, Entry replacement) {
+    lock.writeLock().lock();
+    try {
+      return replace(id, replacement);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  private void apply(Long id, Entry replacement) {
+    Entry previous = replaceLocked(id, replacement);
+
+    if (!TransactionSynchronizationManager.isSynchronizationActive())
+      return;
+
+    // Restore the previous entry if the change never reaches the database
+    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+      @Override
+      public void afterCompletion(int status) {
+        if (status != STATUS_COMMITTED)
+          replaceLocked(id, previous);
+      }
+    });
+  }
+
+  /**
+   * Rebuilds the index from every user in the database.
+   */
+  @EventListener(ApplicationReadyEvent.class)
+  public void rebuild() {
+    List<Entry> rebuilt = new ArrayList<>();
+    userRepository.findAll().forEach(user -> rebuilt.add(entryOf(user)));
+
+    lock.writeLock().lock();
+    try {
+      entries.clear();
+      grams.clear();
+      values.clear();
+      rebuilt.forEach(entry -> replace(entry.id(), entry));
+    } finally {
+      lock.writeLock().unlock();
+    }
+
+    System.out.println("Indexed " + rebuilt.size() + " users for search.");
+  }
+
+  /**
+   * Adds a user to the index, or refreshes it if it was already indexed.
+   *
+   * @param user The saved user, with its id assigned.
+   */
+  public void put(User user) {
+    apply(user.getId(), entryOf(user));
+  }
+
+  /**
+   * Removes a user from the index.
+   *
+   * @param id The id of the removed user.
+   */
+  public void remove(Long id) {
+    apply(id, null);
+  }
+
+  private Collection<Long> candidates(String query) {
+    if (query.length() < GRAM_LENGTH) {
+      // Too short for trigrams, collect the users having a field that starts with the query
+      Set<Long> ids = new HashSet<>();
+      values.subMap(query, true, query + Character.MAX_VALUE, false).values().forEach(ids::addAll);
+      return ids;
+    }
+
+    // Intersect the users having each trigram of the query, starting from the rarest one
+    List<Set<Long>> postings = new ArrayList<>();
+    for (String gram : gramsOf(query)) {
+      Set<Long> ids = grams.get(gram);
+      if (ids == null)
+        return List.of();
+      postings.add(ids);
+    }
+    postings.sort(Comparator.comparingInt(Set::size));
+
+    Set<Long> ids = new HashSet<>(postings.getFirst());
+    postings.subList(1, postings.size()).forEach(ids::retainAll);
+    return ids;
+  }
+
+  private static int rank(Entry entry, String query) {
+    if (entry.username().equals(query))
+      return EXACT_USERNAME;
+    if (entry.username().startsWith(query))
+      return USERNAME_PREFIX;
+    if (entry.fields().stream().anyMatch(field -> field.startsWith(query)))
+      return FIELD_PREFIX;
+    // Having every trigram of the query does not guarantee containing it
+    if (entry.fields().stream().anyMatch(field -> field.contains(query)))
+      return SUBSTRING;
+    return -1;
+  }
+
+  /**
+   * Searches users whose username, first name, last name or contact contain the query, ignoring case.
+   * Queries shorter than three characters only match the start of those fields.
+   * Results are ranked: exact username first, then username prefixes, other field prefixes and
+   * finally any other match, with ties ordered by username.
+   *
+   * @param query The text to search for.
+   * @param limit The maximum number of results.
+   * @return The public information of the matching users, best matches first.
+   */
+  public List<UserInfo> search(String query, int limit) {
+    String normalized = normalize(query.strip());
+    if (normalized.isEmpty())
+      return List.of();
+
+    List<Match> matches = new ArrayList<>();
+    lock.readLock().lock();
+    try {
+      for (Long id : candidates(normalized)) {
+        Entry entry = entries.get(id);
+        int rank = rank(entry, normalized);
+        if (rank >= 0)
+          matches.add(new Match(entry, rank));
+      }
+    } finally {
+      lock.readLock().unlock();
+    }
+
+    return matches.stream()
+            .sorted(Comparator.comparingInt(Match::rank).thenComparing(match -> match.entry().username()))
+            .limit(limit)
+            .map(match -> match.entry().info())
+            .toList();
+  }
+}
@@ -0,0 +1,72 @@
+package com.mf.HerculaneumTranscriptor.security;
+
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * PBKDF2-HMAC-SHA256 password encoder that stores the iteration count along the hash, as iterations$salt$hash.
+ * Unlike Spring's Pbkdf2PasswordEncoder, hashes keep matching after the iteration count is recalibrated,
+ * and the ones made with fewer iterations can be upgraded.
+ */
+public class IteratedPbkdf2PasswordEncoder implements PasswordEncoder {
+  private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+  private static final int SALT_LENGTH = 16;
+  private static final int HASH_LENGTH = 32;
+
+  private final int iterations;
+  private final SecureRandom random = new SecureRandom();
+
+  public IteratedPbkdf2PasswordEncoder(int iterations) {
+    this.iterations = iterations;
+  }
+
+  private static byte[] derive(CharSequence rawPassword, byte[] salt, int iterations) {
+    PBEKeySpec spec = new PBEKeySpec(rawPassword.toString().toCharArray(), salt, iterations, HASH_LENGTH * 8);
+    try {
+      return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+    } catch (GeneralSecurityException e) {
+      throw new IllegalStateException("Could not hash password with " + ALGORITHM, e);
+    } finally {
+      spec.clearPassword();
+    }
+  }
+
+  @Override
+  public String encode(CharSequence rawPassword) {
+    byte[] salt = new byte[SALT_LENGTH];
+    random.nextBytes(salt);
+
+    Base64.Encoder base64 = Base64.getEncoder().withoutPadding();
+    return iterations + "$" + base64.encodeToString(salt) + "$" + base64.encodeToString(derive(rawPassword, salt, iterations));
+  }
+
+  @Override
+  public boolean matches(CharSequence rawPassword, String encodedPassword) {
+    String[] parts = encodedPassword == null ? new String[0] : encodedPassword.split("\\$");
+    if (parts.length != 3)
+      return false;
+
+    try {
+      byte[] salt = Base64.getDecoder().decode(parts[1]);
+      byte[] hash = Base64.getDecoder().decode(parts[2]);
+      return MessageDigest.isEqual(hash, derive(rawPassword, salt, Integer.parseInt(parts[0])));
+    } catch (IllegalArgumentException e) {
+      return false;
+    }
+  }
+
+  @Override
+  public boolean upgradeEncoding(String encodedPassword) {
+    try {
+      return Integer.parseInt(encodedPassword.substring(0, encodedPassword.indexOf('$'))) < iterations;
+    } catch (IndexOutOfBoundsException | NumberFormatException e) {
+      return true;
+    }
+  }
+}
@@ -1,18 +1,26 @@
 package com.mf.HerculaneumTranscriptor.security;
 
+import com.mf.HerculaneumTranscriptor.datasource.ReadRouting;
 import com.mf.HerculaneumTranscriptor.domain.User;
 import com.mf.HerculaneumTranscriptor.exception.ResourceNotFoundException;
+import com.mf.HerculaneumTranscriptor.profiling.JwtAuthenticationEvent;
 import com.mf.HerculaneumTranscriptor.repository.UserRepository;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.AllArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContext;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.web.authentication.WebAuthenticationDetails;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
+import org.springframework.security.web.context.RequestAttributeSecurityContextRepository;
+import org.springframework.security.web.context.SecurityContextRepository;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
@@ -24,7 +32,11 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
   private final JwtUtil jwtUtil;
   private final UserRepository userRepository;
-
+  private final ReadRouting readRouting;
+  // Traces the authentication of requests, absent from web slice tests
+  private final ObjectProvider<ObservationRegistry> observationRegistry;
+  // Keeps the authentication for the async dispatch of requests completed outside of the request thread
+  private final SecurityContextRepository securityContextRepository = new RequestAttributeSecurityContextRepository();
 
   /**
    * Retrieves the JWT token from the Authorization header of the request, or null if
@@ -43,20 +55,59 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
           throws ServletException, IOException {
     String token = getTokenFromRequest(request);
 
-    if (token != null && jwtUtil.validateToken(token)) {
-      // The JWT is valid, we can build an authentication object from it
-      String subject = jwtUtil.extractSubject(token);
+    if (token != null)
+      Observation.createNotStarted("jwt.authentication", observationRegistry.getIfAvailable(() -> ObservationRegistry.NOOP))
+              .contextualName("jwt authentication")
+              .observe(() -> authenticate(token, request, response));
+
+    try {
+      chain.doFilter(request, response);
+    } finally {
+      readRouting.clearCurrentUser();
+    }
+  }
+
+  /**
+   * Authenticates the request as the user of its token, if the token is valid.
+   */
+  private void authenticate(String token, HttpServletRequest request, HttpServletResponse response) {
+    JwtAuthenticationEvent event = new JwtAuthenticationEvent();
+    event.begin();
+    long verifyStart = System.nanoTime();
 
-      User user = userRepository.findByUsername(subject)
-              .orElseThrow(() -> new ResourceNotFoundException("User not found: " + subject));
-      UserDetails userDetails = new JwtUserDetails(user);
+    if (!jwtUtil.validateToken(token)) {
+      if (event.shouldCommit()) {
+        event.verifyTime = System.nanoTime() - verifyStart;
+        event.commit();
+      }
+      return;
+    }
 
-      WebAuthenticationDetails authDetails = new WebAuthenticationDetailsSource().buildDetails(request);
-      Authentication authentication = new JwtAuthentication(userDetails, token, authDetails);
+    // The JWT is valid, we can build an authentication object from it
+    String subject = jwtUtil.extractSubject(token);
+    long lookupStart = System.nanoTime();
 
-      SecurityContextHolder.getContext().setAuthentication(authentication);
+    // A user registered moments ago may not have reached the read replicas yet
+    User user = userRepository.findByUsername(subject)
+            .or(() -> readRouting.onPrimary(() -> userRepository.findByUsername(subject)))
+            .orElseThrow(() -> new ResourceNotFoundException("User not found: " + subject));
+
+    if (event.shouldCommit()) {
+      event.username = subject;
+      event.valid = true;
+      event.verifyTime = lookupStart - verifyStart;
+      event.lookupTime = System.nanoTime() - lookupStart;
+      event.commit();
     }
+    // Reads made for this user go to the primary for a while after they change data
+    readRouting.setCurrentUser(subject);
+    UserDetails userDetails = new JwtUserDetails(user);
+
+    WebAuthenticationDetails authDetails = new WebAuthenticationDetailsSource().buildDetails(request);
+    Authentication authentication = new JwtAuthentication(userDetails, token, authDetails);
 
-    chain.doFilter(request, response);
+    SecurityContext context = SecurityContextHolder.getContext();
+    context.setAuthentication(authentication);
+    securityContextRepository.saveContext(context, request, response);
   }
-}
\ No newline at end of file
+}
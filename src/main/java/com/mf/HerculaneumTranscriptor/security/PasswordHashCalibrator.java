@@ -0,0 +1,187 @@
+package com.mf.HerculaneumTranscriptor.security;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.security.crypto.argon2.Argon2PasswordEncoder;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Picks the cost of the password hashing algorithm so that a hash takes about the target latency on this hardware.
+ * The cost is the bcrypt strength (log2 of its rounds), or the number of argon2 or PBKDF2 iterations,
+ * and is never lower than the minimum recommended for each algorithm.
+ * <p>
+ * The resulting encoder prefixes hashes with the algorithm used, matches hashes of every supported algorithm
+ * (including plain bcrypt hashes stored before prefixes were used), and flags for upgrade the hashes made
+ * with another algorithm or a lower cost. Hashing times are published as metrics.
+ */
+public class PasswordHashCalibrator {
+  public static final String BCRYPT = "bcrypt";
+  public static final String ARGON2 = "argon2";
+  public static final String PBKDF2 = "pbkdf2";
+
+  static final int BCRYPT_MIN_STRENGTH = 10;
+  static final int BCRYPT_MAX_STRENGTH = 31;
+  static final int ARGON2_MIN_ITERATIONS = 2;
+  static final int PBKDF2_MIN_ITERATIONS = 310_000;
+
+  // Cheap costs whose hashing time is measured to extrapolate the calibrated cost
+  private static final int BCRYPT_PROBE_STRENGTH = 6;
+  private static final int ARGON2_PROBE_ITERATIONS = 1;
+  private static final int PBKDF2_PROBE_ITERATIONS = 10_000;
+
+  private static final String SAMPLE_PASSWORD = "calibration-sample-password";
+  private static final int SAMPLES = 3;
+
+  private final String algorithm;
+  private final Duration targetLatency;
+  private final int argon2Memory;
+
+  /**
+   * The calibrated cost of the algorithm and the time a hash takes with it.
+   */
+  record Calibration(String algorithm, int cost, Duration latency) {}
+
+  /**
+   * @param algorithm The algorithm of new hashes: bcrypt, argon2 or pbkdf2.
+   * @param targetLatency The time a hash should take. When zero, the minimum cost is used without measuring.
+   * @param argon2Memory The memory used by each argon2 hash, in KiB.
+   */
+  public PasswordHashCalibrator(String algorithm, Duration targetLatency, int argon2Memory) {
+    if (!Arrays.asList(BCRYPT, ARGON2, PBKDF2).contains(algorithm))
+      throw new IllegalArgumentException("Unknown password hashing algorithm: " + algorithm);
+
+    this.algorithm = algorithm;
+    this.targetLatency = targetLatency;
+    this.argon2Memory = argon2Memory;
+  }
+
+  PasswordEncoder encoderFor(String algorithm, int cost) {
+    return switch (algorithm) {
+      case BCRYPT -> new BCryptPasswordEncoder(cost);
+      case ARGON2 -> new Argon2PasswordEncoder(16, 32, 1, argon2Memory, cost);
+      case PBKDF2 -> new IteratedPbkdf2PasswordEncoder(cost);
+      default -> throw new IllegalArgumentException("Unknown password hashing algorithm: " + algorithm);
+    };
+  }
+
+  private static long nanosToHash(PasswordEncoder encoder, int samples) {
+    long[] times = new long[samples];
+    for (int i = 0; i < samples; i++) {
+      long start = System.nanoTime();
+      encoder.encode(SAMPLE_PASSWORD);
+      times[i] = System.nanoTime() - start;
+    }
+
+    Arrays.sort(times);
+    return Math.max(1L, times[samples / 2]);
+  }
+
+  /**
+   * Extrapolates the cost reaching the target latency from the time taken with a cheap probe cost.
+   */
+  private int extrapolateCost(int probeCost) {
+    PasswordEncoder probe = encoderFor(algorithm, probeCost);
+    // The first hash also pays for class loading and JIT compilation
+    probe.encode(SAMPLE_PASSWORD);
+    double ratio = (double) targetLatency.toNanos() / nanosToHash(probe, SAMPLES);
+
+    return switch (algorithm) {
+      // Each unit of bcrypt strength doubles the work
+      case BCRYPT -> (int) Math.min(BCRYPT_MAX_STRENGTH,
+              Math.max(BCRYPT_MIN_STRENGTH, probeCost + Math.round(Math.log(ratio) / Math.log(2))));
+      case ARGON2 -> (int) Math.min(Integer.MAX_VALUE, Math.max(ARGON2_MIN_ITERATIONS, Math.round(probeCost * ratio)));
+      default -> (int) Math.min(Integer.MAX_VALUE, Math.max(PBKDF2_MIN_ITERATIONS, Math.round(probeCost * ratio)));
+    };
+  }
+
+  private static int minimumCost(String algorithm) {
+    return switch (algorithm) {
+      case BCRYPT -> BCRYPT_MIN_STRENGTH;
+      case ARGON2 -> ARGON2_MIN_ITERATIONS;
+      default -> PBKDF2_MIN_ITERATIONS;
+    };
+  }
+
+  /**
+   * Measures the hashing time on this hardware and picks the cost closest to the target latency.
+   */
+  Calibration calibrate() {
+    int cost;
+    if (targetLatency.isZero())
+      cost = minimumCost(algorithm);
+    else
+      cost = extrapolateCost(switch (algorithm) {
+        case BCRYPT -> BCRYPT_PROBE_STRENGTH;
+        case ARGON2 -> ARGON2_PROBE_ITERATIONS;
+        default -> PBKDF2_PROBE_ITERATIONS;
+      });
+
+    Duration latency = Duration.ofNanos(nanosToHash(encoderFor(algorithm, cost), 1));
+    return new Calibration(algorithm, cost, latency);
+  }
+
+  /**
+   * Calibrates the algorithm and builds the password encoder of the application.
+   *
+   * @param meterRegistry The registry where the calibrated cost and hashing times are published.
+   * @return A delegating encoder hashing with the calibrated algorithm and cost.
+   */
+  public PasswordEncoder calibratedEncoder(MeterRegistry meterRegistry) {
+    Calibration calibration = calibrate();
+    System.out.println("Password hashing calibrated: " + calibration.algorithm() + " with cost " + calibration.cost() +
+            " takes " + calibration.latency().toMillis() + " ms per hash.");
+
+    // Other algorithms are only used to match older hashes, which carry their own parameters (except bcrypt's strength,
+    // which any bcrypt encoder reads from the hash, and PBKDF2 iterations, which are stored by our encoder)
+    Map<String, PasswordEncoder> encoders = new HashMap<>();
+    for (String id : Arrays.asList(BCRYPT, ARGON2, PBKDF2))
+      encoders.put(id, encoderFor(id, id.equals(algorithm) ? calibration.cost() : minimumCost(id)));
+
+    DelegatingPasswordEncoder delegating = new DelegatingPasswordEncoder(algorithm, encoders);
+    // Hashes stored before hashes were prefixed are plain bcrypt
+    delegating.setDefaultPasswordEncoderForMatches(encoders.get(BCRYPT));
+
+    Gauge.builder("security.password.hash.cost", calibration, Calibration::cost)
+            .description("Calibrated cost of new password hashes")
+            .strongReference(true)
+            .tag("algorithm", algorithm)
+            .register(meterRegistry);
+    Gauge.builder("security.password.hash.calibrated.latency", calibration, c -> c.latency().toNanos() / 1e9)
+            .description("Time a password hash took with the calibrated cost")
+            .strongReference(true)
+            .baseUnit("seconds")
+            .tag("algorithm", algorithm)
+            .register(meterRegistry);
+    Timer encodeTimer = Timer.builder("security.password.hash")
+            .tag("algorithm", algorithm).tag("operation", "encode")
+            .register(meterRegistry);
+    Timer matchesTimer = Timer.builder("security.password.hash")
+            .tag("algorithm", algorithm).tag("operation", "matches")
+            .register(meterRegistry);
+
+    return new PasswordEncoder() {
+      @Override
+      public String encode(CharSequence rawPassword) {
+        return encodeTimer.record(() -> delegating.encode(rawPassword));
+      }
+
+      @Override
+      public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return matchesTimer.record(() -> delegating.matches(rawPassword, encodedPassword));
+      }
+
+      @Override
+      public boolean upgradeEncoding(String encodedPassword) {
+        return delegating.upgradeEncoding(encodedPassword);
+      }
+    };
+  }
+}
@@ -1,9 +1,12 @@
 package com.mf.HerculaneumTranscriptor.security;
 
 import com.mf.HerculaneumTranscriptor.domain.Annotation;
+import com.mf.HerculaneumTranscriptor.domain.Comment;
 import com.mf.HerculaneumTranscriptor.domain.User;
 import com.mf.HerculaneumTranscriptor.repository.AnnotationRepository;
+import com.mf.HerculaneumTranscriptor.repository.CommentRepository;
 import com.mf.HerculaneumTranscriptor.repository.UserRepository;
+import io.micrometer.observation.annotation.Observed;
 import lombok.AllArgsConstructor;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Component;
@@ -13,9 +16,11 @@ import java.util.UUID;
 
 @AllArgsConstructor
 @Component("securityLogic")
+@Observed
 public class SecurityLogic {
   private final UserRepository userRepository;
   private final AnnotationRepository annotationRepository;
+  private final CommentRepository commentRepository;
 
   /**
    * Checks if the current user is permitted to perform an operation on a target user.
@@ -89,4 +94,44 @@ public class SecurityLogic {
 
     return targetAnnotation.getAuthor().getUsername().equals(authentication.getName());
   }
+
+  /**
+   * Checks if the current user is permitted to delete a specific comment.
+   * Rules:
+   * - A ROOT or ADMIN user can delete any comment.
+   * - A user with 'WRITE' privileges can only delete a comment they are the author of.
+   *
+   * @param authentication The current user's authentication object.
+   * @param commentId The UUID of the comment to be acted upon.
+   * @return true if the current user is authorized, false otherwise.
+   */
+  public boolean canModifyComment(Authentication authentication, UUID commentId) {
+    if (authentication == null || !authentication.isAuthenticated()) {
+      return false;
+    }
+
+    // ROOT/ADMIN users can always delete comments
+    boolean isAdminRoot = authentication.getAuthorities().stream()
+            .anyMatch(a -> a.getAuthority().matches("ROLE_ROOT|ROLE_ADMIN"));
+
+    if (isAdminRoot) {
+      return true;
+    }
+
+    boolean isWrite = authentication.getAuthorities().stream()
+            .anyMatch(a -> a.getAuthority().matches("ROLE_WRITE"));
+
+    if (!isWrite)
+      return false;
+
+    // 'WRITE' users must be the author
+    Comment targetComment = commentRepository.findByCommentId(commentId).orElse(null);
+
+    // If the target comment does not exist, grant access and let service logic throw
+    // resource not found exceptions
+    if (targetComment == null)
+      return true;
+
+    return targetComment.getAuthor().getUsername().equals(authentication.getName());
+  }
 }
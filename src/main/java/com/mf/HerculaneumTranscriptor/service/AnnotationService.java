@@ -19,14 +19,17 @@ public interface AnnotationService {
   /**
    * Retrieves all box regions for a given scroll, optionally filtered by a timestamp.
    * This is used for initial client data loads and subsequent delta synchronization.
+   * Regions can also be retrieved as they stood at a past time, as rebuilt from their history.
    * Any authenticated user can perform this action.
    *
    * @param scrollId The unique identifier of the scroll.
    * @param since Optional timestamp to fetch only regions created or updated since that time.
-   * @return A RegionUpdateResponse containing the list of regions and a new sync timestamp.
+   * @param asOf Optional timestamp to fetch the regions as they stood at that time, with their version at that time.
+   * @return A RegionUpdateResponse containing the list of regions and a new sync timestamp, which is asOf if given.
    * @throws com.mf.HerculaneumTranscriptor.exception.ResourceNotFoundException if the scroll does not exist.
+   * @throws javax.validation.ValidationException if both since and asOf are given.
    */
-  RegionUpdateResponse getScrollRegions(String scrollId, Date since) throws ResourceNotFoundException;
+  RegionUpdateResponse getScrollRegions(String scrollId, Date since, Date asOf) throws ResourceNotFoundException;
 
   /**
    * Creates a new annotation box region on a scroll. The author is automatically set
@@ -37,6 +40,7 @@ public interface AnnotationService {
    * @param newRegion The DTO containing the new region's coordinates and transcription.
    * @return The newly created BoxRegion DTO, including server-generated fields like regionId and author.
    * @throws com.mf.HerculaneumTranscriptor.exception.ResourceNotFoundException if the scroll does not exist.
+   * @throws javax.validation.ValidationException if the region does not lie within the scroll image.
    */
   @PreAuthorize("hasRole('WRITE') or hasRole('ROOT') or hasRole('ADMIN')")
   BoxRegion createRegion(String scrollId, NewBoxRegion newRegion) throws ResourceNotFoundException;
@@ -49,11 +53,15 @@ public interface AnnotationService {
    * @param scrollId The identifier of the scroll containing the region.
    * @param regionId The unique identifier of the region to update.
    * @param updatedRegion The DTO with the new information for the region.
-   * @return The updated BoxRegion DTO.
+   * @param expectedVersion The version of the region the update is based on, or null to update whatever version is current.
+   * @return The updated BoxRegion DTO, with its new version.
    * @throws com.mf.HerculaneumTranscriptor.exception.ResourceNotFoundException if the scroll or region does not exist.
+   * @throws com.mf.HerculaneumTranscriptor.exception.ResourceModifiedException if the region is no longer at the expected
+   * version, with its current state.
+   * @throws javax.validation.ValidationException if the region does not lie within the scroll image.
    */
   @PreAuthorize("@securityLogic.canModifyRegion(authentication, #regionId)")
-  BoxRegion updateRegion(String scrollId, UUID regionId, NewBoxRegion updatedRegion) throws ResourceNotFoundException;
+  BoxRegion updateRegion(String scrollId, UUID regionId, NewBoxRegion updatedRegion, Long expectedVersion) throws ResourceNotFoundException;
 
   /**
    * Deletes an annotation box region.
@@ -77,6 +85,7 @@ public interface AnnotationService {
    * @param vote The user's vote DTO.
    * @return The updated BoxRegion DTO, reflecting the new certainty score.
    * @throws com.mf.HerculaneumTranscriptor.exception.ResourceNotFoundException if the scroll or region does not exist..
+   * @throws org.springframework.orm.ObjectOptimisticLockingFailureException if concurrent votes kept changing the region.
    */
   @PreAuthorize("hasRole('WRITE') or hasRole('ROOT') or hasRole('ADMIN')")
   BoxRegion voteOnRegion(String scrollId, UUID regionId, Vote vote) throws ResourceNotFoundException;
@@ -0,0 +1,59 @@
+package com.mf.HerculaneumTranscriptor.service;
+
+import com.mf.HerculaneumTranscriptor.exception.ResourceNotFoundException;
+import comment.dto.Comment;
+import comment.dto.CommentContent;
+import comment.dto.CommentUpdateResponse;
+import org.springframework.security.access.prepost.PreAuthorize;
+
+import java.util.Date;
+import java.util.UUID;
+
+/**
+ * Service layer defining business operations related to comments on scroll regions.
+ * This interface is independent of the web/controller layer.
+ */
+public interface CommentService {
+
+  /**
+   * Retrieves a page of the comments of a region, oldest first, and the cursor to continue from.
+   * This is used for initial client data loads and subsequent delta synchronization.
+   * Any authenticated user can perform this action.
+   *
+   * @param scrollId The unique identifier of the scroll.
+   * @param regionId The unique identifier of the region.
+   * @param since Optional timestamp to fetch only comments created since that time. Ignored when a cursor is given.
+   * @param cursor Optional cursor returned by a previous call, to fetch only the comments that follow.
+   * @return A CommentUpdateResponse containing the page of comments, the next cursor and a new sync timestamp.
+   * @throws com.mf.HerculaneumTranscriptor.exception.ResourceNotFoundException if the scroll or region does not exist.
+   * @throws javax.validation.ValidationException if the cursor is malformed.
+   */
+  CommentUpdateResponse getRegionComments(String scrollId, UUID regionId, Date since, String cursor)
+          throws ResourceNotFoundException;
+
+  /**
+   * Adds a comment to a region. The author is automatically set to the currently authenticated user.
+   * Requires the user to have at least 'WRITE' permissions.
+   *
+   * @param scrollId The identifier of the scroll containing the region.
+   * @param regionId The unique identifier of the region to comment on.
+   * @param content The DTO containing the text of the comment.
+   * @return The newly created Comment DTO, including server-generated fields like commentId and author.
+   * @throws com.mf.HerculaneumTranscriptor.exception.ResourceNotFoundException if the scroll or region does not exist.
+   */
+  @PreAuthorize("hasRole('WRITE') or hasRole('ROOT') or hasRole('ADMIN')")
+  Comment addComment(String scrollId, UUID regionId, CommentContent content) throws ResourceNotFoundException;
+
+  /**
+   * Deletes a comment from a region.
+   * Requires the user to have at least 'WRITE' permissions, and they must either be the
+   * original author of the comment or have 'ADMIN'/'ROOT' permissions.
+   *
+   * @param scrollId The identifier of the scroll containing the region.
+   * @param regionId The unique identifier of the region containing the comment.
+   * @param commentId The unique identifier of the comment to delete.
+   * @throws com.mf.HerculaneumTranscriptor.exception.ResourceNotFoundException if the scroll, region or comment does not exist.
+   */
+  @PreAuthorize("@securityLogic.canModifyComment(authentication, #commentId)")
+  void deleteComment(String scrollId, UUID regionId, UUID commentId) throws ResourceNotFoundException;
+}
@@ -0,0 +1,36 @@
+package com.mf.HerculaneumTranscriptor.service;
+
+import com.mf.HerculaneumTranscriptor.exception.ResourceNotFoundException;
+import org.springframework.core.io.Resource;
+
+import java.util.UUID;
+
+/**
+ * Service layer defining business operations related to the revision history of scroll regions.
+ * This interface is independent of the web/controller layer.
+ */
+public interface RegionHistoryService {
+
+  /**
+   * Streams the revisions of a region, oldest first, as newline-delimited JSON of RegionRevision DTOs.
+   * Revisions are read while the stream is consumed. Any authenticated user can perform this action.
+   *
+   * @param scrollId The unique identifier of the scroll.
+   * @param regionId The unique identifier of the region, which may have been deleted.
+   * @param fromRevision Optional revision to start from.
+   * @return A Resource streaming the revisions.
+   * @throws com.mf.HerculaneumTranscriptor.exception.ResourceNotFoundException if the scroll does not exist,
+   * or if the region neither exists in it nor has any history there.
+   */
+  Resource streamRegionHistory(String scrollId, UUID regionId, Long fromRevision) throws ResourceNotFoundException;
+
+  /**
+   * Streams the revisions of every region of a scroll, grouped by region and oldest first within each of them,
+   * as newline-delimited JSON of RegionRevision DTOs. Any authenticated user can perform this action.
+   *
+   * @param scrollId The unique identifier of the scroll.
+   * @return A Resource streaming the revisions.
+   * @throws com.mf.HerculaneumTranscriptor.exception.ResourceNotFoundException if the scroll does not exist.
+   */
+  Resource streamScrollHistory(String scrollId) throws ResourceNotFoundException;
+}
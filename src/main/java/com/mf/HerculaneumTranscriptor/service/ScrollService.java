@@ -1,6 +1,5 @@
 package com.mf.HerculaneumTranscriptor.service;
 
-import com.mf.HerculaneumTranscriptor.exception.ResourceAlreadyExistsException;
 import com.mf.HerculaneumTranscriptor.exception.ResourceNotFoundException;
 import org.springframework.core.io.Resource;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -11,6 +10,7 @@ import scroll.dto.Scroll;
 import java.io.IOException;
 import java.net.URI;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Service layer defining business operations related to Scrolls.
@@ -32,43 +32,44 @@ public interface ScrollService {
    *
    * @param metadata The DTO containing the new scroll's details.
    * @param inkImage The ink prediction image file in PNG format.
-   * @return The newly created Scroll DTO.
-   * @throws com.mf.HerculaneumTranscriptor.exception.ResourceAlreadyExistsException if a scroll with the same ID already exists.
-   * @throws java.io.IOException if there is an error saving the image file.
+   * @return A future completed with the newly created Scroll DTO. The image is stored in the background.
+   * @throws org.springframework.dao.DataIntegrityViolationException if a scroll with the same ID already exists.
+   * @throws java.io.IOException if there is an error staging the image file.
    */
   @PreAuthorize("hasRole('ROOT') or hasRole('ADMIN')")
-  Scroll createScroll(NewScroll metadata, MultipartFile inkImage) throws ResourceAlreadyExistsException, IOException;
+  CompletableFuture<Scroll> createScroll(NewScroll metadata, MultipartFile inkImage) throws IOException;
 
   /**
    * Deletes a scroll and its associated image file from the system.
    * This is a destructive operation restricted to ROOT or ADMIN users.
    *
    * @param scrollId The unique identifier of the scroll to delete.
+   * @return A future completed once the scroll is deleted. The image is deleted in the background.
    * @throws com.mf.HerculaneumTranscriptor.exception.ResourceNotFoundException if the scroll does not exist.
    * @throws java.io.IOException if there is an error deleting the image file.
    */
   @PreAuthorize("hasRole('ROOT') or hasRole('ADMIN')")
-  void deleteScroll(String scrollId) throws ResourceNotFoundException, IOException;
+  CompletableFuture<Void> deleteScroll(String scrollId) throws ResourceNotFoundException, IOException;
 
   /**
    * Retrieves the ink prediction image URL for a specific scroll.
    * Any authenticated user can invoke this method.
    *
    * @param scrollId The unique identifier of the scroll.
-   * @return A URL response object holding the URL.
+   * @return A future completed with the image URL.
    * @throws com.mf.HerculaneumTranscriptor.exception.ResourceNotFoundException if the scroll does not exist.
    */
-  URI getScrollImageURL(String scrollId) throws ResourceNotFoundException;
+  CompletableFuture<URI> getScrollImageURL(String scrollId) throws ResourceNotFoundException;
 
   /**
-   * Retrieves a locally saved ink prediction image for a specific scroll as a loadable resource.
+   * Retrieves the stored ink prediction image for a specific scroll as a loadable resource.
    * Any authenticated user can download the image.
    *
    * @param scrollId The unique identifier of the scroll.
-   * @return A Spring Resource object pointing to the image file.
+   * @return A future completed with a Spring Resource object holding the image.
    * @throws com.mf.HerculaneumTranscriptor.exception.ResourceNotFoundException if the scroll or its image does not exist.
    */
-  Resource getScrollImage(String scrollId) throws ResourceNotFoundException, IOException;
+  CompletableFuture<Resource> getScrollImage(String scrollId) throws ResourceNotFoundException, IOException;
 
   /**
    * Updates the metadata of a specific scroll.
@@ -77,10 +78,10 @@ public interface ScrollService {
    * @param scrollId The unique identifier of the scroll to update.
    * @param newScroll The DTO containing the updated scroll's details.
    * @return The updated Scroll DTO.
-   * @throws com.mf.HerculaneumTranscriptor.exception.ResourceAlreadyExistsException if a scroll with the same ID already exists.
+   * @throws org.springframework.dao.DataIntegrityViolationException if a scroll with the same ID already exists.
    * @throws com.mf.HerculaneumTranscriptor.exception.ResourceNotFoundException if the scroll does not exist.
    */
   @PreAuthorize("hasRole('ROOT') or hasRole('ADMIN')")
-  Scroll updateScroll(String scrollId, NewScroll newScroll) throws ResourceAlreadyExistsException, ResourceNotFoundException;
+  Scroll updateScroll(String scrollId, NewScroll newScroll) throws ResourceNotFoundException;
 
 }
\ No newline at end of file
@@ -1,8 +1,9 @@
 package com.mf.HerculaneumTranscriptor.service;
 
 import com.mf.HerculaneumTranscriptor.dto.AuthenticationResponse;
+import com.mf.HerculaneumTranscriptor.dto.UserListing;
 import com.mf.HerculaneumTranscriptor.exception.ResourceNotFoundException;
-import com.mf.HerculaneumTranscriptor.exception.ResourceAlreadyExistsException;
+import org.springframework.http.MediaType;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.AuthenticationException;
 import user.dto.*;
@@ -20,12 +21,14 @@ public interface UserService {
    *
    * @param registrationInfo DTO containing new user details.
    * @return An AuthenticationResponse containing the JWT andUserInfo of the newly created user.
-   * @throws ResourceAlreadyExistsException if username or email is taken.
+   * @throws org.springframework.dao.DataIntegrityViolationException if the username is taken.
    */
-  AuthenticationResponse registerNewUser(UserRegisterInfo registrationInfo) throws ResourceAlreadyExistsException;
+  AuthenticationResponse registerNewUser(UserRegisterInfo registrationInfo);
 
   /**
    * Authenticates a user and generates an access token.
+   * If the stored password hash was made with another algorithm or a lower cost than the current ones,
+   * it is replaced by a new hash of the same password.
    *
    * @param loginInfo DTO containing login credentials.
    * @return An AuthenticationResponse containing the JWT and user info.
@@ -44,14 +47,42 @@ public interface UserService {
 
 /* <<<<<<<<<<<<<<  ✨ Windsurf Command ⭐ >>>>>>>>>>>>>>>> */
   /**
-   * Finds all users in the system, starting from the given index, returning at most PAGE_SIZE users.
+   * Finds users in the system ordered by username, returning at most PAGE_SIZE users.
    * PAGE_SIZE is defined in the application.yml file as api.user.pageSize.
+   * Listing continues after the user encoded in the cursor; when no cursor is given, it starts
+   * from the given index instead, which is slower for deep indexes and kept for older clients.
    *
-   * @param index The index of the first user to return.
-   * @return A list of UserInfo objects containing the public information of all users.
+   * @param index The index of the first user to return, used only when no cursor is given.
+   * @param cursor The opaque cursor returned along the previous slice of users.
+   * @return A UserListing with the public information of the users and the cursor of the next slice, if any.
+   * @throws javax.validation.ValidationException if the cursor is malformed.
    */
 /* <<<<<<<<<<  24851821-db3c-4047-aa39-9a7277405ee4  >>>>>>>>>>> */
-  List<UserInfo> findAllUsers(Integer index);
+  UserListing findAllUsers(Integer index, String cursor);
+
+  /**
+   * Searches users by username, first name, last name or contact, returning at most SEARCH_LIMIT users.
+   * SEARCH_LIMIT is defined in the application.yml file as api.user.searchLimit.
+   * The search is answered from an in-memory index, without querying the database.
+   *
+   * @param query The text to search for, ignoring case.
+   * @return A list of UserInfo objects of the matching users, best matches first.
+   */
+  List<UserInfo> searchUsers(String query);
+
+  /**
+   * Registers users in bulk from an NDJSON or CSV document. Only ROOT or ADMIN users can import users.
+   * Rows are validated and checked for taken usernames independently, so a failing row does not
+   * prevent the others from being created. Created users get 'read' permissions.
+   * At most IMPORT_MAX_ROWS rows are accepted, defined in the application.yml file as api.user.import.maxRows.
+   *
+   * @param content The NDJSON or CSV document.
+   * @param contentType The media type of the document, application/x-ndjson or text/csv.
+   * @return The outcome of each row, in the order they appear in the document.
+   * @throws javax.validation.ValidationException if there are too many rows or the CSV header is malformed.
+   */
+  @PreAuthorize("hasRole('ROOT') or hasRole('ADMIN')")
+  List<UserImportResult> importUsers(String content, MediaType contentType);
   /**
    * Deletes a user from the system.
    * Regular users can delete their own account.
@@ -71,10 +102,10 @@ public interface UserService {
    * @param username The username of the user to update.
    * @param updateInfo DTO with the new profile information.
    * @throws com.mf.HerculaneumTranscriptor.exception.ResourceNotFoundException if no user is found.
-   * @throws ResourceAlreadyExistsException if desired new username is taken.
+   * @throws org.springframework.dao.DataIntegrityViolationException if desired new username is taken.
    */
   @PreAuthorize("hasRole('ROOT') or @securityLogic.hasAuthorityOver(authentication, #username)")
-  void updateUserProfile(String username, ChangeUserInfo updateInfo) throws ResourceNotFoundException, ResourceAlreadyExistsException;
+  void updateUserProfile(String username, ChangeUserInfo updateInfo) throws ResourceNotFoundException;
 
   /**
    * Changes the permission level for a given user.
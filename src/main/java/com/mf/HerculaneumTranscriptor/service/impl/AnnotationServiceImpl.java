@@ -1,74 +1,180 @@
 package com.mf.HerculaneumTranscriptor.service.impl;
 
 import annotation.dto.BoxRegion;
+import annotation.dto.Coordinates;
 import annotation.dto.NewBoxRegion;
 import annotation.dto.RegionUpdateResponse;
 import annotation.dto.Vote;
+import com.mf.HerculaneumTranscriptor.datasource.ReadRouting;
 import com.mf.HerculaneumTranscriptor.domain.Annotation;
+import com.mf.HerculaneumTranscriptor.domain.AnnotationRevision;
+import com.mf.HerculaneumTranscriptor.domain.ImageMetadata;
 import com.mf.HerculaneumTranscriptor.domain.Scroll;
 import com.mf.HerculaneumTranscriptor.domain.User;
 import com.mf.HerculaneumTranscriptor.domain.mapper.AnnotationMapper;
+import com.mf.HerculaneumTranscriptor.exception.ResourceModifiedException;
 import com.mf.HerculaneumTranscriptor.exception.ResourceNotFoundException;
+import com.mf.HerculaneumTranscriptor.history.HistoricRegion;
+import com.mf.HerculaneumTranscriptor.history.RegionHistory;
+import com.mf.HerculaneumTranscriptor.history.RegionState;
+import com.mf.HerculaneumTranscriptor.history.ScrollTimeline;
+import com.mf.HerculaneumTranscriptor.profiling.RegionSyncEvent;
+import com.mf.HerculaneumTranscriptor.profiling.RegionVoteEvent;
 import com.mf.HerculaneumTranscriptor.repository.AnnotationRepository;
+import com.mf.HerculaneumTranscriptor.repository.CommentRepository;
 import com.mf.HerculaneumTranscriptor.repository.ScrollRepository;
+import com.mf.HerculaneumTranscriptor.repository.UserRepository;
 import com.mf.HerculaneumTranscriptor.repository.VoteRepository;
 import com.mf.HerculaneumTranscriptor.security.JwtUserDetails;
 import com.mf.HerculaneumTranscriptor.service.AnnotationService;
+import io.micrometer.observation.annotation.Observed;
 import lombok.RequiredArgsConstructor;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.retry.RetryContext;
+import org.springframework.retry.annotation.Backoff;
+import org.springframework.retry.annotation.Retryable;
+import org.springframework.retry.support.RetrySynchronizationManager;
 import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import javax.validation.ValidationException;
+
 import java.time.Instant;
 import java.util.Date;
 import java.util.List;
+import java.util.Objects;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
 @Service
+@Observed
 @RequiredArgsConstructor
 public class AnnotationServiceImpl implements AnnotationService {
   private final AnnotationRepository annotationRepository;
+  private final CommentRepository commentRepository;
   private final ScrollRepository scrollRepository;
   private final AnnotationMapper annotationMapper;
   private final VoteRepository voteRepository;
+  private final UserRepository userRepository;
+  private final ReadRouting readRouting;
+  private final RegionHistory regionHistory;
+  private final ScrollTimeline scrollTimeline;
 
   @Override
-  public RegionUpdateResponse getScrollRegions(String scrollId, Date since) throws ResourceNotFoundException {
-    // Verify that the scroll exists.
-    if (!scrollRepository.existsByScrollId(scrollId)) {
-      throw new ResourceNotFoundException("Scroll not found with ID: " + scrollId);
-    }
+  @Transactional(readOnly = true)
+  public RegionUpdateResponse getScrollRegions(String scrollId, Date since, Date asOf) throws ResourceNotFoundException {
+    if (since != null && asOf != null)
+      throw new ValidationException("Regions can be fetched either since or as of a time, not both");
+
+    if (asOf != null)
+      return getScrollRegionsAsOf(scrollId, asOf);
+
+    RegionSyncEvent event = new RegionSyncEvent();
+    event.begin();
+    long queryStart = System.nanoTime();
 
     // Decide which repository method to call based on the 'since' parameter.
     List<Annotation> annotations;
     if (since == null) {
       annotations = annotationRepository.findByScrollScrollId(scrollId);
     } else {
-      annotations = annotationRepository.findByScrollScrollIdAndUpdatedAtAfter(scrollId, since);
+      annotations = annotationRepository.findByScrollScrollIdAndUpdatedAtAfter(scrollId, since.toInstant());
+    }
+
+    // Verify that the scroll exists, which only needs checking when it has no regions to return.
+    if (annotations.isEmpty() && !scrollRepository.existsByScrollId(scrollId)) {
+      throw new ResourceNotFoundException("Scroll not found with ID: " + scrollId);
     }
 
+    long mappingStart = System.nanoTime();
     List<BoxRegion> regionDtos = annotations.stream()
             .map(annotationMapper::annotationEntityToBoxRegionDto)
             .collect(Collectors.toList());
 
+    if (event.shouldCommit()) {
+      event.scrollId = scrollId;
+      event.delta = since != null;
+      event.rows = annotations.size();
+      event.queryTime = mappingStart - queryStart;
+      event.mappingTime = System.nanoTime() - mappingStart;
+      event.commit();
+    }
+
     // Build the final response object.
     RegionUpdateResponse response = new RegionUpdateResponse();
     response.setRegions(regionDtos);
     // Set the timestamp for the next client sync.
-    response.setLastSyncTimestamp(Date.from(Instant.now()));
+    // When read from a replica, changes made shortly before may not be there yet, so the next sync looks back that far.
+    response.setLastSyncTimestamp(Date.from(Instant.now().minus(readRouting.staleness())));
+
+    return response;
+  }
+
+  /**
+   * Rebuilds the regions of a scroll as they stood at a past time from their history.
+   */
+  private RegionUpdateResponse getScrollRegionsAsOf(String scrollId, Date asOf) throws ResourceNotFoundException {
+    Scroll scroll = scrollRepository.findByScrollId(scrollId)
+            .orElseThrow(() -> new ResourceNotFoundException("Scroll not found with ID: " + scrollId));
+
+    List<BoxRegion> regionDtos = scrollTimeline.regionsAt(scroll.getId(), asOf.toInstant()).stream()
+            .map(AnnotationServiceImpl::historicRegionToBoxRegionDto)
+            .collect(Collectors.toList());
+
+    RegionUpdateResponse response = new RegionUpdateResponse();
+    response.setRegions(regionDtos);
+    response.setLastSyncTimestamp(asOf);
 
     return response;
   }
 
+  private static BoxRegion historicRegionToBoxRegionDto(HistoricRegion region) {
+    RegionState state = region.state();
+    Coordinates coordinates = state.x() == null ? null :
+            new Coordinates().x(state.x()).y(state.y()).width(state.width()).height(state.height());
+
+    // Comments are not part of the history, so their count is left out
+    return new BoxRegion()
+            .regionId(region.regionId())
+            .authorUsername(state.author())
+            .createdAt(state.createdAt() != null ? Date.from(state.createdAt()) : null)
+            .updatedAt(Date.from(region.updatedAt()))
+            .basicInfo(new NewBoxRegion(coordinates, state.transcription()))
+            .certaintyScore(state.certaintyScore())
+            .version(region.revision());
+  }
+
+  /**
+   * Checks that a region lies within the image of its scroll.
+   * Regions of scrolls whose image dimensions are unknown are not checked.
+   *
+   * @param scroll The scroll of the region.
+   * @param coordinates The position and size of the region.
+   * @throws ValidationException if the region exceeds the image.
+   */
+  private void checkWithinImage(Scroll scroll, Coordinates coordinates) throws ValidationException {
+    ImageMetadata image = scroll.getImageMetadata();
+    if (image == null || image.getWidth() == null || image.getHeight() == null || coordinates == null)
+      return;
+
+    if (coordinates.getX() < 0 || coordinates.getY() < 0 || coordinates.getWidth() < 0 || coordinates.getHeight() < 0 ||
+            coordinates.getX() + coordinates.getWidth() > image.getWidth() ||
+            coordinates.getY() + coordinates.getHeight() > image.getHeight())
+      throw new ValidationException("Region does not lie within the " + image.getWidth() + "x" + image.getHeight() + " scroll image");
+  }
+
   @Override
+  @Transactional // The region is only created along with its first revision
   public BoxRegion createRegion(String scrollId, NewBoxRegion newRegion) throws ResourceNotFoundException {
     // Find the parent scroll. If it doesn't exist, this will throw a 404.
     Scroll parentScroll = scrollRepository.findByScrollId(scrollId)
             .orElseThrow(() -> new ResourceNotFoundException("Cannot create region: scroll not found"));
 
+    checkWithinImage(parentScroll, newRegion.getCoordinates());
+
     // Find the author of the annotation from the security context.
     Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
     User author;
@@ -87,13 +193,20 @@ public class AnnotationServiceImpl implements AnnotationService {
 
     // Save the annotation to the database.
     Annotation savedAnnotation = annotationRepository.save(newAnnotation);
+    regionHistory.record(savedAnnotation, AnnotationRevision.Operation.CREATE, null);
 
     // Map the saved entity, which contains the auto-generated ID and timestamps.
     return annotationMapper.annotationEntityToBoxRegionDto(savedAnnotation);
   }
 
   @Override
-  public BoxRegion updateRegion(String scrollId, UUID regionId, NewBoxRegion updatedRegion) throws ResourceNotFoundException {
+  @Transactional
+  // A region changed by another transaction between reading and writing it is read again. If the update was
+  // based on a version, that is then reported as a conflict, otherwise the update is applied to the new version.
+  @Retryable(retryFor = ObjectOptimisticLockingFailureException.class, maxAttemptsExpression = "${api.regions.maxAttempts}",
+          backoff = @Backoff(delayExpression = "${api.regions.retryBackoff}", multiplier = 2, random = true))
+  public BoxRegion updateRegion(String scrollId, UUID regionId, NewBoxRegion updatedRegion, Long expectedVersion)
+          throws ResourceNotFoundException {
     // Find the annotation by its unique internal ID.
     Annotation annotation = annotationRepository.findByRegionId(regionId)
             .orElseThrow(() -> new ResourceNotFoundException("Cannot update region: region not found"));
@@ -102,16 +215,26 @@ public class AnnotationServiceImpl implements AnnotationService {
     if (!annotation.getScroll().getScrollId().equals(scrollId))
       throw new ResourceNotFoundException("Cannot update region: it does not belong to specified scroll");
 
+    // Never overwrite changes the client has not seen
+    if (expectedVersion != null && !expectedVersion.equals(annotation.getVersion()))
+      throw new ResourceModifiedException("Region was changed since version " + expectedVersion,
+              annotationMapper.annotationEntityToBoxRegionDto(annotation));
+
+    checkWithinImage(annotation.getScroll(), updatedRegion.getCoordinates());
+    RegionState before = RegionState.of(annotation);
+
     // Update fields with DTO information
     annotation.setCoordinates(annotationMapper.coordinatesDtoToEntityCoordinates(updatedRegion.getCoordinates()));
     annotation.setTranscription(updatedRegion.getTranscription());
 
-    // Save and return updated annotation
-    Annotation savedAnnotation = annotationRepository.save(annotation);
+    // Save and return updated annotation, flushed so that it carries its new version
+    Annotation savedAnnotation = annotationRepository.saveAndFlush(annotation);
+    regionHistory.record(savedAnnotation, AnnotationRevision.Operation.UPDATE, before);
     return annotationMapper.annotationEntityToBoxRegionDto(savedAnnotation);
   }
 
   @Override
+  @Transactional
   public void deleteRegion(String scrollId, UUID regionId) throws ResourceNotFoundException {
     // Find the annotation by its unique internal ID.
     Annotation annotation = annotationRepository.findByRegionId(regionId)
@@ -121,12 +244,19 @@ public class AnnotationServiceImpl implements AnnotationService {
     if (!annotation.getScroll().getScrollId().equals(scrollId))
       throw new ResourceNotFoundException("Cannot delete region: it does not belong to specified scroll");
 
-    // Delete the annotation from the database.
+    // Delete the annotation from the database, after its comments and votes which reference it.
+    commentRepository.deleteByAnnotationId(annotation.getId());
+    voteRepository.deleteByAnnotationId(annotation.getId());
     annotationRepository.delete(annotation);
+    regionHistory.record(annotation, AnnotationRevision.Operation.DELETE, RegionState.of(annotation));
   }
 
   @Override
   @Transactional // This is a critical multi-step write operation
+  // Concurrent votes on the same region make all but one of them fail to update its certainty.
+  // They are retried from the start, so the average includes the votes committed meanwhile.
+  @Retryable(retryFor = ObjectOptimisticLockingFailureException.class, maxAttemptsExpression = "${api.regions.maxAttempts}",
+          backoff = @Backoff(delayExpression = "${api.regions.retryBackoff}", multiplier = 2, random = true))
   public BoxRegion voteOnRegion(String scrollId, UUID regionId, Vote voteDto) throws ResourceNotFoundException {
     // Find the annotation by its unique internal ID.
     Annotation annotation = annotationRepository.findByRegionId(regionId)
@@ -146,18 +276,39 @@ public class AnnotationServiceImpl implements AnnotationService {
 
     com.mf.HerculaneumTranscriptor.domain.Vote vote  = voteRepository.findByUserAndAnnotation(caster, annotation).orElse(null);
 
+    // New votes are persisted along with their key, so the caster must belong to this persistence context
+    // rather than to the one of the JWT filter
     if (vote == null)
-      vote = new com.mf.HerculaneumTranscriptor.domain.Vote(caster, annotation, voteDto.getVote());
+      vote = new com.mf.HerculaneumTranscriptor.domain.Vote(userRepository.getReferenceById(caster.getId()), annotation,
+              voteDto.getVote());
     else
       vote.setVoteValue(voteDto.getVote());
 
+    RegionVoteEvent event = new RegionVoteEvent();
+    event.begin();
+    long aggregateStart = System.nanoTime();
+
     // Create or update the cast vote
     voteRepository.save(vote);
 
     // Calculate and update annotation certainty
+    RegionState before = RegionState.of(annotation);
     Float avgCertainty = voteRepository.calculateAverageVote(annotation.getId());
     annotation.setCertaintyScore(avgCertainty != null ? avgCertainty : -1.0f);
-    Annotation updatedAnnotation = annotationRepository.save(annotation);
+
+    long lockStart = System.nanoTime();
+    Annotation updatedAnnotation = annotationRepository.saveAndFlush(annotation);
+    regionHistory.record(updatedAnnotation, AnnotationRevision.Operation.VOTE, before);
+
+    if (event.shouldCommit()) {
+      RetryContext retry = RetrySynchronizationManager.getContext();
+      event.scrollId = scrollId;
+      event.regionId = Objects.toString(regionId, null);
+      event.attempt = retry != null ? retry.getRetryCount() + 1 : 1;
+      event.aggregateTime = lockStart - aggregateStart;
+      event.lockWait = System.nanoTime() - lockStart;
+      event.commit();
+    }
 
     return annotationMapper.annotationEntityToBoxRegionDto(updatedAnnotation);
   }
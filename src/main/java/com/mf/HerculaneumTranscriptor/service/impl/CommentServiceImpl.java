@@ -0,0 +1,166 @@
+package com.mf.HerculaneumTranscriptor.service.impl;
+
+import com.mf.HerculaneumTranscriptor.datasource.ReadRouting;
+import com.mf.HerculaneumTranscriptor.domain.Annotation;
+import com.mf.HerculaneumTranscriptor.domain.Comment;
+import com.mf.HerculaneumTranscriptor.domain.User;
+import com.mf.HerculaneumTranscriptor.domain.mapper.CommentMapper;
+import com.mf.HerculaneumTranscriptor.exception.ResourceNotFoundException;
+import com.mf.HerculaneumTranscriptor.repository.AnnotationRepository;
+import com.mf.HerculaneumTranscriptor.repository.CommentRepository;
+import com.mf.HerculaneumTranscriptor.security.JwtUserDetails;
+import com.mf.HerculaneumTranscriptor.service.CommentService;
+import comment.dto.CommentContent;
+import comment.dto.CommentUpdateResponse;
+import io.micrometer.observation.annotation.Observed;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.validation.ValidationException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Date;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+@Service
+@Observed
+@RequiredArgsConstructor
+public class CommentServiceImpl implements CommentService {
+  @Value( "${api.comments.pageSize}" )
+  private Integer PAGE_SIZE;
+  @Value( "${api.comments.syncOverlap}" )
+  private Duration SYNC_OVERLAP;
+
+  private final CommentRepository commentRepository;
+  private final AnnotationRepository annotationRepository;
+  private final CommentMapper commentMapper;
+  private final ReadRouting readRouting;
+
+  /**
+   * Finds a region, making sure it belongs to the given scroll.
+   */
+  private Annotation findRegion(String scrollId, UUID regionId) throws ResourceNotFoundException {
+    Annotation annotation = annotationRepository.findByRegionId(regionId)
+            .orElseThrow(() -> new ResourceNotFoundException("Region not found"));
+
+    if (!annotation.getScroll().getScrollId().equals(scrollId))
+      throw new ResourceNotFoundException("Region does not belong to specified scroll");
+
+    return annotation;
+  }
+
+  /**
+   * Encodes the id of the last synced comment into an opaque, URL-safe cursor.
+   */
+  private static String encodeCursor(long id) {
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(Long.toString(id).getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Decodes a cursor back into the id of the last synced comment.
+   */
+  private static long decodeCursor(String cursor) {
+    try {
+      long id = Long.parseLong(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8));
+      if (id < 0)
+        throw new IllegalArgumentException();
+      return id;
+    } catch (IllegalArgumentException e) {
+      throw new ValidationException("Malformed cursor: " + cursor);
+    }
+  }
+
+  @Override
+  @Transactional(readOnly = true)
+  public CommentUpdateResponse getRegionComments(String scrollId, UUID regionId, Date since, String cursor)
+          throws ResourceNotFoundException {
+    Annotation annotation = findRegion(scrollId, regionId);
+    Instant now = Instant.now();
+
+    // Comments are synced in the order they were numbered, starting right after the last one the client has
+    long after;
+    if (cursor != null)
+      after = decodeCursor(cursor);
+    else if (since != null)
+      after = commentRepository.findLastIdCreatedUpTo(annotation.getId(), since.toInstant());
+    else
+      after = 0;
+
+    Slice<Comment> page = commentRepository.findAllAfter(annotation.getId(), after, PageRequest.of(0, PAGE_SIZE));
+
+    long next = after;
+    if (page.hasNext())
+      next = page.getContent().getLast().getId();
+    else {
+      // Comments are numbered when inserted but only seen once committed (and replicated), so a comment still being
+      // committed may be numbered before the last ones returned. The cursor is left before the most recent comments,
+      // which are returned again by the next poll along with any comment that was committed late.
+      Instant settled = now.minus(SYNC_OVERLAP).minus(readRouting.staleness());
+      for (Comment comment : page) {
+        if (comment.getCreatedAt().isAfter(settled))
+          break;
+        next = comment.getId();
+      }
+    }
+
+    // Build the final response object.
+    CommentUpdateResponse response = new CommentUpdateResponse();
+    response.setComments(page.getContent().stream()
+            .map(commentMapper::commentEntityToCommentDto)
+            .collect(Collectors.toList()));
+    response.setNextCursor(encodeCursor(next));
+    response.setHasMore(page.hasNext());
+    // Set the timestamp for clients that still sync with it, looking back as far as regions do.
+    response.setLastSyncTimestamp(Date.from(now.minus(readRouting.staleness())));
+
+    return response;
+  }
+
+  @Override
+  @Transactional
+  public comment.dto.Comment addComment(String scrollId, UUID regionId, CommentContent content) throws ResourceNotFoundException {
+    Annotation annotation = findRegion(scrollId, regionId);
+
+    // Find the author of the comment from the security context.
+    Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+    User author;
+
+    if (authentication.getPrincipal() instanceof JwtUserDetails)
+      author = ((JwtUserDetails) authentication.getPrincipal()).getUser();
+    else throw new BadCredentialsException("User not authenticated through a JWT");
+
+    Comment comment = new Comment(null, UUID.randomUUID(), annotation, author, content.getText(), null);
+    Comment savedComment = commentRepository.save(comment);
+
+    // Counted in place instead of through the loaded region, which would make concurrent comments conflict
+    annotationRepository.addToCommentCount(annotation.getId(), 1, Instant.now());
+
+    return commentMapper.commentEntityToCommentDto(savedComment);
+  }
+
+  @Override
+  @Transactional
+  public void deleteComment(String scrollId, UUID regionId, UUID commentId) throws ResourceNotFoundException {
+    Annotation annotation = findRegion(scrollId, regionId);
+
+    Comment comment = commentRepository.findByCommentId(commentId)
+            .orElseThrow(() -> new ResourceNotFoundException("Comment not found"));
+
+    // Make sure the comment belongs to the region.
+    if (!comment.getAnnotation().getId().equals(annotation.getId()))
+      throw new ResourceNotFoundException("Comment does not belong to specified region");
+
+    commentRepository.delete(comment);
+    annotationRepository.addToCommentCount(annotation.getId(), -1, Instant.now());
+  }
+}
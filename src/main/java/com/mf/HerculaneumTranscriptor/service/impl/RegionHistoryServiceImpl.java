@@ -0,0 +1,87 @@
+package com.mf.HerculaneumTranscriptor.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mf.HerculaneumTranscriptor.domain.AnnotationRevision;
+import com.mf.HerculaneumTranscriptor.domain.Scroll;
+import com.mf.HerculaneumTranscriptor.exception.ResourceNotFoundException;
+import com.mf.HerculaneumTranscriptor.history.RevisionStream;
+import com.mf.HerculaneumTranscriptor.repository.AnnotationRepository;
+import com.mf.HerculaneumTranscriptor.repository.AnnotationRevisionRepository;
+import com.mf.HerculaneumTranscriptor.repository.ScrollRepository;
+import com.mf.HerculaneumTranscriptor.service.RegionHistoryService;
+import io.micrometer.observation.annotation.Observed;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.Resource;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.UUID;
+
+@Service
+@Observed
+public class RegionHistoryServiceImpl implements RegionHistoryService {
+  @Value( "${api.regions.history.pageSize}" )
+  private Integer PAGE_SIZE;
+
+  private final AnnotationRevisionRepository revisionRepository;
+  private final AnnotationRepository annotationRepository;
+  private final ScrollRepository scrollRepository;
+  private final ObjectMapper objectMapper;
+  // Pages are read while the response is written, after this service has returned
+  private final TransactionTemplate readOnlyTransaction;
+
+  public RegionHistoryServiceImpl(AnnotationRevisionRepository revisionRepository, AnnotationRepository annotationRepository,
+                                  ScrollRepository scrollRepository, ObjectMapper objectMapper,
+                                  PlatformTransactionManager transactionManager) {
+    this.revisionRepository = revisionRepository;
+    this.annotationRepository = annotationRepository;
+    this.scrollRepository = scrollRepository;
+    this.objectMapper = objectMapper;
+    this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+    this.readOnlyTransaction.setReadOnly(true);
+  }
+
+  private Scroll findScroll(String scrollId) throws ResourceNotFoundException {
+    return scrollRepository.findByScrollId(scrollId)
+            .orElseThrow(() -> new ResourceNotFoundException("Scroll not found with ID: " + scrollId));
+  }
+
+  @Override
+  public Resource streamRegionHistory(String scrollId, UUID regionId, Long fromRevision) throws ResourceNotFoundException {
+    Long id = findScroll(scrollId).getId();
+
+    // Deleted regions only remain in their history
+    boolean exists = annotationRepository.findByRegionId(regionId)
+            .map(annotation -> annotation.getScroll().getId().equals(id))
+            .orElseGet(() -> revisionRepository.existsByScrollIdAndRegionId(id, regionId));
+    if (!exists)
+      throw new ResourceNotFoundException("Region not found in scroll " + scrollId);
+
+    // Later revisions are rebuilt from the last snapshot before the requested one
+    long firstRevision = 0;
+    if (fromRevision != null)
+      firstRevision = revisionRepository
+              .findFirstByScrollIdAndRegionIdAndSnapshotTrueAndRevisionLessThanEqualOrderByRevisionDesc(id, regionId, fromRevision)
+              .map(AnnotationRevision::getRevision)
+              .orElse(0L);
+
+    RevisionStream stream = new RevisionStream((lastRegionId, lastRevision) -> readOnlyTransaction.execute(status ->
+            revisionRepository.findByScrollIdAndRegionIdAndRevisionGreaterThanOrderByRevisionAsc(
+                    id, regionId, lastRevision, PageRequest.ofSize(PAGE_SIZE))),
+            objectMapper, regionId, firstRevision, fromRevision != null ? fromRevision : 0);
+    return new InputStreamResource(stream.toInputStream());
+  }
+
+  @Override
+  public Resource streamScrollHistory(String scrollId) throws ResourceNotFoundException {
+    Long id = findScroll(scrollId).getId();
+
+    RevisionStream stream = new RevisionStream((lastRegionId, lastRevision) -> readOnlyTransaction.execute(status ->
+            revisionRepository.findScrollRevisionsAfter(id, lastRegionId, lastRevision, PageRequest.ofSize(PAGE_SIZE))),
+            objectMapper, new UUID(0, 0), 0, 0);
+    return new InputStreamResource(stream.toInputStream());
+  }
+}
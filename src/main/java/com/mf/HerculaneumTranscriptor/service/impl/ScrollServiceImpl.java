@@ -1,206 +1,175 @@
 package com.mf.HerculaneumTranscriptor.service.impl;
 
-import com.cloudinary.Cloudinary;
-import com.cloudinary.utils.ObjectUtils;
+import com.mf.HerculaneumTranscriptor.configuration.TracingConfiguration;
+import com.mf.HerculaneumTranscriptor.domain.ImageMetadata;
 import com.mf.HerculaneumTranscriptor.domain.mapper.ScrollMapper;
-import com.mf.HerculaneumTranscriptor.exception.ResourceAlreadyExistsException;
 import com.mf.HerculaneumTranscriptor.exception.ResourceNotFoundException;
+import com.mf.HerculaneumTranscriptor.profiling.ScrollImageEvent;
+import com.mf.HerculaneumTranscriptor.repository.AnnotationRepository;
+import com.mf.HerculaneumTranscriptor.repository.CommentRepository;
 import com.mf.HerculaneumTranscriptor.repository.ScrollRepository;
+import com.mf.HerculaneumTranscriptor.repository.VoteRepository;
 import com.mf.HerculaneumTranscriptor.service.ScrollService;
+import com.mf.HerculaneumTranscriptor.storage.ImageMetadataInputStream;
+import com.mf.HerculaneumTranscriptor.storage.LocalScrollImageStorage;
+import com.mf.HerculaneumTranscriptor.storage.ScrollImageCache;
+import com.mf.HerculaneumTranscriptor.storage.ScrollImageStorage;
+import com.mf.HerculaneumTranscriptor.storage.StorageOutbox;
+import io.micrometer.observation.annotation.Observed;
 import lombok.RequiredArgsConstructor;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.InputStreamResource;
 import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 import org.springframework.web.multipart.MultipartFile;
-import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 import scroll.dto.NewScroll;
 import scroll.dto.Scroll;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.net.MalformedURLException;
 import java.net.URI;
-import java.net.URISyntaxException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.StandardCopyOption;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.StreamSupport;
 
 @Service
+@Observed
 @RequiredArgsConstructor
 public class ScrollServiceImpl implements ScrollService {
   private final ScrollRepository scrollRepository;
+  private final AnnotationRepository annotationRepository;
+  private final VoteRepository voteRepository;
+  private final CommentRepository commentRepository;
   private final ScrollMapper scrollMapper;
-  private final Cloudinary cloudinary;
-
-  @Value("${api.scrolls.storageDirectory}")
-  private Path storageLocation;
-  @Value("${api.scrolls.useCloud}")
-  private Boolean useCloudStorage;
-
-  /**
-   * Validates if a given string is a valid URL.
-   *
-   * @param urlString The string to validate.
-   * @return true if the string is a valid URL, false otherwise.
-   */
-  boolean isValidURL(String urlString) {
-    if (urlString == null || urlString.isBlank()) {
-      return false;
-    }
-    try {
-      URI uri = new URI(urlString);
-
-      // Check if the URI has a scheme and host.
-      if (uri.getScheme() == null || uri.getHost() == null)
-        return false;
-
-      uri.toURL();
+  private final ScrollImageStorage scrollImageStorage;
+  private final StorageOutbox storageOutbox;
+  private final ScrollImageCache scrollImageCache;
 
-      return true;
-    } catch (URISyntaxException | MalformedURLException | IllegalArgumentException e) {
-      // If any part fails, it's not a valid URL.
-      return false;
-    }
+  private com.mf.HerculaneumTranscriptor.domain.Scroll findScroll(String scrollId) throws ResourceNotFoundException {
+    return scrollRepository.findByScrollId(scrollId)
+            .orElseThrow(() -> new ResourceNotFoundException("Scroll not found"));
   }
 
   @Override
+  @Transactional(readOnly = true)
   public List<Scroll> getAllScrolls() {
     return StreamSupport.stream(scrollRepository.findAll().spliterator(), false).map(scrollMapper::scrollEntityToScrollDto).toList();
   }
 
   @Override
-  public Scroll createScroll(NewScroll metadata, MultipartFile inkImage) throws ResourceAlreadyExistsException, IOException {
-    if (scrollRepository.existsByScrollId(metadata.getScrollId())) {
-      throw new ResourceAlreadyExistsException("Scroll with ID '" + metadata.getScrollId() + "' already exists.");
-    }
-
+  @Transactional // The scroll and the storage of its image are recorded together
+  public CompletableFuture<Scroll> createScroll(NewScroll metadata, MultipartFile inkImage) throws IOException {
     com.mf.HerculaneumTranscriptor.domain.Scroll newScroll = scrollMapper.newScrollDtoToScrollEntity(metadata);
 
-    String imgPath;
-    if (useCloudStorage){
-      Map uploadResult = cloudinary.uploader().upload(inkImage.getBytes(),
-              ObjectUtils.asMap(
-                      // public id is the scroll id
-                      "public_id", metadata.getScrollId(),
-                      "type", "private",
-                      "folder", storageLocation.toString()
-              ));
-
-      // Get the secure URL of the uploaded image from the Cloudinary response
-      imgPath = uploadResult.get("secure_url").toString();
-
-    } else {
-      if (!Files.exists(storageLocation))
-        Files.createDirectories(storageLocation);
-
-      String fileExtension = StringUtils.getFilenameExtension(inkImage.getOriginalFilename());
-      imgPath = metadata.getScrollId() + "." + fileExtension;
-      Path destinationFile = storageLocation.resolve(imgPath).normalize();
-
-      // Use a try-with-resources block to ensure the input stream is closed automatically
-      try (InputStream inputStream = inkImage.getInputStream()) {
-        // Copy the file's input stream to the target location.
-        // REPLACE_EXISTING ensures that if a file with the same name somehow exists, it's overwritten.
-        Files.copy(inputStream, destinationFile, StandardCopyOption.REPLACE_EXISTING);
-      }
+    String fileExtension = StringUtils.getFilenameExtension(inkImage.getOriginalFilename());
+    String location = scrollImageStorage.locate(metadata.getScrollId(), fileExtension != null ? fileExtension : "png");
+    newScroll.setImagePath(location);
+
+    // The image is staged for upload and its headers and checksum are read in the same pass.
+    // It is uploaded in the background once the scroll is committed.
+    ScrollImageEvent event = new ScrollImageEvent();
+    event.begin();
+    ImageMetadata imageMetadata;
+    try (ImageMetadataInputStream image = new ImageMetadataInputStream(inkImage.getInputStream())) {
+      storageOutbox.enqueuePut(location, image);
+      imageMetadata = image.getMetadata();
     }
+    commit(event, metadata.getScrollId(), ScrollImageEvent.UPLOAD, inkImage.getSize());
+    newScroll.setImageMetadata(imageMetadata);
 
-    newScroll.setImagePath(imgPath);
+    // Important to return savedScroll as creation date is set automatically by the DB.
+    // The insert is flushed right away so a taken scroll ID is rejected by its unique constraint here,
+    // rolling back the staged image, instead of when an enclosing transaction commits.
+    com.mf.HerculaneumTranscriptor.domain.Scroll savedScroll = scrollRepository.saveAndFlush(newScroll);
 
-    // Important to return savedScroll as creation date is set automatically by the DB
-    com.mf.HerculaneumTranscriptor.domain.Scroll savedScroll = scrollRepository.save(newScroll);
-    return scrollMapper.scrollEntityToScrollDto(savedScroll);
+    return CompletableFuture.completedFuture(scrollMapper.scrollEntityToScrollDto(savedScroll));
   }
 
   @Override
-  public void deleteScroll(String scrollId) throws ResourceNotFoundException, IOException {
-    com.mf.HerculaneumTranscriptor.domain.Scroll scroll = scrollRepository.findByScrollId(scrollId)
-            .orElseThrow(() -> new ResourceNotFoundException("Scroll not found"));
-
-    scrollRepository.delete(scroll); // Deletes the metadata from the DB
+  @Transactional // The scroll, its regions and its image are deleted together
+  public CompletableFuture<Void> deleteScroll(String scrollId) throws ResourceNotFoundException, IOException {
+    com.mf.HerculaneumTranscriptor.domain.Scroll scroll = findScroll(scrollId);
 
-    String imagePath = scroll.getImagePath();
+    // Regions, their votes and comments are deleted with one statement each instead of being loaded and deleted one
+    // by one, so scrolls with many regions are deleted in constant memory. Votes and comments go first as they
+    // reference the regions.
+    voteRepository.deleteByScrollId(scroll.getId());
+    commentRepository.deleteByScrollId(scroll.getId());
+    annotationRepository.deleteByScrollId(scroll.getId());
 
-    // If instead of a path we have a URL, delete image from cloud storage
-    if (isValidURL(imagePath)){
-      // We delete the image from Cloudinary using its public_id (its folder + scrollId)
-      String publicId = storageLocation.toString() + "/" + scrollId;
-      cloudinary.uploader().destroy(publicId, ObjectUtils.asMap("resource_type", "image", "invalidate", true, "type", "private"));
-      return;
-    }
+    // Deletes the metadata from the DB, it has no regions left to cascade to.
+    // The scroll was detached by the deletion of the regions, so it is loaded again by its ID.
+    scrollRepository.delete(scroll);
 
-    Path filePath = storageLocation.resolve(imagePath).normalize();
+    // The image is deleted in the background once the deletion of the scroll is committed
+    storageOutbox.enqueueDelete(scroll.getImagePath());
 
-    // In the improbable case the image does not exist, do not try to delete it
-    if (Files.exists(filePath))
-      Files.delete(filePath);
+    return CompletableFuture.completedFuture(null);
   }
 
   @Override
-  public URI getScrollImageURL(String scrollId) throws ResourceNotFoundException {
-    com.mf.HerculaneumTranscriptor.domain.Scroll scroll = scrollRepository.findByScrollId(scrollId)
-            .orElseThrow(() -> new ResourceNotFoundException("Scroll not found"));
-
-    String imagePath = scroll.getImagePath();
+  @Transactional(readOnly = true)
+  public CompletableFuture<URI> getScrollImageURL(String scrollId) throws ResourceNotFoundException {
+    com.mf.HerculaneumTranscriptor.domain.Scroll scroll = findScroll(scrollId);
 
-    // If instead of a path we have a URL, return signed URL to image from cloud storage
-    if (isValidURL(imagePath)){
-      try {
-        // Define the options for the URL
-        Map options = ObjectUtils.asMap(
-                "resource_type", "image",
-                "expires_at", (System.currentTimeMillis() / 1000L) + 5*60L // Expires in 5 minutes (Unix epoch time in seconds)
-        );
+    // When proxying, clients download the image from the backend, which serves it from its cache
+    if (scrollImageCache.isEnabled())
+      return CompletableFuture.completedFuture(LocalScrollImageStorage.localDownloadUrl(scrollId));
 
-        // Generate the signed URL
-        String signedUrl = cloudinary.privateDownload(storageLocation.toString() + "/" + scrollId, "png", options);
+    return scrollImageStorage.presign(scrollId, scroll.getImagePath());
+  }
 
-        return new URI(signedUrl);
+  @Override
+  @Transactional(readOnly = true)
+  public CompletableFuture<Resource> getScrollImage(String scrollId) throws ResourceNotFoundException, IOException {
+    com.mf.HerculaneumTranscriptor.domain.Scroll scroll = findScroll(scrollId);
+
+    ScrollImageEvent event = new ScrollImageEvent();
+    event.begin();
+
+    // Cached images are streamed from disk
+    if (scrollImageCache.isEnabled())
+      return scrollImageCache.get(scrollId, scroll.getImagePath())
+              .thenApply(TracingConfiguration.inCurrentContext(image -> {
+                commit(event, scrollId, ScrollImageEvent.DOWNLOAD, lengthOf(image));
+                return image;
+              }));
+
+    // Other images are streamed from storage as they are sent, the event only covers opening them
+    return scrollImageStorage.open(scroll.getImagePath())
+            .thenApply(TracingConfiguration.inCurrentContext(image -> {
+              commit(event, scrollId, ScrollImageEvent.DOWNLOAD, lengthOf(image));
+              return image;
+            }));
+  }
 
-      } catch (Exception e) {
-        // This can happen if credentials are bad or there's a network issue with Cloudinary
-        throw new RuntimeException("Could not generate secure image URL.", e);
-      }
+  private static long lengthOf(Resource image) {
+    try {
+      return image.contentLength();
+    } catch (IOException e) {
+      return -1;
     }
-
-    return ServletUriComponentsBuilder
-            .fromCurrentContextPath()
-            .path("/scrolls/")
-            .path(scrollId)
-            .path("/local-download").build().toUri();
   }
 
-  @Override
-  public Resource getScrollImage(String scrollId) throws ResourceNotFoundException, IOException {
-    com.mf.HerculaneumTranscriptor.domain.Scroll scroll = scrollRepository.findByScrollId(scrollId)
-            .orElseThrow(() -> new ResourceNotFoundException("Scroll not found"));
-
-    Path filePath = storageLocation.resolve(scroll.getImagePath()).normalize();
-    InputStream in = Files.newInputStream(filePath);
-    return new InputStreamResource(in);
+  private static void commit(ScrollImageEvent event, String scrollId, String operation, long bytes) {
+    if (event.shouldCommit()) {
+      event.scrollId = scrollId;
+      event.operation = operation;
+      event.bytes = bytes;
+      event.commit();
+    }
   }
 
   @Override
-  public Scroll updateScroll(String scrollId, NewScroll metadata) throws ResourceAlreadyExistsException, ResourceNotFoundException {
-    com.mf.HerculaneumTranscriptor.domain.Scroll scroll = scrollRepository.findByScrollId(scrollId)
-            .orElseThrow(() -> new ResourceNotFoundException("Scroll not found"));
-
-    if (!scrollId.equals(metadata.getScrollId()) && scrollRepository.existsByScrollId(metadata.getScrollId())) {
-      throw new ResourceAlreadyExistsException("Scroll with ID '" + metadata.getScrollId() + "' already exists.");
-    }
+  public Scroll updateScroll(String scrollId, NewScroll metadata) throws ResourceNotFoundException {
+    com.mf.HerculaneumTranscriptor.domain.Scroll scroll = findScroll(scrollId);
 
     scroll.setDescription(metadata.getDescription());
     scroll.setDisplayName(metadata.getDisplayName());
     scroll.setScrollId(metadata.getScrollId());
     scroll.setThumbnailUrl(scrollMapper.uriToString(metadata.getThumbnailUrl()));
 
-    // Update scroll entry
-    com.mf.HerculaneumTranscriptor.domain.Scroll updatedScroll = scrollRepository.save(scroll);
+    // Update scroll entry, a taken scroll ID is rejected by its unique constraint
+    com.mf.HerculaneumTranscriptor.domain.Scroll updatedScroll = scrollRepository.saveAndFlush(scroll);
     return scrollMapper.scrollEntityToScrollDto(updatedScroll);
   }
 }
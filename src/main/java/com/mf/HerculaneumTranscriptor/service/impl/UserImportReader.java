@@ -0,0 +1,130 @@
+package com.mf.HerculaneumTranscriptor.service.impl;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import user.dto.BasicUserInfo;
+import user.dto.UserRegisterInfo;
+
+import javax.validation.ValidationException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the rows of a bulk user import, either NDJSON (one UserRegisterInfo object per line)
+ * or CSV with a header naming the username, firstName, lastName, contact and password columns.
+ * A malformed row does not stop the import, it is returned with the reason instead of its content.
+ */
+final class UserImportReader {
+  private static final List<String> CSV_COLUMNS = List.of("username", "firstName", "lastName", "contact", "password");
+
+  /**
+   * A row of an import, numbered from 1 without counting the CSV header.
+   * Exactly one of info and error is set.
+   */
+  record Row(int number, UserRegisterInfo info, String error) {}
+
+  private UserImportReader() {}
+
+  /**
+   * Reads every non-blank line of an NDJSON document.
+   */
+  static List<Row> readNdjson(String content, ObjectMapper objectMapper) {
+    List<Row> rows = new ArrayList<>();
+    List<String> lines = content.lines().toList();
+
+    for (int i = 0; i < lines.size(); i++) {
+      if (lines.get(i).isBlank())
+        continue;
+
+      try {
+        rows.add(new Row(i + 1, objectMapper.readValue(lines.get(i), UserRegisterInfo.class), null));
+      } catch (JsonProcessingException e) {
+        rows.add(new Row(i + 1, null, "Malformed JSON: " + e.getOriginalMessage()));
+      }
+    }
+
+    return rows;
+  }
+
+  /**
+   * Reads every non-blank line after the header of a CSV document.
+   * Fields may be quoted to contain commas, with quotes escaped by doubling them, but cannot span lines.
+   *
+   * @throws ValidationException if the header does not name every column.
+   */
+  static List<Row> readCsv(String content) {
+    List<Row> rows = new ArrayList<>();
+    List<String> lines = content.lines().toList();
+    if (lines.isEmpty())
+      return rows;
+
+    List<String> headerFields = parseCsvLine(lines.getFirst());
+    if (headerFields == null)
+      throw new ValidationException("Malformed CSV header: unclosed quote");
+
+    // Columns may come in any order
+    List<String> header = headerFields.stream().map(String::strip).toList();
+    int[] positions = new int[CSV_COLUMNS.size()];
+    for (int c = 0; c < CSV_COLUMNS.size(); c++) {
+      positions[c] = header.indexOf(CSV_COLUMNS.get(c));
+      if (positions[c] < 0)
+        throw new ValidationException("Malformed CSV header: missing column " + CSV_COLUMNS.get(c));
+    }
+
+    for (int i = 1; i < lines.size(); i++) {
+      if (lines.get(i).isBlank())
+        continue;
+
+      List<String> fields = parseCsvLine(lines.get(i));
+      if (fields == null || fields.size() != header.size()) {
+        rows.add(new Row(i, null, "Malformed CSV row: expected " + header.size() + " fields"));
+        continue;
+      }
+
+      UserRegisterInfo info = new UserRegisterInfo()
+              .basicInfo(new BasicUserInfo()
+                      .username(fields.get(positions[0]))
+                      .firstName(fields.get(positions[1]))
+                      .lastName(fields.get(positions[2]))
+                      .contact(fields.get(positions[3])))
+              .password(fields.get(positions[4]));
+      rows.add(new Row(i, info, null));
+    }
+
+    return rows;
+  }
+
+  /**
+   * Splits a CSV line into its fields, or returns null if a quoted field is not closed.
+   */
+  private static List<String> parseCsvLine(String line) {
+    List<String> fields = new ArrayList<>();
+    StringBuilder field = new StringBuilder();
+    boolean quoted = false;
+
+    for (int i = 0; i < line.length(); i++) {
+      char c = line.charAt(i);
+
+      if (quoted) {
+        if (c != '"')
+          field.append(c);
+        else if (i + 1 < line.length() && line.charAt(i + 1) == '"')
+          field.append(line.charAt(++i));
+        else
+          quoted = false;
+      } else if (c == '"')
+        quoted = true;
+      else if (c == ',') {
+        fields.add(field.toString());
+        field.setLength(0);
+      } else
+        field.append(c);
+    }
+
+    if (quoted)
+      return null;
+
+    fields.add(field.toString());
+    return fields;
+  }
+}
@@ -3,48 +3,70 @@ package com.mf.HerculaneumTranscriptor.service.impl;
 import com.mf.HerculaneumTranscriptor.domain.User;
 import com.mf.HerculaneumTranscriptor.domain.mapper.UserMapper;
 import com.mf.HerculaneumTranscriptor.dto.AuthenticationResponse;
+import com.mf.HerculaneumTranscriptor.dto.UserListing;
+import com.mf.HerculaneumTranscriptor.exception.ConstraintViolations;
 import com.mf.HerculaneumTranscriptor.exception.ResourceNotFoundException;
-import com.mf.HerculaneumTranscriptor.exception.ResourceAlreadyExistsException;
 import com.mf.HerculaneumTranscriptor.repository.UserRepository;
+import com.mf.HerculaneumTranscriptor.search.UserSearchIndex;
 import com.mf.HerculaneumTranscriptor.security.JwtUtil;
 import com.mf.HerculaneumTranscriptor.service.UserService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.observation.annotation.Observed;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.data.domain.Page;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.MediaType;
 import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import user.dto.*;
 
-import java.util.List;
+import javax.validation.ValidationException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
 import java.util.stream.Collectors;
 
 @Service
+@Observed
 @RequiredArgsConstructor
 public class UserServiceImpl implements UserService {
   @Value( "${api.user.pageSize}" )
   private Integer PAGE_SIZE;
+  @Value( "${api.user.searchLimit}" )
+  private Integer SEARCH_LIMIT;
+  @Value( "${api.user.import.maxRows}" )
+  private Integer IMPORT_MAX_ROWS;
 
   private final JwtUtil jwtUtil;
   private final UserRepository userRepository;
   private final UserMapper userMapper;
   private final PasswordEncoder passwordEncoder;
+  private final UserSearchIndex userSearchIndex;
+  private final ExecutorService passwordHashingExecutor;
+  private final Validator validator;
+  private final ObjectMapper objectMapper;
+  private final PlatformTransactionManager transactionManager;
 
   @Override
-  public AuthenticationResponse registerNewUser(UserRegisterInfo registrationInfo) throws ResourceAlreadyExistsException {
-    // Check if username is already taken
-    if (userRepository.existsByUsername(registrationInfo.getBasicInfo().getUsername()))
-      throw new ResourceAlreadyExistsException("Username is already taken: " + registrationInfo.getBasicInfo().getUsername());
-
+  public AuthenticationResponse registerNewUser(UserRegisterInfo registrationInfo) {
     User user = userMapper.userRegisterInfoToUser(registrationInfo);
     user.setPasswordHash(passwordEncoder.encode(registrationInfo.getPassword()));
     // New users get 'read' permissions by default
     user.setPermissions(UserInfo.PermissionsEnum.READ);
 
-    User savedUser = userRepository.save(user);
+    // A taken username is rejected by the unique constraint when the user is inserted
+    User savedUser = userRepository.saveAndFlush(user);
+    userSearchIndex.put(savedUser);
     return new AuthenticationResponse(jwtUtil.generateToken(savedUser.getUsername()), userMapper.userToUserInfo(savedUser));
   }
 
@@ -59,10 +81,17 @@ public class UserServiceImpl implements UserService {
       throw exception;
     }
 
+    // Hashes made with another algorithm or a lower cost are replaced while the raw password is at hand
+    if (passwordEncoder.upgradeEncoding(user.getPasswordHash())) {
+      user.setPasswordHash(passwordEncoder.encode(loginInfo.getPassword()));
+      userRepository.save(user);
+    }
+
     return new AuthenticationResponse(jwtUtil.generateToken(user.getUsername()), userMapper.userToUserInfo(user));
   }
 
   @Override
+  @Transactional(readOnly = true)
   public UserInfo findUserByUsername(String username) throws ResourceNotFoundException {
     return userMapper.userToUserInfo(
         userRepository.findByUsername(username)
@@ -70,19 +99,169 @@ public class UserServiceImpl implements UserService {
     );
   }
 
+  /**
+   * Encodes the (username, id) key of the last listed user into an opaque, URL-safe cursor.
+   */
+  private static String encodeCursor(User user) {
+    String key = user.getId() + ":" + user.getUsername();
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Decodes a cursor back into the user it points at. Only the username and id are set.
+   */
+  private static User decodeCursor(String cursor) {
+    try {
+      String key = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+      int separator = key.indexOf(':');
+
+      User user = new User();
+      user.setId(Long.parseLong(key.substring(0, separator)));
+      user.setUsername(key.substring(separator + 1));
+      return user;
+    } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+      throw new ValidationException("Malformed cursor: " + cursor);
+    }
+  }
+
   @Override
-  public List<UserInfo> findAllUsers(Integer index) {
-    index = index == null ? 0 : index;
-    int pageNumber = index / PAGE_SIZE;
+  @Transactional(readOnly = true)
+  public UserListing findAllUsers(Integer index, String cursor) {
+    Slice<User> userSlice;
+
+    if (cursor != null) {
+      // Seek right after the last listed user, the index is not needed
+      User last = decodeCursor(cursor);
+      userSlice = userRepository.findAllAfter(last.getUsername(), last.getId(), PageRequest.of(0, PAGE_SIZE));
+    } else {
+      index = index == null ? 0 : index;
+      int pageNumber = index / PAGE_SIZE;
 
-    // Retrieve a page of users
-    Pageable pageable = PageRequest.of(pageNumber, PAGE_SIZE);
-    Page<User> userPage = userRepository.findAll(pageable);
+      // Retrieve a slice of users, which avoids counting all of them
+      userSlice = userRepository.findAllByOrderByUsernameAscIdAsc(PageRequest.of(pageNumber, PAGE_SIZE));
+    }
+
+    String nextCursor = userSlice.hasNext() ? encodeCursor(userSlice.getContent().getLast()) : null;
 
-    // Convert the content of the page to a list of DTOs.
-    return userPage.getContent().stream()
+    // Convert the content of the slice to a list of DTOs.
+    List<UserInfo> users = userSlice.getContent().stream()
             .map(userMapper::userToUserInfo)
             .collect(Collectors.toList());
+
+    return new UserListing(users, nextCursor);
+  }
+
+  @Override
+  public List<UserInfo> searchUsers(String query) {
+    return userSearchIndex.search(query, SEARCH_LIMIT);
+  }
+
+  private static UserImportResult importResult(UserImportReader.Row row, UserImportResult.StatusEnum status, String message) {
+    return new UserImportResult()
+            .row(row.number())
+            .username(row.info() != null && row.info().getBasicInfo() != null ? row.info().getBasicInfo().getUsername() : null)
+            .status(status)
+            .message(message);
+  }
+
+  /**
+   * Describes the constraint violations of a row, or returns null if there are none.
+   */
+  private String validate(UserRegisterInfo info) {
+    Set<ConstraintViolation<UserRegisterInfo>> violations = validator.validate(info);
+    if (violations.isEmpty())
+      return null;
+
+    return violations.stream()
+            .map(violation -> violation.getPropertyPath() + " " + violation.getMessage())
+            .sorted()
+            .collect(Collectors.joining(", "));
+  }
+
+  @Override
+  // Not transactional: passwords are hashed before the users are inserted in a transaction of their own
+  public List<UserImportResult> importUsers(String content, MediaType contentType) {
+    List<UserImportReader.Row> rows = MediaType.valueOf("text/csv").isCompatibleWith(contentType) ?
+            UserImportReader.readCsv(content) : UserImportReader.readNdjson(content, objectMapper);
+    if (rows.size() > IMPORT_MAX_ROWS)
+      throw new ValidationException("Too many rows: at most " + IMPORT_MAX_ROWS + " users can be imported at once");
+
+    UserImportResult[] results = new UserImportResult[rows.size()];
+    // Valid rows by username, the first row wins if a username is repeated
+    Map<String, Integer> candidates = new LinkedHashMap<>();
+
+    for (int i = 0; i < rows.size(); i++) {
+      UserImportReader.Row row = rows.get(i);
+      String error = row.error() != null ? row.error() : validate(row.info());
+
+      if (error != null)
+        results[i] = importResult(row, UserImportResult.StatusEnum.INVALID, error);
+      else if (candidates.putIfAbsent(row.info().getBasicInfo().getUsername(), i) != null)
+        results[i] = importResult(row, UserImportResult.StatusEnum.CONFLICT, "Username is repeated in an earlier row");
+    }
+
+    // Check every username in a single query instead of one query per row
+    if (!candidates.isEmpty())
+      for (String taken : userRepository.findUsernamesIn(Set.copyOf(candidates.keySet()))) {
+        int i = candidates.remove(taken);
+        results[i] = importResult(rows.get(i), UserImportResult.StatusEnum.CONFLICT, "Username is already taken");
+      }
+
+    // Hash passwords in parallel, as each hash is expensive on purpose. No transaction is open meanwhile, so no
+    // connection is held while hashing.
+    List<CompletableFuture<User>> hashedUsers = candidates.values().stream()
+            .map(i -> {
+              UserRegisterInfo info = rows.get(i).info();
+              User user = userMapper.userRegisterInfoToUser(info);
+              // New users get 'read' permissions by default
+              user.setPermissions(UserInfo.PermissionsEnum.READ);
+
+              return CompletableFuture.supplyAsync(() -> {
+                user.setPasswordHash(passwordEncoder.encode(info.getPassword()));
+                return user;
+              }, passwordHashingExecutor);
+            })
+            .toList();
+
+    List<User> users = hashedUsers.stream().map(CompletableFuture::join).toList();
+
+    TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+    List<User> createdUsers;
+    try {
+      // Inserted in JDBC batches, see hibernate.jdbc.batch_size
+      createdUsers = transaction.execute(status -> {
+        List<User> savedUsers = userRepository.saveAll(users);
+        userRepository.flush();
+        return savedUsers;
+      });
+    } catch (DataIntegrityViolationException e) {
+      if (!ConstraintViolations.violatedConstraint(e).contains(User.USERNAME_CONSTRAINT))
+        throw e;
+
+      // Usernames were taken since they were checked, the users are inserted one by one to find out which
+      createdUsers = new ArrayList<>();
+      Iterator<Integer> rowIndexes = candidates.values().iterator();
+      for (User user : users) {
+        int i = rowIndexes.next();
+        // The ID drawn for the failed batch is not used
+        user.setId(null);
+        try {
+          createdUsers.add(transaction.execute(status -> userRepository.saveAndFlush(user)));
+        } catch (DataIntegrityViolationException duplicate) {
+          if (!ConstraintViolations.violatedConstraint(duplicate).contains(User.USERNAME_CONSTRAINT))
+            throw duplicate;
+          results[i] = importResult(rows.get(i), UserImportResult.StatusEnum.CONFLICT, "Username is already taken");
+        }
+      }
+    }
+
+    // Indexed once committed, so that searches never return users that were not created
+    createdUsers.forEach(userSearchIndex::put);
+
+    for (int i : candidates.values())
+      if (results[i] == null)
+        results[i] = importResult(rows.get(i), UserImportResult.StatusEnum.CREATED, null);
+    return Arrays.asList(results);
   }
 
   @Override
@@ -91,29 +270,25 @@ public class UserServiceImpl implements UserService {
             .orElseThrow(() -> new ResourceNotFoundException("User not found: " + username));
 
     userRepository.delete(user);
+    userSearchIndex.remove(user.getId());
   }
 
   @Override
-  public void updateUserProfile(String username, ChangeUserInfo updateInfo) throws ResourceNotFoundException, ResourceAlreadyExistsException {
+  public void updateUserProfile(String username, ChangeUserInfo updateInfo) throws ResourceNotFoundException {
     User originalUser = userRepository.findByUsername(username)
             .orElseThrow(() -> new ResourceNotFoundException("User not found: " + username));
 
     if (updateInfo.getPassword() != null) // change of password
       originalUser.setPasswordHash(passwordEncoder.encode(updateInfo.getPassword()));
     else { // change of personal information
-      // Check if desired new username is already taken
-      String requestedUsername = updateInfo.getBasicInfo().getUsername();
-      if (!username.equals(requestedUsername) && userRepository.existsByUsername(requestedUsername))
-        throw new ResourceAlreadyExistsException("New username is already taken: " + requestedUsername);
-
       originalUser.setUsername(updateInfo.getBasicInfo().getUsername());
       originalUser.setFirstName(updateInfo.getBasicInfo().getFirstName());
       originalUser.setLastName(updateInfo.getBasicInfo().getLastName());
       originalUser.setContact(updateInfo.getBasicInfo().getContact());
     }
 
-    // Update user entry
-    userRepository.save(originalUser);
+    // Update user entry, a taken username is rejected by the unique constraint
+    userSearchIndex.put(userRepository.saveAndFlush(originalUser));
   }
 
   @Override
@@ -127,6 +302,6 @@ public class UserServiceImpl implements UserService {
     user.setPermissions(UserInfo.PermissionsEnum.valueOf(newPermissionName));
 
     // Update user entry
-    userRepository.save(user);
+    userSearchIndex.put(userRepository.save(user));
   }
 }
@@ -0,0 +1,184 @@
+package com.mf.HerculaneumTranscriptor.storage;
+
+import com.cloudinary.Cloudinary;
+import com.cloudinary.utils.ObjectUtils;
+import com.mf.HerculaneumTranscriptor.configuration.TracingConfiguration;
+import com.mf.HerculaneumTranscriptor.exception.ResourceNotFoundException;
+import io.micrometer.observation.annotation.Observed;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Stores scroll images as private assets in Cloudinary.
+ * The Cloudinary SDK is blocking, so uploads and deletions are run on the storage thread pool,
+ * while downloads go through signed URLs fetched with a non-blocking HTTP client.
+ */
+@Component
+@Observed
+@ConditionalOnProperty(name = "api.scrolls.storage", havingValue = "cloudinary")
+public class CloudinaryScrollImageStorage implements ScrollImageStorage {
+  // Delivery URLs persisted by earlier versions have a version segment right before the public id
+  private static final Pattern LEGACY_URL_PUBLIC_ID = Pattern.compile("/v\\d+/(.+)$");
+
+  private final Cloudinary cloudinary;
+  private final ExecutorService storageExecutor;
+  private final HttpClient httpClient;
+  private final SignedUrlCache signedUrlCache;
+  private final String folder;
+
+  public CloudinaryScrollImageStorage(Cloudinary cloudinary,
+                                      ExecutorService storageExecutor,
+                                      @Value("${api.scrolls.storageDirectory}") String folder,
+                                      @Value("${api.scrolls.signedUrl.expiration}") long signedUrlExpiration,
+                                      @Value("${api.scrolls.signedUrl.refreshMargin}") long signedUrlRefreshMargin) {
+    this.cloudinary = cloudinary;
+    this.storageExecutor = storageExecutor;
+    this.folder = folder;
+    this.httpClient = HttpClient.newBuilder().executor(storageExecutor).build();
+    this.signedUrlCache = new SignedUrlCache(signedUrlExpiration, signedUrlRefreshMargin);
+  }
+
+  /**
+   * Extracts the Cloudinary public id of an image from its location (its folder + scrollId).
+   * Locations are either a path with a file extension or, for images uploaded by earlier versions,
+   * the delivery URL returned by Cloudinary.
+   */
+  String publicId(String location) {
+    Matcher legacyUrl = LEGACY_URL_PUBLIC_ID.matcher(location);
+    String path = location.startsWith("http") && legacyUrl.find() ? legacyUrl.group(1) : location;
+
+    return StringUtils.stripFilenameExtension(path);
+  }
+
+  private static String format(String location) {
+    String extension = StringUtils.getFilenameExtension(location);
+    return extension != null ? extension : "png";
+  }
+
+  private URI sign(String location, long expiresAt) {
+    try {
+      // Define the options for the URL
+      Map options = ObjectUtils.asMap(
+              "resource_type", "image",
+              "expires_at", expiresAt
+      );
+
+      // Generate the signed URL
+      return new URI(cloudinary.privateDownload(publicId(location), format(location), options));
+
+    } catch (Exception e) {
+      // This can happen if credentials are bad or there's a network issue with Cloudinary
+      throw new RuntimeException("Could not generate secure image URL.", e);
+    }
+  }
+
+  @Override
+  public String locate(String scrollId, String fileExtension) {
+    return folder + "/" + scrollId + "." + fileExtension;
+  }
+
+  @Override
+  public CompletableFuture<Void> put(String location, ByteBuffer content) {
+    return CompletableFuture.runAsync(TracingConfiguration.inCurrentContext(() -> {
+      byte[] bytes = new byte[content.remaining()];
+      content.get(bytes);
+
+      try {
+        cloudinary.uploader().upload(bytes, ObjectUtils.asMap(
+                "public_id", publicId(location),
+                "type", "private"
+        ));
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+
+      // A previously signed URL may point to the replaced image
+      signedUrlCache.evict(location);
+    }), storageExecutor);
+  }
+
+  @Override
+  public CompletableFuture<ByteBuffer> getRange(String location, long offset, long length) {
+    String range = "bytes=" + offset + "-" + (length < 0 ? "" : offset + length - 1);
+    HttpRequest request = HttpRequest.newBuilder(signedUrlCache.get(location, this::sign))
+            .header("Range", range)
+            .GET().build();
+
+    return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray()).thenApply(TracingConfiguration.inCurrentContext(response -> {
+      if (response.statusCode() == 404)
+        throw new ResourceNotFoundException("Scroll image not found");
+      if (response.statusCode() == 206)
+        return ByteBuffer.wrap(response.body());
+      if (response.statusCode() != 200)
+        throw new UncheckedIOException(new IOException("Cloudinary download failed with status " + response.statusCode()));
+
+      // The range was ignored and the whole image was sent
+      byte[] body = response.body();
+      int start = (int) Math.min(offset, body.length);
+      int end = length < 0 ? body.length : (int) Math.min(body.length, offset + length);
+      return ByteBuffer.wrap(body, start, end - start).slice();
+    }));
+  }
+
+  @Override
+  public CompletableFuture<Resource> open(String location) {
+    HttpRequest request = HttpRequest.newBuilder(signedUrlCache.get(location, this::sign)).GET().build();
+
+    // The body is read from the connection as it is sent to the client
+    return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofInputStream()).thenApply(TracingConfiguration.inCurrentContext(response -> {
+      if (response.statusCode() != 200) {
+        close(response.body());
+        if (response.statusCode() == 404)
+          throw new ResourceNotFoundException("Scroll image not found");
+        throw new UncheckedIOException(new IOException("Cloudinary download failed with status " + response.statusCode()));
+      }
+
+      return new StreamedImage(response.body(), response.headers().firstValueAsLong("Content-Length").orElse(-1));
+    }));
+  }
+
+  private static void close(InputStream body) {
+    try {
+      body.close();
+    } catch (IOException ignored) {
+      // Nothing left to release
+    }
+  }
+
+  @Override
+  public CompletableFuture<Void> delete(String location) {
+    return CompletableFuture.runAsync(TracingConfiguration.inCurrentContext(() -> {
+      try {
+        cloudinary.uploader().destroy(publicId(location),
+                ObjectUtils.asMap("resource_type", "image", "invalidate", true, "type", "private"));
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+
+      signedUrlCache.evict(location);
+    }), storageExecutor);
+  }
+
+  @Override
+  public CompletableFuture<URI> presign(String scrollId, String location) {
+    // Signing is a local computation, so the cached or newly signed URL is available right away
+    return CompletableFuture.completedFuture(signedUrlCache.get(location, this::sign));
+  }
+}
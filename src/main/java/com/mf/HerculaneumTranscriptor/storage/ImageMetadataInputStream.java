@@ -0,0 +1,163 @@
+package com.mf.HerculaneumTranscriptor.storage;
+
+import com.mf.HerculaneumTranscriptor.domain.ImageMetadata;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+
+/**
+ * Input stream extracting the metadata of an image while it is being copied.
+ * Every byte read goes into a SHA-256 checksum, and the first bytes are kept so that the dimensions and
+ * bit depth can be read from the PNG, JPEG or TIFF headers without decoding the image.
+ */
+public class ImageMetadataInputStream extends FilterInputStream {
+  // Headers are expected within this many bytes, which covers large EXIF segments before the JPEG frame header
+  private static final int HEADER_LIMIT = 256 * 1024;
+
+  private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+
+  private final MessageDigest digest;
+  private final byte[] header = new byte[HEADER_LIMIT];
+  private int headerLength;
+
+  public ImageMetadataInputStream(InputStream in) {
+    super(in);
+    try {
+      this.digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private void consumed(byte[] bytes, int offset, int length) {
+    digest.update(bytes, offset, length);
+
+    int headerBytes = Math.min(length, HEADER_LIMIT - headerLength);
+    if (headerBytes > 0) {
+      System.arraycopy(bytes, offset, header, headerLength, headerBytes);
+      headerLength += headerBytes;
+    }
+  }
+
+  @Override
+  public int read() throws IOException {
+    int b = super.read();
+    if (b >= 0)
+      consumed(new byte[]{(byte) b}, 0, 1);
+    return b;
+  }
+
+  @Override
+  public int read(byte[] bytes, int offset, int length) throws IOException {
+    int count = super.read(bytes, offset, length);
+    if (count > 0)
+      consumed(bytes, offset, count);
+    return count;
+  }
+
+  @Override
+  public long skip(long n) throws IOException {
+    // Skipped bytes must still go through the checksum
+    return Math.max(read(new byte[(int) Math.max(0, Math.min(n, 8192))]), 0);
+  }
+
+  @Override
+  public boolean markSupported() {
+    return false;
+  }
+
+  /**
+   * Reads the metadata of the image. It must be called once the whole stream has been read.
+   *
+   * @return The image metadata. Only the checksum is set if the image format is not recognized.
+   */
+  public ImageMetadata getMetadata() {
+    ImageMetadata metadata = new ImageMetadata();
+    metadata.setChecksum(HexFormat.of().formatHex(digest.digest()));
+
+    ByteBuffer buffer = ByteBuffer.wrap(header, 0, headerLength);
+    try {
+      if (headerLength >= 8 && Arrays.equals(header, 0, 8, PNG_SIGNATURE, 0, 8))
+        readPng(buffer, metadata);
+      else if (headerLength >= 2 && (header[0] & 0xFF) == 0xFF && (header[1] & 0xFF) == 0xD8)
+        readJpeg(buffer, metadata);
+      else if (headerLength >= 4 && (header[0] == 'I' && header[1] == 'I' || header[0] == 'M' && header[1] == 'M'))
+        readTiff(buffer, metadata);
+    } catch (RuntimeException e) {
+      // Truncated or malformed headers leave the dimensions unknown
+      metadata.setWidth(null);
+      metadata.setHeight(null);
+      metadata.setBitDepth(null);
+    }
+
+    return metadata;
+  }
+
+  // The IHDR chunk always comes first: length, type, width, height, bit depth
+  private static void readPng(ByteBuffer buffer, ImageMetadata metadata) {
+    buffer.position(8 + 4);
+    if (buffer.getInt() != 0x49484452) // "IHDR"
+      return;
+
+    metadata.setWidth(buffer.getInt());
+    metadata.setHeight(buffer.getInt());
+    metadata.setBitDepth(buffer.get() & 0xFF);
+  }
+
+  // Segments are walked until a start of frame (SOFn) marker, which holds precision, height and width
+  private static void readJpeg(ByteBuffer buffer, ImageMetadata metadata) {
+    buffer.position(2);
+    while (buffer.remaining() >= 4) {
+      if ((buffer.get() & 0xFF) != 0xFF)
+        return;
+
+      int marker = buffer.get() & 0xFF;
+      if (marker == 0xFF) { // Fill byte
+        buffer.position(buffer.position() - 1);
+        continue;
+      }
+
+      int length = buffer.getShort() & 0xFFFF;
+      boolean startOfFrame = marker >= 0xC0 && marker <= 0xCF && marker != 0xC4 && marker != 0xC8 && marker != 0xCC;
+      if (startOfFrame) {
+        metadata.setBitDepth(buffer.get() & 0xFF);
+        metadata.setHeight(buffer.getShort() & 0xFFFF);
+        metadata.setWidth(buffer.getShort() & 0xFFFF);
+        return;
+      }
+
+      buffer.position(buffer.position() + length - 2);
+    }
+  }
+
+  // The first image file directory is read for the ImageWidth, ImageLength and BitsPerSample tags
+  private static void readTiff(ByteBuffer buffer, ImageMetadata metadata) {
+    buffer.order(buffer.get(0) == 'I' ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+    if (buffer.getShort(2) != 42) // BigTIFF and other variants are not supported
+      return;
+
+    int directory = buffer.getInt(4);
+    int entries = buffer.getShort(directory) & 0xFFFF;
+    for (int i = 0; i < entries; i++) {
+      int entry = directory + 2 + i * 12;
+      int tag = buffer.getShort(entry) & 0xFFFF;
+      int type = buffer.getShort(entry + 2) & 0xFFFF;
+      int count = buffer.getInt(entry + 4);
+      // SHORT values are stored in the first half of the value field, LONG values take all of it
+      int value = type == 3 ? buffer.getShort(entry + 8) & 0xFFFF : buffer.getInt(entry + 8);
+
+      switch (tag) {
+        case 256 -> metadata.setWidth(value);
+        case 257 -> metadata.setHeight(value);
+        case 258 -> metadata.setBitDepth(count <= 2 ? value : buffer.getShort(buffer.getInt(entry + 8)) & 0xFFFF);
+      }
+    }
+  }
+}
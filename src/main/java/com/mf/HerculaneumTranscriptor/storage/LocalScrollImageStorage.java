@@ -0,0 +1,178 @@
+package com.mf.HerculaneumTranscriptor.storage;
+
+import com.mf.HerculaneumTranscriptor.configuration.TracingConfiguration;
+import com.mf.HerculaneumTranscriptor.exception.ResourceNotFoundException;
+import io.micrometer.observation.annotation.Observed;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * Stores scroll images in a directory of the local file system, using asynchronous file channels.
+ * Images are served to clients through the local download endpoint.
+ */
+@Component
+@Observed
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "api.scrolls.storage", havingValue = "local", matchIfMissing = true)
+public class LocalScrollImageStorage implements ScrollImageStorage {
+  @Value("${api.scrolls.storageDirectory}")
+  private Path storageLocation;
+
+  // Completion handlers of the file channels run on this pool
+  private final ExecutorService storageExecutor;
+
+  private Path resolve(String location) {
+    return storageLocation.resolve(location).normalize();
+  }
+
+  private static void close(AsynchronousFileChannel channel) {
+    try {
+      channel.close();
+    } catch (IOException ignored) {
+      // Nothing left to release
+    }
+  }
+
+  @Override
+  public String locate(String scrollId, String fileExtension) {
+    return scrollId + "." + fileExtension;
+  }
+
+  @Override
+  public CompletableFuture<Void> put(String location, ByteBuffer content) {
+    AsynchronousFileChannel channel;
+    try {
+      Path destinationFile = resolve(location);
+      Files.createDirectories(destinationFile.getParent());
+
+      // TRUNCATE_EXISTING ensures that if a file with the same name somehow exists, it's overwritten.
+      channel = AsynchronousFileChannel.open(destinationFile, Set.of(WRITE, CREATE, TRUNCATE_EXISTING), storageExecutor);
+    } catch (IOException e) {
+      return CompletableFuture.failedFuture(e);
+    }
+
+    CompletableFuture<Void> written = new CompletableFuture<>();
+    channel.write(content, 0L, 0L, new CompletionHandler<>() {
+      @Override
+      public void completed(Integer count, Long position) {
+        // Writes can be partial, keep going until the whole buffer is on disk
+        if (content.hasRemaining())
+          channel.write(content, position + count, position + count, this);
+        else
+          written.complete(null);
+      }
+
+      @Override
+      public void failed(Throwable e, Long position) {
+        written.completeExceptionally(e);
+      }
+    });
+
+    return written.whenComplete((ignored, e) -> close(channel));
+  }
+
+  @Override
+  public CompletableFuture<ByteBuffer> getRange(String location, long offset, long length) {
+    AsynchronousFileChannel channel;
+    try {
+      channel = AsynchronousFileChannel.open(resolve(location), Set.of(READ), storageExecutor);
+    } catch (NoSuchFileException e) {
+      return CompletableFuture.failedFuture(new ResourceNotFoundException("Scroll image not found"));
+    } catch (IOException e) {
+      return CompletableFuture.failedFuture(e);
+    }
+
+    ByteBuffer buffer;
+    try {
+      long available = Math.max(0L, channel.size() - offset);
+      buffer = ByteBuffer.allocate(Math.toIntExact(length < 0 ? available : Math.min(length, available)));
+    } catch (IOException e) {
+      close(channel);
+      return CompletableFuture.failedFuture(e);
+    } catch (ArithmeticException e) {
+      // Whole images are streamed by open instead
+      close(channel);
+      return CompletableFuture.failedFuture(new IllegalArgumentException("Cannot read more than 2 GiB of an image at once"));
+    }
+
+    CompletableFuture<ByteBuffer> read = new CompletableFuture<>();
+    channel.read(buffer, offset, offset, new CompletionHandler<>() {
+      @Override
+      public void completed(Integer count, Long position) {
+        // Reads can be partial, keep going until the buffer is full or the file ends
+        if (count >= 0 && buffer.hasRemaining())
+          channel.read(buffer, position + count, position + count, this);
+        else
+          read.complete(buffer.flip());
+      }
+
+      @Override
+      public void failed(Throwable e, Long position) {
+        read.completeExceptionally(e);
+      }
+    });
+
+    return read.whenComplete((ignored, e) -> close(channel));
+  }
+
+  @Override
+  public CompletableFuture<Resource> open(String location) {
+    // Streamed from disk as it is sent
+    Path file = resolve(location);
+    if (!Files.isRegularFile(file))
+      return CompletableFuture.failedFuture(new ResourceNotFoundException("Scroll image not found"));
+    return CompletableFuture.completedFuture(new FileSystemResource(file));
+  }
+
+  @Override
+  public CompletableFuture<Void> delete(String location) {
+    return CompletableFuture.runAsync(TracingConfiguration.inCurrentContext(() -> {
+      try {
+        // In the improbable case the image does not exist, there is nothing to delete
+        Files.deleteIfExists(resolve(location));
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }), storageExecutor);
+  }
+
+  /**
+   * Builds the URL of the endpoint serving scroll images from the local disk.
+   * It must be called on the thread handling the request, as the URL depends on it.
+   *
+   * @param scrollId The unique identifier of the scroll.
+   * @return The local download URL of the image.
+   */
+  public static URI localDownloadUrl(String scrollId) {
+    return ServletUriComponentsBuilder
+            .fromCurrentContextPath()
+            .path("/scrolls/")
+            .path(scrollId)
+            .path("/local-download").build().toUri();
+  }
+
+  @Override
+  public CompletableFuture<URI> presign(String scrollId, String location) {
+    return CompletableFuture.completedFuture(localDownloadUrl(scrollId));
+  }
+}
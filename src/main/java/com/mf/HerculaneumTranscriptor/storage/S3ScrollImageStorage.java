@@ -0,0 +1,126 @@
+package com.mf.HerculaneumTranscriptor.storage;
+
+import com.mf.HerculaneumTranscriptor.configuration.TracingConfiguration;
+import com.mf.HerculaneumTranscriptor.exception.ResourceNotFoundException;
+import io.micrometer.observation.annotation.Observed;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.Resource;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Stores scroll images in a bucket of an S3-compatible object store (AWS S3, MinIO, etc.).
+ * Requests are sent through the non-blocking S3 client, and clients download images from presigned URLs.
+ */
+@Component
+@Observed
+@ConditionalOnProperty(name = "api.scrolls.storage", havingValue = "s3")
+public class S3ScrollImageStorage implements ScrollImageStorage {
+  private final S3AsyncClient s3Client;
+  private final S3Presigner s3Presigner;
+  private final SignedUrlCache signedUrlCache;
+  private final String bucket;
+  private final String keyPrefix;
+
+  public S3ScrollImageStorage(S3AsyncClient s3Client,
+                              S3Presigner s3Presigner,
+                              @Value("${api.scrolls.s3.bucket}") String bucket,
+                              @Value("${api.scrolls.s3.keyPrefix}") String keyPrefix,
+                              @Value("${api.scrolls.signedUrl.expiration}") long signedUrlExpiration,
+                              @Value("${api.scrolls.signedUrl.refreshMargin}") long signedUrlRefreshMargin) {
+    this.s3Client = s3Client;
+    this.s3Presigner = s3Presigner;
+    this.bucket = bucket;
+    this.keyPrefix = keyPrefix;
+    this.signedUrlCache = new SignedUrlCache(signedUrlExpiration, signedUrlRefreshMargin);
+  }
+
+  /**
+   * Translates the S3 error for missing objects into the one expected from storage backends.
+   */
+  private static <T> CompletableFuture<T> translateMissingKey(CompletableFuture<T> future) {
+    return future.exceptionally(e -> {
+      Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+      if (cause instanceof NoSuchKeyException)
+        throw new ResourceNotFoundException("Scroll image not found");
+      throw new CompletionException(cause);
+    });
+  }
+
+  private URI sign(String location, long expiresAt) {
+    Duration validity = Duration.ofSeconds(expiresAt - System.currentTimeMillis() / 1000L);
+
+    try {
+      return s3Presigner.presignGetObject(presign -> presign
+              .signatureDuration(validity)
+              .getObjectRequest(request -> request.bucket(bucket).key(location))
+      ).url().toURI();
+    } catch (URISyntaxException e) {
+      throw new RuntimeException("Could not generate secure image URL.", e);
+    }
+  }
+
+  @Override
+  public String locate(String scrollId, String fileExtension) {
+    return keyPrefix + scrollId + "." + fileExtension;
+  }
+
+  @Override
+  public CompletableFuture<Void> put(String location, ByteBuffer content) {
+    String contentType = MediaTypeFactory.getMediaType(location)
+            .map(Object::toString).orElse("application/octet-stream");
+
+    return s3Client.putObject(request -> request.bucket(bucket).key(location).contentType(contentType),
+                    AsyncRequestBody.fromByteBuffer(content))
+            // A previously signed URL may point to the replaced image
+            .thenApply(TracingConfiguration.inCurrentContext(response -> {
+              signedUrlCache.evict(location);
+              return null;
+            }));
+  }
+
+  @Override
+  public CompletableFuture<ByteBuffer> getRange(String location, long offset, long length) {
+    String range = "bytes=" + offset + "-" + (length < 0 ? "" : offset + length - 1);
+
+    return translateMissingKey(s3Client.getObject(request -> request.bucket(bucket).key(location).range(range),
+                    AsyncResponseTransformer.toBytes())
+            .thenApply(TracingConfiguration.inCurrentContext(response -> response.asByteBuffer())));
+  }
+
+  @Override
+  public CompletableFuture<Resource> open(String location) {
+    // The body is read from the connection as it is sent to the client
+    return translateMissingKey(s3Client.getObject(request -> request.bucket(bucket).key(location),
+                    AsyncResponseTransformer.toBlockingInputStream())
+            .thenApply(TracingConfiguration.inCurrentContext(image -> new StreamedImage(image, image.response().contentLength()))));
+  }
+
+  @Override
+  public CompletableFuture<Void> delete(String location) {
+    return s3Client.deleteObject(request -> request.bucket(bucket).key(location))
+            .thenApply(TracingConfiguration.inCurrentContext(response -> {
+              signedUrlCache.evict(location);
+              return null;
+            }));
+  }
+
+  @Override
+  public CompletableFuture<URI> presign(String scrollId, String location) {
+    // Presigning is a local computation, so the cached or newly signed URL is available right away
+    return CompletableFuture.completedFuture(signedUrlCache.get(location, this::sign));
+  }
+}
@@ -0,0 +1,276 @@
+package com.mf.HerculaneumTranscriptor.storage;
+
+import com.mf.HerculaneumTranscriptor.configuration.TracingConfiguration;
+import com.mf.HerculaneumTranscriptor.exception.ResourceNotFoundException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Optional local disk cache of scroll images stored in the cloud, so that the backend proxies downloads
+ * instead of redirecting every client to the cloud backend (which bills every download).
+ * Images are fetched once from their presigned URL and evicted in least recently used order
+ * once the cache grows over its maximum size. Concurrent misses for the same image share a single fetch.
+ * <p>
+ * Images are opened before they are returned, so an image evicted while it is being sent is still sent whole.
+ * Fetches in progress when their image is evicted, e.g. because it was deleted, are not cached.
+ */
+@Component
+public class ScrollImageCache {
+  private final ScrollImageStorage scrollImageStorage;
+  private final HttpClient httpClient;
+  private final boolean enabled;
+  private final Path cacheDirectory;
+  private final long maxSize;
+
+  // Cached files and their sizes, in access order
+  private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private final ReentrantLock entriesLock = new ReentrantLock();
+  private long size;
+
+  // Fetches currently in progress, shared by every request missing the same image
+  private final Map<String, CompletableFuture<Path>> pendingFetches = new ConcurrentHashMap<>();
+  // Number of times each evicted file was evicted, changed while the entries are locked
+  private final Map<String, Long> generations = new ConcurrentHashMap<>();
+
+  public ScrollImageCache(ScrollImageStorage scrollImageStorage,
+                          ExecutorService storageExecutor,
+                          @Value("${api.scrolls.storage}") String storage,
+                          @Value("${api.scrolls.proxy.enabled}") boolean enabled,
+                          @Value("${api.scrolls.proxy.cacheDirectory}") Path cacheDirectory,
+                          @Value("${api.scrolls.proxy.maxSize}") DataSize maxSize) throws IOException {
+    // Local images are already served from disk. Proxying them would make the backend download them from itself,
+    // without the token of the client, and a fetch could end up waiting for itself.
+    if (enabled && storage.equals("local"))
+      throw new IllegalStateException("api.scrolls.proxy.enabled requires images to be stored in the cloud");
+
+    this.scrollImageStorage = scrollImageStorage;
+    this.enabled = enabled;
+    this.cacheDirectory = cacheDirectory;
+    this.maxSize = maxSize.toBytes();
+    this.httpClient = HttpClient.newBuilder()
+            .executor(storageExecutor)
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .build();
+
+    if (enabled)
+      loadEntries();
+  }
+
+  /**
+   * Indexes the images cached before a restart, least recently modified first,
+   * and discards the ones whose download was interrupted.
+   */
+  private void loadEntries() throws IOException {
+    Files.createDirectories(cacheDirectory);
+
+    try (Stream<Path> files = Files.list(cacheDirectory)) {
+      files.sorted(Comparator.comparing(file -> file.toFile().lastModified())).forEach(file -> {
+        String fileName = file.getFileName().toString();
+        if (fileName.endsWith(".part"))
+          deleteFile(fileName);
+        else
+          add(fileName, file.toFile().length());
+      });
+    }
+  }
+
+  /**
+   * @return Whether images are downloaded through the backend rather than directly from the cloud backend.
+   */
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  private static String fileName(String location) {
+    try {
+      // Hashing keeps arbitrary locations (folders, legacy URLs) from escaping the cache directory
+      byte[] hash = MessageDigest.getInstance("SHA-256").digest(location.getBytes(StandardCharsets.UTF_8));
+      return HexFormat.of().formatHex(hash);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private void add(String fileName, long fileSize) {
+    entriesLock.lock();
+    try {
+      Long previousSize = entries.put(fileName, fileSize);
+      size += fileSize - (previousSize != null ? previousSize : 0L);
+
+      // Evict least recently used images until the cache fits, always keeping the newest one
+      var iterator = entries.entrySet().iterator();
+      while (size > maxSize && entries.size() > 1) {
+        var eldest = iterator.next();
+        if (eldest.getKey().equals(fileName))
+          continue;
+
+        iterator.remove();
+        size -= eldest.getValue();
+        deleteFile(eldest.getKey());
+      }
+    } finally {
+      entriesLock.unlock();
+    }
+  }
+
+  private void deleteFile(String fileName) {
+    try {
+      // Downloads still reading the file opened it beforehand, so they are not affected
+      Files.deleteIfExists(cacheDirectory.resolve(fileName));
+    } catch (IOException e) {
+      System.out.println("Could not delete cached image " + fileName + ": " + e.getMessage());
+    }
+  }
+
+  /**
+   * Opens a cached image and marks it as the most recently used. It is opened while the entries are locked,
+   * so that it cannot be evicted before, and stays readable once open even if it is evicted.
+   *
+   * @return The image, or null if it is not cached.
+   */
+  private Resource open(String fileName) {
+    entriesLock.lock();
+    try {
+      Long fileSize = entries.get(fileName);
+      if (fileSize == null)
+        return null;
+      return new StreamedImage(Files.newInputStream(cacheDirectory.resolve(fileName)), fileSize);
+    } catch (NoSuchFileException e) {
+      // Deleted from the cache directory by someone else, it is fetched again
+      size -= entries.remove(fileName);
+      return null;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    } finally {
+      entriesLock.unlock();
+    }
+  }
+
+  /**
+   * Returns the cached copy of an image, fetching it from the storage backend on a miss.
+   *
+   * @param scrollId The unique identifier of the scroll.
+   * @param location The storage location of the image.
+   * @return A future holding the cached image, already open. It completes exceptionally with a
+   *         ResourceNotFoundException if the image does not exist.
+   */
+  public CompletableFuture<Resource> get(String scrollId, String location) {
+    String fileName = fileName(location);
+
+    Resource cached = open(fileName);
+    if (cached != null)
+      return CompletableFuture.completedFuture(cached);
+
+    CompletableFuture<Path> fetch = new CompletableFuture<>();
+    CompletableFuture<Path> pendingFetch = pendingFetches.putIfAbsent(location, fetch);
+    if (pendingFetch == null) {
+      // This request is the first to miss, it fetches the image for everyone
+      pendingFetch = fetch;
+      long generation = generations.getOrDefault(fileName, 0L);
+      scrollImageStorage.presign(scrollId, location)
+              .thenCompose(url -> {
+                Path partFile = cacheDirectory.resolve(fileName + ".part");
+                HttpRequest request = HttpRequest.newBuilder(url).GET().build();
+                return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofFile(partFile))
+                        .thenApply(TracingConfiguration.inCurrentContext(response -> store(response, partFile, fileName, generation)));
+              })
+              .whenComplete((cachedFile, e) -> {
+                pendingFetches.remove(location);
+                if (e != null)
+                  fetch.completeExceptionally(e);
+                else
+                  fetch.complete(cachedFile);
+              });
+    }
+
+    // Every request opens the fetched image for itself. In the unlikely case that newer images evicted it
+    // before then, or that it was evicted while being fetched, it is fetched again.
+    return pendingFetch.thenCompose(TracingConfiguration.inCurrentContext(ignored -> {
+      Resource image = open(fileName);
+      return image != null ? CompletableFuture.completedFuture(image) : get(scrollId, location);
+    }));
+  }
+
+  /**
+   * Caches a fetched image, unless it was evicted since the fetch started.
+   *
+   * @param generation The number of times the image was evicted when the fetch started.
+   * @return The cached image, or null if it was discarded.
+   */
+  private Path store(HttpResponse<Path> response, Path partFile, String fileName, long generation) {
+    try {
+      if (response.statusCode() != 200) {
+        Files.deleteIfExists(partFile);
+
+        if (response.statusCode() == 404)
+          throw new ResourceNotFoundException("Scroll image not found");
+        throw new IOException("Image download failed with status " + response.statusCode());
+      }
+
+      entriesLock.lock();
+      try {
+        // The image was replaced or deleted while it was fetched, so the fetched copy may be outdated
+        if (generations.getOrDefault(fileName, 0L) != generation) {
+          Files.deleteIfExists(partFile);
+          return null;
+        }
+
+        // The image only becomes visible under its final name once it is complete
+        Path file = cacheDirectory.resolve(fileName);
+        Files.move(partFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        add(fileName, Files.size(file));
+        return file;
+      } finally {
+        entriesLock.unlock();
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Discards the cached copy of an image, e.g. because the image was replaced or deleted.
+   *
+   * @param location The storage location of the image.
+   */
+  public void evict(String location) {
+    String fileName = fileName(location);
+
+    entriesLock.lock();
+    try {
+      // Fetches already in progress are discarded once done
+      generations.merge(fileName, 1L, Long::sum);
+      Long fileSize = entries.remove(fileName);
+      if (fileSize != null) {
+        size -= fileSize;
+        deleteFile(fileName);
+      }
+    } finally {
+      entriesLock.unlock();
+    }
+  }
+}
@@ -0,0 +1,71 @@
+package com.mf.HerculaneumTranscriptor.storage;
+
+import org.springframework.core.io.Resource;
+
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Storage backend for the ink prediction images of scrolls.
+ * Operations do not block the calling thread: their I/O is carried out by the backend and its outcome
+ * is delivered through the returned future.
+ */
+public interface ScrollImageStorage {
+
+  /**
+   * Computes the location under which the image of a scroll is stored in this backend.
+   * No I/O is performed, the location is what gets persisted as the image path of the scroll.
+   *
+   * @param scrollId The unique identifier of the scroll.
+   * @param fileExtension The extension of the image file (e.g. png).
+   * @return The storage location of the image.
+   */
+  String locate(String scrollId, String fileExtension);
+
+  /**
+   * Stores an image, replacing any image previously stored at the same location.
+   *
+   * @param location The storage location of the image, as returned by {@link #locate(String, String)}.
+   * @param content The image bytes.
+   * @return A future completed once the image has been stored.
+   */
+  CompletableFuture<Void> put(String location, ByteBuffer content);
+
+  /**
+   * Reads a range of bytes of a stored image.
+   *
+   * @param location The storage location of the image.
+   * @param offset The position of the first byte to read.
+   * @param length The number of bytes to read, or a negative value to read until the end of the image.
+   * @return A future holding the bytes read, which are fewer than requested if the image ends before.
+   *         It completes exceptionally with a ResourceNotFoundException if the image does not exist.
+   */
+  CompletableFuture<ByteBuffer> getRange(String location, long offset, long length);
+
+  /**
+   * Opens a stored image to be streamed to a client, without loading it into memory.
+   *
+   * @param location The storage location of the image.
+   * @return A future holding the image, which is read as it is sent. It completes exceptionally with a
+   *         ResourceNotFoundException if the image does not exist.
+   */
+  CompletableFuture<Resource> open(String location);
+
+  /**
+   * Deletes a stored image. Deleting an image that does not exist is not an error.
+   *
+   * @param location The storage location of the image.
+   * @return A future completed once the image has been deleted.
+   */
+  CompletableFuture<Void> delete(String location);
+
+  /**
+   * Provides a URL clients can download the image of a scroll from.
+   *
+   * @param scrollId The unique identifier of the scroll.
+   * @param location The storage location of the image.
+   * @return A future holding the download URL.
+   */
+  CompletableFuture<URI> presign(String scrollId, String location);
+}
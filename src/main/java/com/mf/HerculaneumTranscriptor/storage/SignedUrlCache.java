@@ -0,0 +1,81 @@
+package com.mf.HerculaneumTranscriptor.storage;
+
+import java.net.URI;
+import java.time.Clock;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cache of signed image URLs shared across requests.
+ * A signed URL is reused until it gets within a refresh margin of its expiry, so every client opening
+ * the same scroll receives the same URL (which CDNs can cache) and signing is done once per period.
+ */
+public class SignedUrlCache {
+
+  /**
+   * Signs a URL to a stored image.
+   */
+  @FunctionalInterface
+  public interface Signer {
+    /**
+     * @param location The storage location of the image.
+     * @param expiresAt The expiration time of the URL as Unix epoch time in seconds.
+     * @return The signed URL.
+     */
+    URI sign(String location, long expiresAt);
+  }
+
+  /**
+   * A signed image URL together with its expiration time (Unix epoch time in seconds).
+   */
+  private record SignedUrl(URI uri, long expiresAt) {}
+
+  private final Map<String, SignedUrl> signedUrls = new ConcurrentHashMap<>();
+  private final long expiration;
+  private final long refreshMargin;
+  private final Clock clock;
+
+  /**
+   * @param expiration The validity of signed URLs in seconds.
+   * @param refreshMargin Cached URLs are renewed once they have less than this many seconds left.
+   * @param clock The clock against which URL expiration is checked.
+   */
+  public SignedUrlCache(long expiration, long refreshMargin, Clock clock) {
+    if (refreshMargin >= expiration)
+      throw new IllegalArgumentException("The signed URL refresh margin must be smaller than its expiration time");
+
+    this.expiration = expiration;
+    this.refreshMargin = refreshMargin;
+    this.clock = clock;
+  }
+
+  public SignedUrlCache(long expiration, long refreshMargin) {
+    this(expiration, refreshMargin, Clock.systemUTC());
+  }
+
+  /**
+   * Returns the cached signed URL to an image, signing a new one if none is cached or it is about to expire.
+   * Concurrent requests for the same image wait on a single signing operation.
+   *
+   * @param location The storage location of the image.
+   * @param signer The function used to sign a new URL.
+   * @return A signed URL valid for at least the refresh margin.
+   */
+  public URI get(String location, Signer signer) {
+    long now = clock.millis() / 1000L;
+
+    return signedUrls.compute(location, (key, cached) ->
+            (cached != null && cached.expiresAt() - refreshMargin > now) ?
+                    cached : new SignedUrl(signer.sign(key, now + expiration), now + expiration)
+    ).uri();
+  }
+
+  /**
+   * Discards the cached URL to an image, e.g. because the image was deleted.
+   *
+   * @param location The storage location of the image.
+   */
+  public void evict(String location) {
+    signedUrls.remove(location);
+  }
+}
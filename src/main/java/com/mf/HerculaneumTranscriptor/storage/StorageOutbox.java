@@ -0,0 +1,216 @@
+package com.mf.HerculaneumTranscriptor.storage;
+
+import com.mf.HerculaneumTranscriptor.domain.StorageTask;
+import com.mf.HerculaneumTranscriptor.repository.StorageTaskRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Transactional outbox for image storage side effects.
+ * Operations are recorded as {@link StorageTask} rows in the transaction of the scroll change that caused them,
+ * so they are carried out if and only if that change commits. A background worker then runs them in batches
+ * against the storage backend, retrying failed ones with exponential backoff.
+ * Uploaded images are staged on the local disk of the instance that received them, which is the only one
+ * carrying out their storage. Images its stager did not store for too long, e.g. because it was replaced by
+ * an instance of another name, are given up by any instance.
+ */
+@Component
+@RequiredArgsConstructor
+public class StorageOutbox {
+  private final StorageTaskRepository storageTaskRepository;
+  private final ScrollImageStorage scrollImageStorage;
+  private final ScrollImageCache scrollImageCache;
+
+  @Value("${api.scrolls.outbox.stagingDirectory}")
+  private Path stagingDirectory;
+  @Value("${api.scrolls.outbox.batchSize}")
+  private int batchSize;
+  @Value("${api.scrolls.outbox.maxAttempts}")
+  private int maxAttempts;
+  @Value("${api.scrolls.outbox.backoff}")
+  private Duration backoff;
+  @Value("${api.scrolls.outbox.lease}")
+  private Duration lease;
+  @Value("${api.scrolls.outbox.instanceId}")
+  private String instanceId;
+  @Value("${api.scrolls.outbox.abandonAfter}")
+  private Duration abandonAfter;
+
+  @PostConstruct
+  void resolveInstanceId() throws IOException {
+    if (instanceId == null || instanceId.isBlank())
+      instanceId = InetAddress.getLocalHost().getHostName();
+  }
+
+  private static void deleteStagedFile(String stagedPath) {
+    try {
+      Files.deleteIfExists(Path.of(stagedPath));
+    } catch (IOException e) {
+      System.out.println("Could not delete staged image " + stagedPath + ": " + e.getMessage());
+    }
+  }
+
+  private StorageTask enqueue(StorageTask.Operation operation, String location, String stagedPath) {
+    StorageTask task = new StorageTask();
+    task.setOperation(operation);
+    task.setLocation(location);
+    task.setStagedPath(stagedPath);
+    task.setStagedBy(stagedPath == null ? null : instanceId);
+    task.setNextAttemptAt(Instant.now());
+
+    return storageTaskRepository.save(task);
+  }
+
+  /**
+   * Records the storage of an image. The image is staged on local disk right away,
+   * and the staged copy is discarded if the current transaction rolls back.
+   *
+   * @param location The storage location of the image.
+   * @param content The image content, which is read until its end.
+   * @throws IOException if the image cannot be staged.
+   */
+  public void enqueuePut(String location, InputStream content) throws IOException {
+    Files.createDirectories(stagingDirectory);
+    Path stagedFile = stagingDirectory.resolve(UUID.randomUUID().toString()).toAbsolutePath();
+    Files.copy(content, stagedFile);
+
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+        @Override
+        public void afterCompletion(int status) {
+          if (status != STATUS_COMMITTED)
+            deleteStagedFile(stagedFile.toString());
+        }
+      });
+    }
+
+    enqueue(StorageTask.Operation.PUT, location, stagedFile.toString());
+  }
+
+  /**
+   * Records the deletion of a stored image.
+   *
+   * @param location The storage location of the image.
+   */
+  public void enqueueDelete(String location) {
+    enqueue(StorageTask.Operation.DELETE, location, null);
+  }
+
+  private CompletableFuture<Void> run(StorageTask task) {
+    if (task.getOperation() == StorageTask.Operation.DELETE)
+      return scrollImageStorage.delete(task.getLocation());
+
+    // The staged file is mapped rather than read, so large images are not copied onto the heap
+    ByteBuffer content;
+    try (FileChannel channel = FileChannel.open(Path.of(task.getStagedPath()))) {
+      content = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    } catch (IOException e) {
+      return CompletableFuture.failedFuture(e);
+    }
+
+    return scrollImageStorage.put(task.getLocation(), content);
+  }
+
+  private void recordFailure(StorageTask task, Throwable e) {
+    Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+    String error = String.valueOf(cause);
+
+    task.setAttempts(task.getAttempts() + 1);
+    task.setClaimToken(null);
+    task.setLastError(error.length() > 1024 ? error.substring(0, 1024) : error);
+
+    if (task.getAttempts() >= maxAttempts) {
+      System.out.println("Giving up on storage task " + task.getId() + " (" + task.getOperation() + " " + task.getLocation() + "): " + error);
+      task.setNextAttemptAt(null);
+      // The task is kept for inspection, but its image would never be stored
+      if (task.getStagedPath() != null)
+        deleteStagedFile(task.getStagedPath());
+    } else {
+      // Exponential backoff: backoff, 2 * backoff, 4 * backoff...
+      task.setNextAttemptAt(Instant.now().plus(backoff.multipliedBy(1L << Math.min(task.getAttempts() - 1, 20))));
+    }
+  }
+
+  /**
+   * Claims a batch of due tasks and carries them out concurrently, waiting for all of them to finish
+   * or for their lease to end.
+   *
+   * @return The number of tasks processed.
+   */
+  @Scheduled(fixedDelayString = "${api.scrolls.outbox.pollInterval}")
+  public int processBatch() {
+    Instant now = Instant.now();
+    // Images staged by instances that are gone would never be stored, and would hold back the later tasks of their image
+    int abandoned = storageTaskRepository.giveUpAbandoned(instanceId, now.minus(abandonAfter),
+            "Not stored by the instance that staged it within " + abandonAfter);
+    if (abandoned > 0)
+      System.out.println("Gave up on " + abandoned + " storage tasks staged by instances that are gone");
+
+    List<Long> dueTaskIds = storageTaskRepository.findDueTaskIds(now, instanceId, PageRequest.ofSize(batchSize));
+    if (dueTaskIds.isEmpty())
+      return 0;
+
+    // Claimed tasks of a worker that dies become due again when the lease ends
+    UUID claimToken = UUID.randomUUID();
+    Instant leaseEnd = now.plus(lease);
+    storageTaskRepository.claim(dueTaskIds, claimToken, now, leaseEnd);
+    List<StorageTask> tasks = storageTaskRepository.findByClaimTokenOrderById(claimToken);
+
+    List<CompletableFuture<Void>> results = tasks.stream().map(this::run).toList();
+
+    List<StorageTask> done = new ArrayList<>();
+    List<StorageTask> failed = new ArrayList<>();
+    for (int i = 0; i < tasks.size(); i++) {
+      StorageTask task = tasks.get(i);
+      // Once the lease ends the task may be claimed again, so it is not waited for any longer
+      long leaseLeft = Math.max(Duration.between(Instant.now(), leaseEnd).toMillis(), 0);
+      try {
+        results.get(i).get(leaseLeft, TimeUnit.MILLISECONDS);
+        done.add(task);
+      } catch (ExecutionException e) {
+        recordFailure(task, e.getCause());
+        failed.add(task);
+      } catch (TimeoutException e) {
+        results.get(i).cancel(true);
+        recordFailure(task, new TimeoutException("Not done when its lease of " + lease + " ended"));
+        failed.add(task);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        recordFailure(task, e);
+        failed.add(task);
+      }
+    }
+
+    storageTaskRepository.saveAll(failed);
+    storageTaskRepository.deleteAllInBatch(done);
+    // Cached copies of replaced or deleted images are stale
+    done.forEach(task -> scrollImageCache.evict(task.getLocation()));
+    done.stream().map(StorageTask::getStagedPath).filter(path -> path != null).forEach(StorageOutbox::deleteStagedFile);
+
+    return tasks.size();
+  }
+}
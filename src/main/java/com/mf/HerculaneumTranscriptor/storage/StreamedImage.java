@@ -0,0 +1,26 @@
+package com.mf.HerculaneumTranscriptor.storage;
+
+import org.springframework.core.io.InputStreamResource;
+
+import java.io.InputStream;
+
+/**
+ * An image streamed from a storage backend as it is sent to the client, whose length is known beforehand
+ * (e.g. from the headers of a download) so that it can be sent along with it.
+ */
+class StreamedImage extends InputStreamResource {
+  private final long length;
+
+  /**
+   * @param length The length of the image in bytes, or a negative value when it is unknown.
+   */
+  StreamedImage(InputStream image, long length) {
+    super(image);
+    this.length = length;
+  }
+
+  @Override
+  public long contentLength() {
+    return length;
+  }
+}
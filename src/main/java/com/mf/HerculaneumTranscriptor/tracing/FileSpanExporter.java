@@ -0,0 +1,79 @@
+package com.mf.HerculaneumTranscriptor.tracing;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+
+/**
+ * Appends finished spans to a local file, one JSON object per line, so that traces can be looked at without
+ * an OpenTelemetry collector, e.g. with {@code jq 'select(.traceId == "...")' traces.jsonl}.
+ */
+public class FileSpanExporter implements SpanExporter {
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  private final BufferedWriter writer;
+
+  public FileSpanExporter(Path file) throws IOException {
+    if (file.getParent() != null)
+      Files.createDirectories(file.getParent());
+    this.writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+  }
+
+  @Override
+  public synchronized CompletableResultCode export(Collection<SpanData> spans) {
+    try {
+      for (SpanData span : spans) {
+        writer.write(toJson(span).toString());
+        writer.newLine();
+      }
+      writer.flush();
+      return CompletableResultCode.ofSuccess();
+    } catch (IOException e) {
+      System.out.println("Could not write spans to file: " + e.getMessage());
+      return CompletableResultCode.ofFailure();
+    }
+  }
+
+  static ObjectNode toJson(SpanData span) {
+    ObjectNode json = MAPPER.createObjectNode();
+    json.put("traceId", span.getTraceId());
+    json.put("spanId", span.getSpanId());
+    if (span.getParentSpanContext().isValid())
+      json.put("parentSpanId", span.getParentSpanId());
+    json.put("name", span.getName());
+    json.put("kind", span.getKind().name());
+    json.put("startEpochNanos", span.getStartEpochNanos());
+    json.put("endEpochNanos", span.getEndEpochNanos());
+    json.put("durationMicros", (span.getEndEpochNanos() - span.getStartEpochNanos()) / 1000);
+    json.put("status", span.getStatus().getStatusCode().name());
+
+    ObjectNode attributes = json.putObject("attributes");
+    span.getAttributes().forEach((key, value) -> attributes.put(key.getKey(), String.valueOf(value)));
+    return json;
+  }
+
+  @Override
+  public CompletableResultCode flush() {
+    return CompletableResultCode.ofSuccess();
+  }
+
+  @Override
+  public synchronized CompletableResultCode shutdown() {
+    try {
+      writer.close();
+      return CompletableResultCode.ofSuccess();
+    } catch (IOException e) {
+      return CompletableResultCode.ofFailure();
+    }
+  }
+}
@@ -0,0 +1,78 @@
+package db.migration;
+
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+import org.postgresql.PGConnection;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.OffsetDateTime;
+
+/**
+ * Gives every region without any history a base revision holding its whole state, as if it had been recorded
+ * by its last change. Regions created before the history was kept are then rebuilt as of any time since that change,
+ * and their later revisions are applied onto it.
+ * <p>
+ * The base revision is the creation of the region if it was never changed, and an update otherwise. Its IDs are
+ * drawn from the sequence one at a time, which never gives an ID of a block allocated by a running instance.
+ * <p>
+ * The revisions are written as the history stood at this version, whatever the classes of the history become later:
+ * a snapshot holds every field of the region, and its author is left out when the user was deleted.
+ */
+public class V9__Annotation_base_revisions extends BaseJavaMigration {
+  private static final int BATCH_SIZE = 500;
+  private static final JsonNodeFactory NODES = JsonNodeFactory.instance;
+
+  @Override
+  public void migrate(Context context) throws Exception {
+    Connection connection = context.getConnection();
+    String nextId = connection.isWrapperFor(PGConnection.class) ?
+            "nextval('annotation_revisions_seq')" : "NEXT VALUE FOR annotation_revisions_seq";
+
+    try (Statement regions = connection.createStatement();
+         PreparedStatement insert = connection.prepareStatement("""
+                 INSERT INTO annotation_revisions
+                     (id, region_id, scroll_id, revision, operation, editor, created_at, snapshot, changes)
+                 VALUES (""" + nextId + ", ?, ?, ?, ?, NULL, ?, TRUE, ?)")) {
+      regions.setFetchSize(BATCH_SIZE);
+      ResultSet region = regions.executeQuery("""
+              SELECT a.region_id, a.scroll_id, a.version, a.transcription, a.x, a.y, a.width, a.height,
+                     a.certainty_score, u.username, a.created_at,
+                     COALESCE(a.updated_at, a.created_at, CURRENT_TIMESTAMP) AS changed_at
+              FROM annotations a LEFT JOIN users u ON u.id = a.author_user_id
+              WHERE a.region_id IS NOT NULL AND a.scroll_id IS NOT NULL
+                AND NOT EXISTS (SELECT 1 FROM annotation_revisions r WHERE r.region_id = a.region_id)""");
+
+      int batched = 0;
+      while (region.next()) {
+        long version = region.getLong("version");
+        OffsetDateTime createdAt = region.getObject("created_at", OffsetDateTime.class);
+
+        ObjectNode state = NODES.objectNode();
+        state.put("transcription", region.getString("transcription"));
+        state.put("x", region.getObject("x", Float.class));
+        state.put("y", region.getObject("y", Float.class));
+        state.put("width", region.getObject("width", Float.class));
+        state.put("height", region.getObject("height", Float.class));
+        state.put("certaintyScore", region.getFloat("certainty_score"));
+        state.put("author", region.getString("username"));
+        state.put("createdAt", createdAt != null ? createdAt.toInstant().toString() : null);
+
+        insert.setObject(1, region.getObject("region_id"));
+        insert.setLong(2, region.getLong("scroll_id"));
+        insert.setLong(3, version);
+        insert.setString(4, version == 0 ? "CREATE" : "UPDATE");
+        insert.setObject(5, region.getObject("changed_at", OffsetDateTime.class));
+        insert.setString(6, state.toString());
+        insert.addBatch();
+        if (++batched % BATCH_SIZE == 0)
+          insert.executeBatch();
+      }
+      insert.executeBatch();
+    }
+  }
+}
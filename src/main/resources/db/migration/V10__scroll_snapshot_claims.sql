@@ -0,0 +1,7 @@
+-- Claims of the instances of the backend on taking the next snapshot of a scroll, so that only one of them takes it.
+-- A claim ends at its time, after which another instance may take over a snapshot that was never finished.
+create table scroll_snapshot_claims (
+    scroll_id bigint not null,
+    claimed_until timestamp(6) with time zone not null,
+    primary key (scroll_id)
+);
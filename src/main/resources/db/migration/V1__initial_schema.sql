@@ -0,0 +1,56 @@
+-- Schema as created by Hibernate's ddl-auto before migrations were introduced.
+-- Databases created that way are baselined at this version and only receive the following migrations.
+
+create sequence users_seq start with 1 increment by 50;
+create sequence scrolls_seq start with 1 increment by 50;
+create sequence annotations_seq start with 1 increment by 50;
+
+create table users (
+    id bigint not null,
+    username varchar(255),
+    first_name varchar(255),
+    last_name varchar(255),
+    contact varchar(255),
+    password_hash varchar(255),
+    permissions smallint check (permissions between 0 and 3),
+    primary key (id)
+);
+
+create table scrolls (
+    id bigint not null,
+    scroll_id varchar(255),
+    display_name varchar(255),
+    description varchar(255),
+    image_path varchar(255),
+    thumbnail_url varchar(255),
+    created_at timestamp(6) with time zone,
+    primary key (id)
+);
+
+create table annotations (
+    id bigint not null,
+    region_id uuid,
+    author_user_id bigint not null,
+    scroll_id bigint not null,
+    transcription varchar(255),
+    x real,
+    y real,
+    width real,
+    height real,
+    certainty_score float default 0 not null,
+    created_at timestamp(6) with time zone not null,
+    updated_at timestamp(6) with time zone not null,
+    primary key (id)
+);
+
+create table votes (
+    annotation_id bigint not null,
+    user_id bigint not null,
+    vote_value integer not null,
+    primary key (annotation_id, user_id)
+);
+
+alter table annotations add constraint FK3pbo7c1xgb3bslptkusgiajmb foreign key (author_user_id) references users;
+alter table annotations add constraint FKsgk0x3vgs2fieo10xkhmmj2nu foreign key (scroll_id) references scrolls;
+alter table votes add constraint FKaessf4tkqvol61q522heo0pb5 foreign key (annotation_id) references annotations;
+alter table votes add constraint FKli4uj3ic2vypf5pialchj925e foreign key (user_id) references users;
@@ -0,0 +1,20 @@
+-- Indexes backing the lookups of the repositories, which otherwise scan whole tables.
+
+-- Public identifiers, also enforcing their uniqueness.
+-- Databases that already got these as unique constraints from ddl-auto keep them.
+create unique index if not exists uk_users_username on users (username);
+create unique index if not exists uk_scrolls_scroll_id on scrolls (scroll_id);
+create unique index if not exists uk_annotations_region_id on annotations (region_id);
+
+-- Keyset pagination of the user list, named after what it is for
+alter index if exists IDX8aqciu3cvfp420xyfrfjlxc16 rename to idx_users_username_id;
+create index if not exists idx_users_username_id on users (username, id);
+
+-- Regions of a scroll, optionally only those updated after a given time
+create index idx_annotations_scroll_updated_at on annotations (scroll_id, updated_at);
+-- Regions of an author, when the author is deleted
+create index idx_annotations_author on annotations (author_user_id);
+
+-- Votes of an annotation are found through the primary key, which starts with annotation_id.
+-- Votes of a user, when the user is deleted
+create index idx_votes_user on votes (user_id);
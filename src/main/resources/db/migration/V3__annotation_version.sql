@@ -0,0 +1,3 @@
+-- Version of each region, incremented on every update, so that concurrent edits and votes
+-- are detected instead of overwriting each other. Existing regions start at version 0.
+alter table annotations add column version bigint default 0 not null;
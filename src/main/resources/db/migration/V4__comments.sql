@@ -0,0 +1,24 @@
+-- Comments on regions, numbered in insertion order by an identity column so that clients can sync them with a cursor
+create table comments (
+    id bigint generated by default as identity,
+    comment_id uuid,
+    annotation_id bigint not null,
+    author_user_id bigint not null,
+    text varchar(1024) not null,
+    created_at timestamp(6) with time zone not null,
+    primary key (id)
+);
+
+create unique index uk_comments_comment_id on comments (comment_id);
+-- Comments of a region after a cursor
+create index idx_comments_annotation_id on comments (annotation_id, id);
+-- Comments of a region created after a given time
+create index idx_comments_annotation_created_at on comments (annotation_id, created_at);
+-- Comments of an author, when the author is deleted
+create index idx_comments_author on comments (author_user_id);
+
+alter table comments add constraint fk_comments_annotation foreign key (annotation_id) references annotations;
+alter table comments add constraint fk_comments_author foreign key (author_user_id) references users;
+
+-- Number of comments of each region, kept along with the region so that region lists need not count them
+alter table annotations add column comment_count integer default 0 not null;
@@ -0,0 +1,22 @@
+-- Append-only history of the changes made to regions. Most rows only hold the fields a change modified,
+-- with a full snapshot every few revisions so that the state at any revision is rebuilt from a few rows.
+-- Rows are kept when their region, scroll or editor is deleted, so nothing references them.
+create sequence annotation_revisions_seq start with 1 increment by 50;
+
+create table annotation_revisions (
+    id bigint not null,
+    region_id uuid not null,
+    scroll_id bigint not null,
+    revision bigint not null,
+    operation varchar(255) not null check (operation in ('CREATE', 'UPDATE', 'VOTE', 'DELETE')),
+    editor varchar(255),
+    created_at timestamp(6) with time zone not null,
+    snapshot boolean not null,
+    changes varchar(4096) not null,
+    primary key (id)
+);
+
+-- Revisions of a region, in order
+create index idx_annotation_revisions_region on annotation_revisions (region_id, revision);
+-- Revisions of the regions of a scroll, grouped by region
+create index idx_annotation_revisions_scroll on annotation_revisions (scroll_id, region_id, revision);
@@ -0,0 +1,30 @@
+-- Periodic snapshots of the regions of each scroll, rebuilt from the region history, from which the regions
+-- of a scroll at any time are rebuilt by replaying the revisions made after the snapshot.
+create sequence scroll_snapshots_seq start with 1 increment by 50;
+create sequence scroll_snapshot_regions_seq start with 1 increment by 50;
+
+create table scroll_snapshots (
+    id bigint not null,
+    scroll_id bigint not null,
+    covered_until timestamp(6) with time zone not null,
+    region_count integer not null,
+    primary key (id)
+);
+
+create table scroll_snapshot_regions (
+    id bigint not null,
+    snapshot_id bigint not null,
+    region_id uuid not null,
+    revision bigint not null,
+    updated_at timestamp(6) with time zone not null,
+    state varchar(4096) not null,
+    primary key (id),
+    constraint fk_scroll_snapshot_regions_snapshot foreign key (snapshot_id) references scroll_snapshots
+);
+
+-- Latest snapshot of a scroll before a given time
+create index idx_scroll_snapshots_scroll_covered_until on scroll_snapshots (scroll_id, covered_until);
+-- Regions of a snapshot, in pages
+create index idx_scroll_snapshot_regions_snapshot on scroll_snapshot_regions (snapshot_id, id);
+-- Revisions of the regions of a scroll made within a period, in the order they were made
+create index idx_annotation_revisions_scroll_created_at on annotation_revisions (scroll_id, created_at);
@@ -0,0 +1,24 @@
+-- Outbox of image storage side effects, see StorageOutbox.
+-- Databases that already got it from ddl-auto keep it, and only receive the columns it lacks.
+create sequence if not exists storage_outbox_seq start with 1 increment by 50;
+
+create table if not exists storage_outbox (
+    id bigint not null,
+    operation varchar(255) check (operation in ('PUT', 'DELETE')),
+    location varchar(255),
+    staged_path varchar(255),
+    attempts integer not null,
+    next_attempt_at timestamp(6) with time zone,
+    claim_token uuid,
+    last_error varchar(1024),
+    created_at timestamp(6) with time zone,
+    primary key (id)
+);
+
+-- Instance of the backend whose staging directory holds the image of a PUT
+alter table storage_outbox add column if not exists staged_by varchar(255);
+
+-- Due tasks
+create index if not exists idx_storage_outbox_next_attempt on storage_outbox (next_attempt_at);
+-- Older live tasks of the same image, which a task waits for
+create index if not exists idx_storage_outbox_location on storage_outbox (location);
@@ -0,0 +1,6 @@
+-- Dimensions, bit depth and checksum of the image of each scroll, read when the scroll is created.
+-- They stay null for scrolls created before, as for images whose format is not recognized.
+alter table scrolls add column if not exists width integer;
+alter table scrolls add column if not exists height integer;
+alter table scrolls add column if not exists bit_depth integer;
+alter table scrolls add column if not exists checksum varchar(64);
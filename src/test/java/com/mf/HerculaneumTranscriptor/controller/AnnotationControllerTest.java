@@ -1,6 +1,7 @@
 package com.mf.HerculaneumTranscriptor.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mf.HerculaneumTranscriptor.exception.ResourceModifiedException;
 import com.mf.HerculaneumTranscriptor.security.JwtAuthenticationFilter;
 import com.mf.HerculaneumTranscriptor.service.AnnotationService;
 import org.junit.jupiter.api.BeforeEach;
@@ -12,6 +13,7 @@ import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.FilterType;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
@@ -26,9 +28,11 @@ import java.util.UUID;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -72,6 +76,7 @@ public class AnnotationControllerTest {
     boxRegionDto = new BoxRegion();
     boxRegionDto.setRegionId(REGION_ID);
     boxRegionDto.setAuthorUsername("testuser");
+    boxRegionDto.setVersion(4L);
 
     Coordinates coords = new Coordinates().x(10f).y(20f).width(100f).height(50f);
     newBoxRegionDto = new NewBoxRegion().coordinates(coords).transcription("test");
@@ -88,7 +93,7 @@ public class AnnotationControllerTest {
   @Test
   void getScrollRegions_shouldReturnRegionUpdateResponse() throws Exception {
     // Arrange
-    when(annotationService.getScrollRegions(eq(SCROLL_ID), any())).thenReturn(regionUpdateResponse);
+    when(annotationService.getScrollRegions(eq(SCROLL_ID), any(), any())).thenReturn(regionUpdateResponse);
 
     // Act & Assert
     mockMvc.perform(get("/scrolls/{scrollId}/regions", SCROLL_ID))
@@ -130,7 +135,7 @@ public class AnnotationControllerTest {
   @Test
   void updateRegion_shouldReturnOk_withValidData() throws Exception {
     // Arrange
-    when(annotationService.updateRegion(eq(SCROLL_ID), eq(REGION_ID), any(NewBoxRegion.class))).thenReturn(boxRegionDto);
+    when(annotationService.updateRegion(eq(SCROLL_ID), eq(REGION_ID), any(NewBoxRegion.class), isNull())).thenReturn(boxRegionDto);
     String requestBody = objectMapper.writeValueAsString(newBoxRegionDto);
 
     // Act & Assert
@@ -138,9 +143,54 @@ public class AnnotationControllerTest {
                     .contentType(MediaType.APPLICATION_JSON)
                     .content(requestBody))
             .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.ETAG, "\"4\""))
             .andExpect(jsonPath("$.regionId").value(REGION_ID.toString()));
   }
 
+  @Test
+  void updateRegion_shouldPassVersion_fromIfMatch() throws Exception {
+    // Arrange
+    when(annotationService.updateRegion(eq(SCROLL_ID), eq(REGION_ID), any(NewBoxRegion.class), eq(3L))).thenReturn(boxRegionDto);
+    String requestBody = objectMapper.writeValueAsString(newBoxRegionDto);
+
+    // Act & Assert
+    mockMvc.perform(put("/scrolls/{scrollId}/regions/{regionId}", SCROLL_ID, REGION_ID)
+                    .header(HttpHeaders.IF_MATCH, "W/\"3\"")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(requestBody))
+            .andExpect(status().isOk());
+  }
+
+  @Test
+  void updateRegion_shouldReturn409WithCurrentRegion_whenVersionIsNotCurrent() throws Exception {
+    // Arrange
+    when(annotationService.updateRegion(eq(SCROLL_ID), eq(REGION_ID), any(NewBoxRegion.class), eq(3L)))
+            .thenThrow(new ResourceModifiedException("Region was changed since version 3", boxRegionDto));
+    String requestBody = objectMapper.writeValueAsString(newBoxRegionDto);
+
+    // Act & Assert
+    mockMvc.perform(put("/scrolls/{scrollId}/regions/{regionId}", SCROLL_ID, REGION_ID)
+                    .header(HttpHeaders.IF_MATCH, "\"3\"")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(requestBody))
+            .andExpect(status().isConflict())
+            .andExpect(jsonPath("$.current.regionId").value(REGION_ID.toString()))
+            .andExpect(jsonPath("$.current.version").value(4));
+  }
+
+  @Test
+  void updateRegion_shouldReturn400_whenIfMatchIsNotAVersion() throws Exception {
+    // Arrange
+    String requestBody = objectMapper.writeValueAsString(newBoxRegionDto);
+
+    // Act & Assert
+    mockMvc.perform(put("/scrolls/{scrollId}/regions/{regionId}", SCROLL_ID, REGION_ID)
+                    .header(HttpHeaders.IF_MATCH, "\"abc\"")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(requestBody))
+            .andExpect(status().isBadRequest());
+  }
+
   @Test
   void updateRegion_shouldReturn400_withInValidData() throws Exception {
     // Arrange
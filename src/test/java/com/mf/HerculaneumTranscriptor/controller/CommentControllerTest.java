@@ -0,0 +1,186 @@
+package com.mf.HerculaneumTranscriptor.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mf.HerculaneumTranscriptor.exception.ResourceNotFoundException;
+import com.mf.HerculaneumTranscriptor.security.JwtAuthenticationFilter;
+import com.mf.HerculaneumTranscriptor.service.CommentService;
+import comment.dto.Comment;
+import comment.dto.CommentContent;
+import comment.dto.CommentUpdateResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.FilterType;
+import org.springframework.http.MediaType;
+import org.springframework.security.config.annotation.web.builders.HttpSecurity;
+import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
+import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import javax.validation.ValidationException;
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(
+        controllers = CommentController.class,
+        // Exclude custom JWT filter.
+        excludeFilters = {
+                @ComponentScan.Filter(type = FilterType.ASSIGNABLE_TYPE, classes = JwtAuthenticationFilter.class)
+        }
+)
+public class CommentControllerTest {
+  // Disable CSRF for this test context, since our API uses JWT.
+  @TestConfiguration
+  static class TestSecurityConfig {
+    @Bean
+    public SecurityFilterChain testFilterChain(HttpSecurity http) throws Exception {
+      http.csrf(AbstractHttpConfigurer::disable);
+      return http.build();
+    }
+  }
+
+  @Autowired
+  private MockMvc mockMvc;
+
+  @Autowired
+  private ObjectMapper objectMapper;
+
+  @MockitoBean
+  private CommentService commentService;
+
+  private Comment commentDto;
+  private CommentContent commentContent;
+  private CommentUpdateResponse commentUpdateResponse;
+
+  private static final String SCROLL_ID = "vesuvius-scroll-1";
+  private static final UUID REGION_ID = UUID.randomUUID();
+  private static final UUID COMMENT_ID = UUID.randomUUID();
+
+  @BeforeEach
+  void setUp() {
+    commentDto = new Comment();
+    commentDto.setCommentId(COMMENT_ID);
+    commentDto.setAuthorUsername("testuser");
+    commentDto.setText("I think this might be a delta, not an alpha.");
+    commentDto.setCreatedAt(Date.from(Instant.now()));
+
+    commentContent = new CommentContent().text(commentDto.getText());
+
+    commentUpdateResponse = new CommentUpdateResponse();
+    commentUpdateResponse.setComments(List.of(commentDto));
+    commentUpdateResponse.setNextCursor("MTI");
+    commentUpdateResponse.setHasMore(false);
+    commentUpdateResponse.setLastSyncTimestamp(Date.from(Instant.now()));
+  }
+
+  // Tests for getRegionComments
+
+  @Test
+  void getRegionComments_shouldReturnCommentUpdateResponse() throws Exception {
+    // Arrange
+    when(commentService.getRegionComments(eq(SCROLL_ID), eq(REGION_ID), isNull(), eq("MTE"))).thenReturn(commentUpdateResponse);
+
+    // Act & Assert
+    mockMvc.perform(get("/scrolls/{scrollId}/regions/{regionId}/comments", SCROLL_ID, REGION_ID)
+                    .param("cursor", "MTE"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.comments[0].commentId").value(COMMENT_ID.toString()))
+            .andExpect(jsonPath("$.nextCursor").value("MTI"))
+            .andExpect(jsonPath("$.hasMore").value(false));
+  }
+
+  @Test
+  void getRegionComments_shouldReturn400_whenCursorIsMalformed() throws Exception {
+    // Arrange
+    when(commentService.getRegionComments(eq(SCROLL_ID), eq(REGION_ID), isNull(), eq("???")))
+            .thenThrow(new ValidationException("Malformed cursor: ???"));
+
+    // Act & Assert
+    mockMvc.perform(get("/scrolls/{scrollId}/regions/{regionId}/comments", SCROLL_ID, REGION_ID)
+                    .param("cursor", "???"))
+            .andExpect(status().isBadRequest());
+  }
+
+  @Test
+  void getRegionComments_shouldReturn404_whenRegionDoesNotExist() throws Exception {
+    // Arrange
+    when(commentService.getRegionComments(eq(SCROLL_ID), eq(REGION_ID), any(), any()))
+            .thenThrow(new ResourceNotFoundException("Region not found"));
+
+    // Act & Assert
+    mockMvc.perform(get("/scrolls/{scrollId}/regions/{regionId}/comments", SCROLL_ID, REGION_ID))
+            .andExpect(status().isNotFound());
+  }
+
+  // Tests for addCommentToRegion
+
+  @Test
+  void addCommentToRegion_shouldReturnCreated_withValidData() throws Exception {
+    // Arrange
+    when(commentService.addComment(eq(SCROLL_ID), eq(REGION_ID), any(CommentContent.class))).thenReturn(commentDto);
+    String requestBody = objectMapper.writeValueAsString(commentContent);
+
+    // Act & Assert
+    mockMvc.perform(post("/scrolls/{scrollId}/regions/{regionId}/comments", SCROLL_ID, REGION_ID)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(requestBody))
+            .andExpect(status().isCreated())
+            .andExpect(jsonPath("$.commentId").value(COMMENT_ID.toString()))
+            .andExpect(jsonPath("$.authorUsername").value("testuser"));
+  }
+
+  @Test
+  void addCommentToRegion_shouldReturn400_whenTextIsTooShort() throws Exception {
+    // Arrange
+    String requestBody = objectMapper.writeValueAsString(new CommentContent().text("short"));
+
+    // Act & Assert
+    mockMvc.perform(post("/scrolls/{scrollId}/regions/{regionId}/comments", SCROLL_ID, REGION_ID)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(requestBody))
+            .andExpect(status().isBadRequest());
+    verify(commentService, never()).addComment(any(), any(), any());
+  }
+
+  // Tests for deleteComment
+
+  @Test
+  void deleteComment_shouldReturnNoContent() throws Exception {
+    // Arrange
+    doNothing().when(commentService).deleteComment(SCROLL_ID, REGION_ID, COMMENT_ID);
+
+    // Act & Assert
+    mockMvc.perform(delete("/scrolls/{scrollId}/regions/{regionId}/comments/{commentId}", SCROLL_ID, REGION_ID, COMMENT_ID))
+            .andExpect(status().isNoContent());
+  }
+
+  @Test
+  void deleteComment_shouldReturn404_whenCommentDoesNotExist() throws Exception {
+    // Arrange
+    doThrow(new ResourceNotFoundException("Comment not found"))
+            .when(commentService).deleteComment(SCROLL_ID, REGION_ID, COMMENT_ID);
+
+    // Act & Assert
+    mockMvc.perform(delete("/scrolls/{scrollId}/regions/{regionId}/comments/{commentId}", SCROLL_ID, REGION_ID, COMMENT_ID))
+            .andExpect(status().isNotFound());
+  }
+}
@@ -20,15 +20,16 @@ import org.springframework.security.config.annotation.web.configurers.AbstractHt
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import scroll.dto.NewScroll;
 import scroll.dto.Scroll;
 
 import java.net.URI;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
-import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -80,7 +81,12 @@ public class ScrollControllerTest {
     when(scrollService.getAllScrolls()).thenReturn(List.of(scrollDto));
 
     // Act & Assert
-    mockMvc.perform(get("/scrolls"))
+    // Scroll endpoints complete asynchronously, so the response is only written on the async dispatch
+    MvcResult result = mockMvc.perform(get("/scrolls"))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+
+    mockMvc.perform(asyncDispatch(result))
             .andExpect(status().isOk())
             .andExpect(jsonPath("$[0].scrollId").value(SCROLL_ID));
   }
@@ -98,12 +104,17 @@ public class ScrollControllerTest {
     MockMultipartFile metadataPart = new MockMultipartFile(
             "metadata", "", MediaType.APPLICATION_JSON_VALUE, metadataJson.getBytes());
 
-    when(scrollService.createScroll(any(NewScroll.class), any(MockMultipartFile.class))).thenReturn(scrollDto);
+    when(scrollService.createScroll(any(NewScroll.class), any(MockMultipartFile.class)))
+            .thenReturn(CompletableFuture.completedFuture(scrollDto));
 
     // Act & Assert
-    mockMvc.perform(multipart("/scrolls")
+    MvcResult result = mockMvc.perform(multipart("/scrolls")
                     .file(imageFile)
                     .file(metadataPart))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+
+    mockMvc.perform(asyncDispatch(result))
             .andExpect(status().isOk())
             .andExpect(jsonPath("$.scrollId").value(SCROLL_ID));
   }
@@ -115,7 +126,8 @@ public class ScrollControllerTest {
             "ink_image", "image.png", MediaType.IMAGE_PNG_VALUE, "dummy-image-bytes".getBytes());
     MockMultipartFile metadataPart = new MockMultipartFile("metadata", "", MediaType.APPLICATION_JSON_VALUE, "{}".getBytes());
 
-    when(scrollService.createScroll(any(NewScroll.class), any(MockMultipartFile.class))).thenReturn(scrollDto);
+    when(scrollService.createScroll(any(NewScroll.class), any(MockMultipartFile.class)))
+            .thenReturn(CompletableFuture.completedFuture(scrollDto));
 
     // Act & Assert
     mockMvc.perform(multipart("/scrolls")
@@ -129,11 +141,14 @@ public class ScrollControllerTest {
   @Test
   void deleteScroll_shouldReturnOk_whenUserDeletesScroll() throws Exception {
     // Arrange
-    // A void service method should be mocked with doNothing()
-    doNothing().when(scrollService).deleteScroll(SCROLL_ID);
+    when(scrollService.deleteScroll(SCROLL_ID)).thenReturn(CompletableFuture.completedFuture(null));
 
     // Act & Assert
-    mockMvc.perform(delete("/scrolls/{scrollId}", SCROLL_ID))
+    MvcResult result = mockMvc.perform(delete("/scrolls/{scrollId}", SCROLL_ID))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+
+    mockMvc.perform(asyncDispatch(result))
             .andExpect(status().isOk());
   }
 
@@ -144,10 +159,14 @@ public class ScrollControllerTest {
     // Arrange
     byte[] imageBytes = "dummy-image-content".getBytes();
     Resource imageResource = new ByteArrayResource(imageBytes);
-    when(scrollService.getScrollImage(SCROLL_ID)).thenReturn(imageResource);
+    when(scrollService.getScrollImage(SCROLL_ID)).thenReturn(CompletableFuture.completedFuture(imageResource));
 
     // Act & Assert
-    mockMvc.perform(get("/scrolls/{scrollId}/local-download", SCROLL_ID))
+    MvcResult result = mockMvc.perform(get("/scrolls/{scrollId}/local-download", SCROLL_ID))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+
+    mockMvc.perform(asyncDispatch(result))
             .andExpect(status().isOk())
             .andExpect(content().contentType(MediaType.IMAGE_PNG)) // Assuming the service sets this
             .andExpect(content().bytes(imageBytes));
@@ -159,10 +178,14 @@ public class ScrollControllerTest {
   void getScrollImageURL_shouldReturnURL_whenAuthenticated() throws Exception {
     // Arrange
     URI imageURI = new URI("https://cloudinary.com/signed/url/for/cloud-scroll-1");
-    when(scrollService.getScrollImageURL(SCROLL_ID)).thenReturn(imageURI);
+    when(scrollService.getScrollImageURL(SCROLL_ID)).thenReturn(CompletableFuture.completedFuture(imageURI));
 
     // Act & Assert
-    mockMvc.perform(get("/scrolls/{scrollId}", SCROLL_ID))
+    MvcResult result = mockMvc.perform(get("/scrolls/{scrollId}", SCROLL_ID))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+
+    mockMvc.perform(asyncDispatch(result))
             .andExpect(status().isFound())
             .andExpect(header().string("Location", imageURI.toString()));
   }
@@ -176,9 +199,13 @@ public class ScrollControllerTest {
     String requestBody = objectMapper.writeValueAsString(newScrollDto);
 
     // Act & Assert
-    mockMvc.perform(put("/scrolls/{scrollId}", SCROLL_ID)
+    MvcResult result = mockMvc.perform(put("/scrolls/{scrollId}", SCROLL_ID)
                     .contentType(MediaType.APPLICATION_JSON)
                     .content(requestBody))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+
+    mockMvc.perform(asyncDispatch(result))
             .andExpect(status().isOk())
             .andExpect(jsonPath("$.scrollId").value(SCROLL_ID));
   }
@@ -2,29 +2,35 @@ package com.mf.HerculaneumTranscriptor.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.mf.HerculaneumTranscriptor.configuration.SecurityConfiguration;
+import com.mf.HerculaneumTranscriptor.datasource.ReadRouting;
 import com.mf.HerculaneumTranscriptor.domain.User;
 import com.mf.HerculaneumTranscriptor.dto.AuthenticationResponse;
+import com.mf.HerculaneumTranscriptor.dto.UserListing;
 import com.mf.HerculaneumTranscriptor.exception.ResourceNotFoundException;
-import com.mf.HerculaneumTranscriptor.exception.ResourceAlreadyExistsException;
 import com.mf.HerculaneumTranscriptor.repository.UserRepository;
 import com.mf.HerculaneumTranscriptor.security.JwtUtil;
 import com.mf.HerculaneumTranscriptor.service.UserService;
 import lombok.RequiredArgsConstructor;
+import org.hibernate.exception.ConstraintViolationException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.context.annotation.Import;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.MediaType;
 import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
 import user.dto.*;
 
+import java.sql.SQLException;
 import java.util.List;
 import java.util.Optional;
 
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -32,7 +38,7 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 @WebMvcTest(UserController.class)
 // SecurityConfiguration is needed to test the JWT filters
 // JwtUtil is needed to generate JWT tokens
-@Import({SecurityConfiguration.class, JwtUtil.class})
+@Import({SecurityConfiguration.class, JwtUtil.class, ReadRouting.class})
 @RequiredArgsConstructor(onConstructor = @__({@Autowired}))
 public class UserControllerTest {
   // MockMvc allows to send simulated HTTP requests.
@@ -147,17 +153,43 @@ public class UserControllerTest {
     verify(userService, times(1)).registerNewUser(registerInfo);
   }
 
+  /**
+   * The exception raised when the unique constraint on the username rejects a write, as reported by some databases.
+   */
+  private static DataIntegrityViolationException usernameViolation() {
+    return new DataIntegrityViolationException("could not execute statement",
+            new ConstraintViolationException("could not execute statement", new SQLException("Unique index violation", "23505"),
+                    "PUBLIC." + User.USERNAME_CONSTRAINT.toUpperCase() + "_INDEX_4"));
+  }
+
   @Test
   void registerNewUser_shouldReturnConflict_ifUsernameAlreadyExists() throws Exception {
     // Arrange
-    when(userService.registerNewUser(any(UserRegisterInfo.class))).thenThrow(new ResourceAlreadyExistsException("Username already exists"));
+    when(userService.registerNewUser(any(UserRegisterInfo.class))).thenThrow(usernameViolation());
 
     // Act & Assert
     mockMvc.perform(post("/register")
                     .contentType(MediaType.APPLICATION_JSON)
                     .content(objectMapper.writeValueAsString(registerInfo))
             )
-            .andExpect(status().isConflict());
+            .andExpect(status().isConflict())
+            .andExpect(jsonPath("$.error").value("Resource conflict"))
+            .andExpect(jsonPath("$.message").value("Username is already taken"));
+  }
+
+  @Test
+  void registerNewUser_shouldNotReturnConflict_whenAnotherConstraintIsViolated() {
+    // Arrange
+    DataIntegrityViolationException notNullViolation = new DataIntegrityViolationException("could not execute statement",
+            new ConstraintViolationException("could not execute statement", new SQLException("NULL not allowed", "23502"), null));
+    when(userService.registerNewUser(any(UserRegisterInfo.class))).thenThrow(notNullViolation);
+
+    // Act & Assert
+    // Left to the default handling of unexpected errors, which MockMvc rethrows
+    assertThatThrownBy(() -> mockMvc.perform(post("/register")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(registerInfo))))
+            .hasCause(notNullViolation);
   }
 
 
@@ -273,7 +305,7 @@ public class UserControllerTest {
     // Arrange
     when(userRepository.findByUsername(USERNAME)).thenReturn(Optional.of(user));
 
-    doThrow(new ResourceAlreadyExistsException("Username already exists")).when(userService).updateUserProfile(USERNAME, changeInfo);
+    doThrow(usernameViolation()).when(userService).updateUserProfile(USERNAME, changeInfo);
     String token = jwtUtil.generateToken(USERNAME);
 
     // Act & Assert
@@ -351,8 +383,8 @@ public class UserControllerTest {
     // Arrange
     when(userRepository.findByUsername(USERNAME)).thenReturn(Optional.of(user));
 
-    List users = List.of(userInfo);
-    when(userService.findAllUsers(any())).thenReturn(users);
+    UserListing listing = new UserListing(List.of(userInfo), null);
+    when(userService.findAllUsers(any(), any())).thenReturn(listing);
     String token = jwtUtil.generateToken(USERNAME);
 
     // Act & Assert
@@ -360,9 +392,89 @@ public class UserControllerTest {
                     .header("Authorization", "Bearer " + token))
             .andExpect(status().isOk())
             // Check that the response body contains the correct user info
+            .andExpect(jsonPath("$[0].basic_info.username").value(USERNAME))
+            // There are no more users to list
+            .andExpect(header().doesNotExist("X-Next-Cursor"));
+
+    verify(userService, times(1)).findAllUsers(any(), any());
+  }
+
+  @Test
+  void findAllUsers_shouldReturnNextCursorHeader_whenMoreUsersRemain() throws Exception {
+    // Arrange
+    when(userRepository.findByUsername(USERNAME)).thenReturn(Optional.of(user));
+
+    UserListing listing = new UserListing(List.of(userInfo), "nextCursor");
+    when(userService.findAllUsers(null, "cursor")).thenReturn(listing);
+    String token = jwtUtil.generateToken(USERNAME);
+
+    // Act & Assert
+    mockMvc.perform(get("/user")
+                    .param("cursor", "cursor")
+                    .header("Authorization", "Bearer " + token))
+            .andExpect(status().isOk())
+            .andExpect(header().string("X-Next-Cursor", "nextCursor"))
             .andExpect(jsonPath("$[0].basic_info.username").value(USERNAME));
 
-    verify(userService, times(1)).findAllUsers(any());
+    verify(userService, times(1)).findAllUsers(null, "cursor");
+  }
+
+  @Test
+  void findAllUsers_shouldSearchUsers_whenQueryIsGiven() throws Exception {
+    // Arrange
+    when(userRepository.findByUsername(USERNAME)).thenReturn(Optional.of(user));
+
+    when(userService.searchUsers("john")).thenReturn(List.of(userInfo));
+    String token = jwtUtil.generateToken(USERNAME);
+
+    // Act & Assert
+    mockMvc.perform(get("/user")
+                    .param("query", "john")
+                    .header("Authorization", "Bearer " + token))
+            .andExpect(status().isOk())
+            .andExpect(header().doesNotExist("X-Next-Cursor"))
+            .andExpect(jsonPath("$[0].basic_info.username").value(USERNAME));
+
+    // Searching does not list users
+    verify(userService, never()).findAllUsers(any(), any());
+  }
+
+  @Test
+  void createUsers_shouldPassContentTypeToService_whenImportingCsv() throws Exception {
+    // Arrange
+    when(userRepository.findByUsername(USERNAME)).thenReturn(Optional.of(user));
+
+    String csv = "username,firstName,lastName,contact,password\nJohnDoe,John,Doe,john.doe@example.com,password";
+    UserImportResult result = new UserImportResult().row(1).username(USERNAME).status(UserImportResult.StatusEnum.CREATED);
+    when(userService.importUsers(eq(csv), any())).thenReturn(List.of(result));
+    String token = jwtUtil.generateToken(USERNAME);
+
+    // Act & Assert
+    mockMvc.perform(post("/register/bulk")
+                    .header("Authorization", "Bearer " + token)
+                    .contentType("text/csv")
+                    .content(csv))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$[0].row").value(1))
+            .andExpect(jsonPath("$[0].status").value("created"));
+
+    verify(userService, times(1)).importUsers(csv, MediaType.valueOf("text/csv"));
+  }
+
+  @Test
+  void createUsers_shouldReturn415_whenContentTypeIsNotSupported() throws Exception {
+    // Arrange
+    when(userRepository.findByUsername(USERNAME)).thenReturn(Optional.of(user));
+    String token = jwtUtil.generateToken(USERNAME);
+
+    // Act & Assert
+    mockMvc.perform(post("/register/bulk")
+                    .header("Authorization", "Bearer " + token)
+                    .contentType(MediaType.APPLICATION_XML)
+                    .content("<users/>"))
+            .andExpect(status().isUnsupportedMediaType());
+
+    verify(userService, never()).importUsers(any(), any());
   }
 
   @Test
@@ -370,8 +482,8 @@ public class UserControllerTest {
     // Arrange
     when(userRepository.findByUsername(USERNAME)).thenReturn(Optional.of(user));
 
-    List users = List.of(userInfo);
-    when(userService.findAllUsers(anyInt())).thenReturn(users);
+    UserListing listing = new UserListing(List.of(userInfo), null);
+    when(userService.findAllUsers(anyInt(), any())).thenReturn(listing);
 
     // Act & Assert
     mockMvc.perform(get("/user"))
@@ -0,0 +1,82 @@
+package com.mf.HerculaneumTranscriptor.dataset;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+public class DatasetGeneratorTest {
+  private static final Instant GENERATED_AT = Instant.parse("2025-01-01T10:00:00Z");
+  private static final int WIDTH = 4000;
+  private static final int HEIGHT = 1000;
+  private static final int REGIONS = 2000;
+  private static final int USERS = 50;
+  private static final DatasetGenerator.Layout LAYOUT = DatasetGenerator.Layout.of(WIDTH, HEIGHT, REGIONS);
+
+  @Test
+  void sampleRegions_shouldGiveSameRegions_whenSeedIsTheSame() {
+    // Act
+    List<DatasetGenerator.Region> first = DatasetGenerator.sampleRegions(new Random(7), REGIONS, LAYOUT, USERS, 10, GENERATED_AT);
+    List<DatasetGenerator.Region> second = DatasetGenerator.sampleRegions(new Random(7), REGIONS, LAYOUT, USERS, 10, GENERATED_AT);
+    List<DatasetGenerator.Region> other = DatasetGenerator.sampleRegions(new Random(8), REGIONS, LAYOUT, USERS, 10, GENERATED_AT);
+
+    // Assert
+    assertThat(second).isEqualTo(first);
+    assertThat(other).isNotEqualTo(first);
+  }
+
+  @Test
+  void sampleRegions_shouldKeepRegionsWithinTheImage() {
+    // Act
+    List<DatasetGenerator.Region> regions = DatasetGenerator.sampleRegions(new Random(7), REGIONS, LAYOUT, USERS, 10, GENERATED_AT);
+
+    // Assert
+    assertThat(regions).allSatisfy(region -> {
+      assertThat(region.x()).isGreaterThanOrEqualTo(0);
+      assertThat(region.y()).isGreaterThanOrEqualTo(0);
+      assertThat(region.x() + region.width()).isLessThanOrEqualTo(WIDTH);
+      assertThat(region.y() + region.height()).isLessThanOrEqualTo(HEIGHT);
+      assertThat(region.transcription()).isNotBlank();
+      assertThat(region.createdAt()).isBefore(GENERATED_AT);
+      assertThat(region.updatedAt()).isBetween(region.createdAt(), GENERATED_AT);
+    });
+  }
+
+  @Test
+  void sampleRegions_shouldGiveCertaintyOfVotes_whenVotedByDistinctUsers() {
+    // Act
+    List<DatasetGenerator.Region> regions = DatasetGenerator.sampleRegions(new Random(7), REGIONS, LAYOUT, USERS, 10, GENERATED_AT);
+
+    // Assert
+    double meanVotes = regions.stream().mapToInt(region -> region.votes().size()).average().orElseThrow();
+    assertThat(meanVotes).isCloseTo(10, within(1.0));
+    assertThat(regions).allSatisfy(region -> {
+      List<Integer> voters = region.votes().stream().map(DatasetGenerator.CastVote::voter).toList();
+      assertThat(voters).doesNotHaveDuplicates().allSatisfy(voter -> assertThat(voter).isBetween(0, USERS - 1));
+      assertThat(region.author()).isBetween(0, USERS - 1);
+
+      double average = region.votes().stream().mapToInt(DatasetGenerator.CastVote::value).average().orElse(0);
+      assertThat(region.certaintyScore()).isCloseTo((float) average, within(1e-5f));
+    });
+  }
+
+  @Test
+  void skewed_shouldDrawFirstIndexesMostOften() {
+    // Arrange
+    Random random = new Random(7);
+    int[] draws = new int[USERS];
+
+    // Act
+    for (int i = 0; i < 10000; i++)
+      draws[DatasetGenerator.skewed(random, USERS)]++;
+
+    // Assert
+    assertThat(draws[0]).isGreaterThan(draws[1]);
+    assertThat(draws[1]).isGreaterThan(draws[USERS - 1]);
+    assertThat(draws[USERS - 1]).isPositive();
+  }
+}
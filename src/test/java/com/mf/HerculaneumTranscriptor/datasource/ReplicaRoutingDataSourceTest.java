@@ -0,0 +1,165 @@
+package com.mf.HerculaneumTranscriptor.datasource;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Routes connections between two in-memory H2 databases standing for the primary and a replica,
+ * each of them holding a row naming it.
+ */
+public class ReplicaRoutingDataSourceTest {
+  private static final String USERNAME = "john";
+
+  private JdbcTemplate primary;
+  private JdbcTemplate replica;
+  private ReadRouting readRouting;
+  private ReplicaRoutingDataSource routingDataSource;
+  private JdbcTemplate jdbcTemplate;
+  private TransactionTemplate readOnly;
+  private TransactionTemplate readWrite;
+
+  private static DataSource h2(String name) {
+    JdbcDataSource dataSource = new JdbcDataSource();
+    dataSource.setURL("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+    return dataSource;
+  }
+
+  @BeforeEach
+  void setUp() {
+    DataSource primaryDataSource = h2("routing-primary");
+    DataSource replicaDataSource = h2("routing-replica");
+    primary = new JdbcTemplate(primaryDataSource);
+    replica = new JdbcTemplate(replicaDataSource);
+    for (JdbcTemplate database : List.of(primary, replica)) {
+      database.execute("CREATE TABLE node (name VARCHAR(16))");
+      database.execute("CREATE TABLE replica_lag (seconds DOUBLE PRECISION)");
+    }
+    primary.update("INSERT INTO node VALUES ('primary')");
+    replica.update("INSERT INTO node VALUES ('replica')");
+    replica.update("INSERT INTO replica_lag VALUES (0)");
+
+    readRouting = new ReadRouting();
+    ReflectionTestUtils.setField(readRouting, "replicas", List.of("replica"));
+    ReflectionTestUtils.setField(readRouting, "readYourWritesWindow", Duration.ofMinutes(1));
+    ReflectionTestUtils.setField(readRouting, "maxReplicaLag", Duration.ofSeconds(2));
+
+    routingDataSource = new ReplicaRoutingDataSource(primaryDataSource, List.of(replicaDataSource), readRouting,
+            "SELECT seconds FROM replica_lag", Duration.ofSeconds(2));
+    routingDataSource.checkReplicaLag();
+
+    DataSource dataSource = new LazyConnectionDataSourceProxy(routingDataSource);
+    DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+    jdbcTemplate = new JdbcTemplate(dataSource);
+    readWrite = new TransactionTemplate(transactionManager);
+    readOnly = new TransactionTemplate(transactionManager);
+    readOnly.setReadOnly(true);
+  }
+
+  @AfterEach
+  void tearDown() {
+    readRouting.clearCurrentUser();
+    primary.execute("DROP ALL OBJECTS");
+    replica.execute("DROP ALL OBJECTS");
+  }
+
+  private String node(TransactionTemplate transaction) {
+    return transaction.execute(status -> jdbcTemplate.queryForObject("SELECT name FROM node", String.class));
+  }
+
+  private void write() {
+    readWrite.executeWithoutResult(status -> jdbcTemplate.update("UPDATE node SET name = name"));
+  }
+
+  @Test
+  void readOnlyTransaction_shouldUseReplica() {
+    // Act & Assert
+    assertThat(node(readOnly)).isEqualTo("replica");
+  }
+
+  @Test
+  void readWriteTransaction_shouldUsePrimary() {
+    // Act & Assert
+    assertThat(node(readWrite)).isEqualTo("primary");
+  }
+
+  @Test
+  void readOnlyTransaction_shouldUsePrimary_afterUserWrote() {
+    // Arrange
+    readRouting.setCurrentUser(USERNAME);
+    write();
+
+    // Act
+    String ownRead = node(readOnly);
+    readRouting.setCurrentUser("other");
+    String otherRead = node(readOnly);
+
+    // Assert
+    assertThat(ownRead).isEqualTo("primary");
+    assertThat(otherRead).isEqualTo("replica");
+  }
+
+  @Test
+  void readOnlyTransaction_shouldUseReplica_whenWriteRolledBack() {
+    // Arrange
+    readRouting.setCurrentUser(USERNAME);
+    readWrite.executeWithoutResult(status -> {
+      jdbcTemplate.update("UPDATE node SET name = name");
+      status.setRollbackOnly();
+    });
+
+    // Act & Assert
+    assertThat(node(readOnly)).isEqualTo("replica");
+  }
+
+  @Test
+  void onPrimary_shouldUsePrimary() {
+    // Act & Assert
+    assertThat(readRouting.onPrimary(() -> node(readOnly))).isEqualTo("primary");
+    assertThat(node(readOnly)).isEqualTo("replica");
+  }
+
+  @Test
+  void readOnlyTransaction_shouldUsePrimary_whenReplicaLagsTooFarBehind() {
+    // Arrange
+    replica.update("UPDATE replica_lag SET seconds = 30");
+    routingDataSource.checkReplicaLag();
+
+    // Act & Assert
+    assertThat(node(readOnly)).isEqualTo("primary");
+  }
+
+  @Test
+  void readOnlyTransaction_shouldUsePrimary_whenLagCannotBeMeasured() {
+    // Arrange
+    replica.execute("DROP TABLE replica_lag");
+    routingDataSource.checkReplicaLag();
+
+    // Act & Assert
+    assertThat(node(readOnly)).isEqualTo("primary");
+  }
+
+  @Test
+  void readOnlyTransaction_shouldUseReplicaAgain_onceCaughtUp() {
+    // Arrange
+    replica.update("UPDATE replica_lag SET seconds = 30");
+    routingDataSource.checkReplicaLag();
+    replica.update("UPDATE replica_lag SET seconds = 0.5");
+    routingDataSource.checkReplicaLag();
+
+    // Act & Assert
+    assertThat(node(readOnly)).isEqualTo("replica");
+  }
+}
@@ -0,0 +1,136 @@
+package com.mf.HerculaneumTranscriptor.history;
+
+import com.mf.HerculaneumTranscriptor.domain.Annotation;
+import com.mf.HerculaneumTranscriptor.domain.AnnotationRevision;
+import com.mf.HerculaneumTranscriptor.domain.Coordinates;
+import com.mf.HerculaneumTranscriptor.domain.Scroll;
+import com.mf.HerculaneumTranscriptor.repository.AnnotationRevisionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class RegionHistoryTest {
+  private RegionHistory regionHistory;
+
+  @Mock
+  private AnnotationRevisionRepository revisionRepository;
+
+  private Annotation annotation;
+
+  private static final UUID REGION_ID = UUID.randomUUID();
+
+  @BeforeEach
+  void setUp() {
+    regionHistory = new RegionHistory(revisionRepository);
+    ReflectionTestUtils.setField(regionHistory, "snapshotInterval", 10);
+
+    Scroll scroll = new Scroll();
+    scroll.setId(1L);
+
+    annotation = new Annotation();
+    annotation.setRegionId(REGION_ID);
+    annotation.setScroll(scroll);
+    annotation.setTranscription("Arma virumque cano, Troiae qui primus ab oris");
+    annotation.setCoordinates(new Coordinates(0f, 0f, 100f, 100f));
+    annotation.setVersion(0L);
+  }
+
+  // Records an update of the transcription, and returns the state before it
+  private RegionState update(String transcription) {
+    RegionState before = RegionState.of(annotation);
+    annotation.setTranscription(transcription);
+    annotation.setVersion(annotation.getVersion() + 1);
+    regionHistory.record(annotation, AnnotationRevision.Operation.UPDATE, before);
+    return before;
+  }
+
+  private List<AnnotationRevision> savedRevisions() {
+    ArgumentCaptor<AnnotationRevision> revisions = ArgumentCaptor.forClass(AnnotationRevision.class);
+    verify(revisionRepository, atLeastOnce()).save(revisions.capture());
+    return revisions.getAllValues();
+  }
+
+  @Test
+  void record_shouldWriteSnapshotOfCreatedRegion_andDiffsOfItsUpdates() {
+    // Arrange
+    when(revisionRepository.existsByRegionIdAndRevision(REGION_ID, 0L)).thenReturn(true);
+
+    // Act
+    regionHistory.record(annotation, AnnotationRevision.Operation.CREATE, null);
+    update("Arma virumque canto, Troiae qui primus ab oris");
+
+    // Assert
+    List<AnnotationRevision> revisions = savedRevisions();
+    assertThat(revisions).extracting(AnnotationRevision::getRevision).containsExactly(0L, 1L);
+    assertThat(revisions).extracting(AnnotationRevision::isSnapshot).containsExactly(true, false);
+    assertThat(revisions.get(1).getChanges()).isEqualTo("{\"transcription\":{\"at\":17,\"del\":0,\"ins\":\"t\"}}");
+  }
+
+  @Test
+  void record_shouldWriteSnapshot_everySnapshotInterval() {
+    // Arrange
+    annotation.setVersion(8L);
+    when(revisionRepository.existsByRegionIdAndRevision(eq(REGION_ID), anyLong())).thenReturn(true);
+
+    // Act
+    update("Arma");
+    update("Arma virumque");
+    update("Arma virumque cano");
+
+    // Assert
+    List<AnnotationRevision> revisions = savedRevisions();
+    assertThat(revisions).extracting(AnnotationRevision::getRevision).containsExactly(9L, 10L, 11L);
+    assertThat(revisions).extracting(AnnotationRevision::isSnapshot).containsExactly(false, true, false);
+  }
+
+  @Test
+  void record_shouldWriteSnapshot_whenPreviousRevisionIsMissing() {
+    // Arrange
+    annotation.setVersion(2L);
+    when(revisionRepository.existsByRegionIdAndRevision(REGION_ID, 2L)).thenReturn(false);
+
+    // Act
+    update("Arma virumque");
+
+    // Assert
+    assertThat(savedRevisions()).singleElement().satisfies(revision -> {
+      assertThat(revision.getRevision()).isEqualTo(3L);
+      assertThat(revision.isSnapshot()).isTrue();
+      assertThat(RegionState.empty().apply(revision.getChanges())).isEqualTo(RegionState.of(annotation));
+    });
+  }
+
+  @Test
+  void record_shouldKeepLastStateOfDeletedRegion() {
+    // Act
+    regionHistory.record(annotation, AnnotationRevision.Operation.DELETE, RegionState.of(annotation));
+
+    // Assert
+    assertThat(savedRevisions()).singleElement().satisfies(revision -> {
+      assertThat(revision.getRevision()).isEqualTo(1L);
+      assertThat(revision.getOperation()).isEqualTo(AnnotationRevision.Operation.DELETE);
+      assertThat(RegionState.empty().apply(revision.getChanges())).isEqualTo(RegionState.of(annotation));
+    });
+  }
+
+  @Test
+  void record_shouldIgnoreChangesThatLeaveRegionAsItWas() {
+    // Act
+    regionHistory.record(annotation, AnnotationRevision.Operation.VOTE, RegionState.of(annotation));
+
+    // Assert
+    verifyNoInteractions(revisionRepository);
+  }
+}
@@ -0,0 +1,78 @@
+package com.mf.HerculaneumTranscriptor.history;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RegionStateTest {
+  private static final String AUTHOR = "herculanensis";
+  private static final Instant CREATED_AT = Instant.parse("2025-01-01T10:00:00Z");
+  private static final RegionState STATE = new RegionState("Arma virumque cano, Troiae qui primus ab oris", 10f, 20f, 100f, 50f, 0f, AUTHOR, CREATED_AT);
+
+  @Test
+  void diff_shouldOnlyHoldChangedFields() {
+    // Arrange
+    RegionState moved = new RegionState(STATE.transcription(), 15f, 20f, 100f, 50f, 0f, AUTHOR, CREATED_AT);
+
+    // Act
+    String diff = RegionState.diff(STATE, moved);
+
+    // Assert
+    assertThat(diff).isEqualTo("{\"x\":15.0}");
+    assertThat(STATE.apply(diff)).isEqualTo(moved);
+  }
+
+  @Test
+  void diff_shouldHoldEditedSpan_whenShorterThanNewTranscription() {
+    // Arrange
+    RegionState edited = new RegionState("Arma virumque canto, Troiae qui primus ab oris", 10f, 20f, 100f, 50f, 0f, AUTHOR, CREATED_AT);
+
+    // Act
+    String diff = RegionState.diff(STATE, edited);
+
+    // Assert
+    assertThat(diff).isEqualTo("{\"transcription\":{\"at\":17,\"del\":0,\"ins\":\"t\"}}");
+    assertThat(STATE.apply(diff)).isEqualTo(edited);
+  }
+
+  @Test
+  void diff_shouldHoldNewTranscription_whenShorterThanEditedSpan() {
+    // Arrange
+    RegionState edited = new RegionState("Troiae", 10f, 20f, 100f, 50f, 0f, AUTHOR, CREATED_AT);
+
+    // Act
+    String diff = RegionState.diff(STATE, edited);
+
+    // Assert
+    assertThat(diff).isEqualTo("{\"transcription\":\"Troiae\"}");
+    assertThat(STATE.apply(diff)).isEqualTo(edited);
+  }
+
+  @Test
+  void diff_shouldNotSplitSurrogatePairs() {
+    // Arrange
+    // Both symbols share their high surrogate, which must go along with the low one that changed
+    RegionState before = new RegionState("A long line ending in 𝔄 and more", null, null, null, null, 0f, AUTHOR, CREATED_AT);
+    RegionState after = new RegionState("A long line ending in 𝔅 and more", null, null, null, null, 0f, AUTHOR, CREATED_AT);
+
+    // Act
+    String diff = RegionState.diff(before, after);
+
+    // Assert
+    assertThat(diff).contains("\"at\":22", "\"del\":2");
+    assertThat(before.apply(diff)).isEqualTo(after);
+  }
+
+  @Test
+  void apply_shouldRestoreWholeState_fromSnapshot() {
+    // Act
+    RegionState restored = RegionState.empty().apply(STATE.toJson());
+
+    // Assert
+    assertThat(restored).isEqualTo(STATE);
+    assertThat(RegionState.changedFields(RegionState.empty(), restored))
+            .containsExactly("transcription", "x", "y", "width", "height");
+  }
+}
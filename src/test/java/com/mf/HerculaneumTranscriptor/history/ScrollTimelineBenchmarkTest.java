@@ -0,0 +1,141 @@
+package com.mf.HerculaneumTranscriptor.history;
+
+import com.mf.HerculaneumTranscriptor.domain.AnnotationRevision;
+import com.mf.HerculaneumTranscriptor.repository.AnnotationRevisionRepository;
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Measures how long rebuilding the regions of a scroll takes as its history grows, replaying the whole history
+ * and replaying only the revisions made after a snapshot. Run with {@code mvn test -Pbenchmark}.
+ * <p>
+ * The history is made of edits spread evenly over the regions of a scroll, written directly to the database.
+ */
+@Tag("benchmark")
+@SpringBootTest
+@ActiveProfiles("test")
+@RequiredArgsConstructor(onConstructor = @__({@Autowired}))
+public class ScrollTimelineBenchmarkTest {
+  private final ScrollTimeline scrollTimeline;
+  private final AnnotationRevisionRepository revisionRepository;
+  private final JdbcTemplate jdbcTemplate;
+  private final PlatformTransactionManager transactionManager;
+
+  @Value("${api.regions.history.snapshotInterval}")
+  private int regionSnapshotInterval;
+  @Value("${api.regions.asOf.snapshotInterval}")
+  private int scrollSnapshotInterval;
+
+  // Internal ID of the scroll, which need not exist as revisions do not reference it
+  private static final long SCROLL_ID = 1_000_000L;
+  private static final int REGIONS = 200;
+  private static final int[] HISTORY_LENGTHS = {2_000, 10_000, 50_000};
+  private static final int RUNS = 5;
+  private static final Instant START = Instant.parse("2025-01-01T00:00:00Z");
+
+  @AfterEach
+  void tearDown() {
+    jdbcTemplate.update("DELETE FROM annotation_revisions WHERE scroll_id = ?", SCROLL_ID);
+    jdbcTemplate.update("DELETE FROM scroll_snapshot_regions WHERE snapshot_id IN " +
+            "(SELECT id FROM scroll_snapshots WHERE scroll_id = ?)", SCROLL_ID);
+    jdbcTemplate.update("DELETE FROM scroll_snapshots WHERE scroll_id = ?", SCROLL_ID);
+  }
+
+  /**
+   * Appends revisions to the history of the scroll, numbered from the given one, one millisecond apart.
+   */
+  private void writeHistory(int from, int to, UUID[] regionIds, RegionState[] states, long[] revisions) {
+    TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+    List<AnnotationRevision> batch = new ArrayList<>();
+    for (int i = from; i < to; i++) {
+      int region = i % REGIONS;
+      Instant createdAt = START.plusMillis(i);
+      AnnotationRevision revision;
+
+      if (states[region] == null) {
+        states[region] = new RegionState("ἐν ἀρχῇ", 10f, 10f, 100f, 20f, 0f, "benchmark", createdAt);
+        revision = new AnnotationRevision(null, regionIds[region], SCROLL_ID, 0, AnnotationRevision.Operation.CREATE,
+                "benchmark", createdAt, true, states[region].toJson());
+      } else {
+        RegionState before = states[region];
+        states[region] = new RegionState(before.transcription() + " λόγος", before.x() + 1, before.y(), before.width(),
+                before.height(), before.certaintyScore(), before.author(), before.createdAt());
+        long number = ++revisions[region];
+        boolean snapshot = number % regionSnapshotInterval == 0;
+        revision = new AnnotationRevision(null, regionIds[region], SCROLL_ID, number, AnnotationRevision.Operation.UPDATE,
+                "benchmark", createdAt, snapshot, snapshot ? states[region].toJson() : RegionState.diff(before, states[region]));
+      }
+
+      batch.add(revision);
+      if (batch.size() == 1000 || i == to - 1) {
+        transaction.executeWithoutResult(status -> revisionRepository.saveAll(batch));
+        batch.clear();
+      }
+    }
+  }
+
+  private long medianMillis(Runnable reconstruction) {
+    reconstruction.run(); // warm-up
+    long[] times = new long[RUNS];
+    for (int run = 0; run < RUNS; run++) {
+      long start = System.nanoTime();
+      reconstruction.run();
+      times[run] = (System.nanoTime() - start) / 1_000_000;
+    }
+    Arrays.sort(times);
+    return times[RUNS / 2];
+  }
+
+  @Test
+  void reconstructionTime_versusHistoryLength() {
+    UUID[] regionIds = new UUID[REGIONS];
+    for (int region = 0; region < REGIONS; region++)
+      regionIds[region] = UUID.randomUUID();
+    RegionState[] states = new RegionState[REGIONS];
+    long[] revisions = new long[REGIONS];
+
+    System.out.println("revisions | replaying everything (ms) | replaying from a snapshot (ms)");
+    int written = 0;
+    for (int length : HISTORY_LENGTHS) {
+      // The last snapshot of the scroll is taken at most a snapshot interval before the end of the history
+      writeHistory(written, length - scrollSnapshotInterval, regionIds, states, revisions);
+      Instant snapshotTime = START.plusMillis(length - scrollSnapshotInterval - 1);
+      writeHistory(length - scrollSnapshotInterval, length, regionIds, states, revisions);
+      written = length;
+      Instant end = START.plusMillis(length);
+
+      List<HistoricRegion> replayed = scrollTimeline.regionsAt(SCROLL_ID, end);
+      long replayMillis = medianMillis(() -> scrollTimeline.regionsAt(SCROLL_ID, end));
+
+      scrollTimeline.takeSnapshot(SCROLL_ID, snapshotTime);
+      List<HistoricRegion> fromSnapshot = scrollTimeline.regionsAt(SCROLL_ID, end);
+      long snapshotMillis = medianMillis(() -> scrollTimeline.regionsAt(SCROLL_ID, end));
+
+      System.out.printf("%9d | %25d | %30d%n", length, replayMillis, snapshotMillis);
+      assertThat(fromSnapshot).isEqualTo(replayed);
+      assertThat(replayed).hasSize(REGIONS);
+
+      // The next, longer history is replayed from the start again
+      jdbcTemplate.update("DELETE FROM scroll_snapshot_regions WHERE snapshot_id IN " +
+              "(SELECT id FROM scroll_snapshots WHERE scroll_id = ?)", SCROLL_ID);
+      jdbcTemplate.update("DELETE FROM scroll_snapshots WHERE scroll_id = ?", SCROLL_ID);
+    }
+  }
+}
@@ -10,7 +10,9 @@ import com.mf.HerculaneumTranscriptor.domain.User;
 import com.mf.HerculaneumTranscriptor.repository.AnnotationRepository;
 import com.mf.HerculaneumTranscriptor.repository.ScrollRepository;
 import com.mf.HerculaneumTranscriptor.repository.UserRepository;
+import com.mf.HerculaneumTranscriptor.repository.VoteRepository;
 import com.mf.HerculaneumTranscriptor.security.JwtUtil;
+import jakarta.persistence.EntityManager;
 import lombok.RequiredArgsConstructor;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -24,10 +26,13 @@ import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.transaction.annotation.Transactional;
 import user.dto.UserInfo;
 
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
 import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -43,8 +48,12 @@ public class AnnotationFlowIntegrationTest {
   private final UserRepository userRepository;
   private final ScrollRepository scrollRepository;
   private final AnnotationRepository annotationRepository;
+  private final VoteRepository voteRepository;
   private final PasswordEncoder passwordEncoder;
+  private final EntityManager entityManager;
 
+  private QueryCounter queryCounter;
+  private Scroll scroll;
   private User writeUser;
   private Annotation writeUserAnnotation; // An annotation created by 'writeUser'
 
@@ -65,7 +74,7 @@ public class AnnotationFlowIntegrationTest {
     User readUser = userRepository.save(new User(null, "reader", "Read", "User", "read@test.com", passwordEncoder.encode("pw"), UserInfo.PermissionsEnum.READ));
 
     // Create Parent Scroll
-    Scroll scroll = scrollRepository.save(new Scroll(null, SCROLL_ID, "Test Scroll", null, null, null, null, null));
+    scroll = scrollRepository.save(new Scroll(null, SCROLL_ID, "Test Scroll", null, null, null, null, null, null));
 
     // Create Existing Annotation by 'writeUser'
     writeUserAnnotation = new Annotation();
@@ -84,6 +93,114 @@ public class AnnotationFlowIntegrationTest {
     // Create DTO for requests
     Coordinates coords = new Coordinates().x(10f).y(10f).width(100f).height(100f);
     newBoxRegionDto = new NewBoxRegion().coordinates(coords).transcription("New transcription");
+
+    queryCounter = new QueryCounter(entityManager);
+  }
+
+  // Adds regions to the scroll, each by a different author
+  private void addRegions(int count) {
+    for (int i = 0; i < count; i++) {
+      User author = userRepository.save(new User(null, "author" + i, "Author", "User", "author" + i + "@test.com", "hash", UserInfo.PermissionsEnum.WRITE));
+      Annotation annotation = new Annotation();
+      annotation.setRegionId(UUID.randomUUID());
+      annotation.setAuthor(author);
+      annotation.setScroll(scroll);
+      annotation.setTranscription("Text " + i);
+      annotationRepository.save(annotation);
+    }
+  }
+
+  // Query budgets, counted on a cold second-level cache: the user of the token is always read from the database.
+  // Performance regressions such as N+1 selects make these fail.
+
+  @Test
+  void getScrollRegions_shouldIssueAtMost2Statements_regardlessOfRegionCount() throws Exception {
+    long fewRegions = queryCounter.count(() -> mockMvc.perform(get("/scrolls/{scrollId}/regions", SCROLL_ID)
+                    .header("Authorization", "Bearer " + readUserToken))
+            .andExpect(status().isOk()));
+
+    addRegions(10);
+    long manyRegions = queryCounter.count(() -> mockMvc.perform(get("/scrolls/{scrollId}/regions", SCROLL_ID)
+                    .header("Authorization", "Bearer " + readUserToken))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.regions.length()").value(11)));
+
+    assertThat(fewRegions).isLessThanOrEqualTo(2);
+    assertThat(manyRegions).isEqualTo(fewRegions);
+  }
+
+  @Test
+  void createRegion_shouldIssueAtMost6Statements() throws Exception {
+    // The user, the scroll, the insert and its revision, plus new blocks of IDs from time to time
+    queryCounter.assertAtMost(6, () -> mockMvc.perform(post("/scrolls/{scrollId}/regions", SCROLL_ID)
+                    .header("Authorization", "Bearer " + writeUserToken)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(newBoxRegionDto)))
+            .andExpect(status().isCreated()));
+  }
+
+  @Test
+  void updateRegion_shouldIssueAtMost6Statements() throws Exception {
+    // Including the revision, the check that it follows a recorded one and a new block of IDs from time to time
+    queryCounter.assertAtMost(6, () -> mockMvc.perform(put("/scrolls/{scrollId}/regions/{regionId}", SCROLL_ID, writeUserAnnotation.getRegionId())
+                    .header("Authorization", "Bearer " + writeUserToken)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(newBoxRegionDto)))
+            .andExpect(status().isOk()));
+  }
+
+  @Test
+  void voteOnRegion_shouldIssueAtMost8Statements() throws Exception {
+    // Including the revision, the check that it follows a recorded one and a new block of IDs from time to time
+    queryCounter.assertAtMost(8, () -> mockMvc.perform(post("/scrolls/{scrollId}/regions/{regionId}/vote", SCROLL_ID, writeUserAnnotation.getRegionId())
+                    .header("Authorization", "Bearer " + anotherWriteUserToken)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(new Vote().vote(5))))
+            .andExpect(status().isOk()));
+  }
+
+  @Test
+  void deleteRegion_shouldIssueAtMost8Statements_regardlessOfVoteCount() throws Exception {
+    // One region with a single vote, another with a vote from every user
+    voteRepository.save(new com.mf.HerculaneumTranscriptor.domain.Vote(writeUser, writeUserAnnotation, 3));
+    addRegions(5);
+    Annotation manyVotesAnnotation = new Annotation();
+    manyVotesAnnotation.setRegionId(UUID.randomUUID());
+    manyVotesAnnotation.setAuthor(writeUser);
+    manyVotesAnnotation.setScroll(scroll);
+    manyVotesAnnotation.setTranscription("Much debated text");
+    Annotation manyVotesRegion = annotationRepository.save(manyVotesAnnotation);
+    for (User voter : userRepository.findAll())
+      voteRepository.save(new com.mf.HerculaneumTranscriptor.domain.Vote(voter, manyVotesRegion, 3));
+
+    long fewVotes = queryCounter.count(() -> mockMvc.perform(delete("/scrolls/{scrollId}/regions/{regionId}", SCROLL_ID, writeUserAnnotation.getRegionId())
+                    .header("Authorization", "Bearer " + writeUserToken))
+            .andExpect(status().isNoContent()));
+    long manyVotes = queryCounter.count(() -> mockMvc.perform(delete("/scrolls/{scrollId}/regions/{regionId}", SCROLL_ID, manyVotesRegion.getRegionId())
+                    .header("Authorization", "Bearer " + writeUserToken))
+            .andExpect(status().isNoContent()));
+
+    // Including the revision, and a new block of IDs for it from time to time
+    assertThat(fewVotes).isLessThanOrEqualTo(8);
+    assertThat(manyVotes).isLessThanOrEqualTo(fewVotes + 1);
+  }
+
+  // Tests for Get Scroll Regions
+
+  @Test
+  void getScrollRegions_shouldReturnOnlyRegionsUpdatedSince() throws Exception {
+    mockMvc.perform(get("/scrolls/{scrollId}/regions", SCROLL_ID)
+                    .param("since", Instant.now().truncatedTo(ChronoUnit.MILLIS).minus(1, ChronoUnit.HOURS).toString())
+                    .header("Authorization", "Bearer " + readUserToken))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.regions.length()").value(1))
+            .andExpect(jsonPath("$.regions[0].regionId").value(writeUserAnnotation.getRegionId().toString()));
+
+    mockMvc.perform(get("/scrolls/{scrollId}/regions", SCROLL_ID)
+                    .param("since", Instant.now().truncatedTo(ChronoUnit.MILLIS).plus(1, ChronoUnit.HOURS).toString())
+                    .header("Authorization", "Bearer " + readUserToken))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.regions.length()").value(0));
   }
 
   // Tests for Create Region
@@ -158,6 +275,48 @@ public class AnnotationFlowIntegrationTest {
             .andExpect(status().isForbidden());
   }
 
+  @Test
+  void updateRegion_shouldReturnNewVersion_whenIfMatchHoldsCurrentVersion() throws Exception {
+    String requestBody = objectMapper.writeValueAsString(newBoxRegionDto);
+    long version = writeUserAnnotation.getVersion();
+
+    mockMvc.perform(put("/scrolls/{scrollId}/regions/{regionId}", SCROLL_ID, writeUserAnnotation.getRegionId())
+                    .header("Authorization", "Bearer " + writeUserToken)
+                    .header("If-Match", "\"" + version + "\"")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(requestBody))
+            .andExpect(status().isOk())
+            .andExpect(header().string("ETag", "\"" + (version + 1) + "\""))
+            .andExpect(jsonPath("$.version").value(version + 1));
+  }
+
+  @Test
+  void updateRegion_shouldReturn409WithCurrentRegion_whenIfMatchHoldsOldVersion() throws Exception {
+    String requestBody = objectMapper.writeValueAsString(newBoxRegionDto);
+    long version = writeUserAnnotation.getVersion();
+
+    // Someone else updates the region first
+    mockMvc.perform(put("/scrolls/{scrollId}/regions/{regionId}", SCROLL_ID, writeUserAnnotation.getRegionId())
+                    .header("Authorization", "Bearer " + adminToken)
+                    .header("If-Match", "\"" + version + "\"")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(requestBody))
+            .andExpect(status().isOk());
+
+    NewBoxRegion staleUpdate = new NewBoxRegion().coordinates(newBoxRegionDto.getCoordinates()).transcription("Stale text");
+    mockMvc.perform(put("/scrolls/{scrollId}/regions/{regionId}", SCROLL_ID, writeUserAnnotation.getRegionId())
+                    .header("Authorization", "Bearer " + writeUserToken)
+                    .header("If-Match", "\"" + version + "\"")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(staleUpdate)))
+            .andExpect(status().isConflict())
+            .andExpect(jsonPath("$.current.version").value(version + 1))
+            .andExpect(jsonPath("$.current.basic_info.transcription").value("New transcription"));
+
+    assertThat(annotationRepository.findByRegionId(writeUserAnnotation.getRegionId()).orElseThrow().getTranscription())
+            .isEqualTo("New transcription");
+  }
+
   // Tests for Delete Region
 
   @Test
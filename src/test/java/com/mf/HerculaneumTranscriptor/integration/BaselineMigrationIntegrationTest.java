@@ -0,0 +1,125 @@
+package com.mf.HerculaneumTranscriptor.integration;
+
+import com.mf.HerculaneumTranscriptor.domain.Annotation;
+import com.mf.HerculaneumTranscriptor.domain.AnnotationRevision;
+import com.mf.HerculaneumTranscriptor.domain.Scroll;
+import com.mf.HerculaneumTranscriptor.history.HistoricRegion;
+import com.mf.HerculaneumTranscriptor.history.ScrollTimeline;
+import com.mf.HerculaneumTranscriptor.repository.AnnotationRepository;
+import com.mf.HerculaneumTranscriptor.repository.AnnotationRevisionRepository;
+import com.mf.HerculaneumTranscriptor.repository.ScrollRepository;
+import com.mf.HerculaneumTranscriptor.repository.StorageTaskRepository;
+import com.mf.HerculaneumTranscriptor.repository.UserRepository;
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Starts the backend on a database created by ddl-auto before migrations existed, holding the schema of version 1
+ * and some data, which is baselined at version 1 and brought up to date by the following migrations.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@Transactional
+@RequiredArgsConstructor(onConstructor = @__({@Autowired}))
+public class BaselineMigrationIntegrationTest {
+  private static final String URL = "jdbc:h2:mem:baseline;DB_CLOSE_DELAY=-1";
+  private static final UUID REGION_ID = UUID.fromString("5f0c3a52-5d3e-4a8c-9a43-3d1c2b7f1e10");
+
+  @DynamicPropertySource
+  static void overrideProperties(DynamicPropertyRegistry registry) throws SQLException {
+    createBaselineDatabase();
+    registry.add("spring.datasource.url", () -> URL);
+  }
+
+  private static void createBaselineDatabase() throws SQLException {
+    try (Connection connection = DriverManager.getConnection(URL, "sa", "sa");
+         Statement statement = connection.createStatement()) {
+      ScriptUtils.executeSqlScript(connection, new ClassPathResource("db/migration/V1__initial_schema.sql"));
+      statement.execute("INSERT INTO users VALUES (1, 'papyrologist', 'Ada', 'Lovelace', 'ada@test.com', 'hash', 2)");
+      statement.execute("INSERT INTO scrolls VALUES (1, 'baseline-scroll', 'Baseline Scroll', NULL, 'baseline-scroll.png', NULL, CURRENT_TIMESTAMP)");
+      statement.execute("INSERT INTO annotations VALUES (1, '" + REGION_ID + "', 1, 1, 'πορφυρας', 10, 20, 100, 50, 4, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP)");
+      statement.execute("INSERT INTO votes VALUES (1, 1, 4)");
+    }
+  }
+
+  private final JdbcTemplate jdbcTemplate;
+  private final UserRepository userRepository;
+  private final ScrollRepository scrollRepository;
+  private final AnnotationRepository annotationRepository;
+  private final StorageTaskRepository storageTaskRepository;
+  private final AnnotationRevisionRepository revisionRepository;
+  private final ScrollTimeline scrollTimeline;
+
+  @Test
+  void migrations_shouldBeAppliedAfterTheBaseline() {
+    // Act
+    List<String> migrations = jdbcTemplate.queryForList(
+            "SELECT \"type\" || ' ' || \"version\" FROM \"flyway_schema_history\" WHERE \"success\" AND \"version\" IS NOT NULL ORDER BY \"installed_rank\"", String.class);
+
+    // Assert
+    // The schema of version 1 is already there, so its migration is not run
+    assertThat(migrations).containsExactly("BASELINE 1", "SQL 2", "SQL 3", "SQL 4", "SQL 5", "SQL 6", "SQL 7", "SQL 8",
+            "JDBC 9", "SQL 10");
+  }
+
+  @Test
+  void existingRows_shouldBeKept() {
+    // Act
+    Scroll scroll = scrollRepository.findByScrollId("baseline-scroll").orElseThrow();
+    Annotation annotation = annotationRepository.findByRegionId(REGION_ID).orElseThrow();
+
+    // Assert
+    assertThat(userRepository.findByUsername("papyrologist")).isPresent();
+    // Columns added since are null or start from their defaults
+    assertThat(scroll.getImageMetadata()).isNull();
+    assertThat(annotation.getVersion()).isZero();
+    assertThat(annotation.getCommentCount()).isZero();
+    assertThat(annotation.getScroll().getId()).isEqualTo(scroll.getId());
+    assertThat(storageTaskRepository.count()).isZero();
+  }
+
+  @Test
+  void existingRegions_shouldGetBaseRevision() {
+    // Arrange
+    Long scrollId = scrollRepository.findByScrollId("baseline-scroll").orElseThrow().getId();
+
+    // Act
+    List<AnnotationRevision> revisions = revisionRepository
+            .findByScrollIdAndRegionIdAndRevisionGreaterThanOrderByRevisionAsc(scrollId, REGION_ID, -1, PageRequest.ofSize(10))
+            .getContent();
+    List<HistoricRegion> regions = scrollTimeline.regionsAt(scrollId, Instant.now());
+
+    // Assert
+    assertThat(revisions).singleElement().satisfies(revision -> {
+      assertThat(revision.getOperation()).isEqualTo(AnnotationRevision.Operation.CREATE);
+      assertThat(revision.getRevision()).isZero();
+      assertThat(revision.isSnapshot()).isTrue();
+    });
+    assertThat(regions).singleElement().satisfies(region -> {
+      assertThat(region.regionId()).isEqualTo(REGION_ID);
+      assertThat(region.state().transcription()).isEqualTo("πορφυρας");
+      assertThat(region.state().author()).isEqualTo("papyrologist");
+      assertThat(region.state().certaintyScore()).isEqualTo(4f);
+    });
+  }
+}
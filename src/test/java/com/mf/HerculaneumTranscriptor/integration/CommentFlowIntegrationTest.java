@@ -0,0 +1,224 @@
+package com.mf.HerculaneumTranscriptor.integration;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mf.HerculaneumTranscriptor.domain.Annotation;
+import com.mf.HerculaneumTranscriptor.domain.Scroll;
+import com.mf.HerculaneumTranscriptor.domain.User;
+import com.mf.HerculaneumTranscriptor.repository.AnnotationRepository;
+import com.mf.HerculaneumTranscriptor.repository.CommentRepository;
+import com.mf.HerculaneumTranscriptor.repository.ScrollRepository;
+import com.mf.HerculaneumTranscriptor.repository.UserRepository;
+import com.mf.HerculaneumTranscriptor.security.JwtUtil;
+import comment.dto.CommentContent;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.annotation.Transactional;
+import user.dto.UserInfo;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@Transactional // Ensures each test runs in its own transaction and is rolled back.
+@RequiredArgsConstructor(onConstructor = @__({@Autowired}))
+public class CommentFlowIntegrationTest {
+  private final MockMvc mockMvc;
+  private final JwtUtil jwtUtil;
+  private final ObjectMapper objectMapper;
+  private final UserRepository userRepository;
+  private final ScrollRepository scrollRepository;
+  private final AnnotationRepository annotationRepository;
+  private final CommentRepository commentRepository;
+  private final PasswordEncoder passwordEncoder;
+  private final EntityManager entityManager;
+
+  private Annotation annotation;
+
+  private String adminToken;
+  private String writeUserToken;
+  private String anotherWriteUserToken;
+  private String readUserToken;
+  private static final String SCROLL_ID = "vesuvius-scroll-1";
+  private static final String COMMENTS_PATH = "/scrolls/{scrollId}/regions/{regionId}/comments";
+
+  @BeforeEach
+  void setUp() {
+    // Test Data
+    User adminUser = userRepository.save(new User(null, "admin", "Admin", "User", "admin@test.com", passwordEncoder.encode("pw"), UserInfo.PermissionsEnum.ADMIN));
+    User writeUser = userRepository.save(new User(null, "writer", "Write", "User", "write@test.com", passwordEncoder.encode("pw"), UserInfo.PermissionsEnum.WRITE));
+    User anotherWriteUser = userRepository.save(new User(null, "anotherWriter", "Another", "Writer", "another@test.com", passwordEncoder.encode("pw"), UserInfo.PermissionsEnum.WRITE));
+    User readUser = userRepository.save(new User(null, "reader", "Read", "User", "read@test.com", passwordEncoder.encode("pw"), UserInfo.PermissionsEnum.READ));
+
+    Scroll scroll = scrollRepository.save(new Scroll(null, SCROLL_ID, "Test Scroll", null, null, null, null, null, null));
+
+    annotation = new Annotation();
+    annotation.setRegionId(UUID.randomUUID());
+    annotation.setAuthor(writeUser);
+    annotation.setScroll(scroll);
+    annotation.setTranscription("Original text");
+    annotation = annotationRepository.save(annotation);
+
+    // Generate Tokens
+    adminToken = jwtUtil.generateToken(adminUser.getUsername());
+    writeUserToken = jwtUtil.generateToken(writeUser.getUsername());
+    anotherWriteUserToken = jwtUtil.generateToken(anotherWriteUser.getUsername());
+    readUserToken = jwtUtil.generateToken(readUser.getUsername());
+  }
+
+  private JsonNode addComment(String token, String text) throws Exception {
+    String response = mockMvc.perform(post(COMMENTS_PATH, SCROLL_ID, annotation.getRegionId())
+                    .header("Authorization", "Bearer " + token)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(new CommentContent().text(text))))
+            .andExpect(status().isCreated())
+            .andReturn().getResponse().getContentAsString();
+    return objectMapper.readTree(response);
+  }
+
+  // Tests for Add Comment
+
+  @Test
+  void addComment_shouldReturnCreated_andCountComment() throws Exception {
+    JsonNode comment = addComment(writeUserToken, "I think this might be a delta, not an alpha.");
+
+    assertThat(comment.get("authorUsername").asText()).isEqualTo("writer");
+    assertThat(comment.get("commentId").asText()).isNotBlank();
+
+    // The region list shows the number of comments of each region
+    mockMvc.perform(get("/scrolls/{scrollId}/regions", SCROLL_ID)
+                    .header("Authorization", "Bearer " + readUserToken))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.regions[0].commentCount").value(1));
+  }
+
+  @Test
+  void addComment_shouldReturn403_whenUserHasOnlyReadPermission() throws Exception {
+    mockMvc.perform(post(COMMENTS_PATH, SCROLL_ID, annotation.getRegionId())
+                    .header("Authorization", "Bearer " + readUserToken)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(new CommentContent().text("I think this might be a delta."))))
+            .andExpect(status().isForbidden());
+  }
+
+  @Test
+  void addComment_shouldReturn404_whenRegionDoesNotExist() throws Exception {
+    mockMvc.perform(post(COMMENTS_PATH, SCROLL_ID, UUID.randomUUID())
+                    .header("Authorization", "Bearer " + writeUserToken)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(new CommentContent().text("I think this might be a delta."))))
+            .andExpect(status().isNotFound());
+  }
+
+  // Tests for Get Comments
+
+  @Test
+  void getComments_shouldReturnCommentsInOrder_withCursorToPollFrom() throws Exception {
+    addComment(writeUserToken, "I think this might be a delta, not an alpha.");
+    addComment(anotherWriteUserToken, "I am almost certain this is a Pi.");
+
+    String response = mockMvc.perform(get(COMMENTS_PATH, SCROLL_ID, annotation.getRegionId())
+                    .header("Authorization", "Bearer " + readUserToken))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.comments.length()").value(2))
+            .andExpect(jsonPath("$.comments[0].authorUsername").value("writer"))
+            .andExpect(jsonPath("$.comments[1].authorUsername").value("anotherWriter"))
+            .andExpect(jsonPath("$.hasMore").value(false))
+            .andReturn().getResponse().getContentAsString();
+    String cursor = objectMapper.readTree(response).get("nextCursor").asText();
+
+    // Comments this recent are returned again by the next poll, in case others committed later were numbered before
+    mockMvc.perform(get(COMMENTS_PATH, SCROLL_ID, annotation.getRegionId())
+                    .header("Authorization", "Bearer " + readUserToken)
+                    .param("cursor", cursor))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.comments.length()").value(2));
+  }
+
+  @Test
+  void getComments_shouldIssueAtMost3Statements_regardlessOfCommentCount() throws Exception {
+    QueryCounter queryCounter = new QueryCounter(entityManager);
+    addComment(writeUserToken, "I think this might be a delta, not an alpha.");
+    long fewComments = queryCounter.count(() -> mockMvc.perform(get(COMMENTS_PATH, SCROLL_ID, annotation.getRegionId())
+                    .header("Authorization", "Bearer " + readUserToken))
+            .andExpect(status().isOk()));
+
+    // Comments by several authors, whose names are all listed
+    for (String token : List.of(anotherWriteUserToken, adminToken, writeUserToken, anotherWriteUserToken))
+      addComment(token, "I am almost certain this is a Pi.");
+    long manyComments = queryCounter.count(() -> mockMvc.perform(get(COMMENTS_PATH, SCROLL_ID, annotation.getRegionId())
+                    .header("Authorization", "Bearer " + readUserToken))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.comments.length()").value(5)));
+
+    assertThat(fewComments).isLessThanOrEqualTo(3);
+    assertThat(manyComments).isEqualTo(fewComments);
+  }
+
+  @Test
+  void getComments_shouldReturn400_whenCursorIsMalformed() throws Exception {
+    mockMvc.perform(get(COMMENTS_PATH, SCROLL_ID, annotation.getRegionId())
+                    .header("Authorization", "Bearer " + readUserToken)
+                    .param("cursor", "not a cursor"))
+            .andExpect(status().isBadRequest());
+  }
+
+  // Tests for Delete Comment
+
+  @Test
+  void deleteComment_shouldReturnNoContent_andUncountComment_whenUserIsAuthor() throws Exception {
+    String commentId = addComment(writeUserToken, "I think this might be a delta, not an alpha.").get("commentId").asText();
+
+    mockMvc.perform(delete(COMMENTS_PATH + "/{commentId}", SCROLL_ID, annotation.getRegionId(), commentId)
+                    .header("Authorization", "Bearer " + writeUserToken))
+            .andExpect(status().isNoContent());
+
+    assertThat(commentRepository.findByCommentId(UUID.fromString(commentId))).isEmpty();
+    assertThat(annotationRepository.findByRegionId(annotation.getRegionId()).orElseThrow().getCommentCount()).isZero();
+  }
+
+  @Test
+  void deleteComment_shouldReturn403_whenUserIsNotAuthor() throws Exception {
+    String commentId = addComment(writeUserToken, "I think this might be a delta, not an alpha.").get("commentId").asText();
+
+    mockMvc.perform(delete(COMMENTS_PATH + "/{commentId}", SCROLL_ID, annotation.getRegionId(), commentId)
+                    .header("Authorization", "Bearer " + anotherWriteUserToken))
+            .andExpect(status().isForbidden());
+  }
+
+  @Test
+  void deleteComment_shouldReturnNoContent_whenUserIsAdmin() throws Exception {
+    String commentId = addComment(writeUserToken, "I think this might be a delta, not an alpha.").get("commentId").asText();
+
+    mockMvc.perform(delete(COMMENTS_PATH + "/{commentId}", SCROLL_ID, annotation.getRegionId(), commentId)
+                    .header("Authorization", "Bearer " + adminToken))
+            .andExpect(status().isNoContent());
+  }
+
+  @Test
+  void deleteRegion_shouldDeleteItsComments() throws Exception {
+    String commentId = addComment(writeUserToken, "I think this might be a delta, not an alpha.").get("commentId").asText();
+
+    mockMvc.perform(delete("/scrolls/{scrollId}/regions/{regionId}", SCROLL_ID, annotation.getRegionId())
+                    .header("Authorization", "Bearer " + writeUserToken))
+            .andExpect(status().isNoContent());
+
+    assertThat(commentRepository.findByCommentId(UUID.fromString(commentId))).isEmpty();
+  }
+}
@@ -0,0 +1,135 @@
+package com.mf.HerculaneumTranscriptor.integration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mf.HerculaneumTranscriptor.domain.Scroll;
+import com.mf.HerculaneumTranscriptor.domain.User;
+import com.mf.HerculaneumTranscriptor.repository.AnnotationRepository;
+import com.mf.HerculaneumTranscriptor.repository.ScrollRepository;
+import com.mf.HerculaneumTranscriptor.repository.UserRepository;
+import com.mf.HerculaneumTranscriptor.repository.VoteRepository;
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.flyway.FlywayMigrationInitializer;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import user.dto.BasicUserInfo;
+import user.dto.UserLoginInfo;
+import user.dto.UserRegisterInfo;
+
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Generates a small dataset on startup, in a database of its own, and uses it through the API.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:dataset;DB_CLOSE_DELAY=-1",
+        "api.dataset.users=20",
+        "api.dataset.scrolls=2",
+        "api.dataset.regionsPerScroll=250",
+        "api.dataset.chunkSize=100",
+        "api.dataset.imageWidth=800",
+        "api.dataset.imageHeight=200"
+})
+@AutoConfigureMockMvc
+@ActiveProfiles({"test", "dataset"})
+@RequiredArgsConstructor(onConstructor = @__({@Autowired}))
+public class DatasetGenerationIntegrationTest {
+  @TempDir
+  static Path sharedTempDir;
+
+  @DynamicPropertySource
+  static void overrideProperties(DynamicPropertyRegistry registry) {
+    registry.add("api.scrolls.storageDirectory", () -> sharedTempDir.toString());
+    registry.add("api.scrolls.outbox.stagingDirectory", () -> sharedTempDir.resolve(".staging").toString());
+  }
+
+  /**
+   * Another instance of the backend, which took a block of user IDs from the sequence before the dataset is generated.
+   */
+  @TestConfiguration
+  static class RunningInstance {
+    @Bean
+    Long runningInstanceUserId(FlywayMigrationInitializer migrations, JdbcTemplate jdbcTemplate) {
+      return jdbcTemplate.queryForObject("SELECT NEXT VALUE FOR users_seq", Long.class);
+    }
+  }
+
+  private final Long runningInstanceUserId;
+  private final MockMvc mockMvc;
+  private final ObjectMapper objectMapper;
+  private final UserRepository userRepository;
+  private final ScrollRepository scrollRepository;
+  private final AnnotationRepository annotationRepository;
+  private final VoteRepository voteRepository;
+
+  @Test
+  void dataset_shouldHoldEveryGeneratedRow() {
+    // Assert
+    assertThat(userRepository.count()).isEqualTo(20);
+    assertThat(scrollRepository.findAll()).extracting(Scroll::getScrollId)
+            .containsExactlyInAnyOrder("dataset-scroll-0", "dataset-scroll-1");
+    assertThat(scrollRepository.findAll()).allSatisfy(scroll -> {
+      assertThat(scroll.getImageMetadata().getWidth()).isEqualTo(800);
+      assertThat(scroll.getImageMetadata().getHeight()).isEqualTo(200);
+    });
+    assertThat(annotationRepository.count()).isEqualTo(500);
+    assertThat(voteRepository.count()).isGreaterThan(500);
+  }
+
+  @Test
+  void dataset_shouldNotTakeIdsOfRunningInstances() {
+    // Assert
+    // The block of Hibernate ends or starts at the value it read from the sequence, which is increased by 50
+    assertThat(userRepository.findAll()).extracting(User::getId)
+            .noneMatch(id -> Math.abs(id - runningInstanceUserId) < 50);
+  }
+
+  @Test
+  void dataset_shouldBeServedToGeneratedUsers() throws Exception {
+    // Arrange
+    String token = mockMvc.perform(post("/user")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(new UserLoginInfo("dataset-user-3", "dataset"))))
+            .andExpect(status().isOk())
+            .andReturn().getResponse().getHeader(HttpHeaders.AUTHORIZATION);
+
+    // Act & Assert
+    mockMvc.perform(get("/scrolls/dataset-scroll-1/regions").header(HttpHeaders.AUTHORIZATION, token))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.regions.length()").value(250));
+  }
+
+  @Test
+  void registerNewUser_shouldSucceed_afterDatasetIsGenerated() throws Exception {
+    // Arrange
+    // The generated users took IDs that the sequence of users must not hand out again
+    UserRegisterInfo registerInfo = new UserRegisterInfo()
+            .basicInfo(new BasicUserInfo().username("newcomer").firstName("New").lastName("Comer").contact("new@comer.invalid"))
+            .password("password");
+
+    // Act & Assert
+    mockMvc.perform(post("/register")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(registerInfo)))
+            .andExpect(status().isOk());
+    userRepository.delete(userRepository.findAll().stream()
+            .filter(user -> user.getUsername().equals("newcomer")).findFirst().orElseThrow());
+  }
+}
@@ -0,0 +1,132 @@
+package com.mf.HerculaneumTranscriptor.integration;
+
+import com.mf.HerculaneumTranscriptor.domain.Annotation;
+import com.mf.HerculaneumTranscriptor.domain.Scroll;
+import com.mf.HerculaneumTranscriptor.domain.User;
+import com.mf.HerculaneumTranscriptor.profiling.FlightRecordingEndpoint;
+import com.mf.HerculaneumTranscriptor.repository.AnnotationRepository;
+import com.mf.HerculaneumTranscriptor.repository.ScrollRepository;
+import com.mf.HerculaneumTranscriptor.repository.UserRepository;
+import com.mf.HerculaneumTranscriptor.security.JwtUtil;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import user.dto.UserInfo;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@Transactional // Ensures each test runs in its own transaction and is rolled back.
+@RequiredArgsConstructor(onConstructor = @__({@Autowired}))
+public class FlightRecordingIntegrationTest {
+  private final MockMvc mockMvc;
+  private final JwtUtil jwtUtil;
+  private final UserRepository userRepository;
+  private final ScrollRepository scrollRepository;
+  private final AnnotationRepository annotationRepository;
+  private final FlightRecordingEndpoint flightRecordingEndpoint;
+
+  @TempDir
+  Path tempDir;
+
+  private String adminToken;
+  private String readUserToken;
+  private static final String SCROLL_ID = "recorded-scroll";
+
+  @BeforeEach
+  void setUp() {
+    User adminUser = userRepository.save(new User(null, "recording-admin", "Admin", "User", "admin@test.com", "hash", UserInfo.PermissionsEnum.ADMIN));
+    User readUser = userRepository.save(new User(null, "recording-reader", "Read", "User", "read@test.com", "hash", UserInfo.PermissionsEnum.READ));
+    Scroll scroll = scrollRepository.save(new Scroll(null, SCROLL_ID, "Recorded Scroll", null, null, null, null, null, null));
+
+    Annotation annotation = new Annotation();
+    annotation.setRegionId(UUID.randomUUID());
+    annotation.setAuthor(adminUser);
+    annotation.setScroll(scroll);
+    annotation.setTranscription("Recorded text");
+    annotationRepository.save(annotation);
+
+    adminToken = jwtUtil.generateToken(adminUser.getUsername());
+    readUserToken = jwtUtil.generateToken(readUser.getUsername());
+  }
+
+  @Test
+  void flightRecording_shouldHoldRegionSyncAndAuthenticationEvents() throws Exception {
+    // Arrange
+    mockMvc.perform(get("/scrolls/{scrollId}/regions", SCROLL_ID)
+                    .header("Authorization", "Bearer " + readUserToken))
+            .andExpect(status().isOk());
+
+    // Act
+    byte[] dump = mockMvc.perform(get("/actuator/flightrecording")
+                    .header("Authorization", "Bearer " + adminToken))
+            .andExpect(status().isOk())
+            .andReturn().getResponse().getContentAsByteArray();
+
+    // Assert
+    Path recording = Files.write(tempDir.resolve("dump.jfr"), dump);
+    List<RecordedEvent> events = RecordingFile.readAllEvents(recording);
+
+    assertThat(events)
+            .filteredOn(event -> event.getEventType().getName().equals("herculaneum.RegionSync"))
+            .anySatisfy(event -> {
+              assertThat(event.getString("scrollId")).isEqualTo(SCROLL_ID);
+              assertThat(event.getInt("rows")).isEqualTo(1);
+              assertThat(event.getBoolean("delta")).isFalse();
+            });
+    assertThat(events)
+            .filteredOn(event -> event.getEventType().getName().equals("herculaneum.JwtAuthentication"))
+            .anySatisfy(event -> {
+              assertThat(event.getString("username")).isEqualTo("recording-reader");
+              assertThat(event.getBoolean("valid")).isTrue();
+            });
+  }
+
+  @Test
+  void dump_shouldBeDeleted_whenRequestIsCompletedWithoutSendingIt() throws Exception {
+    // Arrange
+    // e.g. when the client disconnects before the dump is sent, or only asks for its headers
+    ServletRequestAttributes request = new ServletRequestAttributes(new MockHttpServletRequest());
+    RequestContextHolder.setRequestAttributes(request);
+    try {
+      // Act
+      Path dump = flightRecordingEndpoint.dump().getBody().getFile().toPath();
+      boolean keptDuringRequest = Files.exists(dump);
+      request.requestCompleted();
+
+      // Assert
+      assertThat(keptDuringRequest).isTrue();
+      assertThat(dump).doesNotExist();
+    } finally {
+      RequestContextHolder.resetRequestAttributes();
+    }
+  }
+
+  @Test
+  void flightRecording_shouldReturn403_whenUserIsNotAdmin() throws Exception {
+    mockMvc.perform(get("/actuator/flightrecording")
+                    .header("Authorization", "Bearer " + readUserToken))
+            .andExpect(status().isForbidden());
+  }
+}
@@ -0,0 +1,63 @@
+package com.mf.HerculaneumTranscriptor.integration;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Checks what Prometheus gets when scraping the backend. Metrics are not exported in tests unless asked for.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureObservability(tracing = false)
+@ActiveProfiles("test")
+@RequiredArgsConstructor(onConstructor = @__({@Autowired}))
+public class MetricsIntegrationTest {
+  private final MockMvc mockMvc;
+
+  private String scrape() throws Exception {
+    return mockMvc.perform(get("/actuator/prometheus"))
+            .andExpect(status().isOk())
+            .andReturn().getResponse().getContentAsString();
+  }
+
+  @Test
+  @WithMockUser
+  void prometheus_shouldExposeRequestLatencyByOperationId() throws Exception {
+    // Arrange
+    MvcResult result = mockMvc.perform(get("/scrolls"))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+    mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk());
+
+    // Act
+    String metrics = scrape();
+
+    // Assert
+    assertThat(metrics).containsPattern("http_server_requests_seconds_bucket\\{[^}]*operation=\"getAllScrolls\"");
+    assertThat(metrics).containsPattern("spring_data_repository_invocations_seconds_bucket\\{[^}]*repository=\"ScrollRepository\"");
+  }
+
+  @Test
+  void prometheus_shouldExposePoolHibernateAndJvmMetrics_withoutAuthentication() throws Exception {
+    // Act
+    String metrics = scrape();
+
+    // Assert
+    assertThat(metrics).contains("hikaricp_connections_active", "hibernate_statements_total",
+            "hibernate_second_level_cache_requests_total", "jvm_gc_memory_allocated_bytes_total", "jvm_gc_max_data_size_bytes");
+  }
+}
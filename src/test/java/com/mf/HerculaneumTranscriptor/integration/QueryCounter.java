@@ -0,0 +1,51 @@
+package com.mf.HerculaneumTranscriptor.integration;
+
+import jakarta.persistence.EntityManager;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Counts the SQL statements sent while some work runs, so that tests can hold endpoints to a budget
+ * of statements and catch N+1 selects before they reach production. Statements are counted by the
+ * statistics of Hibernate, which are enabled in every profile, so statements sent by other threads
+ * in the meantime are counted too.
+ * <p>
+ * Pending changes of the transaction of the test are flushed first and the persistence context is
+ * cleared, so that they are not counted and the work cannot be served from memory, as with a request
+ * arriving on its own.
+ */
+public class QueryCounter {
+  @FunctionalInterface
+  public interface Work {
+    void run() throws Exception;
+  }
+
+  private final EntityManager entityManager;
+  private final Statistics statistics;
+
+  public QueryCounter(EntityManager entityManager) {
+    this.entityManager = entityManager;
+    this.statistics = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+  }
+
+  /**
+   * @return the number of statements sent while the work ran.
+   */
+  public long count(Work work) throws Exception {
+    entityManager.flush();
+    entityManager.clear();
+
+    long before = statistics.getPrepareStatementCount();
+    work.run();
+    return statistics.getPrepareStatementCount() - before;
+  }
+
+  /**
+   * Fails unless the work sends at most a given number of statements.
+   */
+  public void assertAtMost(long budget, Work work) throws Exception {
+    assertThat(count(work)).as("SQL statements sent").isLessThanOrEqualTo(budget);
+  }
+}
@@ -0,0 +1,203 @@
+package com.mf.HerculaneumTranscriptor.integration;
+
+import annotation.dto.BoxRegion;
+import annotation.dto.Coordinates;
+import annotation.dto.NewBoxRegion;
+import annotation.dto.Vote;
+import com.mf.HerculaneumTranscriptor.domain.Annotation;
+import com.mf.HerculaneumTranscriptor.domain.AnnotationRevision;
+import com.mf.HerculaneumTranscriptor.domain.Scroll;
+import com.mf.HerculaneumTranscriptor.domain.User;
+import com.mf.HerculaneumTranscriptor.domain.mapper.AnnotationMapper;
+import com.mf.HerculaneumTranscriptor.history.RegionHistory;
+import com.mf.HerculaneumTranscriptor.repository.AnnotationRepository;
+import com.mf.HerculaneumTranscriptor.repository.ScrollRepository;
+import com.mf.HerculaneumTranscriptor.repository.UserRepository;
+import com.mf.HerculaneumTranscriptor.repository.VoteRepository;
+import com.mf.HerculaneumTranscriptor.security.JwtUserDetails;
+import com.mf.HerculaneumTranscriptor.service.AnnotationService;
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import user.dto.UserInfo;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Checks votes outside of a test transaction, as requests make them, with the voter loaded in another persistence
+ * context. A vote racing with another change of its region is retried instead of failing, a race staged by
+ * changing the region from another transaction while the vote is being counted. A region is only created along
+ * with its first revision.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@RequiredArgsConstructor(onConstructor = @__({@Autowired}))
+public class RegionConcurrencyIntegrationTest {
+  private final UserRepository userRepository;
+  private final ScrollRepository scrollRepository;
+  private final AnnotationRepository annotationRepository;
+  private final AnnotationService annotationService;
+  private final JdbcTemplate jdbcTemplate;
+  private final PlatformTransactionManager transactionManager;
+
+  @MockitoSpyBean
+  private VoteRepository voteRepository;
+  @MockitoSpyBean
+  private AnnotationMapper annotationMapper;
+  @MockitoSpyBean
+  private RegionHistory regionHistory;
+
+  private static final String USERNAME = "concurrent-voter";
+  private static final String OTHER_USERNAME = "concurrent-other-voter";
+  private static final String SCROLL_ID = "concurrent-scroll";
+
+  private TransactionTemplate transaction;
+  private User voter;
+  private UUID regionId;
+  private Long annotationId;
+
+  @BeforeEach
+  void setUp() {
+    transaction = new TransactionTemplate(transactionManager);
+
+    transaction.executeWithoutResult(status -> {
+      voter = userRepository.save(new User(null, USERNAME, "Concurrent", "Voter", "voter@test.com", "hash", UserInfo.PermissionsEnum.WRITE));
+      Scroll scroll = scrollRepository.save(new Scroll(null, SCROLL_ID, "Concurrent Scroll", null, null, null, null, null, null));
+
+      Annotation annotation = new Annotation();
+      annotation.setRegionId(UUID.randomUUID());
+      annotation.setAuthor(voter);
+      annotation.setScroll(scroll);
+      annotation.setTranscription("Original text");
+      annotation = annotationRepository.save(annotation);
+      regionId = annotation.getRegionId();
+      annotationId = annotation.getId();
+    });
+
+    SecurityContextHolder.getContext().setAuthentication(
+            new UsernamePasswordAuthenticationToken(new JwtUserDetails(voter), null, new JwtUserDetails(voter).getAuthorities()));
+  }
+
+  @AfterEach
+  void tearDown() {
+    SecurityContextHolder.clearContext();
+    transaction.executeWithoutResult(status -> {
+      scrollRepository.findByScrollId(SCROLL_ID).ifPresent(scroll -> {
+        voteRepository.deleteByScrollId(scroll.getId());
+        annotationRepository.deleteByScrollId(scroll.getId());
+        scrollRepository.delete(scroll);
+      });
+      userRepository.findByUsername(USERNAME).ifPresent(userRepository::delete);
+      userRepository.findByUsername(OTHER_USERNAME).ifPresent(userRepository::delete);
+    });
+  }
+
+  @Test
+  void voteOnRegion_shouldBeRetried_whenRegionChangesConcurrently() {
+    // Arrange
+    TransactionTemplate concurrentTransaction = new TransactionTemplate(transactionManager);
+    concurrentTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    AtomicBoolean changed = new AtomicBoolean();
+
+    // The first time the vote is counted, someone else edits the region before the vote can be saved.
+    // The spy wraps the repository proxy, whose methods cannot be called for real, so the only vote is returned
+    doAnswer(invocation -> {
+      if (changed.compareAndSet(false, true))
+        concurrentTransaction.executeWithoutResult(status -> jdbcTemplate.update(
+                "UPDATE annotations SET transcription = 'Edited text', version = version + 1 WHERE region_id = ?", regionId));
+      return 4.0f;
+    }).when(voteRepository).calculateAverageVote(anyLong());
+
+    // Act
+    BoxRegion region = annotationService.voteOnRegion(SCROLL_ID, regionId, new Vote().vote(4));
+
+    // Assert
+    verify(voteRepository, times(2)).calculateAverageVote(anyLong());
+    assertThat(region.getCertaintyScore()).isEqualTo(4.0f);
+    assertThat(region.getVersion()).isEqualTo(2L);
+    assertThat(region.getBasicInfo().getTranscription()).isEqualTo("Edited text");
+    Long votes = transaction.execute(status -> voteRepository.count());
+    assertThat(votes).isEqualTo(1L);
+  }
+
+  @Test
+  void updateRegion_shouldKeepComment_whenRegionIsCommentedConcurrently() {
+    // Arrange
+    TransactionTemplate concurrentTransaction = new TransactionTemplate(transactionManager);
+    concurrentTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    AtomicBoolean commented = new AtomicBoolean();
+
+    // Someone comments on the region after it was read for the update, which then writes it back
+    doAnswer(invocation -> {
+      if (commented.compareAndSet(false, true))
+        concurrentTransaction.executeWithoutResult(status -> annotationRepository.addToCommentCount(annotationId, 1, Instant.now()));
+      return invocation.callRealMethod();
+    }).when(annotationMapper).coordinatesDtoToEntityCoordinates(any());
+
+    // Act
+    annotationService.updateRegion(SCROLL_ID, regionId,
+            new NewBoxRegion(new Coordinates().x(1f).y(2f).width(3f).height(4f), "Edited text"), null);
+
+    // Assert
+    Annotation annotation = transaction.execute(status -> annotationRepository.findByRegionId(regionId).orElseThrow());
+    assertThat(annotation.getTranscription()).isEqualTo("Edited text");
+    assertThat(annotation.getCommentCount()).isEqualTo(1);
+  }
+
+  @Test
+  void createRegion_shouldLeaveNoRegion_whenItsRevisionCannotBeRecorded() {
+    // Arrange
+    doThrow(new DataIntegrityViolationException("Revision not recorded"))
+            .when(regionHistory).record(any(), eq(AnnotationRevision.Operation.CREATE), any());
+
+    // Act & Assert
+    assertThatThrownBy(() -> annotationService.createRegion(SCROLL_ID,
+            new NewBoxRegion(new Coordinates().x(1f).y(2f).width(3f).height(4f), "Unrecorded text")))
+            .isInstanceOf(DataIntegrityViolationException.class);
+    List<Annotation> regions = transaction.execute(status -> annotationRepository.findByScrollScrollId(SCROLL_ID));
+    assertThat(regions).extracting(Annotation::getRegionId).containsExactly(regionId);
+  }
+
+  @Test
+  void voteOnRegion_shouldCountVote_whenVoterIsNotTheAuthor() {
+    // Arrange
+    // The voter is loaded in another persistence context than the vote, as it is by the JWT filter
+    User otherVoter = transaction.execute(status -> userRepository.save(
+            new User(null, OTHER_USERNAME, "Other", "Voter", "other@test.com", "hash", UserInfo.PermissionsEnum.WRITE)));
+    SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(
+            new JwtUserDetails(otherVoter), null, new JwtUserDetails(otherVoter).getAuthorities()));
+
+    // Act
+    BoxRegion region = annotationService.voteOnRegion(SCROLL_ID, regionId, new Vote().vote(3));
+
+    // Assert
+    assertThat(region.getCertaintyScore()).isEqualTo(3.0f);
+    Long votes = transaction.execute(status -> voteRepository.count());
+    assertThat(votes).isEqualTo(1L);
+  }
+}
@@ -0,0 +1,413 @@
+package com.mf.HerculaneumTranscriptor.integration;
+
+import annotation.dto.Coordinates;
+import annotation.dto.NewBoxRegion;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mf.HerculaneumTranscriptor.domain.AnnotationRevision;
+import com.mf.HerculaneumTranscriptor.domain.Scroll;
+import com.mf.HerculaneumTranscriptor.domain.ScrollSnapshotClaim;
+import com.mf.HerculaneumTranscriptor.domain.User;
+import com.mf.HerculaneumTranscriptor.history.ScrollTimeline;
+import com.mf.HerculaneumTranscriptor.repository.AnnotationRepository;
+import com.mf.HerculaneumTranscriptor.repository.AnnotationRevisionRepository;
+import com.mf.HerculaneumTranscriptor.repository.ScrollRepository;
+import com.mf.HerculaneumTranscriptor.repository.ScrollSnapshotClaimRepository;
+import com.mf.HerculaneumTranscriptor.repository.UserRepository;
+import com.mf.HerculaneumTranscriptor.security.JwtUtil;
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import user.dto.UserInfo;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Edits regions through the API and reads back their history. Each request commits its changes along with their
+ * history, so nothing runs in a test transaction and the data is deleted afterwards.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@RequiredArgsConstructor(onConstructor = @__({@Autowired}))
+public class RegionHistoryIntegrationTest {
+  private final MockMvc mockMvc;
+  private final JwtUtil jwtUtil;
+  private final ObjectMapper objectMapper;
+  private final UserRepository userRepository;
+  private final ScrollRepository scrollRepository;
+  private final AnnotationRepository annotationRepository;
+  private final ScrollTimeline scrollTimeline;
+  private final JdbcTemplate jdbcTemplate;
+  private final PlatformTransactionManager transactionManager;
+  private final AnnotationRevisionRepository revisionRepository;
+  private final ScrollSnapshotClaimRepository claimRepository;
+
+  @Value("${api.regions.asOf.snapshotInterval}")
+  private long snapshotInterval;
+  @Value("${api.regions.asOf.snapshotLag}")
+  private Duration snapshotLag;
+
+  private static final String USERNAME = "historian";
+  private static final String SCROLL_ID = "history-scroll";
+
+  private TransactionTemplate transaction;
+  private String token;
+
+  @BeforeEach
+  void setUp() {
+    transaction = new TransactionTemplate(transactionManager);
+    transaction.executeWithoutResult(status -> {
+      userRepository.save(new User(null, USERNAME, "History", "Writer", "history@test.com", "hash", UserInfo.PermissionsEnum.WRITE));
+      scrollRepository.save(new Scroll(null, SCROLL_ID, "History Scroll", null, null, null, null, null, null));
+    });
+    token = jwtUtil.generateToken(USERNAME);
+  }
+
+  @AfterEach
+  void tearDown() {
+    transaction.executeWithoutResult(status -> {
+      scrollRepository.findByScrollId(SCROLL_ID).ifPresent(scroll -> {
+        jdbcTemplate.update("DELETE FROM annotation_revisions WHERE scroll_id = ?", scroll.getId());
+        jdbcTemplate.update("DELETE FROM scroll_snapshot_regions WHERE snapshot_id IN " +
+                "(SELECT id FROM scroll_snapshots WHERE scroll_id = ?)", scroll.getId());
+        jdbcTemplate.update("DELETE FROM scroll_snapshots WHERE scroll_id = ?", scroll.getId());
+        jdbcTemplate.update("DELETE FROM scroll_snapshot_claims WHERE scroll_id = ?", scroll.getId());
+        annotationRepository.deleteByScrollId(scroll.getId());
+        scrollRepository.delete(scroll);
+      });
+      userRepository.findByUsername(USERNAME).ifPresent(userRepository::delete);
+    });
+  }
+
+  private MockHttpServletRequestBuilder authorized(MockHttpServletRequestBuilder request) {
+    return request.header("Authorization", "Bearer " + token);
+  }
+
+  private String regionBody(String transcription, float x) throws Exception {
+    return objectMapper.writeValueAsString(new NewBoxRegion()
+            .coordinates(new Coordinates().x(x).y(20f).width(100f).height(50f))
+            .transcription(transcription));
+  }
+
+  private UUID createRegion(String transcription) throws Exception {
+    String response = mockMvc.perform(authorized(post("/scrolls/{scrollId}/regions", SCROLL_ID))
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(regionBody(transcription, 10f)))
+            .andExpect(status().isCreated())
+            .andReturn().getResponse().getContentAsString();
+    return UUID.fromString(objectMapper.readTree(response).get("regionId").asText());
+  }
+
+  private void updateRegion(UUID regionId, String transcription, float x) throws Exception {
+    mockMvc.perform(authorized(put("/scrolls/{scrollId}/regions/{regionId}", SCROLL_ID, regionId))
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(regionBody(transcription, x)))
+            .andExpect(status().isOk());
+  }
+
+  // Leaves some time between the changes made before and after the returned time
+  private static String pause() throws InterruptedException {
+    Thread.sleep(5);
+    // Times are sent with millisecond precision
+    Instant time = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+    Thread.sleep(5);
+    return time.toString();
+  }
+
+  private JsonNode regionsAsOf(String time) throws Exception {
+    String response = mockMvc.perform(authorized(get("/scrolls/{scrollId}/regions", SCROLL_ID).param("asOf", time)))
+            .andExpect(status().isOk())
+            .andReturn().getResponse().getContentAsString();
+    return objectMapper.readTree(response).get("regions");
+  }
+
+  private List<JsonNode> history(MockHttpServletRequestBuilder request) throws Exception {
+    String response = mockMvc.perform(authorized(request))
+            .andExpect(status().isOk())
+            .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+            .andReturn().getResponse().getContentAsString();
+
+    List<JsonNode> revisions = new ArrayList<>();
+    for (String line : response.lines().toList())
+      revisions.add(objectMapper.readTree(line));
+    return revisions;
+  }
+
+  @Test
+  void getRegionHistory_shouldListEveryChange_withTheStateItLeft() throws Exception {
+    // Arrange
+    UUID regionId = createRegion("Arma virumque cano");
+    updateRegion(regionId, "Arma virumque cano, Troiae", 10f);
+    updateRegion(regionId, "Arma virumque cano, Troiae", 15f);
+    mockMvc.perform(authorized(delete("/scrolls/{scrollId}/regions/{regionId}", SCROLL_ID, regionId)))
+            .andExpect(status().isNoContent());
+
+    // Act
+    List<JsonNode> revisions = history(get("/scrolls/{scrollId}/regions/{regionId}/history", SCROLL_ID, regionId));
+
+    // Assert
+    assertThat(revisions).extracting(revision -> revision.get("operation").asText())
+            .containsExactly("create", "update", "update", "delete");
+    assertThat(revisions).extracting(revision -> revision.get("revision").asLong()).containsExactly(0L, 1L, 2L, 3L);
+    assertThat(revisions).extracting(revision -> revision.get("editor").asText()).containsOnly(USERNAME);
+    assertThat(revisions.get(1).get("changed").toString()).isEqualTo("[\"transcription\"]");
+    assertThat(revisions.get(1).get("basic_info").get("transcription").asText()).isEqualTo("Arma virumque cano, Troiae");
+    assertThat(revisions.get(2).get("changed").toString()).isEqualTo("[\"x\"]");
+    assertThat(revisions.get(3).get("basic_info").get("coordinates").get("x").floatValue()).isEqualTo(15f);
+  }
+
+  @Test
+  void getRegionHistory_shouldStartFromRevision_rebuildingItFromEarlierOnes() throws Exception {
+    // Arrange
+    UUID regionId = createRegion("Arma");
+    updateRegion(regionId, "Arma virumque", 10f);
+    updateRegion(regionId, "Arma virumque cano", 10f);
+
+    // Act
+    List<JsonNode> revisions = history(get("/scrolls/{scrollId}/regions/{regionId}/history", SCROLL_ID, regionId)
+            .param("fromRevision", "2"));
+
+    // Assert
+    assertThat(revisions).singleElement().satisfies(revision -> {
+      assertThat(revision.get("revision").asLong()).isEqualTo(2L);
+      assertThat(revision.get("basic_info").get("transcription").asText()).isEqualTo("Arma virumque cano");
+    });
+  }
+
+  @Test
+  void getRegionHistory_shouldListEveryCommittedChange_whenRegionIsEditedConcurrently() throws Exception {
+    // Arrange
+    UUID regionId = createRegion("Arma");
+    ExecutorService editors = Executors.newFixedThreadPool(4);
+
+    // Act
+    // Edits that keep conflicting give up after their last attempt, and must then not be in the history
+    List<Future<Integer>> statuses = new ArrayList<>();
+    for (int i = 0; i < 8; i++) {
+      String transcription = "Arma virumque cano " + i;
+      statuses.add(editors.submit(() -> mockMvc.perform(authorized(put("/scrolls/{scrollId}/regions/{regionId}", SCROLL_ID, regionId))
+                      .contentType(MediaType.APPLICATION_JSON)
+                      .content(regionBody(transcription, 10f)))
+              .andReturn().getResponse().getStatus()));
+    }
+    long updates = 0;
+    for (Future<Integer> status : statuses)
+      if (status.get() == 200)
+        updates++;
+    editors.shutdown();
+    List<JsonNode> revisions = history(get("/scrolls/{scrollId}/regions/{regionId}/history", SCROLL_ID, regionId));
+
+    // Assert
+    String transcription = annotationRepository.findByRegionId(regionId).orElseThrow().getTranscription();
+    assertThat(revisions).extracting(revision -> revision.get("revision").asLong())
+            .containsExactlyElementsOf(LongStream.rangeClosed(0, updates).boxed().toList());
+    assertThat(revisions.getLast().get("basic_info").get("transcription").asText()).isEqualTo(transcription);
+  }
+
+  @Test
+  void getScrollHistory_shouldGroupRevisionsByRegion() throws Exception {
+    // Arrange
+    UUID firstRegionId = createRegion("Arma");
+    UUID secondRegionId = createRegion("Troiae");
+    updateRegion(firstRegionId, "Arma virumque", 10f);
+    updateRegion(secondRegionId, "Troiae qui", 10f);
+
+    // Act
+    List<JsonNode> revisions = history(get("/scrolls/{scrollId}/history", SCROLL_ID));
+
+    // Assert
+    assertThat(revisions).hasSize(4);
+    List<String> regionIds = revisions.stream().map(revision -> revision.get("regionId").asText()).toList();
+    assertThat(regionIds.get(0)).isEqualTo(regionIds.get(1));
+    assertThat(regionIds.get(2)).isEqualTo(regionIds.get(3));
+    assertThat(regionIds).containsOnly(firstRegionId.toString(), secondRegionId.toString());
+    assertThat(revisions).extracting(revision -> revision.get("revision").asLong()).containsExactly(0L, 1L, 0L, 1L);
+  }
+
+  @Test
+  void getRegionHistory_shouldReturn404_whenRegionHasNoHistory() throws Exception {
+    mockMvc.perform(authorized(get("/scrolls/{scrollId}/regions/{regionId}/history", SCROLL_ID, UUID.randomUUID())))
+            .andExpect(status().isNotFound());
+  }
+
+  @Test
+  void getScrollHistory_shouldReturn404_whenScrollDoesNotExist() throws Exception {
+    mockMvc.perform(authorized(get("/scrolls/{scrollId}/history", "missing-scroll")))
+            .andExpect(status().isNotFound());
+  }
+
+  @Test
+  void getScrollRegions_shouldRebuildRegions_asOfPastTime() throws Exception {
+    // Arrange
+    UUID keptRegionId = createRegion("Arma");
+    UUID deletedRegionId = createRegion("Troiae");
+    String beforeChanges = pause();
+    updateRegion(keptRegionId, "Arma virumque", 15f);
+    mockMvc.perform(authorized(delete("/scrolls/{scrollId}/regions/{regionId}", SCROLL_ID, deletedRegionId)))
+            .andExpect(status().isNoContent());
+    String afterChanges = pause();
+
+    // Act
+    JsonNode before = regionsAsOf(beforeChanges);
+    JsonNode after = regionsAsOf(afterChanges);
+
+    // Assert
+    assertThat(before).hasSize(2);
+    assertThat(before.get(0).get("regionId").asText()).isEqualTo(keptRegionId.toString());
+    assertThat(before.get(0).get("authorUsername").asText()).isEqualTo(USERNAME);
+    assertThat(before.get(0).get("basic_info").get("transcription").asText()).isEqualTo("Arma");
+    assertThat(before.get(0).get("version").asLong()).isEqualTo(0L);
+    assertThat(after).singleElement().satisfies(region -> {
+      assertThat(region.get("basic_info").get("transcription").asText()).isEqualTo("Arma virumque");
+      assertThat(region.get("basic_info").get("coordinates").get("x").floatValue()).isEqualTo(15f);
+      assertThat(region.get("version").asLong()).isEqualTo(1L);
+    });
+  }
+
+  @Test
+  void getScrollRegions_shouldReplayRevisionsOntoSnapshot() throws Exception {
+    // Arrange
+    UUID regionId = createRegion("Arma");
+    updateRegion(regionId, "Arma virumque", 10f);
+    String snapshotTime = pause();
+    updateRegion(regionId, "Arma virumque cano", 10f);
+    String afterChanges = pause();
+    Long scrollId = scrollRepository.findByScrollId(SCROLL_ID).orElseThrow().getId();
+    scrollTimeline.takeSnapshot(scrollId, Instant.parse(snapshotTime));
+    // Revisions covered by the snapshot are not replayed, so removing them must not change anything
+    jdbcTemplate.update("DELETE FROM annotation_revisions WHERE scroll_id = ? AND created_at <= ?",
+            scrollId, Timestamp.from(Instant.parse(snapshotTime)));
+
+    // Act
+    JsonNode atSnapshot = regionsAsOf(snapshotTime);
+    JsonNode after = regionsAsOf(afterChanges);
+
+    // Assert
+    assertThat(atSnapshot).singleElement().satisfies(region ->
+            assertThat(region.get("basic_info").get("transcription").asText()).isEqualTo("Arma virumque"));
+    assertThat(after).singleElement().satisfies(region -> {
+      assertThat(region.get("basic_info").get("transcription").asText()).isEqualTo("Arma virumque cano");
+      assertThat(region.get("authorUsername").asText()).isEqualTo(USERNAME);
+      assertThat(region.get("version").asLong()).isEqualTo(2L);
+    });
+  }
+
+  @Test
+  void getScrollRegions_shouldReplayRevision_committedAfterSnapshotCoveringItsTime() throws Exception {
+    // Arrange
+    UUID regionId = createRegion("Arma");
+    String snapshotTime = pause();
+    Long scrollId = scrollRepository.findByScrollId(SCROLL_ID).orElseThrow().getId();
+    scrollTimeline.takeSnapshot(scrollId, Instant.parse(snapshotTime));
+    // Made before the time of the snapshot, but only committed once it was taken
+    revisionRepository.save(new AnnotationRevision(null, regionId, scrollId, 1L, AnnotationRevision.Operation.UPDATE,
+            USERNAME, Instant.parse(snapshotTime).minusMillis(1), false, "{\"transcription\":\"Arma virumque\"}"));
+
+    // Act
+    JsonNode regions = regionsAsOf(pause());
+
+    // Assert
+    assertThat(regions).singleElement().satisfies(region -> {
+      assertThat(region.get("basic_info").get("transcription").asText()).isEqualTo("Arma virumque");
+      assertThat(region.get("version").asLong()).isEqualTo(1L);
+    });
+  }
+
+  @Test
+  void getScrollRegions_shouldApplyRevisionsInOrderOfTheirNumbers_whenMadeOnInstancesWithSkewedClocks() throws Exception {
+    // Arrange
+    UUID regionId = createRegion("Arma");
+    String changesTime = pause();
+    Long scrollId = scrollRepository.findByScrollId(SCROLL_ID).orElseThrow().getId();
+    // The second change was made on an instance whose clock is behind the one of the first change
+    revisionRepository.save(new AnnotationRevision(null, regionId, scrollId, 1L, AnnotationRevision.Operation.UPDATE,
+            USERNAME, Instant.parse(changesTime).plusMillis(2), false, "{\"transcription\":\"Arma virumque\"}"));
+    revisionRepository.save(new AnnotationRevision(null, regionId, scrollId, 2L, AnnotationRevision.Operation.UPDATE,
+            USERNAME, Instant.parse(changesTime).plusMillis(1), false, "{\"transcription\":\"Arma virumque cano\"}"));
+
+    // Act
+    JsonNode regions = regionsAsOf(pause());
+
+    // Assert
+    assertThat(regions).singleElement().satisfies(region -> {
+      assertThat(region.get("basic_info").get("transcription").asText()).isEqualTo("Arma virumque cano");
+      assertThat(region.get("version").asLong()).isEqualTo(2L);
+    });
+  }
+
+  @Test
+  void takeSnapshots_shouldSkipScroll_whileAnotherInstanceClaimsIt() throws Exception {
+    // Arrange
+    UUID regionId = createRegion("Arma");
+    updateRegion(regionId, "Arma virumque", 10f);
+    Long scrollId = scrollRepository.findByScrollId(SCROLL_ID).orElseThrow().getId();
+    transaction.executeWithoutResult(status ->
+            claimRepository.save(new ScrollSnapshotClaim(scrollId, Instant.now().plus(1, ChronoUnit.HOURS))));
+    ReflectionTestUtils.setField(scrollTimeline, "snapshotInterval", 1L);
+    ReflectionTestUtils.setField(scrollTimeline, "snapshotLag", Duration.ZERO);
+
+    long whileClaimed;
+    long onceClaimEnded;
+    try {
+      // Act
+      scrollTimeline.takeSnapshots();
+      whileClaimed = countSnapshots(scrollId);
+      transaction.executeWithoutResult(status -> claimRepository.save(new ScrollSnapshotClaim(scrollId, Instant.now())));
+      scrollTimeline.takeSnapshots();
+      onceClaimEnded = countSnapshots(scrollId);
+    } finally {
+      ReflectionTestUtils.setField(scrollTimeline, "snapshotInterval", snapshotInterval);
+      ReflectionTestUtils.setField(scrollTimeline, "snapshotLag", snapshotLag);
+    }
+
+    // Assert
+    assertThat(whileClaimed).isZero();
+    assertThat(onceClaimEnded).isEqualTo(1);
+    // The claim is given up once the snapshot is taken
+    assertThat(claimRepository.findById(scrollId)).get()
+            .satisfies(claim -> assertThat(claim.getClaimedUntil()).isBeforeOrEqualTo(Instant.now()));
+  }
+
+  private long countSnapshots(Long scrollId) {
+    return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM scroll_snapshots WHERE scroll_id = ?", Long.class, scrollId);
+  }
+
+  @Test
+  void getScrollRegions_shouldReturn400_whenBothSinceAndAsOfAreGiven() throws Exception {
+    // Dates are bound with millisecond precision
+    String now = Instant.now().truncatedTo(ChronoUnit.MILLIS).toString();
+    mockMvc.perform(authorized(get("/scrolls/{scrollId}/regions", SCROLL_ID).param("since", now).param("asOf", now)))
+            .andExpect(status().isBadRequest())
+            .andExpect(jsonPath("$.message").value("Regions can be fetched either since or as of a time, not both"));
+  }
+}
@@ -0,0 +1,87 @@
+package com.mf.HerculaneumTranscriptor.integration;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+import java.util.Locale;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks that the migrations create the schema and that the lookups of the repositories use its indexes,
+ * by asking the database for the plan of the queries Hibernate sends for them.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@RequiredArgsConstructor(onConstructor = @__({@Autowired}))
+public class SchemaMigrationIntegrationTest {
+  private final JdbcTemplate jdbcTemplate;
+
+  private String explain(String sql) {
+    return String.join("\n", jdbcTemplate.queryForList("EXPLAIN " + sql, String.class)).toLowerCase(Locale.ROOT);
+  }
+
+  @Test
+  void migrations_shouldBeAppliedAtStartup() {
+    // Act
+    List<String> versions = jdbcTemplate.queryForList(
+            "SELECT \"version\" FROM \"flyway_schema_history\" WHERE \"success\" AND \"version\" IS NOT NULL ORDER BY \"installed_rank\"", String.class);
+
+    // Assert
+    assertThat(versions).containsExactly("1", "2", "3", "4", "5", "6", "7", "8", "9", "10");
+  }
+
+  @Test
+  void findByUsername_shouldUseUniqueUsernameIndex() {
+    // Act & Assert
+    assertThat(explain("SELECT * FROM users u WHERE u.username = 'john'"))
+            .contains("uk_users_username");
+  }
+
+  @Test
+  void findByScrollId_shouldUseUniqueScrollIdIndex() {
+    // Act & Assert
+    assertThat(explain("SELECT * FROM scrolls s WHERE s.scroll_id = 'vesuvius-scroll-1'"))
+            .contains("uk_scrolls_scroll_id");
+  }
+
+  @Test
+  void findByRegionId_shouldUseUniqueRegionIdIndex() {
+    // Act & Assert
+    assertThat(explain("SELECT * FROM annotations a WHERE a.region_id = '5f0c3a52-5d3e-4a8c-9a43-3d1c2b7f1e10'"))
+            .contains("uk_annotations_region_id");
+  }
+
+  @Test
+  void findByScrollScrollIdAndUpdatedAtAfter_shouldUseScrollAndUpdateTimeIndex() {
+    // Act
+    String plan = explain("""
+            SELECT a.* FROM annotations a JOIN scrolls s ON s.id = a.scroll_id
+            WHERE s.scroll_id = 'vesuvius-scroll-1' AND a.updated_at > TIMESTAMP WITH TIME ZONE '2025-01-01 00:00:00+00'""");
+
+    // Assert
+    // The scroll is found by its public ID and its regions by the composite index, without scanning either table
+    assertThat(plan).contains("uk_scrolls_scroll_id").contains("idx_annotations_scroll_updated_at");
+    assertThat(plan).doesNotContain("tablescan");
+  }
+
+  @Test
+  void voteLookups_shouldNotScanVotes() {
+    // Act
+    String averagePlan = explain("SELECT AVG(v.vote_value) FROM votes v WHERE v.annotation_id = 1");
+    String votePlan = explain("SELECT * FROM votes v WHERE v.user_id = 2 AND v.annotation_id = 1");
+    String userVotesPlan = explain("SELECT * FROM votes v WHERE v.user_id = 2");
+
+    // Assert
+    // The primary key starts with annotation_id, and votes of a user have their own index.
+    // H2 may prefer the indexes it creates for foreign keys, which Postgres does not have, so only the absence of scans is checked.
+    assertThat(averagePlan).contains("annotation_id =").doesNotContain("tablescan");
+    assertThat(votePlan).doesNotContain("tablescan");
+    assertThat(userVotesPlan).contains("user_id =").doesNotContain("tablescan");
+  }
+}
@@ -1,10 +1,18 @@
 package com.mf.HerculaneumTranscriptor.integration;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mf.HerculaneumTranscriptor.domain.Annotation;
+import com.mf.HerculaneumTranscriptor.domain.StorageTask;
 import com.mf.HerculaneumTranscriptor.domain.User;
+import com.mf.HerculaneumTranscriptor.domain.Vote;
+import com.mf.HerculaneumTranscriptor.repository.AnnotationRepository;
 import com.mf.HerculaneumTranscriptor.repository.ScrollRepository;
+import com.mf.HerculaneumTranscriptor.repository.StorageTaskRepository;
 import com.mf.HerculaneumTranscriptor.repository.UserRepository;
+import com.mf.HerculaneumTranscriptor.repository.VoteRepository;
 import com.mf.HerculaneumTranscriptor.security.JwtUtil;
+import com.mf.HerculaneumTranscriptor.storage.StorageOutbox;
+import jakarta.persistence.EntityManager;
 import lombok.RequiredArgsConstructor;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -19,6 +27,7 @@ import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.DynamicPropertyRegistry;
 import org.springframework.test.context.DynamicPropertySource;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.transaction.annotation.Transactional;
 import scroll.dto.NewScroll;
 import user.dto.UserInfo;
@@ -26,10 +35,14 @@ import user.dto.UserInfo;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.UUID;
 
 import static org.assertj.core.api.AssertionsForInterfaceTypes.assertThat;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @SpringBootTest
@@ -45,6 +58,7 @@ public class ScrollFlowIntegrationTest {
   static void overrideProperties(DynamicPropertyRegistry registry) {
     // Needed to use the temporary folder as the scroll storage location for the tests.
     registry.add("api.scrolls.storageDirectory", () -> sharedTempDir.toString());
+    registry.add("api.scrolls.outbox.stagingDirectory", () -> sharedTempDir.resolve(".staging").toString());
   }
 
   private final MockMvc mockMvc;
@@ -52,7 +66,12 @@ public class ScrollFlowIntegrationTest {
   private final ObjectMapper objectMapper;
   private final UserRepository userRepository;
   private final ScrollRepository scrollRepository;
+  private final AnnotationRepository annotationRepository;
+  private final VoteRepository voteRepository;
   private final PasswordEncoder passwordEncoder;
+  private final StorageOutbox storageOutbox;
+  private final StorageTaskRepository storageTaskRepository;
+  private final EntityManager entityManager;
 
   private String adminToken;
   private String userToken;
@@ -99,6 +118,29 @@ public class ScrollFlowIntegrationTest {
     assertThat(dummyFile).exists();
   }
 
+  @Test
+  void getAllScrolls_shouldIssueAtMost2Statements_regardlessOfScrollCount() throws Exception {
+    QueryCounter queryCounter = new QueryCounter(entityManager);
+    long fewScrolls = queryCounter.count(() -> getAllScrolls(1));
+
+    for (int i = 3; i < 8; i++)
+      scrollRepository.save(new com.mf.HerculaneumTranscriptor.domain.Scroll(null, "vesuvius-scroll-" + i, "Scroll " + i, null, null, null, null, null, null));
+    long manyScrolls = queryCounter.count(() -> getAllScrolls(6));
+
+    assertThat(fewScrolls).isLessThanOrEqualTo(2);
+    assertThat(manyScrolls).isEqualTo(fewScrolls);
+  }
+
+  private void getAllScrolls(int expectedCount) throws Exception {
+    MvcResult result = mockMvc.perform(get("/scrolls")
+                    .header("Authorization", "Bearer " + userToken))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+    mockMvc.perform(asyncDispatch(result))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(expectedCount));
+  }
+
   @Test
   void createScroll_shouldReturn403_whenRegularUserTriesToCreate() throws Exception {
     // Arrange
@@ -122,16 +164,105 @@ public class ScrollFlowIntegrationTest {
     MockMultipartFile metadataPart = new MockMultipartFile("metadata", "", MediaType.APPLICATION_JSON_VALUE, metadataJson.getBytes());
 
     // Act & Assert
-    mockMvc.perform(multipart("/scrolls")
+    // The response is written once the image is stored, on the async dispatch of the request
+    MvcResult result = mockMvc.perform(multipart("/scrolls")
                     .file(imageFile)
                     .file(metadataPart)
                     .header("Authorization", "Bearer " + adminToken))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+
+    mockMvc.perform(asyncDispatch(result))
             .andExpect(status().isOk())
             .andExpect(jsonPath("$.scrollId").value(SCROLL_ID));
 
     assertThat(scrollRepository.findByScrollId(SCROLL_ID)).isNotEmpty();
     Path createdFile = sharedTempDir.resolve(SCROLL_ID + ".png").normalize();
+    assertThat(createdFile).doesNotExist();
+
+    // The image is stored by the outbox worker
+    assertThat(storageOutbox.processBatch()).isEqualTo(1);
     assertThat(createdFile).exists();
+    assertThat(sharedTempDir.resolve(".staging")).isEmptyDirectory();
+  }
+
+  @Test
+  void createScroll_shouldLeaveImageToItsStager_whenStagedByAnotherInstance() throws Exception {
+    // Arrange
+    MockMultipartFile imageFile = new MockMultipartFile("ink_image", "image.png", MediaType.IMAGE_PNG_VALUE, "dummy-bytes".getBytes());
+    String metadataJson = objectMapper.writeValueAsString(newScrollDto);
+    MockMultipartFile metadataPart = new MockMultipartFile("metadata", "", MediaType.APPLICATION_JSON_VALUE, metadataJson.getBytes());
+    MvcResult result = mockMvc.perform(multipart("/scrolls")
+                    .file(imageFile)
+                    .file(metadataPart)
+                    .header("Authorization", "Bearer " + adminToken))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+    mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk());
+
+    // Act
+    // As if the image had been uploaded to another instance, whose staging directory this one cannot read
+    storageTaskRepository.findAll().forEach(task -> task.setStagedBy("another-instance"));
+    storageTaskRepository.flush();
+    int processed = storageOutbox.processBatch();
+
+    // Assert
+    assertThat(processed).isZero();
+    assertThat(storageTaskRepository.findAll()).allSatisfy(task -> assertThat(task.getClaimToken()).isNull());
+  }
+
+  @Test
+  void createScroll_shouldGiveUpImage_whenItsStagerIsGone() throws Exception {
+    // Arrange
+    MockMultipartFile imageFile = new MockMultipartFile("ink_image", "image.png", MediaType.IMAGE_PNG_VALUE, "dummy-bytes".getBytes());
+    String metadataJson = objectMapper.writeValueAsString(newScrollDto);
+    MockMultipartFile metadataPart = new MockMultipartFile("metadata", "", MediaType.APPLICATION_JSON_VALUE, metadataJson.getBytes());
+    MvcResult result = mockMvc.perform(multipart("/scrolls")
+                    .file(imageFile)
+                    .file(metadataPart)
+                    .header("Authorization", "Bearer " + adminToken))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+    mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk());
+    // As if the image had been staged two hours ago by an instance that was since replaced under another name
+    StorageTask put = storageTaskRepository.findAll().stream()
+            .filter(task -> task.getLocation().startsWith(SCROLL_ID)).findFirst().orElseThrow();
+    put.setStagedBy("replaced-instance");
+    put.setNextAttemptAt(Instant.now().minus(2, ChronoUnit.HOURS));
+    storageOutbox.enqueueDelete(put.getLocation());
+    storageTaskRepository.flush();
+
+    // Act
+    int processed = storageOutbox.processBatch();
+
+    // Assert
+    // The deletion no longer waits for the image that will never be stored
+    assertThat(processed).isEqualTo(1);
+    entityManager.clear();
+    assertThat(storageTaskRepository.findAll()).filteredOn(task -> task.getLocation().equals(put.getLocation()))
+            .singleElement().satisfies(task -> {
+      assertThat(task.getOperation()).isEqualTo(StorageTask.Operation.PUT);
+      assertThat(task.getNextAttemptAt()).isNull();
+      assertThat(task.getLastError()).contains("staged");
+    });
+  }
+
+  @Test
+  void createScroll_shouldReturnConflict_whenScrollIdIsTaken() throws Exception {
+    // Arrange
+    newScrollDto.setScrollId(EXISTING_SCROLL_ID);
+    MockMultipartFile imageFile = new MockMultipartFile("ink_image", "image.png", MediaType.IMAGE_PNG_VALUE, "dummy-bytes".getBytes());
+    String metadataJson = objectMapper.writeValueAsString(newScrollDto);
+    MockMultipartFile metadataPart = new MockMultipartFile("metadata", "", MediaType.APPLICATION_JSON_VALUE, metadataJson.getBytes());
+
+    // Act & Assert
+    // The scroll ID is rejected by the unique constraint of the database when the scroll is inserted
+    mockMvc.perform(multipart("/scrolls")
+                    .file(imageFile)
+                    .file(metadataPart)
+                    .header("Authorization", "Bearer " + adminToken))
+            .andExpect(status().isConflict())
+            .andExpect(jsonPath("$.message").value("A scroll with the same ID already exists"));
   }
 
   @Test
@@ -145,25 +276,77 @@ public class ScrollFlowIntegrationTest {
   @Test
   void deleteScroll_shouldReturnOk_whenAdminDeletesScroll() throws Exception {
     // Act & Assert
-    mockMvc.perform(delete("/scrolls/{scrollId}", EXISTING_SCROLL_ID)
+    MvcResult result = mockMvc.perform(delete("/scrolls/{scrollId}", EXISTING_SCROLL_ID)
                     .header("Authorization", "Bearer " + adminToken))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+
+    mockMvc.perform(asyncDispatch(result))
             .andExpect(status().isOk());
 
     assertThat(scrollRepository.findByScrollId(EXISTING_SCROLL_ID)).isEmpty();
     Path deletedFile = sharedTempDir.resolve(EXISTING_SCROLL_ID + ".png").normalize();
+    assertThat(deletedFile).exists();
+
+    // The image is deleted by the outbox worker
+    assertThat(storageOutbox.processBatch()).isEqualTo(1);
     assertThat(deletedFile).doesNotExist();
   }
 
+  private Annotation saveVotedAnnotation(com.mf.HerculaneumTranscriptor.domain.Scroll scroll, User author) {
+    Annotation annotation = new Annotation();
+    annotation.setRegionId(UUID.randomUUID());
+    annotation.setAuthor(author);
+    annotation.setScroll(scroll);
+    annotation = annotationRepository.save(annotation);
+    voteRepository.save(new Vote(author, annotation, 4));
+    return annotation;
+  }
+
+  @Test
+  void deleteScroll_shouldDeleteRegionsAndVotesOfScrollOnly() throws Exception {
+    // Arrange
+    User admin = userRepository.findByUsername("admin").orElseThrow();
+    com.mf.HerculaneumTranscriptor.domain.Scroll existingScroll = scrollRepository.findByScrollId(EXISTING_SCROLL_ID).orElseThrow();
+    com.mf.HerculaneumTranscriptor.domain.Scroll otherScroll = new com.mf.HerculaneumTranscriptor.domain.Scroll();
+    otherScroll.setScrollId(SCROLL_ID);
+    otherScroll = scrollRepository.save(otherScroll);
+
+    saveVotedAnnotation(existingScroll, admin);
+    saveVotedAnnotation(existingScroll, admin);
+    Annotation kept = saveVotedAnnotation(otherScroll, admin);
+
+    // Act
+    MvcResult result = mockMvc.perform(delete("/scrolls/{scrollId}", EXISTING_SCROLL_ID)
+                    .header("Authorization", "Bearer " + adminToken))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+
+    mockMvc.perform(asyncDispatch(result))
+            .andExpect(status().isOk());
+
+    // Assert
+    assertThat(scrollRepository.findByScrollId(EXISTING_SCROLL_ID)).isEmpty();
+    assertThat(annotationRepository.findByScrollScrollId(EXISTING_SCROLL_ID)).isEmpty();
+    assertThat(annotationRepository.findByScrollScrollId(SCROLL_ID)).extracting(Annotation::getRegionId)
+            .containsExactly(kept.getRegionId());
+    assertThat(voteRepository.count()).isEqualTo(1);
+  }
+
   @Test
   void updateScroll_shouldReturnOk_whenAdminUpdatesScroll() throws Exception {
     // Arrange
     String requestBody = objectMapper.writeValueAsString(newScrollDto);
 
     // Act & Assert
-    mockMvc.perform(put("/scrolls/{scrollId}", EXISTING_SCROLL_ID)
+    MvcResult result = mockMvc.perform(put("/scrolls/{scrollId}", EXISTING_SCROLL_ID)
                     .contentType(MediaType.APPLICATION_JSON)
                     .content(requestBody)
                     .header("Authorization", "Bearer " + adminToken))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+
+    mockMvc.perform(asyncDispatch(result))
             .andExpect(status().isOk())
             .andExpect(jsonPath("$.scrollId").value(SCROLL_ID));
 
@@ -171,6 +354,25 @@ public class ScrollFlowIntegrationTest {
     assertThat(scrollRepository.findByScrollId(SCROLL_ID)).isNotEmpty();
   }
 
+  @Test
+  void updateScroll_shouldReturnConflict_whenNewScrollIdIsTaken() throws Exception {
+    // Arrange
+    com.mf.HerculaneumTranscriptor.domain.Scroll scroll = new com.mf.HerculaneumTranscriptor.domain.Scroll();
+    scroll.setScrollId(SCROLL_ID);
+    scroll.setImagePath(SCROLL_ID + ".png");
+    scrollRepository.save(scroll);
+
+    newScrollDto.setScrollId(EXISTING_SCROLL_ID);
+
+    // Act & Assert
+    mockMvc.perform(put("/scrolls/{scrollId}", SCROLL_ID)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(newScrollDto))
+                    .header("Authorization", "Bearer " + adminToken))
+            .andExpect(status().isConflict())
+            .andExpect(jsonPath("$.message").value("A scroll with the same ID already exists"));
+  }
+
   @Test
   void updateScroll_shouldReturn403_whenRegularUserUpdatesScroll() throws Exception {
     // Arrange
@@ -0,0 +1,158 @@
+package com.mf.HerculaneumTranscriptor.integration;
+
+import com.mf.HerculaneumTranscriptor.domain.Scroll;
+import com.mf.HerculaneumTranscriptor.domain.User;
+import com.mf.HerculaneumTranscriptor.repository.ScrollRepository;
+import com.mf.HerculaneumTranscriptor.repository.UserRepository;
+import com.mf.HerculaneumTranscriptor.service.ScrollService;
+import com.mf.HerculaneumTranscriptor.service.UserService;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import scroll.dto.NewScroll;
+import user.dto.UserInfo;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks that users and scrolls are read from the second-level cache once loaded, and that changes made
+ * by the services replace what was cached. Each step runs in its own transaction, as the cache is only
+ * shared between transactions.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@RequiredArgsConstructor(onConstructor = @__({@Autowired}))
+public class SecondLevelCacheIntegrationTest {
+  private final UserRepository userRepository;
+  private final ScrollRepository scrollRepository;
+  private final UserService userService;
+  private final ScrollService scrollService;
+  private final EntityManagerFactory entityManagerFactory;
+  private final PlatformTransactionManager transactionManager;
+
+  private static final String USERNAME = "cached-user";
+  private static final String SCROLL_ID = "cached-scroll";
+  private static final String RENAMED_SCROLL_ID = "renamed-scroll";
+  private static final String OTHER_SCROLL_ID = "another-scroll";
+
+  private TransactionTemplate transaction;
+  private Statistics statistics;
+
+  @BeforeEach
+  void setUp() {
+    transaction = new TransactionTemplate(transactionManager);
+    statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+    transaction.executeWithoutResult(status -> {
+      userRepository.save(new User(null, USERNAME, "Cached", "User", "cached@test.com", "hash", UserInfo.PermissionsEnum.READ));
+      scrollRepository.save(new Scroll(null, SCROLL_ID, "Cached Scroll", null, null, null, null, null, null));
+    });
+    statistics.clear();
+  }
+
+  @AfterEach
+  void tearDown() {
+    transaction.executeWithoutResult(status -> {
+      userRepository.findByUsername(USERNAME).ifPresent(userRepository::delete);
+      for (String scrollId : List.of(SCROLL_ID, RENAMED_SCROLL_ID, OTHER_SCROLL_ID))
+        scrollRepository.findByScrollId(scrollId).ifPresent(scrollRepository::delete);
+    });
+  }
+
+  private <T> T inTransaction(Supplier<T> work) {
+    return transaction.execute(status -> work.get());
+  }
+
+  @Test
+  void findByUsername_shouldNotQueryDatabase_onceCached() {
+    // Arrange
+    inTransaction(() -> userRepository.findByUsername(USERNAME));
+    long statements = statistics.getPrepareStatementCount();
+
+    // Act
+    Optional<User> user = inTransaction(() -> userRepository.findByUsername(USERNAME));
+
+    // Assert
+    assertThat(user).isPresent();
+    assertThat(statistics.getPrepareStatementCount()).isEqualTo(statements);
+    assertThat(statistics.getNaturalIdCacheHitCount()).isPositive();
+    assertThat(statistics.getSecondLevelCacheHitCount()).isPositive();
+  }
+
+  @Test
+  void findByScrollId_shouldNotQueryDatabase_onceCached() {
+    // Arrange
+    inTransaction(() -> scrollRepository.findByScrollId(SCROLL_ID));
+    long statements = statistics.getPrepareStatementCount();
+
+    // Act
+    boolean exists = inTransaction(() -> scrollRepository.existsByScrollId(SCROLL_ID));
+    Optional<Scroll> scroll = inTransaction(() -> scrollRepository.findByScrollId(SCROLL_ID));
+
+    // Assert
+    assertThat(exists).isTrue();
+    assertThat(scroll).isPresent();
+    assertThat(statistics.getPrepareStatementCount()).isEqualTo(statements);
+  }
+
+  @Test
+  void findAllScrolls_shouldUseQueryCache_untilScrollsChange() {
+    // Arrange
+    inTransaction(scrollRepository::findAll);
+
+    // Act
+    inTransaction(scrollRepository::findAll);
+    long hitsBeforeChange = statistics.getQueryCacheHitCount();
+    transaction.executeWithoutResult(status ->
+            scrollRepository.save(new Scroll(null, OTHER_SCROLL_ID, "Another Scroll", null, null, null, null, null, null)));
+    int scrollCount = inTransaction(scrollRepository::findAll).size();
+
+    // Assert
+    assertThat(hitsBeforeChange).isEqualTo(1);
+    assertThat(statistics.getQueryCacheHitCount()).isEqualTo(1);
+    assertThat(scrollCount).isEqualTo(2);
+  }
+
+  @Test
+  @WithMockUser(roles = "ADMIN")
+  void updateScroll_shouldReplaceCachedScroll() {
+    // Arrange
+    inTransaction(() -> scrollRepository.findByScrollId(SCROLL_ID));
+    NewScroll update = new NewScroll().scrollId(RENAMED_SCROLL_ID).displayName("Renamed Scroll");
+
+    // Act
+    scrollService.updateScroll(SCROLL_ID, update);
+
+    // Assert
+    assertThat(inTransaction(() -> scrollRepository.findByScrollId(SCROLL_ID))).isEmpty();
+    assertThat(inTransaction(() -> scrollRepository.findByScrollId(RENAMED_SCROLL_ID)))
+            .hasValueSatisfying(scroll -> assertThat(scroll.getDisplayName()).isEqualTo("Renamed Scroll"));
+  }
+
+  @Test
+  @WithMockUser(roles = "ADMIN")
+  void deleteUser_shouldEvictCachedUser() throws Exception {
+    // Arrange
+    inTransaction(() -> userRepository.findByUsername(USERNAME));
+
+    // Act
+    userService.deleteUserByUsername(USERNAME);
+
+    // Assert
+    assertThat(inTransaction(() -> userRepository.findByUsername(USERNAME))).isEmpty();
+  }
+}
@@ -0,0 +1,175 @@
+package com.mf.HerculaneumTranscriptor.integration;
+
+import annotation.dto.Coordinates;
+import annotation.dto.NewBoxRegion;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mf.HerculaneumTranscriptor.configuration.TracingConfiguration;
+import com.mf.HerculaneumTranscriptor.domain.Annotation;
+import com.mf.HerculaneumTranscriptor.domain.Scroll;
+import com.mf.HerculaneumTranscriptor.domain.User;
+import com.mf.HerculaneumTranscriptor.repository.AnnotationRepository;
+import com.mf.HerculaneumTranscriptor.repository.ScrollRepository;
+import com.mf.HerculaneumTranscriptor.repository.UserRepository;
+import com.mf.HerculaneumTranscriptor.security.JwtUtil;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import io.micrometer.tracing.Span;
+import io.micrometer.tracing.Tracer;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.annotation.Transactional;
+import user.dto.UserInfo;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Checks the spans written by the file exporter. Traces are not exported in tests unless asked for.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureObservability(metrics = false)
+@ActiveProfiles("test")
+@Transactional // Ensures each test runs in its own transaction and is rolled back.
+@RequiredArgsConstructor(onConstructor = @__({@Autowired}))
+public class TracingIntegrationTest {
+  private final MockMvc mockMvc;
+  private final ObjectMapper objectMapper;
+  private final JwtUtil jwtUtil;
+  private final UserRepository userRepository;
+  private final ScrollRepository scrollRepository;
+  private final AnnotationRepository annotationRepository;
+  private final SdkTracerProvider tracerProvider;
+  private final ObservationRegistry observationRegistry;
+  private final Tracer tracer;
+  private final ExecutorService storageExecutor;
+
+  @TempDir
+  static Path tempDir;
+
+  private Annotation annotation;
+  private String writeUserToken;
+  private static final String SCROLL_ID = "traced-scroll";
+
+  @DynamicPropertySource
+  static void tracing(DynamicPropertyRegistry registry) {
+    registry.add("api.tracing.file", () -> tempDir.resolve("traces.jsonl").toString());
+    registry.add("management.tracing.sampling.probability", () -> "1.0");
+  }
+
+  @BeforeEach
+  void setUp() {
+    User writeUser = userRepository.save(new User(null, "tracing-writer", "Write", "User", "write@test.com", "hash", UserInfo.PermissionsEnum.WRITE));
+    Scroll scroll = scrollRepository.save(new Scroll(null, SCROLL_ID, "Traced Scroll", null, null, null, null, null, null));
+
+    annotation = new Annotation();
+    annotation.setRegionId(UUID.randomUUID());
+    annotation.setAuthor(writeUser);
+    annotation.setScroll(scroll);
+    annotation.setTranscription("Traced text");
+    annotation = annotationRepository.save(annotation);
+
+    writeUserToken = jwtUtil.generateToken(writeUser.getUsername());
+  }
+
+  private List<JsonNode> readSpans() throws Exception {
+    tracerProvider.forceFlush().join(10, TimeUnit.SECONDS);
+    List<JsonNode> spans = new ArrayList<>();
+    for (String line : Files.readAllLines(tempDir.resolve("traces.jsonl")))
+      spans.add(objectMapper.readTree(line));
+    return spans;
+  }
+
+  @Test
+  void updateRegion_shouldBeTracedThroughEveryLayer() throws Exception {
+    // Arrange
+    NewBoxRegion region = new NewBoxRegion()
+            .coordinates(new Coordinates().x(10f).y(10f).width(100f).height(100f))
+            .transcription("New transcription");
+
+    // Act
+    mockMvc.perform(put("/scrolls/{scrollId}/regions/{regionId}", SCROLL_ID, annotation.getRegionId())
+                    .header("Authorization", "Bearer " + writeUserToken)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(region)))
+            .andExpect(status().isOk());
+
+    // Assert
+    List<JsonNode> spans = readSpans();
+    JsonNode request = spans.stream()
+            .filter(span -> span.get("name").asText().equals("http put /scrolls/{scrollId}/regions/{regionId}"))
+            .findFirst().orElseThrow();
+    List<String> names = spans.stream()
+            .filter(span -> span.get("traceId").equals(request.get("traceId")))
+            .map(span -> span.get("name").asText())
+            .toList();
+
+    assertThat(names).contains("jwt authentication", "security-logic#can-modify-region",
+            "annotation-service-impl#update-region", "query");
+    assertThat(spans)
+            .filteredOn(span -> span.get("name").asText().equals("annotation-service-impl#update-region"))
+            .allSatisfy(span -> assertThat(span.get("parentSpanId")).isNotNull());
+  }
+
+  private String currentTraceId() {
+    Span span = tracer.currentSpan();
+    return span == null ? null : span.context().traceId();
+  }
+
+  @Test
+  void storageContinuation_shouldRunWithinTraceOfItsCaller() throws Exception {
+    // Arrange
+    // The storage call completes on the storage pool once released, after its caller moved on
+    CountDownLatch released = new CountDownLatch(1);
+    CompletableFuture<Void> storageCall = CompletableFuture.runAsync(() -> {
+      try {
+        released.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }, storageExecutor);
+
+    Observation caller = Observation.start("storage-caller", observationRegistry);
+    String callerTraceId;
+    CompletableFuture<String> continuation;
+    try (Observation.Scope scope = caller.openScope()) {
+      callerTraceId = currentTraceId();
+      continuation = storageCall.thenApply(TracingConfiguration.inCurrentContext(ignored -> currentTraceId()));
+    } finally {
+      caller.stop();
+    }
+
+    // Act
+    released.countDown();
+
+    // Assert
+    assertThat(callerTraceId).isNotNull();
+    assertThat(continuation.get(10, TimeUnit.SECONDS)).isEqualTo(callerTraceId);
+    // The trace is not left behind on the storage pool
+    assertThat(storageExecutor.submit(this::currentTraceId).get(10, TimeUnit.SECONDS)).isNull();
+  }
+}
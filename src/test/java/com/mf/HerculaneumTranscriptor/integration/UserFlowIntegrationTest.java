@@ -4,6 +4,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.mf.HerculaneumTranscriptor.domain.User;
 import com.mf.HerculaneumTranscriptor.repository.UserRepository;
 import com.mf.HerculaneumTranscriptor.security.JwtUtil;
+import jakarta.persistence.EntityManager;
 import lombok.RequiredArgsConstructor;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -11,12 +12,18 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.transaction.annotation.Transactional;
 import user.dto.*;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -31,6 +38,7 @@ public class UserFlowIntegrationTest {
   private final ObjectMapper objectMapper;
   private final UserRepository userRepository;
   private final PasswordEncoder passwordEncoder;
+  private final EntityManager entityManager;
 
   private ChangeUserInfo updateRequest;
 
@@ -164,6 +172,40 @@ public class UserFlowIntegrationTest {
             .andExpect(status().isForbidden());
   }
 
+  @Test
+  void registerNewUser_shouldReturnConflict_whenUsernameIsTaken() throws Exception {
+    // Arrange
+    UserRegisterInfo registerInfo = new UserRegisterInfo()
+            .basicInfo(new BasicUserInfo()
+                    .username(userUsername)
+                    .firstName("Another")
+                    .lastName("User")
+                    .contact("another.user@example.com"))
+            .password(RAW_PASSWORD);
+
+    // Act & Assert
+    // The username is rejected by the unique constraint of the database
+    mockMvc.perform(post("/register")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(registerInfo)))
+            .andExpect(status().isConflict())
+            .andExpect(jsonPath("$.message").value("Username is already taken"));
+  }
+
+  @Test
+  void updateUserProfile_shouldReturnConflict_whenNewUsernameIsTaken() throws Exception {
+    // Arrange
+    updateRequest.getBasicInfo().setUsername(adminUsername);
+
+    // Act & Assert
+    mockMvc.perform(put("/user/{username}", userUsername)
+                    .header("Authorization", "Bearer " + userToken)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(updateRequest)))
+            .andExpect(status().isConflict())
+            .andExpect(jsonPath("$.message").value("Username is already taken"));
+  }
+
   @Test
   void login_shouldReturn401_whenPasswordIsIncorrect() throws Exception {
     // Arrange
@@ -233,4 +275,180 @@ public class UserFlowIntegrationTest {
             .andExpect(header().exists("Authorization"))
             .andExpect(jsonPath("$.basic_info.username").value(userUsername));
   }
+
+  @Test
+  void getAllUsers_shouldListEveryUserOnce_whenFollowingCursorsDuringInserts() throws Exception {
+    // Arrange
+    // Enough users to need several slices of the default page size
+    for (int i = 0; i < 100; i++) {
+      User listedUser = new User();
+      listedUser.setUsername(String.format("listed-%03d", i));
+      listedUser.setPermissions(UserInfo.PermissionsEnum.READ);
+      userRepository.save(listedUser);
+    }
+
+    List<String> usernames = new ArrayList<>();
+    String cursor = null;
+
+    // Act
+    do {
+      MvcResult result = mockMvc.perform(get("/user")
+                      .param("cursor", cursor)
+                      .header("Authorization", "Bearer " + userToken))
+              .andExpect(status().isOk())
+              .andReturn();
+
+      UserInfo[] users = objectMapper.readValue(result.getResponse().getContentAsString(), UserInfo[].class);
+      for (UserInfo listed : users)
+        usernames.add(listed.getBasicInfo().getUsername());
+
+      // A user inserted before the cursor must not shift the following slices
+      User lateUser = new User();
+      lateUser.setUsername("a-late-user-" + usernames.size());
+      lateUser.setPermissions(UserInfo.PermissionsEnum.READ);
+      userRepository.save(lateUser);
+
+      cursor = result.getResponse().getHeader("X-Next-Cursor");
+    } while (cursor != null);
+
+    // Assert
+    // Users are listed in username order, with none skipped nor repeated
+    assertThat(usernames).isSorted().doesNotHaveDuplicates().contains(rootUsername, adminUsername, userUsername);
+    assertThat(usernames.stream().filter(name -> name.startsWith("listed-"))).hasSize(100);
+  }
+
+  @Test
+  void getAllUsers_shouldIssueAtMost2Statements_regardlessOfUserCount() throws Exception {
+    QueryCounter queryCounter = new QueryCounter(entityManager);
+    long fewUsers = queryCounter.count(() -> mockMvc.perform(get("/user")
+                    .header("Authorization", "Bearer " + userToken))
+            .andExpect(status().isOk()));
+
+    for (int i = 0; i < 20; i++) {
+      User listedUser = new User();
+      listedUser.setUsername(String.format("listed-%03d", i));
+      listedUser.setPermissions(UserInfo.PermissionsEnum.READ);
+      userRepository.save(listedUser);
+    }
+    long manyUsers = queryCounter.count(() -> mockMvc.perform(get("/user")
+                    .header("Authorization", "Bearer " + userToken))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(23)));
+
+    assertThat(fewUsers).isLessThanOrEqualTo(2);
+    assertThat(manyUsers).isEqualTo(fewUsers);
+  }
+
+  @Test
+  void getAllUsers_shouldFindRegisteredUser_whenSearchingByAnyField() throws Exception {
+    // Arrange
+    UserRegisterInfo registerInfo = new UserRegisterInfo()
+            .basicInfo(new BasicUserInfo()
+                    .username("papyrologist")
+                    .firstName("Mary")
+                    .lastName("Smith")
+                    .contact("mary.smith@example.com"))
+            .password(RAW_PASSWORD);
+
+    mockMvc.perform(post("/register")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(registerInfo)))
+            .andExpect(status().isOk());
+
+    // Act & Assert
+    mockMvc.perform(get("/user")
+                    .param("query", "SMITH@")
+                    .header("Authorization", "Bearer " + userToken))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(1))
+            .andExpect(jsonPath("$[0].basic_info.username").value("papyrologist"))
+            .andExpect(jsonPath("$[0].basic_info.firstName").value("Mary"));
+
+    // Deleted users are no longer found
+    String newUserToken = jwtUtil.generateToken("papyrologist");
+    mockMvc.perform(delete("/user/{username}", "papyrologist")
+                    .header("Authorization", "Bearer " + newUserToken))
+            .andExpect(status().isOk());
+
+    mockMvc.perform(get("/user")
+                    .param("query", "papyro")
+                    .header("Authorization", "Bearer " + userToken))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(0));
+  }
+
+  @Test
+  void createUsers_shouldRegisterCohort_whenAdminImportsCsv() throws Exception {
+    // Arrange
+    String csv = """
+            username,firstName,lastName,contact,password
+            student1,Ada,One,student1@example.com,password
+            student2,Bea,Two,student2@example.com,password
+            user,Taken,Name,taken@example.com,password
+            """;
+
+    // Act & Assert
+    mockMvc.perform(post("/register/bulk")
+                    .header("Authorization", "Bearer " + adminToken)
+                    .contentType("text/csv")
+                    .content(csv))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(3))
+            .andExpect(jsonPath("$[0].status").value("created"))
+            .andExpect(jsonPath("$[1].status").value("created"))
+            .andExpect(jsonPath("$[2].status").value("conflict"));
+
+    // Imported users can log in and be found
+    UserLoginInfo loginInfo = new UserLoginInfo().userName("student2").password(RAW_PASSWORD);
+    mockMvc.perform(post("/user")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(loginInfo)))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.permissions").value("read"));
+
+    mockMvc.perform(get("/user")
+                    .param("query", "student")
+                    .header("Authorization", "Bearer " + userToken))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(2));
+  }
+
+  @Test
+  void createUsers_shouldReturn403_whenRegularUserImports() throws Exception {
+    // Arrange
+    String ndjson = "{\"basic_info\": {\"username\": \"student\", \"firstName\": \"A\", \"lastName\": \"B\", " +
+            "\"contact\": \"student@example.com\"}, \"password\": \"password\"}";
+
+    // Act & Assert
+    mockMvc.perform(post("/register/bulk")
+                    .header("Authorization", "Bearer " + userToken)
+                    .contentType("application/x-ndjson")
+                    .content(ndjson))
+            .andExpect(status().isForbidden());
+  }
+
+  @Test
+  void login_shouldUpgradeLegacyPasswordHash_whenCredentialsAreValid() throws Exception {
+    // Arrange
+    // Hashes stored before the hashing algorithm was part of the hash are plain bcrypt
+    User regularUser = userRepository.findByUsername(userUsername).orElseThrow();
+    regularUser.setPasswordHash(new BCryptPasswordEncoder(4).encode(RAW_PASSWORD));
+    userRepository.save(regularUser);
+
+    UserLoginInfo loginInfo = new UserLoginInfo()
+            .userName(userUsername)
+            .password(RAW_PASSWORD);
+
+    // Act
+    mockMvc.perform(post("/user")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(loginInfo)))
+            .andExpect(status().isOk());
+
+    // Assert
+    String upgradedHash = userRepository.findByUsername(userUsername).orElseThrow().getPasswordHash();
+    assertThat(upgradedHash).startsWith("{bcrypt}");
+    assertThat(passwordEncoder.matches(RAW_PASSWORD, upgradedHash)).isTrue();
+    assertThat(passwordEncoder.upgradeEncoding(upgradedHash)).isFalse();
+  }
 }
@@ -0,0 +1,141 @@
+package com.mf.HerculaneumTranscriptor.integration;
+
+import annotation.dto.Coordinates;
+import annotation.dto.NewBoxRegion;
+import annotation.dto.Vote;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mf.HerculaneumTranscriptor.domain.Scroll;
+import com.mf.HerculaneumTranscriptor.domain.User;
+import com.mf.HerculaneumTranscriptor.repository.AnnotationRepository;
+import com.mf.HerculaneumTranscriptor.repository.ScrollRepository;
+import com.mf.HerculaneumTranscriptor.repository.UserRepository;
+import com.mf.HerculaneumTranscriptor.repository.VoteRepository;
+import com.mf.HerculaneumTranscriptor.security.JwtUtil;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingStream;
+import lombok.RequiredArgsConstructor;
+import org.apache.tomcat.util.threads.VirtualThreadExecutor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.boot.web.embedded.tomcat.TomcatWebServer;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import user.dto.UserInfo;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs the backend on virtual threads, and checks that requests editing regions, along with their history,
+ * never block while pinned to their carrier thread, which would take the carrier away from other virtual threads.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "spring.threads.virtual.enabled=true")
+@ActiveProfiles("test")
+@RequiredArgsConstructor(onConstructor = @__({@Autowired}))
+public class VirtualThreadsIntegrationTest {
+  private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+  private static final String USERNAME = "virtual-annotator";
+  private static final String SCROLL_ID = "virtual-scroll";
+
+  private final ServletWebServerApplicationContext context;
+  private final ExecutorService storageExecutor;
+  private final JwtUtil jwtUtil;
+  private final ObjectMapper objectMapper;
+  private final UserRepository userRepository;
+  private final ScrollRepository scrollRepository;
+  private final AnnotationRepository annotationRepository;
+  private final VoteRepository voteRepository;
+  private final PlatformTransactionManager transactionManager;
+
+  @LocalServerPort
+  private int port;
+
+  private final HttpClient http = HttpClient.newHttpClient();
+  private String token;
+
+  @BeforeEach
+  void setUp() {
+    userRepository.save(new User(null, USERNAME, "Virtual", "Annotator", "virtual@test.com", "hash", UserInfo.PermissionsEnum.WRITE));
+    scrollRepository.save(new Scroll(null, SCROLL_ID, "Virtual Scroll", null, null, null, null, null, null));
+    token = jwtUtil.generateToken(USERNAME);
+  }
+
+  @AfterEach
+  void tearDown() {
+    new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+      scrollRepository.findByScrollId(SCROLL_ID).ifPresent(scroll -> {
+        voteRepository.deleteByScrollId(scroll.getId());
+        annotationRepository.deleteByScrollId(scroll.getId());
+        scrollRepository.delete(scroll);
+      });
+      userRepository.findByUsername(USERNAME).ifPresent(userRepository::delete);
+    });
+  }
+
+  private JsonNode send(String method, String path, Object body) throws Exception {
+    HttpResponse<String> response = http.send(HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+                    .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+                    .header(HttpHeaders.CONTENT_TYPE, "application/json")
+                    .method(method, body == null ? HttpRequest.BodyPublishers.noBody() :
+                            HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body)))
+                    .build(),
+            HttpResponse.BodyHandlers.ofString());
+    assertThat(response.statusCode()).as(method + " " + path).isLessThan(400);
+    return objectMapper.readTree(response.body());
+  }
+
+  @Test
+  void requests_shouldBeHandledOnVirtualThreads() throws Exception {
+    // Act
+    TomcatWebServer webServer = (TomcatWebServer) context.getWebServer();
+    boolean storageOnVirtualThread = storageExecutor.submit(() -> Thread.currentThread().isVirtual()).get();
+
+    // Assert
+    assertThat(webServer.getTomcat().getConnector().getProtocolHandler().getExecutor())
+            .isInstanceOf(VirtualThreadExecutor.class);
+    assertThat(storageOnVirtualThread).isTrue();
+  }
+
+  @Test
+  void regionEdits_shouldNotPinVirtualThreads() throws Exception {
+    // Arrange
+    List<RecordedEvent> pinnings = new CopyOnWriteArrayList<>();
+    try (RecordingStream recording = new RecordingStream()) {
+      recording.enable(PINNED_EVENT).withThreshold(Duration.ZERO).withStackTrace();
+      recording.onEvent(PINNED_EVENT, pinnings::add);
+      recording.startAsync();
+
+      // Act
+      // Each request reads and writes through Hibernate and JDBC on a virtual thread of Tomcat
+      JsonNode region = send("POST", "/scrolls/" + SCROLL_ID + "/regions",
+              new NewBoxRegion(new Coordinates().x(10f).y(20f).width(100f).height(50f), "πορφυρας"));
+      String regionPath = "/scrolls/" + SCROLL_ID + "/regions/" + region.get("regionId").asText();
+      send("POST", regionPath + "/vote", new Vote().vote(4));
+      send("GET", "/scrolls/" + SCROLL_ID + "/regions", null);
+
+      // Pinned events are only streamed once the recording is flushed to disk
+      recording.stop();
+    }
+
+    // Assert
+    assertThat(pinnings).extracting(event -> event.getStackTrace() == null ? "" : event.getStackTrace().toString())
+            .isEmpty();
+  }
+}
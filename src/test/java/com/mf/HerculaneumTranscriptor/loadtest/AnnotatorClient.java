@@ -0,0 +1,238 @@
+package com.mf.HerculaneumTranscriptor.loadtest;
+
+import annotation.dto.NewBoxRegion;
+import annotation.dto.Vote;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.HttpHeaders;
+import scroll.dto.NewScroll;
+import user.dto.ChangePermissions;
+import user.dto.UserLoginInfo;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Calls the API as Zōgraphos does, recording how long each call takes in a {@link LoadReport}.
+ * <p>
+ * Calls that fail or are answered with an error status, conflicting updates included, are recorded as errors
+ * and return null, so that sessions carry on as a client would.
+ */
+public class AnnotatorClient {
+  private static final Duration TIMEOUT = Duration.ofSeconds(30);
+  // Bulk imports hash the password of every user
+  private static final Duration IMPORT_TIMEOUT = Duration.ofMinutes(10);
+
+  private final HttpClient http;
+  private final URI baseUri;
+  private final ObjectMapper objectMapper;
+  private final LoadReport report;
+
+  private String token;
+
+  /**
+   * @param http Shared by every client, redirects must not be followed.
+   * @param baseUri The instance under test.
+   * @param objectMapper Writes request bodies and reads responses.
+   * @param report Where calls are recorded.
+   */
+  public AnnotatorClient(HttpClient http, URI baseUri, ObjectMapper objectMapper, LoadReport report) {
+    this.http = http;
+    this.baseUri = baseUri;
+    this.objectMapper = objectMapper;
+    this.report = report;
+  }
+
+  public String getToken() {
+    return token;
+  }
+
+  private HttpRequest.Builder request(String path) {
+    HttpRequest.Builder request = HttpRequest.newBuilder(baseUri.resolve(path)).timeout(TIMEOUT);
+    if (token != null)
+      request.header(HttpHeaders.AUTHORIZATION, "Bearer " + token);
+    return request;
+  }
+
+  private HttpRequest.BodyPublisher json(Object body) throws IOException {
+    return HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body));
+  }
+
+  /**
+   * Sends a request and records it under an operation.
+   *
+   * @return the response, or null if the request failed or its status is neither a success nor a redirect.
+   */
+  HttpResponse<byte[]> send(String operationId, HttpRequest request) {
+    long start = System.nanoTime();
+    HttpResponse<byte[]> response;
+    try {
+      response = http.send(request, HttpResponse.BodyHandlers.ofByteArray());
+    } catch (IOException e) {
+      report.record(operationId, System.nanoTime() - start, LoadReport.FAILED);
+      return null;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return null;
+    }
+
+    report.record(operationId, System.nanoTime() - start, response.statusCode());
+    return response.statusCode() >= 400 ? null : response;
+  }
+
+  private JsonNode readJson(HttpResponse<byte[]> response) throws IOException {
+    return response == null ? null : objectMapper.readTree(response.body());
+  }
+
+  /**
+   * Logs in, keeping the token for the next calls.
+   *
+   * @return whether the login succeeded.
+   */
+  public boolean loginUser(String username, String password) throws IOException {
+    HttpResponse<byte[]> response = send("loginUser", request("/user")
+            .header(HttpHeaders.CONTENT_TYPE, "application/json")
+            .POST(json(new UserLoginInfo(username, password)))
+            .build());
+    if (response == null)
+      return false;
+
+    token = response.headers().firstValue(HttpHeaders.AUTHORIZATION).orElseThrow().substring("Bearer ".length());
+    return true;
+  }
+
+  /**
+   * @return the IDs of every scroll, or null if the call failed.
+   */
+  public List<String> getAllScrolls() throws IOException {
+    JsonNode scrolls = readJson(send("getAllScrolls", request("/scrolls").GET().build()));
+    if (scrolls == null)
+      return null;
+
+    List<String> scrollIds = new ArrayList<>();
+    scrolls.forEach(scroll -> scrollIds.add(scroll.get("scrollId").asText()));
+    return scrollIds;
+  }
+
+  /**
+   * Looks up where the image of a scroll is and downloads it, recorded as {@code getScrollImage} when it is
+   * served by the backend and as {@code externalImage} otherwise.
+   *
+   * @return the size of the image, or -1 if it could not be downloaded.
+   */
+  public long downloadScrollImage(String scrollId) {
+    HttpResponse<byte[]> redirect = send("getScrollImageURL", request("/scrolls/" + scrollId).GET().build());
+    if (redirect == null)
+      return -1;
+
+    URI image = baseUri.resolve(redirect.headers().firstValue(HttpHeaders.LOCATION).orElseThrow());
+    // Tokens are only sent to the backend
+    boolean local = image.getAuthority().equals(baseUri.getAuthority());
+    HttpRequest.Builder request = local ? request(image.toString()) : HttpRequest.newBuilder(image).timeout(TIMEOUT);
+
+    HttpResponse<byte[]> response = send(local ? "getScrollImage" : "externalImage", request.GET().build());
+    return response == null ? -1 : response.body().length;
+  }
+
+  /**
+   * @param since The lastSyncTimestamp of the previous call, or null to get every region.
+   * @return the RegionUpdateResponse, or null if the call failed.
+   */
+  public JsonNode getScrollRegions(String scrollId, String since) throws IOException {
+    String path = "/scrolls/" + scrollId + "/regions";
+    if (since != null)
+      path += "?since=" + URLEncoder.encode(since, StandardCharsets.UTF_8);
+
+    return readJson(send("getScrollRegions", request(path).GET().build()));
+  }
+
+  /**
+   * @return the created BoxRegion, or null if the call failed.
+   */
+  public JsonNode createRegion(String scrollId, NewBoxRegion region) throws IOException {
+    return readJson(send("createRegion", request("/scrolls/" + scrollId + "/regions")
+            .header(HttpHeaders.CONTENT_TYPE, "application/json")
+            .POST(json(region))
+            .build()));
+  }
+
+  /**
+   * @param version The version the update is based on, sent in If-Match.
+   * @return the updated BoxRegion, or null if the call failed.
+   */
+  public JsonNode updateRegion(String scrollId, UUID regionId, long version, NewBoxRegion region) throws IOException {
+    return readJson(send("updateRegion", request("/scrolls/" + scrollId + "/regions/" + regionId)
+            .header(HttpHeaders.CONTENT_TYPE, "application/json")
+            .header(HttpHeaders.IF_MATCH, "\"" + version + "\"")
+            .PUT(json(region))
+            .build()));
+  }
+
+  /**
+   * @return the BoxRegion with its new certainty score, or null if the call failed.
+   */
+  public JsonNode voteOnRegion(String scrollId, UUID regionId, int vote) throws IOException {
+    return readJson(send("voteOnRegion", request("/scrolls/" + scrollId + "/regions/" + regionId + "/vote")
+            .header(HttpHeaders.CONTENT_TYPE, "application/json")
+            .POST(json(new Vote().vote(vote)))
+            .build()));
+  }
+
+  /**
+   * Registers users in bulk, as an administrator.
+   *
+   * @param ndjson One UserRegisterInfo per line.
+   * @return whether the import was carried out, users that already exist are skipped by it.
+   */
+  public boolean createUsers(String ndjson) {
+    return send("createUsers", request("/register/bulk")
+            .timeout(IMPORT_TIMEOUT)
+            .header(HttpHeaders.CONTENT_TYPE, "application/x-ndjson")
+            .POST(HttpRequest.BodyPublishers.ofString(ndjson))
+            .build()) != null;
+  }
+
+  /**
+   * @return whether the permissions of the user were changed, as an administrator.
+   */
+  public boolean updateUserPermissions(String username, ChangePermissions.PermissionsEnum permissions) throws IOException {
+    return send("updateUserPermissions", request("/permissions/" + username)
+            .header(HttpHeaders.CONTENT_TYPE, "application/json")
+            .PUT(json(new ChangePermissions(permissions)))
+            .build()) != null;
+  }
+
+  /**
+   * Adds a scroll, as an administrator.
+   *
+   * @return whether the scroll was added, which it is not if it already exists.
+   */
+  public boolean createScroll(NewScroll metadata, byte[] png) throws IOException {
+    String boundary = UUID.randomUUID().toString();
+    ByteArrayOutputStream body = new ByteArrayOutputStream();
+    body.write(("--" + boundary + "\r\n" +
+            "Content-Disposition: form-data; name=\"metadata\"\r\n" +
+            "Content-Type: application/json\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+    body.write(objectMapper.writeValueAsBytes(metadata));
+    body.write(("\r\n--" + boundary + "\r\n" +
+            "Content-Disposition: form-data; name=\"ink_image\"; filename=\"" + metadata.getScrollId() + ".png\"\r\n" +
+            "Content-Type: image/png\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+    body.write(png);
+    body.write(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8));
+
+    return send("createScroll", request("/scrolls")
+            .header(HttpHeaders.CONTENT_TYPE, "multipart/form-data; boundary=" + boundary)
+            .POST(HttpRequest.BodyPublishers.ofByteArray(body.toByteArray()))
+            .build()) != null;
+  }
+}
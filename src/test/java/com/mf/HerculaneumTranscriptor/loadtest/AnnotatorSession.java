@@ -0,0 +1,166 @@
+package com.mf.HerculaneumTranscriptor.loadtest;
+
+import annotation.dto.Coordinates;
+import annotation.dto.NewBoxRegion;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * The session of an annotator working on a scroll in Zōgraphos, until a deadline:
+ * <ol>
+ *   <li>logs in, lists the scrolls, picks one, downloads its image and loads all of its regions,</li>
+ *   <li>then polls for the regions changed since the previous poll, now and then creating a region,
+ *   editing one of their own or voting on any region after a poll.</li>
+ * </ol>
+ */
+public class AnnotatorSession implements Runnable {
+  // Shares of the polls that are followed by each kind of edit
+  private static final double CREATE_SHARE = 0.10;
+  private static final double UPDATE_SHARE = 0.15;
+  private static final double VOTE_SHARE = 0.15;
+
+  private static final String[] WORDS = {"πορφυρας", "λόγος", "ἐπικούρου", "φιλοδήμου", "περὶ", "μουσικῆς", "ἡδονή", "ψυχῆς"};
+
+  private final AnnotatorClient client;
+  private final String username;
+  private final String password;
+  private final Duration pollInterval;
+  private final Instant deadline;
+  private final Random random;
+  private final float imageWidth;
+  private final float imageHeight;
+
+  // Versions of the regions of the scroll, and which of them the annotator wrote
+  private final Map<UUID, Long> versions = new LinkedHashMap<>();
+  private final List<UUID> ownRegions = new ArrayList<>();
+
+  /**
+   * @param pollInterval The mean time between polls, which is jittered by up to half of it.
+   * @param seed Makes the choices of the session repeatable.
+   * @param imageWidth Width of the scroll images, which regions are kept within.
+   * @param imageHeight Height of the scroll images.
+   */
+  public AnnotatorSession(AnnotatorClient client, String username, String password, Duration pollInterval,
+                          Instant deadline, long seed, float imageWidth, float imageHeight) {
+    this.client = client;
+    this.username = username;
+    this.password = password;
+    this.pollInterval = pollInterval;
+    this.deadline = deadline;
+    this.random = new Random(seed);
+    this.imageWidth = imageWidth;
+    this.imageHeight = imageHeight;
+  }
+
+  @Override
+  public void run() {
+    try {
+      work();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void work() throws IOException, InterruptedException {
+    if (!client.loginUser(username, password))
+      return;
+
+    List<String> scrollIds = client.getAllScrolls();
+    if (scrollIds == null || scrollIds.isEmpty())
+      return;
+    String scrollId = scrollIds.get(random.nextInt(scrollIds.size()));
+    client.downloadScrollImage(scrollId);
+
+    JsonNode sync = client.getScrollRegions(scrollId, null);
+    if (sync == null)
+      return;
+    String since = merge(sync);
+
+    while (Instant.now().isBefore(deadline)) {
+      long jitter = (long) ((random.nextDouble() - 0.5) * pollInterval.toMillis());
+      Thread.sleep(pollInterval.toMillis() + jitter);
+
+      JsonNode delta = client.getScrollRegions(scrollId, since);
+      if (delta != null)
+        since = merge(delta);
+
+      double action = random.nextDouble();
+      if (action < CREATE_SHARE)
+        create(scrollId);
+      else if (action < CREATE_SHARE + UPDATE_SHARE && !ownRegions.isEmpty())
+        update(scrollId, ownRegions.get(random.nextInt(ownRegions.size())));
+      else if (action < CREATE_SHARE + UPDATE_SHARE + VOTE_SHARE && !versions.isEmpty())
+        vote(scrollId);
+    }
+  }
+
+  /**
+   * Keeps the versions of the regions of a RegionUpdateResponse.
+   *
+   * @return its lastSyncTimestamp.
+   */
+  private String merge(JsonNode response) {
+    for (JsonNode region : response.get("regions"))
+      remember(region);
+    return response.get("lastSyncTimestamp").asText();
+  }
+
+  private void remember(JsonNode region) {
+    UUID regionId = UUID.fromString(region.get("regionId").asText());
+    JsonNode version = region.get("version");
+    versions.put(regionId, version == null || version.isNull() ? 0 : version.asLong());
+  }
+
+  private NewBoxRegion randomRegion() {
+    float width = 20 + random.nextFloat() * 180;
+    float height = 10 + random.nextFloat() * 40;
+    Coordinates coordinates = new Coordinates()
+            .x(random.nextFloat() * (imageWidth - width))
+            .y(random.nextFloat() * (imageHeight - height))
+            .width(width)
+            .height(height);
+
+    StringBuilder transcription = new StringBuilder();
+    int words = 1 + random.nextInt(4);
+    for (int word = 0; word < words; word++)
+      transcription.append(word == 0 ? "" : " ").append(WORDS[random.nextInt(WORDS.length)]);
+
+    return new NewBoxRegion(coordinates, transcription.toString());
+  }
+
+  private void create(String scrollId) throws IOException {
+    JsonNode region = client.createRegion(scrollId, randomRegion());
+    if (region == null)
+      return;
+
+    remember(region);
+    ownRegions.add(UUID.fromString(region.get("regionId").asText()));
+  }
+
+  private void update(String scrollId, UUID regionId) throws IOException {
+    JsonNode region = client.updateRegion(scrollId, regionId, versions.get(regionId), randomRegion());
+    if (region != null)
+      remember(region);
+  }
+
+  private void vote(String scrollId) throws IOException {
+    List<UUID> regionIds = new ArrayList<>(versions.keySet());
+    UUID regionId = regionIds.get(random.nextInt(regionIds.size()));
+
+    JsonNode region = client.voteOnRegion(scrollId, regionId, random.nextInt(6));
+    if (region != null)
+      remember(region);
+  }
+}
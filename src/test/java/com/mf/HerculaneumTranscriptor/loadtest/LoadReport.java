@@ -0,0 +1,104 @@
+package com.mf.HerculaneumTranscriptor.loadtest;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Latencies and outcomes of the requests made during a load test, by the operationId of the API operation called.
+ */
+public class LoadReport {
+  /**
+   * Status recorded for requests that got no response.
+   */
+  public static final int FAILED = -1;
+
+  private final Map<String, Operation> operations = new ConcurrentSkipListMap<>();
+
+  private static class Operation {
+    private long[] latencies = new long[1024];
+    private int requests;
+    private int errors;
+    // Number of errors by status
+    private final Map<Integer, Integer> errorStatuses = new TreeMap<>();
+
+    synchronized void record(long nanos, int status) {
+      if (requests == latencies.length)
+        latencies = Arrays.copyOf(latencies, requests * 2);
+      latencies[requests++] = nanos;
+      if (status == FAILED || status >= 400) {
+        errors++;
+        errorStatuses.merge(status, 1, Integer::sum);
+      }
+    }
+
+    synchronized long[] sortedLatencies() {
+      long[] sorted = Arrays.copyOf(latencies, requests);
+      Arrays.sort(sorted);
+      return sorted;
+    }
+  }
+
+  /**
+   * @param operationId The API operation called.
+   * @param nanos How long the request took, until its response was read.
+   * @param status The status of the response, or {@link #FAILED}. Statuses from 400 on are counted as errors.
+   */
+  public void record(String operationId, long nanos, int status) {
+    operations.computeIfAbsent(operationId, id -> new Operation()).record(nanos, status);
+  }
+
+  public int requests(String operationId) {
+    Operation operation = operations.get(operationId);
+    return operation == null ? 0 : operation.requests;
+  }
+
+  public int errors(String operationId) {
+    Operation operation = operations.get(operationId);
+    return operation == null ? 0 : operation.errors;
+  }
+
+  private static double percentileMillis(long[] sorted, double percentile) {
+    if (sorted.length == 0)
+      return 0;
+    int rank = (int) Math.ceil(percentile / 100 * sorted.length);
+    return sorted[Math.max(rank - 1, 0)] / 1_000_000.0;
+  }
+
+  /**
+   * @param elapsed How long the load test ran, over which throughput is computed.
+   * @return a table with the throughput, error rate and latency percentiles of each operation,
+   * followed by the statuses of the errors.
+   */
+  public String format(Duration elapsed) {
+    double seconds = elapsed.toNanos() / 1_000_000_000.0;
+    StringBuilder table = new StringBuilder(String.format("%-22s | %8s | %8s | %8s | %8s | %8s | %8s | %8s%n",
+            "operation", "requests", "req/s", "errors %", "p50 ms", "p95 ms", "p99 ms", "max ms"));
+
+    int totalRequests = 0;
+    int totalErrors = 0;
+    for (Map.Entry<String, Operation> entry : operations.entrySet()) {
+      long[] latencies = entry.getValue().sortedLatencies();
+      int errors = errors(entry.getKey());
+      totalRequests += latencies.length;
+      totalErrors += errors;
+
+      table.append(String.format("%-22s | %8d | %8.1f | %8.2f | %8.1f | %8.1f | %8.1f | %8.1f%n",
+              entry.getKey(), latencies.length, latencies.length / seconds, 100.0 * errors / latencies.length,
+              percentileMillis(latencies, 50), percentileMillis(latencies, 95), percentileMillis(latencies, 99),
+              percentileMillis(latencies, 100)));
+    }
+
+    table.append(String.format("%-22s | %8d | %8.1f | %8.2f |%n", "total", totalRequests, totalRequests / seconds,
+            totalRequests == 0 ? 0 : 100.0 * totalErrors / totalRequests));
+
+    for (Map.Entry<String, Operation> entry : operations.entrySet()) {
+      Map<Integer, Integer> statuses = entry.getValue().errorStatuses;
+      if (!statuses.isEmpty())
+        table.append(entry.getKey()).append(" errors by status: ").append(statuses).append(System.lineSeparator());
+    }
+    return table.toString();
+  }
+}
@@ -0,0 +1,236 @@
+package com.mf.HerculaneumTranscriptor.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mf.HerculaneumTranscriptor.domain.User;
+import com.mf.HerculaneumTranscriptor.repository.UserRepository;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingStream;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import scroll.dto.NewScroll;
+import user.dto.BasicUserInfo;
+import user.dto.ChangePermissions;
+import user.dto.UserInfo;
+import user.dto.UserRegisterInfo;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Replays the sessions of concurrent annotators (see {@link AnnotatorSession}) against a backend, and reports
+ * the throughput, error rate and latency percentiles of each API operation. Run with {@code mvn test -Pbenchmark}.
+ * <p>
+ * The sessions run against the backend started by the test, on an in-memory database, unless the URL of another
+ * instance and its root credentials are given, e.g. for the one of compose.yaml:
+ * {@code mvn test -Pbenchmark -Dtest=LoadTestBenchmarkTest -Dloadtest.baseUrl=http://localhost:8080 -Dsecurity.rootProfile.password=...}
+ * <p>
+ * How many annotators there are, how long they work and how often their client polls are set with
+ * {@code -Dloadtest.annotators}, {@code -Dloadtest.duration} and {@code -Dloadtest.pollInterval}. They start working
+ * evenly over {@code -Dloadtest.rampUp}, as logins hash a password each and would otherwise all compete at once.
+ * The annotators and scrolls are created through the API before the sessions start, and reused by later runs
+ * against the same instance.
+ * <p>
+ * Platform and virtual threads are compared by running it with and without {@code -Dspring.threads.virtual.enabled=true}.
+ * Virtual threads of the backend started by the test that block while pinned to their carrier are reported along with
+ * where they were pinned, those of another instance show up in its flight recording.
+ */
+@Tag("benchmark")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+public class LoadTestBenchmarkTest {
+  @TempDir
+  static Path sharedTempDir;
+
+  @DynamicPropertySource
+  static void overrideProperties(DynamicPropertyRegistry registry) {
+    registry.add("api.scrolls.storageDirectory", () -> sharedTempDir.toString());
+    registry.add("api.scrolls.outbox.stagingDirectory", () -> sharedTempDir.resolve(".staging").toString());
+    // Images are uploaded by the outbox worker, which must run for annotators to download them
+    registry.add("api.scrolls.outbox.pollInterval", () -> "500");
+  }
+
+  @LocalServerPort
+  private int port;
+  @Autowired
+  private ObjectMapper objectMapper;
+  @Autowired
+  private UserRepository userRepository;
+  @Autowired
+  private PasswordEncoder passwordEncoder;
+
+  @Value("${loadtest.baseUrl:}")
+  private String baseUrl;
+  @Value("${loadtest.annotators:50}")
+  private int annotators;
+  @Value("${loadtest.duration:60s}")
+  private Duration duration;
+  @Value("${loadtest.pollInterval:2s}")
+  private Duration pollInterval;
+  @Value("${loadtest.rampUp:10s}")
+  private Duration rampUp;
+  @Value("${loadtest.scrolls:3}")
+  private int scrolls;
+  @Value("${spring.threads.virtual.enabled}")
+  private boolean virtualThreads;
+  @Value("${security.rootProfile.username}")
+  private String rootUsername;
+  @Value("${security.rootProfile.password}")
+  private String rootPassword;
+
+  private static final String PASSWORD = "load-test";
+  private static final int IMAGE_WIDTH = 2048;
+  private static final int IMAGE_HEIGHT = 1024;
+  // Bulk imports are limited to 1000 rows by default
+  private static final int IMPORT_BATCH = 1000;
+  // Pinned virtual threads blocking for less long are not reported, as in the default JFR settings
+  private static final Duration PINNED_THRESHOLD = Duration.ofMillis(20);
+  private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+  private static final int PINNED_FRAMES = 8;
+
+  private static String annotator(int index) {
+    return "annotator" + index;
+  }
+
+  /**
+   * @return a PNG of ink-like noise, which compresses about as poorly as actual ink predictions.
+   */
+  private static byte[] inkImage(long seed) throws IOException {
+    BufferedImage image = new BufferedImage(IMAGE_WIDTH, IMAGE_HEIGHT, BufferedImage.TYPE_BYTE_GRAY);
+    Random random = new Random(seed);
+    for (int y = 0; y < IMAGE_HEIGHT; y++)
+      for (int x = 0; x < IMAGE_WIDTH; x++)
+        image.getRaster().setSample(x, y, 0, random.nextInt(8) == 0 ? random.nextInt(256) : 0);
+
+    ByteArrayOutputStream png = new ByteArrayOutputStream();
+    ImageIO.write(image, "png", png);
+    return png.toByteArray();
+  }
+
+  /**
+   * Creates the annotators, with write permissions, and the scrolls they work on.
+   */
+  private void seed(AnnotatorClient root) throws Exception {
+    assertThat(root.loginUser(rootUsername, rootPassword)).as("root login").isTrue();
+
+    StringBuilder rows = new StringBuilder();
+    for (int i = 0; i < annotators; i++) {
+      String username = annotator(i);
+      rows.append(objectMapper.writeValueAsString(new UserRegisterInfo(
+              new BasicUserInfo(username, "Load", "Tester", username + "@loadtest.invalid"), PASSWORD))).append('\n');
+      if ((i + 1) % IMPORT_BATCH == 0 || i == annotators - 1) {
+        assertThat(root.createUsers(rows.toString())).as("annotator import").isTrue();
+        rows.setLength(0);
+      }
+    }
+    for (int i = 0; i < annotators; i++)
+      assertThat(root.updateUserPermissions(annotator(i), ChangePermissions.PermissionsEnum.WRITE)).isTrue();
+
+    for (int i = 0; i < scrolls; i++) {
+      NewScroll scroll = new NewScroll("load-test-scroll-" + i, "Load Test Scroll " + i);
+      root.createScroll(scroll, inkImage(i));
+    }
+    assertThat(root.getAllScrolls()).as("scrolls").hasSizeGreaterThanOrEqualTo(scrolls);
+
+    // Images are downloadable once the outbox uploaded them
+    Instant timeout = Instant.now().plusSeconds(30);
+    for (int i = 0; i < scrolls; i++) {
+      while (root.downloadScrollImage("load-test-scroll-" + i) < 0) {
+        assertThat(Instant.now()).as("image upload").isBefore(timeout);
+        Thread.sleep(500);
+      }
+    }
+  }
+
+  /**
+   * @return the top frames of a pinned thread, where it blocked.
+   */
+  private static String pinnedAt(RecordedEvent event) {
+    if (event.getStackTrace() == null)
+      return "unknown";
+    return event.getStackTrace().getFrames().stream()
+            .limit(PINNED_FRAMES)
+            .map(frame -> frame.getMethod().getType().getName() + "." + frame.getMethod().getName())
+            .collect(Collectors.joining(" < "));
+  }
+
+  @Test
+  void annotatorSessions_throughputAndLatencyPerOperation() throws Exception {
+    URI baseUri = URI.create(baseUrl.isBlank() ? "http://localhost:" + port : baseUrl);
+    // The root profile is not created on startup in tests
+    if (baseUrl.isBlank() && userRepository.findByPermissions(UserInfo.PermissionsEnum.ROOT).isEmpty())
+      userRepository.save(new User(null, rootUsername, "Root", "User", "root@loadtest.invalid",
+              passwordEncoder.encode(rootPassword), UserInfo.PermissionsEnum.ROOT));
+    HttpClient http = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .followRedirects(HttpClient.Redirect.NEVER)
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+
+    seed(new AnnotatorClient(http, baseUri, objectMapper, new LoadReport()));
+
+    // Where virtual threads were pinned, by the frames that blocked
+    Map<String, Integer> pinnings = new ConcurrentHashMap<>();
+    RecordingStream pinned = new RecordingStream();
+    pinned.enable(PINNED_EVENT).withThreshold(PINNED_THRESHOLD).withStackTrace();
+    pinned.onEvent(PINNED_EVENT, event -> pinnings.merge(pinnedAt(event), 1, Integer::sum));
+    pinned.startAsync();
+
+    // Annotators start working evenly over the ramp-up
+    LoadReport report = new LoadReport();
+    Instant start = Instant.now();
+    Instant deadline = start.plus(duration);
+    List<Future<?>> sessions = new ArrayList<>();
+    try (pinned; ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+      for (int i = 0; i < annotators; i++) {
+        AnnotatorSession session = new AnnotatorSession(new AnnotatorClient(http, baseUri, objectMapper, report),
+                annotator(i), PASSWORD, pollInterval, deadline, i, IMAGE_WIDTH, IMAGE_HEIGHT);
+        long delay = rampUp.toMillis() * i / annotators;
+        sessions.add(executor.submit(() -> {
+          Thread.sleep(delay);
+          session.run();
+          return null;
+        }));
+      }
+    }
+    Duration elapsed = Duration.between(start, Instant.now());
+    for (Future<?> session : sessions)
+      session.get();
+
+    System.out.println(annotators + " annotators against " + baseUri + " for " + elapsed.toSeconds() + "s, " +
+            "polling every " + pollInterval.toMillis() + "ms" +
+            (baseUrl.isBlank() ? ", " + (virtualThreads ? "virtual" : "platform") + " threads" : ""));
+    System.out.println(report.format(elapsed));
+    System.out.println("Virtual threads pinned for more than " + PINNED_THRESHOLD.toMillis() + "ms: " +
+            pinnings.values().stream().mapToInt(Integer::intValue).sum());
+    pinnings.forEach((frames, count) -> System.out.println(count + " x " + frames));
+    assertThat(report.requests("loginUser")).isEqualTo(annotators);
+    assertThat(report.requests("getScrollRegions")).isGreaterThan(annotators);
+  }
+}
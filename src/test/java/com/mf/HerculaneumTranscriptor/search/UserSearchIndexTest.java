@@ -0,0 +1,147 @@
+package com.mf.HerculaneumTranscriptor.search;
+
+import com.mf.HerculaneumTranscriptor.domain.User;
+import com.mf.HerculaneumTranscriptor.domain.mapper.UserMapper;
+import com.mf.HerculaneumTranscriptor.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mapstruct.factory.Mappers;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import user.dto.UserInfo;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class UserSearchIndexTest {
+  private UserRepository userRepository;
+  private UserSearchIndex userSearchIndex;
+
+  private static User user(long id, String username, String firstName, String lastName, String contact) {
+    User user = new User();
+    user.setId(id);
+    user.setUsername(username);
+    user.setFirstName(firstName);
+    user.setLastName(lastName);
+    user.setContact(contact);
+    user.setPermissions(UserInfo.PermissionsEnum.READ);
+    return user;
+  }
+
+  private List<String> search(String query, int limit) {
+    return userSearchIndex.search(query, limit).stream()
+            .map(info -> info.getBasicInfo().getUsername())
+            .toList();
+  }
+
+  @BeforeEach
+  void setUp() {
+    userRepository = mock(UserRepository.class);
+    userSearchIndex = new UserSearchIndex(userRepository, Mappers.getMapper(UserMapper.class));
+
+    userSearchIndex.put(user(1L, "JohnDoe", "John", "Doe", "john.doe@example.com"));
+    userSearchIndex.put(user(2L, "jane", "Jane", "Johnson", "jane@example.com"));
+    userSearchIndex.put(user(3L, "papyrologist", "Mary", "Smith", null));
+  }
+
+  @Test
+  void search_shouldMatchSubstringOfAnyField_ignoringCase() {
+    // Act & Assert
+    assertThat(search("DOE@", 10)).containsExactly("JohnDoe");
+    assertThat(search("ohns", 10)).containsExactly("jane");
+    assertThat(search("rolog", 10)).containsExactly("papyrologist");
+    assertThat(search("example.org", 10)).isEmpty();
+  }
+
+  @Test
+  void search_shouldRankUsernameMatchesFirst_whenSeveralUsersMatch() {
+    // Arrange
+    userSearchIndex.put(user(4L, "john", null, null, null));
+    userSearchIndex.put(user(5L, "annajohn", "Anna", null, null));
+
+    // Act
+    List<String> result = search("john", 10);
+
+    // Assert
+    // Exact username, username prefix, other field prefix and finally any other match
+    assertThat(result).containsExactly("john", "JohnDoe", "jane", "annajohn");
+  }
+
+  @Test
+  void search_shouldOnlyMatchFieldPrefixes_whenQueryIsShort() {
+    // Act & Assert
+    assertThat(search("ja", 10)).containsExactly("jane");
+    assertThat(search("sm", 10)).containsExactly("papyrologist");
+    // "oe" is inside "JohnDoe" but does not start any field
+    assertThat(search("oe", 10)).isEmpty();
+  }
+
+  @Test
+  void search_shouldReturnAtMostLimitUsers() {
+    // Act & Assert
+    assertThat(search("example", 1)).containsExactly("jane");
+    assertThat(search("  ", 10)).isEmpty();
+  }
+
+  @Test
+  void put_shouldReplacePreviousEntry_whenUserIsUpdated() {
+    // Act
+    userSearchIndex.put(user(1L, "Jonathan", "Jonathan", "Doer", "jonathan@example.com"));
+
+    // Assert
+    assertThat(search("johndoe", 10)).isEmpty();
+    assertThat(search("doer", 10)).containsExactly("Jonathan");
+  }
+
+  @Test
+  void remove_shouldStopMatchingUser() {
+    // Act
+    userSearchIndex.remove(2L);
+
+    // Assert
+    assertThat(search("jane", 10)).isEmpty();
+    assertThat(search("john", 10)).containsExactly("JohnDoe");
+  }
+
+  @Test
+  void rebuild_shouldIndexEveryUserInDatabase() {
+    // Arrange
+    when(userRepository.findAll()).thenReturn(List.of(user(7L, "herculaneum", null, null, null)));
+
+    // Act
+    userSearchIndex.rebuild();
+
+    // Assert
+    // Users indexed before the rebuild are dropped
+    assertThat(search("herc", 10)).containsExactly("herculaneum");
+    assertThat(search("john", 10)).isEmpty();
+  }
+
+  @Test
+  void put_shouldBeUndone_whenTransactionRollsBack() {
+    // Arrange
+    TransactionSynchronizationManager.initSynchronization();
+    try {
+      // Act
+      userSearchIndex.put(user(1L, "Jonathan", null, null, null));
+      userSearchIndex.remove(2L);
+
+      // The changes are visible before the transaction completes
+      assertThat(search("jonathan", 10)).containsExactly("Jonathan");
+      assertThat(search("jane", 10)).isEmpty();
+
+      TransactionSynchronizationManager.getSynchronizations()
+              .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+    } finally {
+      TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    // Assert
+    assertThat(search("jonathan", 10)).isEmpty();
+    assertThat(search("johndoe", 10)).containsExactly("JohnDoe");
+    assertThat(search("jane", 10)).containsExactly("jane");
+  }
+}
@@ -0,0 +1,49 @@
+package com.mf.HerculaneumTranscriptor.security;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IteratedPbkdf2PasswordEncoderTest {
+  private static final String PASSWORD = "password123";
+
+  @Test
+  void matches_shouldAcceptSamePassword_andRejectOthers() {
+    // Arrange
+    IteratedPbkdf2PasswordEncoder encoder = new IteratedPbkdf2PasswordEncoder(1000);
+
+    // Act
+    String hash = encoder.encode(PASSWORD);
+
+    // Assert
+    assertThat(hash).startsWith("1000$");
+    assertThat(encoder.matches(PASSWORD, hash)).isTrue();
+    assertThat(encoder.matches("wrong-" + PASSWORD, hash)).isFalse();
+    // Salts are random, so the same password never gives the same hash
+    assertThat(encoder.encode(PASSWORD)).isNotEqualTo(hash);
+  }
+
+  @Test
+  void matches_shouldUseIterationsStoredInHash_whenIterationsChange() {
+    // Arrange
+    String oldHash = new IteratedPbkdf2PasswordEncoder(1000).encode(PASSWORD);
+    IteratedPbkdf2PasswordEncoder encoder = new IteratedPbkdf2PasswordEncoder(2000);
+
+    // Act & Assert
+    assertThat(encoder.matches(PASSWORD, oldHash)).isTrue();
+    assertThat(encoder.upgradeEncoding(oldHash)).isTrue();
+    assertThat(encoder.upgradeEncoding(encoder.encode(PASSWORD))).isFalse();
+  }
+
+  @Test
+  void matches_shouldRejectMalformedHashes() {
+    // Arrange
+    IteratedPbkdf2PasswordEncoder encoder = new IteratedPbkdf2PasswordEncoder(1000);
+
+    // Act & Assert
+    assertThat(encoder.matches(PASSWORD, null)).isFalse();
+    assertThat(encoder.matches(PASSWORD, "1000$not-base64!$hash")).isFalse();
+    assertThat(encoder.matches(PASSWORD, "$2a$10$abcdefghijklmnopqrstuv")).isFalse();
+    assertThat(encoder.upgradeEncoding("garbage")).isTrue();
+  }
+}
@@ -0,0 +1,113 @@
+package com.mf.HerculaneumTranscriptor.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PasswordHashCalibratorTest {
+  private static final String PASSWORD = "password123";
+  // Small enough to keep argon2 hashes fast in tests
+  private static final int ARGON2_MEMORY = 1024;
+
+  private SimpleMeterRegistry meterRegistry;
+
+  @BeforeEach
+  void setUp() {
+    meterRegistry = new SimpleMeterRegistry();
+  }
+
+  @Test
+  void calibrate_shouldUseMinimumCost_whenTargetLatencyIsZero() {
+    // Arrange
+    PasswordHashCalibrator calibrator = new PasswordHashCalibrator(PasswordHashCalibrator.BCRYPT, Duration.ZERO, ARGON2_MEMORY);
+
+    // Act
+    PasswordHashCalibrator.Calibration calibration = calibrator.calibrate();
+
+    // Assert
+    assertThat(calibration.cost()).isEqualTo(PasswordHashCalibrator.BCRYPT_MIN_STRENGTH);
+    assertThat(calibration.latency()).isPositive();
+  }
+
+  @Test
+  void calibrate_shouldNeverGoBelowMinimumCost_whenTargetLatencyIsTiny() {
+    // Arrange
+    PasswordHashCalibrator bcrypt = new PasswordHashCalibrator(PasswordHashCalibrator.BCRYPT, Duration.ofNanos(1), ARGON2_MEMORY);
+    PasswordHashCalibrator argon2 = new PasswordHashCalibrator(PasswordHashCalibrator.ARGON2, Duration.ofNanos(1), ARGON2_MEMORY);
+
+    // Act & Assert
+    assertThat(bcrypt.calibrate().cost()).isEqualTo(PasswordHashCalibrator.BCRYPT_MIN_STRENGTH);
+    assertThat(argon2.calibrate().cost()).isEqualTo(PasswordHashCalibrator.ARGON2_MIN_ITERATIONS);
+  }
+
+  @Test
+  void calibratedEncoder_shouldPrefixHashes_andPublishMetrics() {
+    // Arrange
+    PasswordEncoder encoder = new PasswordHashCalibrator(PasswordHashCalibrator.BCRYPT, Duration.ZERO, ARGON2_MEMORY)
+            .calibratedEncoder(meterRegistry);
+
+    // Act
+    String hash = encoder.encode(PASSWORD);
+
+    // Assert
+    assertThat(hash).startsWith("{bcrypt}");
+    assertThat(encoder.matches(PASSWORD, hash)).isTrue();
+    assertThat(encoder.upgradeEncoding(hash)).isFalse();
+
+    assertThat(meterRegistry.get("security.password.hash.cost").tag("algorithm", "bcrypt").gauge().value())
+            .isEqualTo(PasswordHashCalibrator.BCRYPT_MIN_STRENGTH);
+    assertThat(meterRegistry.get("security.password.hash").tag("operation", "encode").timer().count()).isEqualTo(1);
+    assertThat(meterRegistry.get("security.password.hash").tag("operation", "matches").timer().count()).isEqualTo(1);
+  }
+
+  @Test
+  void calibratedEncoder_shouldMatchAndUpgradeLegacyAndWeakerHashes() {
+    // Arrange
+    PasswordEncoder encoder = new PasswordHashCalibrator(PasswordHashCalibrator.BCRYPT, Duration.ZERO, ARGON2_MEMORY)
+            .calibratedEncoder(meterRegistry);
+    // Hashes stored before the encoder prefixed them
+    String legacyHash = new BCryptPasswordEncoder().encode(PASSWORD);
+    String weakerHash = "{bcrypt}" + new BCryptPasswordEncoder(4).encode(PASSWORD);
+
+    // Act & Assert
+    assertThat(encoder.matches(PASSWORD, legacyHash)).isTrue();
+    assertThat(encoder.upgradeEncoding(legacyHash)).isTrue();
+    assertThat(encoder.matches(PASSWORD, weakerHash)).isTrue();
+    assertThat(encoder.upgradeEncoding(weakerHash)).isTrue();
+  }
+
+  @Test
+  void calibratedEncoder_shouldMatchHashesOfOtherAlgorithms_andUpgradeThem() {
+    // Arrange
+    PasswordEncoder pbkdf2 = new PasswordHashCalibrator(PasswordHashCalibrator.PBKDF2, Duration.ZERO, ARGON2_MEMORY)
+            .calibratedEncoder(meterRegistry);
+    PasswordEncoder argon2 = new PasswordHashCalibrator(PasswordHashCalibrator.ARGON2, Duration.ZERO, ARGON2_MEMORY)
+            .calibratedEncoder(meterRegistry);
+
+    // Act
+    String pbkdf2Hash = pbkdf2.encode(PASSWORD);
+    String argon2Hash = argon2.encode(PASSWORD);
+
+    // Assert
+    assertThat(pbkdf2Hash).startsWith("{pbkdf2}" + PasswordHashCalibrator.PBKDF2_MIN_ITERATIONS + "$");
+    assertThat(argon2Hash).startsWith("{argon2}$argon2id$");
+
+    assertThat(argon2.matches(PASSWORD, pbkdf2Hash)).isTrue();
+    assertThat(argon2.upgradeEncoding(pbkdf2Hash)).isTrue();
+    assertThat(pbkdf2.matches(PASSWORD, argon2Hash)).isTrue();
+    assertThat(pbkdf2.upgradeEncoding(argon2Hash)).isTrue();
+  }
+
+  @Test
+  void constructor_shouldThrow_whenAlgorithmIsUnknown() {
+    // Act & Assert
+    assertThrows(IllegalArgumentException.class, () -> new PasswordHashCalibrator("md5", Duration.ZERO, ARGON2_MEMORY));
+  }
+}
@@ -1,8 +1,10 @@
 package com.mf.HerculaneumTranscriptor.security;
 
 import com.mf.HerculaneumTranscriptor.domain.Annotation;
+import com.mf.HerculaneumTranscriptor.domain.Comment;
 import com.mf.HerculaneumTranscriptor.domain.User;
 import com.mf.HerculaneumTranscriptor.repository.AnnotationRepository;
+import com.mf.HerculaneumTranscriptor.repository.CommentRepository;
 import com.mf.HerculaneumTranscriptor.repository.UserRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -29,6 +31,8 @@ class SecurityLogicTest {
   private UserRepository userRepository;
   @Mock
   private AnnotationRepository annotationRepository;
+  @Mock
+  private CommentRepository commentRepository;
 
   @InjectMocks
   private SecurityLogic securityLogic;
@@ -227,4 +231,66 @@ class SecurityLogicTest {
     // Assert
     assertThat(result).isFalse();
   }
-}
\ No newline at end of file
+
+  // Tests for canModifyComment
+
+  @Test
+  void canModifyComment_shouldReturnTrue_forAdminUser() {
+    // Arrange
+    Authentication adminAuth = mockAuthentication(null, "ROLE_ADMIN");
+
+    // Act
+    boolean result = securityLogic.canModifyComment(adminAuth, UUID.randomUUID());
+
+    // Assert
+    assertThat(result).isTrue();
+    verify(commentRepository, never()).findByCommentId(any());
+  }
+
+  @Test
+  void canModifyComment_shouldReturnTrue_forWriteUserWhoIsTheAuthor() {
+    // Arrange
+    Authentication writeAuth = mockAuthentication("writer", "ROLE_WRITE");
+    Comment ownComment = new Comment();
+    ownComment.setAuthor(writeUser);
+    UUID commentId = UUID.randomUUID();
+
+    when(commentRepository.findByCommentId(commentId)).thenReturn(Optional.of(ownComment));
+
+    // Act
+    boolean result = securityLogic.canModifyComment(writeAuth, commentId);
+
+    // Assert
+    assertThat(result).isTrue();
+  }
+
+  @Test
+  void canModifyComment_shouldReturnFalse_forWriteUserWhoIsNotTheAuthor() {
+    // Arrange
+    Authentication writeAuth = mockAuthentication("writer", "ROLE_WRITE");
+    Comment anotherUsersComment = new Comment();
+    anotherUsersComment.setAuthor(rootUser);
+    UUID commentId = UUID.randomUUID();
+
+    when(commentRepository.findByCommentId(commentId)).thenReturn(Optional.of(anotherUsersComment));
+
+    // Act
+    boolean result = securityLogic.canModifyComment(writeAuth, commentId);
+
+    // Assert
+    assertThat(result).isFalse();
+  }
+
+  @Test
+  void canModifyComment_shouldReturnFalse_forUserWithoutWriteRole() {
+    // Arrange
+    Authentication readAuth = mockAuthentication(null, "ROLE_READ");
+
+    // Act
+    boolean result = securityLogic.canModifyComment(readAuth, UUID.randomUUID());
+
+    // Assert
+    assertThat(result).isFalse();
+    verify(commentRepository, never()).findByCommentId(any());
+  }
+}
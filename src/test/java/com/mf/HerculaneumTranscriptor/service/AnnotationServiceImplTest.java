@@ -3,11 +3,19 @@ package com.mf.HerculaneumTranscriptor.service;
 import annotation.dto.BoxRegion;
 import annotation.dto.NewBoxRegion;
 import annotation.dto.RegionUpdateResponse;
+import com.mf.HerculaneumTranscriptor.datasource.ReadRouting;
 import com.mf.HerculaneumTranscriptor.domain.*;
 import com.mf.HerculaneumTranscriptor.domain.mapper.AnnotationMapper;
+import com.mf.HerculaneumTranscriptor.exception.ResourceModifiedException;
 import com.mf.HerculaneumTranscriptor.exception.ResourceNotFoundException;
+import com.mf.HerculaneumTranscriptor.history.HistoricRegion;
+import com.mf.HerculaneumTranscriptor.history.RegionHistory;
+import com.mf.HerculaneumTranscriptor.history.RegionState;
+import com.mf.HerculaneumTranscriptor.history.ScrollTimeline;
 import com.mf.HerculaneumTranscriptor.repository.AnnotationRepository;
+import com.mf.HerculaneumTranscriptor.repository.CommentRepository;
 import com.mf.HerculaneumTranscriptor.repository.ScrollRepository;
+import com.mf.HerculaneumTranscriptor.repository.UserRepository;
 import com.mf.HerculaneumTranscriptor.repository.VoteRepository;
 import com.mf.HerculaneumTranscriptor.security.JwtUserDetails;
 import com.mf.HerculaneumTranscriptor.service.impl.AnnotationServiceImpl;
@@ -15,6 +23,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
@@ -25,6 +34,9 @@ import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import user.dto.UserInfo;
 
+import javax.validation.ValidationException;
+
+import java.time.Duration;
 import java.time.Instant;
 import java.util.Date;
 import java.util.List;
@@ -43,11 +55,21 @@ public class AnnotationServiceImplTest {
   @Mock
   private AnnotationRepository annotationRepository;
   @Mock
+  private CommentRepository commentRepository;
+  @Mock
   private ScrollRepository scrollRepository;
   @Mock
   private AnnotationMapper annotationMapper;
   @Mock
   private VoteRepository voteRepository;
+  @Mock
+  private UserRepository userRepository;
+  @Mock
+  private ReadRouting readRouting;
+  @Mock
+  private RegionHistory regionHistory;
+  @Mock
+  private ScrollTimeline scrollTimeline;
 
   private Scroll scroll;
   private User author;
@@ -107,12 +129,12 @@ public class AnnotationServiceImplTest {
   @Test
   void getScrollRegions_shouldReturnAllRegions_whenSinceIsNull() {
     // Arrange
-    when(scrollRepository.existsByScrollId(SCROLL_ID)).thenReturn(true);
+    when(readRouting.staleness()).thenReturn(Duration.ZERO);
     when(annotationRepository.findByScrollScrollId(SCROLL_ID)).thenReturn(List.of(annotation));
     when(annotationMapper.annotationEntityToBoxRegionDto(annotation)).thenReturn(boxRegionDto);
 
     // Act
-    RegionUpdateResponse response = annotationService.getScrollRegions(SCROLL_ID, null);
+    RegionUpdateResponse response = annotationService.getScrollRegions(SCROLL_ID, null, null);
 
     // Assert
     assertThat(response).isNotNull();
@@ -121,25 +143,27 @@ public class AnnotationServiceImplTest {
     assertThat(response.getRegions().getFirst()).isEqualTo(boxRegionDto);
     assertThat(response.getLastSyncTimestamp()).isNotNull();
     verify(annotationRepository, times(1)).findByScrollScrollId(SCROLL_ID);
-    verify(annotationRepository, never()).findByScrollScrollIdAndUpdatedAtAfter(anyString(), any(Date.class));
+    verify(annotationRepository, never()).findByScrollScrollIdAndUpdatedAtAfter(anyString(), any(Instant.class));
+    // The scroll evidently exists
+    verify(scrollRepository, never()).existsByScrollId(anyString());
   }
 
   @Test
   void getScrollRegions_shouldReturnDeltaRegions_whenSinceIsProvided() {
     // Arrange
+    when(readRouting.staleness()).thenReturn(Duration.ZERO);
     Date since = Date.from(Instant.now().minusSeconds(60));
-    when(scrollRepository.existsByScrollId(SCROLL_ID)).thenReturn(true);
-    when(annotationRepository.findByScrollScrollIdAndUpdatedAtAfter(SCROLL_ID, since)).thenReturn(List.of(annotation));
+    when(annotationRepository.findByScrollScrollIdAndUpdatedAtAfter(SCROLL_ID, since.toInstant())).thenReturn(List.of(annotation));
     when(annotationMapper.annotationEntityToBoxRegionDto(annotation)).thenReturn(boxRegionDto);
 
     // Act
-    RegionUpdateResponse response = annotationService.getScrollRegions(SCROLL_ID, since);
+    RegionUpdateResponse response = annotationService.getScrollRegions(SCROLL_ID, since, null);
 
     // Assert
     assertThat(response).isNotNull();
     assertThat(response.getRegions().size()).isEqualTo(1);
     verify(annotationRepository, never()).findByScrollScrollId(anyString());
-    verify(annotationRepository, times(1)).findByScrollScrollIdAndUpdatedAtAfter(SCROLL_ID, since);
+    verify(annotationRepository, times(1)).findByScrollScrollIdAndUpdatedAtAfter(SCROLL_ID, since.toInstant());
   }
 
   @Test
@@ -149,7 +173,37 @@ public class AnnotationServiceImplTest {
 
     // Act & Assert
     assertThrows(ResourceNotFoundException.class,
-            () -> annotationService.getScrollRegions(SCROLL_ID, null));
+            () -> annotationService.getScrollRegions(SCROLL_ID, null, null));
+  }
+
+  @Test
+  void getScrollRegions_shouldRebuildRegions_whenAsOfIsProvided() {
+    // Arrange
+    Instant asOf = Instant.parse("2025-06-01T12:00:00Z");
+    RegionState state = new RegionState("old transcription", 0f, 0f, 100f, 100f, 2.5f, USERNAME, asOf.minusSeconds(60));
+    when(scrollRepository.findByScrollId(SCROLL_ID)).thenReturn(Optional.of(scroll));
+    when(scrollTimeline.regionsAt(scroll.getId(), asOf)).thenReturn(List.of(new HistoricRegion(REGION_ID, 4, asOf, state)));
+
+    // Act
+    RegionUpdateResponse response = annotationService.getScrollRegions(SCROLL_ID, null, Date.from(asOf));
+
+    // Assert
+    assertThat(response.getLastSyncTimestamp()).isEqualTo(Date.from(asOf));
+    assertThat(response.getRegions()).singleElement().satisfies(region -> {
+      assertThat(region.getRegionId()).isEqualTo(REGION_ID);
+      assertThat(region.getAuthorUsername()).isEqualTo(USERNAME);
+      assertThat(region.getBasicInfo().getTranscription()).isEqualTo("old transcription");
+      assertThat(region.getCertaintyScore()).isEqualTo(2.5f);
+      assertThat(region.getVersion()).isEqualTo(4L);
+    });
+    verify(annotationRepository, never()).findByScrollScrollId(anyString());
+  }
+
+  @Test
+  void getScrollRegions_shouldThrowValidationException_whenBothSinceAndAsOfAreProvided() {
+    // Act & Assert
+    assertThrows(ValidationException.class,
+            () -> annotationService.getScrollRegions(SCROLL_ID, new Date(), new Date()));
   }
 
   // Tests for createRegion
@@ -185,11 +239,25 @@ public class AnnotationServiceImplTest {
 
     assertThat(savedAnnotation.getAuthor()).isEqualTo(author);
     assertThat(savedAnnotation.getScroll()).isEqualTo(scroll);
+    verify(regionHistory).record(annotation, AnnotationRevision.Operation.CREATE, null);
 
     // Clean up the security context
     SecurityContextHolder.clearContext();
   }
 
+  @Test
+  void createRegion_shouldThrowValidationException_whenRegionExceedsScrollImage() {
+    // Arrange
+    // The 100x100 region starting at the origin does not fit in a 80 pixels wide image
+    scroll.setImageMetadata(new ImageMetadata(80, 200, 8, null));
+    when(scrollRepository.findByScrollId(SCROLL_ID)).thenReturn(Optional.of(scroll));
+
+    // Act & Assert
+    assertThrows(ValidationException.class,
+            () -> annotationService.createRegion(SCROLL_ID, newBoxRegionDto));
+    verify(annotationRepository, never()).save(any());
+  }
+
   @Test
   void createRegion_shouldThrowResourceNotFoundException_whenScrollDoesNotExist() {
     // Arrange
@@ -232,8 +300,12 @@ public class AnnotationServiceImplTest {
     annotationService.deleteRegion(SCROLL_ID, annotation.getRegionId());
 
     // Assert
-    // Verify that the repository's delete method was called exactly once.
-    verify(annotationRepository, times(1)).delete(annotation);
+    // Verify that the repository's delete method was called exactly once, after deleting the comments and votes.
+    InOrder deletions = inOrder(commentRepository, voteRepository, annotationRepository);
+    deletions.verify(commentRepository).deleteByAnnotationId(annotation.getId());
+    deletions.verify(voteRepository).deleteByAnnotationId(annotation.getId());
+    deletions.verify(annotationRepository, times(1)).delete(annotation);
+    verify(regionHistory).record(annotation, AnnotationRevision.Operation.DELETE, RegionState.of(annotation));
   }
 
   @Test
@@ -279,26 +351,30 @@ public class AnnotationServiceImplTest {
     when(annotationRepository.findByRegionId(annotation.getRegionId())).thenReturn(Optional.of(annotation));
 
     // Mock the save operation. Using thenAnswer is a robust way to return the modified object.
-    when(annotationRepository.save(any(Annotation.class))).thenAnswer(invocation -> invocation.getArgument(0));
+    when(annotationRepository.saveAndFlush(any(Annotation.class))).thenAnswer(invocation -> invocation.getArgument(0));
 
     // Mock the mapper calls.
     when(annotationMapper.coordinatesDtoToEntityCoordinates(any(annotation.dto.Coordinates.class))).thenReturn(mappedCoords);
     when(annotationMapper.annotationEntityToBoxRegionDto(any(Annotation.class))).thenReturn(boxRegionDto);
 
     // Act
-    BoxRegion result = annotationService.updateRegion(SCROLL_ID, annotation.getRegionId(), newBoxRegionDto);
+    BoxRegion result = annotationService.updateRegion(SCROLL_ID, annotation.getRegionId(), newBoxRegionDto, null);
 
     // Assert
     assertThat(result).isEqualTo(boxRegionDto);
 
     // Use an ArgumentCaptor to inspect the entity that was saved.
     ArgumentCaptor<Annotation> annotationCaptor = ArgumentCaptor.forClass(Annotation.class);
-    verify(annotationRepository).save(annotationCaptor.capture());
+    verify(annotationRepository).saveAndFlush(annotationCaptor.capture());
     Annotation savedAnnotation = annotationCaptor.getValue();
 
     // Verify that the entity's fields were correctly updated.
     assertThat(savedAnnotation.getTranscription()).isEqualTo(updatedTranscription);
     assertThat(savedAnnotation.getCoordinates()).isEqualTo(mappedCoords);
+
+    // The history gets the region as it was before the update
+    verify(regionHistory).record(savedAnnotation, AnnotationRevision.Operation.UPDATE,
+            new RegionState("test transcription", 0f, 0f, 100f, 100f, 0f, USERNAME, null));
   }
 
   @Test
@@ -310,10 +386,10 @@ public class AnnotationServiceImplTest {
 
     // Act & Assert
     assertThrows(ResourceNotFoundException.class,
-            () -> annotationService.updateRegion(SCROLL_ID, nonExistentRegionId, newBoxRegionDto));
+            () -> annotationService.updateRegion(SCROLL_ID, nonExistentRegionId, newBoxRegionDto, null));
 
     // Verify no save was ever attempted.
-    verify(annotationRepository, never()).save(any());
+    verify(annotationRepository, never()).saveAndFlush(any());
   }
 
   @Test
@@ -326,10 +402,45 @@ public class AnnotationServiceImplTest {
     // Act & Assert
     // Call the service with the wrong scroll ID.
     assertThrows(ResourceNotFoundException.class,
-            () -> annotationService.updateRegion(wrongScrollId, annotation.getRegionId(), newBoxRegionDto));
+            () -> annotationService.updateRegion(wrongScrollId, annotation.getRegionId(), newBoxRegionDto, null));
 
     // Verify no save was ever attempted.
-    verify(annotationRepository, never()).save(any());
+    verify(annotationRepository, never()).saveAndFlush(any());
+  }
+
+  @Test
+  void updateRegion_shouldThrowResourceModifiedException_whenVersionIsNotCurrent() {
+    // Arrange
+    annotation.setVersion(3L);
+    when(annotationRepository.findByRegionId(annotation.getRegionId())).thenReturn(Optional.of(annotation));
+    when(annotationMapper.annotationEntityToBoxRegionDto(annotation)).thenReturn(boxRegionDto);
+
+    // Act
+    ResourceModifiedException exception = assertThrows(ResourceModifiedException.class,
+            () -> annotationService.updateRegion(SCROLL_ID, annotation.getRegionId(), newBoxRegionDto, 2L));
+
+    // Assert
+    // The client gets the current state, and the region is left untouched
+    assertThat(exception.getCurrent()).isEqualTo(boxRegionDto);
+    assertThat(annotation.getTranscription()).isEqualTo("test transcription");
+    verify(annotationRepository, never()).saveAndFlush(any());
+    verify(regionHistory, never()).record(any(), any(), any());
+  }
+
+  @Test
+  void updateRegion_shouldUpdateRegion_whenVersionIsCurrent() {
+    // Arrange
+    annotation.setVersion(3L);
+    when(annotationRepository.findByRegionId(annotation.getRegionId())).thenReturn(Optional.of(annotation));
+    when(annotationRepository.saveAndFlush(annotation)).thenReturn(annotation);
+    when(annotationMapper.annotationEntityToBoxRegionDto(annotation)).thenReturn(boxRegionDto);
+
+    // Act
+    BoxRegion result = annotationService.updateRegion(SCROLL_ID, annotation.getRegionId(), newBoxRegionDto, 3L);
+
+    // Assert
+    assertThat(result).isEqualTo(boxRegionDto);
+    verify(annotationRepository, times(1)).saveAndFlush(annotation);
   }
 
   // Tests for voteOnRegion
@@ -351,12 +462,13 @@ public class AnnotationServiceImplTest {
     when(annotationRepository.findByRegionId(annotation.getRegionId())).thenReturn(Optional.of(annotation));
     // Simulate that no existing vote is found
     when(voteRepository.findByUserAndAnnotation(author, annotation)).thenReturn(Optional.empty());
+    when(userRepository.getReferenceById(author.getId())).thenReturn(author);
 
     // Mock the average calculation to return a new average
     when(voteRepository.calculateAverageVote(annotation.getId())).thenReturn(4.5f);
 
     // Mock the final save and map calls
-    when(annotationRepository.save(any(Annotation.class))).thenReturn(annotation);
+    when(annotationRepository.saveAndFlush(any(Annotation.class))).thenReturn(annotation);
     when(annotationMapper.annotationEntityToBoxRegionDto(any(Annotation.class))).thenReturn(boxRegionDto);
 
     // Act
@@ -376,9 +488,11 @@ public class AnnotationServiceImplTest {
 
     // Capture the Annotation entity to verify the score was updated
     ArgumentCaptor<Annotation> annotationCaptor = ArgumentCaptor.forClass(Annotation.class);
-    verify(annotationRepository, times(1)).save(annotationCaptor.capture());
+    verify(annotationRepository, times(1)).saveAndFlush(annotationCaptor.capture());
     Annotation savedAnnotation = annotationCaptor.getValue();
     assertThat(savedAnnotation.getCertaintyScore()).isEqualTo(4.5f);
+    verify(regionHistory).record(savedAnnotation, AnnotationRevision.Operation.VOTE,
+            new RegionState("test transcription", 0f, 0f, 100f, 100f, 0f, USERNAME, null));
 
     // Clean up context
     SecurityContextHolder.clearContext();
@@ -405,7 +519,7 @@ public class AnnotationServiceImplTest {
     when(voteRepository.findByUserAndAnnotation(author, annotation)).thenReturn(Optional.of(existingVote));
 
     when(voteRepository.calculateAverageVote(annotation.getId())).thenReturn(3.5f);
-    when(annotationRepository.save(any(Annotation.class))).thenReturn(annotation);
+    when(annotationRepository.saveAndFlush(any(Annotation.class))).thenReturn(annotation);
     when(annotationMapper.annotationEntityToBoxRegionDto(any(Annotation.class))).thenReturn(boxRegionDto);
 
     // Act
@@ -420,7 +534,7 @@ public class AnnotationServiceImplTest {
 
     // Verify the annotation's score was updated
     ArgumentCaptor<Annotation> annotationCaptor = ArgumentCaptor.forClass(Annotation.class);
-    verify(annotationRepository).save(annotationCaptor.capture());
+    verify(annotationRepository).saveAndFlush(annotationCaptor.capture());
     Annotation savedAnnotation = annotationCaptor.getValue();
     assertThat(savedAnnotation.getCertaintyScore()).isEqualTo(3.5f);
 
@@ -463,7 +577,7 @@ public class AnnotationServiceImplTest {
             () -> annotationService.voteOnRegion(SCROLL_ID, nonExistentRegionId, voteDto));
 
     verify(voteRepository, never()).save(any(Vote.class));
-    verify(annotationRepository, never()).save(any(Annotation.class));
+    verify(annotationRepository, never()).saveAndFlush(any(Annotation.class));
   }
 
   @Test
@@ -478,6 +592,6 @@ public class AnnotationServiceImplTest {
             () -> annotationService.voteOnRegion(wrongScrollId, annotation.getRegionId(), voteDto));
 
     verify(voteRepository, never()).save(any(Vote.class));
-    verify(annotationRepository, never()).save(any(Annotation.class));
+    verify(annotationRepository, never()).saveAndFlush(any(Annotation.class));
   }
 }
@@ -0,0 +1,296 @@
+package com.mf.HerculaneumTranscriptor.service;
+
+import com.mf.HerculaneumTranscriptor.datasource.ReadRouting;
+import com.mf.HerculaneumTranscriptor.domain.Annotation;
+import com.mf.HerculaneumTranscriptor.domain.Comment;
+import com.mf.HerculaneumTranscriptor.domain.Scroll;
+import com.mf.HerculaneumTranscriptor.domain.User;
+import com.mf.HerculaneumTranscriptor.domain.mapper.CommentMapper;
+import com.mf.HerculaneumTranscriptor.exception.ResourceNotFoundException;
+import com.mf.HerculaneumTranscriptor.repository.AnnotationRepository;
+import com.mf.HerculaneumTranscriptor.repository.CommentRepository;
+import com.mf.HerculaneumTranscriptor.security.JwtUserDetails;
+import com.mf.HerculaneumTranscriptor.service.impl.CommentServiceImpl;
+import comment.dto.CommentContent;
+import comment.dto.CommentUpdateResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+import user.dto.UserInfo;
+
+import javax.validation.ValidationException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class CommentServiceImplTest {
+  @InjectMocks
+  private CommentServiceImpl commentService;
+
+  @Mock
+  private CommentRepository commentRepository;
+  @Mock
+  private AnnotationRepository annotationRepository;
+  @Mock
+  private CommentMapper commentMapper;
+  @Mock
+  private ReadRouting readRouting;
+
+  private User author;
+  private Annotation annotation;
+
+  private static final UUID REGION_ID = UUID.randomUUID();
+  private static final String SCROLL_ID = "vesuvius-scroll-1";
+  private static final int PAGE_SIZE = 2;
+
+  @BeforeEach
+  void setUp() {
+    ReflectionTestUtils.setField(commentService, "PAGE_SIZE", PAGE_SIZE);
+    ReflectionTestUtils.setField(commentService, "SYNC_OVERLAP", Duration.ofSeconds(5));
+
+    Scroll scroll = new Scroll();
+    scroll.setId(1L);
+    scroll.setScrollId(SCROLL_ID);
+
+    author = new User();
+    author.setId(1L);
+    author.setUsername("testUser");
+    author.setPermissions(UserInfo.PermissionsEnum.WRITE);
+
+    annotation = new Annotation();
+    annotation.setId(7L);
+    annotation.setRegionId(REGION_ID);
+    annotation.setScroll(scroll);
+    annotation.setAuthor(author);
+  }
+
+  @AfterEach
+  void tearDown() {
+    SecurityContextHolder.clearContext();
+  }
+
+  private static String cursor(long id) {
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(Long.toString(id).getBytes(StandardCharsets.UTF_8));
+  }
+
+  private Comment comment(long id, Instant createdAt) {
+    return new Comment(id, UUID.randomUUID(), annotation, author, "A comment on the region", createdAt);
+  }
+
+  private void authenticate() {
+    Authentication authentication = mock(Authentication.class);
+    SecurityContext securityContext = mock(SecurityContext.class);
+    when(securityContext.getAuthentication()).thenReturn(authentication);
+    when(authentication.getPrincipal()).thenReturn(new JwtUserDetails(author));
+    SecurityContextHolder.setContext(securityContext);
+  }
+
+  // Tests for getRegionComments
+
+  @Test
+  void getRegionComments_shouldReturnAllComments_andCursorAfterLast_whenNoCursorIsGiven() {
+    // Arrange
+    Instant old = Instant.now().minusSeconds(60);
+    List<Comment> comments = List.of(comment(3L, old), comment(5L, old));
+    when(readRouting.staleness()).thenReturn(Duration.ZERO);
+    when(annotationRepository.findByRegionId(REGION_ID)).thenReturn(Optional.of(annotation));
+    when(commentRepository.findAllAfter(7L, 0L, PageRequest.of(0, PAGE_SIZE)))
+            .thenReturn(new SliceImpl<>(comments, PageRequest.of(0, PAGE_SIZE), false));
+
+    // Act
+    CommentUpdateResponse response = commentService.getRegionComments(SCROLL_ID, REGION_ID, null, null);
+
+    // Assert
+    assertThat(response.getComments()).hasSize(2);
+    assertThat(response.getHasMore()).isFalse();
+    assertThat(response.getNextCursor()).isEqualTo(cursor(5L));
+    assertThat(response.getLastSyncTimestamp()).isNotNull();
+    verify(commentMapper, times(2)).commentEntityToCommentDto(any(Comment.class));
+  }
+
+  @Test
+  void getRegionComments_shouldLeaveCursorBeforeRecentComments() {
+    // Arrange
+    List<Comment> comments = List.of(comment(12L, Instant.now().minusSeconds(60)), comment(13L, Instant.now()));
+    when(readRouting.staleness()).thenReturn(Duration.ZERO);
+    when(annotationRepository.findByRegionId(REGION_ID)).thenReturn(Optional.of(annotation));
+    when(commentRepository.findAllAfter(7L, 11L, PageRequest.of(0, PAGE_SIZE)))
+            .thenReturn(new SliceImpl<>(comments, PageRequest.of(0, PAGE_SIZE), false));
+
+    // Act
+    CommentUpdateResponse response = commentService.getRegionComments(SCROLL_ID, REGION_ID, null, cursor(11L));
+
+    // Assert
+    // The recent comment is returned, but will be returned again by the next poll
+    assertThat(response.getComments()).hasSize(2);
+    assertThat(response.getNextCursor()).isEqualTo(cursor(12L));
+  }
+
+  @Test
+  void getRegionComments_shouldKeepCursor_whenThereAreNoNewComments() {
+    // Arrange
+    when(readRouting.staleness()).thenReturn(Duration.ZERO);
+    when(annotationRepository.findByRegionId(REGION_ID)).thenReturn(Optional.of(annotation));
+    when(commentRepository.findAllAfter(7L, 11L, PageRequest.of(0, PAGE_SIZE)))
+            .thenReturn(new SliceImpl<>(List.of(), PageRequest.of(0, PAGE_SIZE), false));
+
+    // Act
+    CommentUpdateResponse response = commentService.getRegionComments(SCROLL_ID, REGION_ID, null, cursor(11L));
+
+    // Assert
+    assertThat(response.getComments()).isEmpty();
+    assertThat(response.getNextCursor()).isEqualTo(cursor(11L));
+  }
+
+  @Test
+  void getRegionComments_shouldAdvanceToLastComment_whenThereAreMorePages() {
+    // Arrange
+    Instant now = Instant.now();
+    List<Comment> comments = List.of(comment(3L, now), comment(5L, now));
+    when(readRouting.staleness()).thenReturn(Duration.ZERO);
+    when(annotationRepository.findByRegionId(REGION_ID)).thenReturn(Optional.of(annotation));
+    when(commentRepository.findAllAfter(7L, 0L, PageRequest.of(0, PAGE_SIZE)))
+            .thenReturn(new SliceImpl<>(comments, PageRequest.of(0, PAGE_SIZE), true));
+
+    // Act
+    CommentUpdateResponse response = commentService.getRegionComments(SCROLL_ID, REGION_ID, null, null);
+
+    // Assert
+    assertThat(response.getHasMore()).isTrue();
+    assertThat(response.getNextCursor()).isEqualTo(cursor(5L));
+  }
+
+  @Test
+  void getRegionComments_shouldStartAfterLastCommentBeforeSince_whenNoCursorIsGiven() {
+    // Arrange
+    Date since = Date.from(Instant.now().minusSeconds(60));
+    when(readRouting.staleness()).thenReturn(Duration.ZERO);
+    when(annotationRepository.findByRegionId(REGION_ID)).thenReturn(Optional.of(annotation));
+    when(commentRepository.findLastIdCreatedUpTo(7L, since.toInstant())).thenReturn(9L);
+    when(commentRepository.findAllAfter(7L, 9L, PageRequest.of(0, PAGE_SIZE)))
+            .thenReturn(new SliceImpl<>(List.of(), PageRequest.of(0, PAGE_SIZE), false));
+
+    // Act
+    CommentUpdateResponse response = commentService.getRegionComments(SCROLL_ID, REGION_ID, since, null);
+
+    // Assert
+    assertThat(response.getNextCursor()).isEqualTo(cursor(9L));
+  }
+
+  @Test
+  void getRegionComments_shouldThrowValidationException_whenCursorIsMalformed() {
+    // Arrange
+    when(annotationRepository.findByRegionId(REGION_ID)).thenReturn(Optional.of(annotation));
+
+    // Act & Assert
+    assertThrows(ValidationException.class,
+            () -> commentService.getRegionComments(SCROLL_ID, REGION_ID, null, "not a cursor"));
+    verify(commentRepository, never()).findAllAfter(anyLong(), anyLong(), any());
+  }
+
+  @Test
+  void getRegionComments_shouldThrowResourceNotFoundException_whenRegionDoesNotBelongToScroll() {
+    // Arrange
+    when(annotationRepository.findByRegionId(REGION_ID)).thenReturn(Optional.of(annotation));
+
+    // Act & Assert
+    assertThrows(ResourceNotFoundException.class,
+            () -> commentService.getRegionComments(SCROLL_ID + "-wrong", REGION_ID, null, null));
+  }
+
+  // Tests for addComment
+
+  @Test
+  void addComment_shouldSaveCommentAndCountIt() {
+    // Arrange
+    authenticate();
+    when(annotationRepository.findByRegionId(REGION_ID)).thenReturn(Optional.of(annotation));
+    when(commentRepository.save(any(Comment.class))).thenAnswer(invocation -> invocation.getArgument(0));
+    comment.dto.Comment commentDto = new comment.dto.Comment();
+    when(commentMapper.commentEntityToCommentDto(any(Comment.class))).thenReturn(commentDto);
+
+    // Act
+    comment.dto.Comment result = commentService.addComment(SCROLL_ID, REGION_ID,
+            new CommentContent().text("I am almost certain this is a Pi."));
+
+    // Assert
+    assertThat(result).isEqualTo(commentDto);
+
+    ArgumentCaptor<Comment> commentCaptor = ArgumentCaptor.forClass(Comment.class);
+    verify(commentRepository).save(commentCaptor.capture());
+    Comment savedComment = commentCaptor.getValue();
+    assertThat(savedComment.getCommentId()).isNotNull();
+    assertThat(savedComment.getAuthor()).isEqualTo(author);
+    assertThat(savedComment.getAnnotation()).isEqualTo(annotation);
+    assertThat(savedComment.getText()).isEqualTo("I am almost certain this is a Pi.");
+
+    verify(annotationRepository).addToCommentCount(eq(7L), eq(1), any(Instant.class));
+  }
+
+  @Test
+  void addComment_shouldThrowResourceNotFoundException_whenRegionDoesNotExist() {
+    // Arrange
+    when(annotationRepository.findByRegionId(REGION_ID)).thenReturn(Optional.empty());
+
+    // Act & Assert
+    assertThrows(ResourceNotFoundException.class,
+            () -> commentService.addComment(SCROLL_ID, REGION_ID, new CommentContent().text("I am almost certain this is a Pi.")));
+    verify(commentRepository, never()).save(any());
+    verify(annotationRepository, never()).addToCommentCount(anyLong(), anyInt(), any());
+  }
+
+  // Tests for deleteComment
+
+  @Test
+  void deleteComment_shouldDeleteCommentAndUncountIt() {
+    // Arrange
+    Comment comment = comment(3L, Instant.now());
+    when(annotationRepository.findByRegionId(REGION_ID)).thenReturn(Optional.of(annotation));
+    when(commentRepository.findByCommentId(comment.getCommentId())).thenReturn(Optional.of(comment));
+
+    // Act
+    commentService.deleteComment(SCROLL_ID, REGION_ID, comment.getCommentId());
+
+    // Assert
+    verify(commentRepository).delete(comment);
+    verify(annotationRepository).addToCommentCount(eq(7L), eq(-1), any(Instant.class));
+  }
+
+  @Test
+  void deleteComment_shouldThrowResourceNotFoundException_whenCommentBelongsToAnotherRegion() {
+    // Arrange
+    Annotation otherAnnotation = new Annotation();
+    otherAnnotation.setId(8L);
+    Comment comment = comment(3L, Instant.now());
+    comment.setAnnotation(otherAnnotation);
+    when(annotationRepository.findByRegionId(REGION_ID)).thenReturn(Optional.of(annotation));
+    when(commentRepository.findByCommentId(comment.getCommentId())).thenReturn(Optional.of(comment));
+
+    // Act & Assert
+    assertThrows(ResourceNotFoundException.class,
+            () -> commentService.deleteComment(SCROLL_ID, REGION_ID, comment.getCommentId()));
+    verify(commentRepository, never()).delete(any());
+    verify(annotationRepository, never()).addToCommentCount(anyLong(), anyInt(), any());
+  }
+}
@@ -1,34 +1,36 @@
 package com.mf.HerculaneumTranscriptor.service;
 
-import com.cloudinary.Cloudinary;
 import com.mf.HerculaneumTranscriptor.domain.Scroll;
 import com.mf.HerculaneumTranscriptor.domain.mapper.ScrollMapper;
-import com.mf.HerculaneumTranscriptor.exception.ResourceAlreadyExistsException;
 import com.mf.HerculaneumTranscriptor.exception.ResourceNotFoundException;
+import com.mf.HerculaneumTranscriptor.repository.AnnotationRepository;
+import com.mf.HerculaneumTranscriptor.repository.CommentRepository;
 import com.mf.HerculaneumTranscriptor.repository.ScrollRepository;
+import com.mf.HerculaneumTranscriptor.repository.VoteRepository;
 import com.mf.HerculaneumTranscriptor.service.impl.ScrollServiceImpl;
-import jakarta.servlet.http.HttpServletRequest;
+import com.mf.HerculaneumTranscriptor.storage.ScrollImageCache;
+import com.mf.HerculaneumTranscriptor.storage.ScrollImageStorage;
+import com.mf.HerculaneumTranscriptor.storage.StorageOutbox;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.*;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.io.ByteArrayResource;
 import org.springframework.core.io.Resource;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.mock.web.MockMultipartFile;
-import org.springframework.test.util.ReflectionTestUtils;
-import org.springframework.web.context.request.RequestContextHolder;
-import org.springframework.web.context.request.ServletRequestAttributes;
 import scroll.dto.NewScroll;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URI;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.nio.ByteBuffer;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
@@ -43,18 +45,32 @@ public class ScrollServiceImplTest {
   @Mock
   private ScrollRepository scrollRepository;
 
+  @Mock
+  private AnnotationRepository annotationRepository;
+
+  @Mock
+  private VoteRepository voteRepository;
+
+  @Mock
+  private CommentRepository commentRepository;
+
   @Mock
   private ScrollMapper scrollMapper;
 
   @Mock
-  private Cloudinary cloudinary;
+  private ScrollImageStorage scrollImageStorage;
+
+  @Mock
+  private StorageOutbox storageOutbox;
+
+  @Mock
+  private ScrollImageCache scrollImageCache;
 
   // Reusable test data objects
   private Scroll scroll;
   private scroll.dto.Scroll scrollDto;
   private NewScroll newScrollDto;
   private MockMultipartFile mockImageFile;
-  private static final Path TEST_STORAGE_LOCATION = Paths.get("test-uploads");
 
   private static final String SCROLL_ID = "vesuvius-scroll-1";
   private static final String DISPLAY_NAME = "Vesuvius Challenge Scroll 1";
@@ -62,9 +78,6 @@ public class ScrollServiceImplTest {
 
   @BeforeEach
   void setUp() {
-    ReflectionTestUtils.setField(scrollService, "storageLocation", TEST_STORAGE_LOCATION);
-    ReflectionTestUtils.setField(scrollService, "useCloudStorage", false);
-
     // Create entity
     scroll = new Scroll();
     scroll.setId(1L);
@@ -81,12 +94,15 @@ public class ScrollServiceImplTest {
     newScrollDto.setScrollId(SCROLL_ID);
     newScrollDto.setDisplayName(DISPLAY_NAME);
 
-    // Create a mock file for upload tests
+    // Create a mock file for upload tests, holding the headers of a 640x480 8-bit PNG image
+    ByteBuffer pngHeader = ByteBuffer.allocate(33)
+            .put(new byte[]{(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'})
+            .putInt(13).put("IHDR".getBytes()).putInt(640).putInt(480).put((byte) 8);
     mockImageFile = new MockMultipartFile(
             "inkImage",
             "vesuvius-scroll-1.png",
             "image/png",
-            "dummy image content".getBytes()
+            pngHeader.array()
     );
   }
 
@@ -127,35 +143,48 @@ public class ScrollServiceImplTest {
   @Test
   void createScroll_shouldCreateAndReturnScroll_whenIdIsAvailable() throws IOException {
     // Arrange
-    when(scrollRepository.existsByScrollId(SCROLL_ID)).thenReturn(false);
     when(scrollMapper.newScrollDtoToScrollEntity(newScrollDto)).thenReturn(scroll);
-    when(scrollRepository.save(scroll)).thenReturn(scroll);
+    when(scrollRepository.saveAndFlush(scroll)).thenReturn(scroll);
     when(scrollMapper.scrollEntityToScrollDto(scroll)).thenReturn(scrollDto);
+    when(scrollImageStorage.locate(SCROLL_ID, "png")).thenReturn(SCROLL_ID + ".png");
+    // Staging reads the whole image, which is when its metadata is extracted
+    doAnswer(invocation -> invocation.<InputStream>getArgument(1).transferTo(OutputStream.nullOutputStream()))
+            .when(storageOutbox).enqueuePut(eq(SCROLL_ID + ".png"), any(InputStream.class));
 
-    // We need to mock static methods in `java.nio.file.Files`
-    try (MockedStatic<Files> mockedFiles = Mockito.mockStatic(Files.class)) {
-      // Act
-      scroll.dto.Scroll result = scrollService.createScroll(newScrollDto, mockImageFile);
-
-      // Assert
-      assertThat(result).isEqualTo(scrollDto);
-      verify(scrollRepository, times(1)).save(scroll);
+    // Act
+    scroll.dto.Scroll result = scrollService.createScroll(newScrollDto, mockImageFile).join();
 
-      // Verify that the file copy operation was attempted
-      mockedFiles.verify(() -> Files.copy(any(InputStream.class), any(Path.class), any()));
-    }
+    // Assert
+    assertThat(result).isEqualTo(scrollDto);
+    assertThat(scroll.getImagePath()).isEqualTo(SCROLL_ID + ".png");
+    verify(scrollRepository, times(1)).saveAndFlush(scroll);
+    // The scroll ID is only checked by the unique constraint of the insert
+    verify(scrollRepository, never()).existsByScrollId(any());
+
+    // The image is only recorded for storage, it is not uploaded on the request thread
+    verify(storageOutbox, times(1)).enqueuePut(eq(SCROLL_ID + ".png"), any(InputStream.class));
+    verify(scrollImageStorage, never()).put(any(), any());
+
+    // The image metadata is read from its headers
+    assertThat(scroll.getImageMetadata().getWidth()).isEqualTo(640);
+    assertThat(scroll.getImageMetadata().getHeight()).isEqualTo(480);
+    assertThat(scroll.getImageMetadata().getBitDepth()).isEqualTo(8);
   }
 
   @Test
-  void createScroll_shouldThrowResourceAlreadyExistsException_whenIdIsTaken() {
+  void createScroll_shouldThrowDataIntegrityViolationException_whenIdIsTaken() {
     // Arrange
-    when(scrollRepository.existsByScrollId(SCROLL_ID)).thenReturn(true);
+    when(scrollMapper.newScrollDtoToScrollEntity(newScrollDto)).thenReturn(scroll);
+    when(scrollImageStorage.locate(SCROLL_ID, "png")).thenReturn(SCROLL_ID + ".png");
+    // The unique constraint on the scroll ID rejects the insert
+    when(scrollRepository.saveAndFlush(scroll)).thenThrow(new DataIntegrityViolationException(Scroll.SCROLL_ID_CONSTRAINT));
 
     // Act & Assert
-    assertThrows(ResourceAlreadyExistsException.class,
+    // The exception rolls back the transaction, which discards the staged image
+    assertThrows(DataIntegrityViolationException.class,
             () -> scrollService.createScroll(newScrollDto, mockImageFile));
 
-    verify(scrollRepository, never()).save(any());
+    verify(scrollMapper, never()).scrollEntityToScrollDto(any());
   }
 
   // Tests for deleteScroll
@@ -166,19 +195,18 @@ public class ScrollServiceImplTest {
     when(scrollRepository.findByScrollId(SCROLL_ID)).thenReturn(Optional.of(scroll));
     doNothing().when(scrollRepository).delete(scroll);
 
-    // Mock static Files.delete method
-    try (MockedStatic<Files> mockedFiles = Mockito.mockStatic(Files.class)) {
-      mockedFiles.when(() -> Files.delete(any(Path.class))).thenAnswer(invocation -> null);
-      mockedFiles.when(() -> Files.exists(any(Path.class))).thenAnswer(invocation -> true);
-
-      // Act
-      scrollService.deleteScroll(SCROLL_ID);
+    // Act
+    scrollService.deleteScroll(SCROLL_ID).join();
 
-      // Assert
-      verify(scrollRepository, times(1)).delete(scroll);
-      Path expectedPath = TEST_STORAGE_LOCATION.resolve(scroll.getImagePath()).normalize();
-      mockedFiles.verify(() -> Files.delete(eq(expectedPath)));
-    }
+    // Assert
+    // Votes and comments, then regions, then the scroll, as each references the next
+    InOrder deletions = inOrder(voteRepository, commentRepository, annotationRepository, scrollRepository);
+    deletions.verify(voteRepository).deleteByScrollId(scroll.getId());
+    deletions.verify(commentRepository).deleteByScrollId(scroll.getId());
+    deletions.verify(annotationRepository).deleteByScrollId(scroll.getId());
+    deletions.verify(scrollRepository).delete(scroll);
+    verify(storageOutbox, times(1)).enqueueDelete(SCROLL_ID + ".png");
+    verify(scrollImageStorage, never()).delete(any());
   }
 
   @Test
@@ -189,6 +217,8 @@ public class ScrollServiceImplTest {
     // Act & Assert
     assertThrows(ResourceNotFoundException.class, () -> scrollService.deleteScroll(SCROLL_ID));
     verify(scrollRepository, never()).delete(any());
+    verifyNoInteractions(annotationRepository, voteRepository, commentRepository);
+    verifyNoInteractions(storageOutbox);
   }
 
   // Tests for getScrollImage
@@ -197,19 +227,31 @@ public class ScrollServiceImplTest {
   void getScrollImage_shouldReturnResource_whenScrollAndFileExist() throws IOException {
     // Arrange
     when(scrollRepository.findByScrollId(SCROLL_ID)).thenReturn(Optional.of(scroll));
+    when(scrollImageStorage.open(SCROLL_ID + ".png"))
+            .thenReturn(CompletableFuture.completedFuture(new ByteArrayResource("dummy image content".getBytes())));
 
-    // We mock the static getResourceAsStream method
-    try (MockedStatic<Files> mockedFiles = Mockito.mockStatic(Files.class)) {
-      InputStream mockInputStream = mock(InputStream.class);
-      mockedFiles.when(() -> Files.newInputStream(any(Path.class))).thenReturn(mockInputStream);
+    // Act
+    Resource result = scrollService.getScrollImage(SCROLL_ID).join();
 
-      // Act
-      Resource result = scrollService.getScrollImage(SCROLL_ID);
+    // Assert
+    assertThat(result).isNotNull();
+    assertThat(result.getContentAsByteArray()).isEqualTo("dummy image content".getBytes());
+  }
 
-      // Assert
-      assertThat(result).isNotNull();
-      assertThat(result.getInputStream()).isEqualTo(mockInputStream);
-    }
+  @Test
+  void getScrollImage_shouldServeCachedCopy_whenProxyIsEnabled() throws IOException {
+    // Arrange
+    when(scrollRepository.findByScrollId(SCROLL_ID)).thenReturn(Optional.of(scroll));
+    when(scrollImageCache.isEnabled()).thenReturn(true);
+    when(scrollImageCache.get(SCROLL_ID, SCROLL_ID + ".png"))
+            .thenReturn(CompletableFuture.completedFuture(new ByteArrayResource("dummy image content".getBytes())));
+
+    // Act
+    Resource result = scrollService.getScrollImage(SCROLL_ID).join();
+
+    // Assert
+    assertThat(result.getContentAsByteArray()).isEqualTo("dummy image content".getBytes());
+    verify(scrollImageStorage, never()).open(any());
   }
 
   @Test
@@ -224,51 +266,17 @@ public class ScrollServiceImplTest {
   // Tests for getScrollImageURL
 
   @Test
-  void getScrollImageUrl_shouldReturnSignedUrl_whenImagePathIsCloudUrl() throws Exception {
+  void getScrollImageUrl_shouldReturnStorageUrl_whenScrollExists() {
     // Arrange
-    String expectedSignedUrl = "https://cloudinary.com/signed/url/for/cloud-scroll-1";
-    scroll.setImagePath("https://res.cloudinary.com/your-cloud/image/upload/s--TOKEN--/v1678886000/scrolls/vesuvius-scroll-1.png");
-
-    // Mock the repository to return the scroll with a cloud URL
+    URI expectedUri = URI.create("https://cloudinary.com/signed/url/for/vesuvius-scroll-1");
     when(scrollRepository.findByScrollId(SCROLL_ID)).thenReturn(Optional.of(scroll));
-
-    // Mock the Cloudinary SDK calls
-    when(cloudinary.privateDownload(any(), any(), anyMap())).thenReturn(expectedSignedUrl);
-
+    when(scrollImageStorage.presign(SCROLL_ID, SCROLL_ID + ".png")).thenReturn(CompletableFuture.completedFuture(expectedUri));
 
     // Act
-    URI resultUri = scrollService.getScrollImageURL(SCROLL_ID);
+    URI resultUri = scrollService.getScrollImageURL(SCROLL_ID).join();
 
     // Assert
-    assertThat(resultUri).isNotNull();
-    assertThat(resultUri.toString()).isEqualTo(expectedSignedUrl);
-  }
-
-  @Test
-  void getScrollImageUrl_shouldReturnLocalDownloadUrl_whenImagePathIsLocal() {
-    // Arrange
-    // Mock the repository to return the scroll with a local path
-    when(scrollRepository.findByScrollId(SCROLL_ID)).thenReturn(Optional.of(scroll));
-
-    // IMPORTANT: ServletUriComponentsBuilder needs a mock HTTP request to get the context path.
-    // We need to mock the static methods of RequestContextHolder.
-    HttpServletRequest mockRequest = mock(HttpServletRequest.class);
-    when(mockRequest.getContextPath()).thenReturn(""); // For "http://localhost"
-    when(mockRequest.getScheme()).thenReturn("http");
-    when(mockRequest.getServerName()).thenReturn("localhost");
-    when(mockRequest.getServerPort()).thenReturn(8080);
-    RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(mockRequest));
-
-
-    // Act
-    URI resultUri = scrollService.getScrollImageURL(SCROLL_ID);
-
-    // Assert
-    assertThat(resultUri).isNotNull();
-    assertThat(resultUri.toString()).isEqualTo("http://localhost:8080/scrolls/" + SCROLL_ID+ "/local-download");
-
-    // Clean up the static mock
-    RequestContextHolder.resetRequestAttributes();
+    assertThat(resultUri).isEqualTo(expectedUri);
   }
 
   @Test
@@ -292,8 +300,7 @@ public class ScrollServiceImplTest {
     updateDto.setDisplayName(newDisplayName);
 
     when(scrollRepository.findByScrollId(SCROLL_ID)).thenReturn(Optional.of(scroll));
-    when(scrollRepository.existsByScrollId(newScrollId)).thenReturn(false);
-    when(scrollRepository.save(any(Scroll.class))).thenAnswer(invocation -> invocation.getArgument(0));
+    when(scrollRepository.saveAndFlush(any(Scroll.class))).thenAnswer(invocation -> invocation.getArgument(0));
 
     // Mock the final DTO mapping
     scroll.dto.Scroll updatedDto = new scroll.dto.Scroll();
@@ -310,7 +317,7 @@ public class ScrollServiceImplTest {
 
     // Use an ArgumentCaptor to inspect what was saved to the database.
     ArgumentCaptor<Scroll> scrollCaptor = ArgumentCaptor.forClass(Scroll.class);
-    verify(scrollRepository).save(scrollCaptor.capture());
+    verify(scrollRepository).saveAndFlush(scrollCaptor.capture());
     Scroll savedScroll = scrollCaptor.getValue();
 
     // Check that the fields were correctly updated on the entity.
@@ -331,11 +338,11 @@ public class ScrollServiceImplTest {
             () -> scrollService.updateScroll(SCROLL_ID, updateDto));
 
     // Verify that no save operation was ever attempted.
-    verify(scrollRepository, never()).save(any());
+    verify(scrollRepository, never()).saveAndFlush(any());
   }
 
   @Test
-  void updateScroll_shouldThrowResourceAlreadyExistsException_whenNewScrollIdIsTaken() {
+  void updateScroll_shouldThrowDataIntegrityViolationException_whenNewScrollIdIsTaken() {
     // Arrange
     NewScroll updateDto = new NewScroll();
     String conflictingId = "already-taken-scroll-id";
@@ -345,15 +352,14 @@ public class ScrollServiceImplTest {
     // Mock the repository finding the original scroll.
     when(scrollRepository.findByScrollId(SCROLL_ID)).thenReturn(Optional.of(scroll));
 
-    // Mock the existence check for the NEW ID to return true.
-    when(scrollRepository.existsByScrollId(conflictingId)).thenReturn(true);
+    // Mock the unique constraint rejecting the NEW ID.
+    when(scrollRepository.saveAndFlush(any(Scroll.class))).thenThrow(new DataIntegrityViolationException(Scroll.SCROLL_ID_CONSTRAINT));
 
     // Act & Assert
-    assertThrows(ResourceAlreadyExistsException.class,
+    assertThrows(DataIntegrityViolationException.class,
             () -> scrollService.updateScroll(SCROLL_ID, updateDto));
 
-    // Verify that no save operation was ever attempted.
-    verify(scrollRepository, never()).save(any());
+    verify(scrollMapper, never()).scrollEntityToScrollDto(any());
   }
 
   @Test
@@ -365,13 +371,13 @@ public class ScrollServiceImplTest {
     updateDto.setDisplayName("A New Display Name");
 
     when(scrollRepository.findByScrollId(SCROLL_ID)).thenReturn(Optional.of(scroll));
-    when(scrollRepository.save(any(Scroll.class))).thenAnswer(invocation -> invocation.getArgument(0));
+    when(scrollRepository.saveAndFlush(any(Scroll.class))).thenAnswer(invocation -> invocation.getArgument(0));
     when(scrollMapper.scrollEntityToScrollDto(any(Scroll.class))).thenReturn(new scroll.dto.Scroll());
 
     // Act
     scrollService.updateScroll(SCROLL_ID, updateDto);
 
     // Assert
-    verify(scrollRepository, times(1)).save(any(Scroll.class));
+    verify(scrollRepository, times(1)).saveAndFlush(any(Scroll.class));
   }
 }
@@ -1,35 +1,50 @@
 package com.mf.HerculaneumTranscriptor.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.mf.HerculaneumTranscriptor.domain.User;
 import com.mf.HerculaneumTranscriptor.domain.mapper.UserMapper;
 import com.mf.HerculaneumTranscriptor.dto.AuthenticationResponse;
+import com.mf.HerculaneumTranscriptor.dto.UserListing;
 import com.mf.HerculaneumTranscriptor.exception.ResourceNotFoundException;
-import com.mf.HerculaneumTranscriptor.exception.ResourceAlreadyExistsException;
 import com.mf.HerculaneumTranscriptor.repository.UserRepository;
+import com.mf.HerculaneumTranscriptor.search.UserSearchIndex;
 import com.mf.HerculaneumTranscriptor.security.JwtUtil;
 import com.mf.HerculaneumTranscriptor.service.impl.UserServiceImpl;
+import jakarta.validation.Validation;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.hibernate.exception.ConstraintViolationException;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.http.MediaType;
 import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.test.util.ReflectionTestUtils;
 import user.dto.*;
 
+import javax.validation.ValidationException;
+import java.sql.SQLException;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -46,6 +61,10 @@ public class UserServiceImplTest {
   private PasswordEncoder passwordEncoder;
   @Mock
   private JwtUtil jwtUtil;
+  @Mock
+  private UserSearchIndex userSearchIndex;
+  @Mock
+  private PlatformTransactionManager transactionManager;
 
   // Reusable test data objects
   private User user;
@@ -63,10 +82,20 @@ public class UserServiceImplTest {
   private static final String UNK_USERNAME = "UnknownUser";
 
   private static final Integer pageSize = 64;
+  private static final Integer searchLimit = 20;
+  private static final Integer importMaxRows = 5;
+
+  private final ExecutorService passwordHashingExecutor = Executors.newFixedThreadPool(2);
 
   @BeforeEach
   void setUp() {
     ReflectionTestUtils.setField(userService, "PAGE_SIZE", pageSize);
+    ReflectionTestUtils.setField(userService, "SEARCH_LIMIT", searchLimit);
+    ReflectionTestUtils.setField(userService, "IMPORT_MAX_ROWS", importMaxRows);
+    // Bulk imports need working collaborators to hash passwords, validate and parse rows
+    ReflectionTestUtils.setField(userService, "passwordHashingExecutor", passwordHashingExecutor);
+    ReflectionTestUtils.setField(userService, "validator", Validation.buildDefaultValidatorFactory().getValidator());
+    ReflectionTestUtils.setField(userService, "objectMapper", new ObjectMapper());
 
     // Create user entity
     user = new User();
@@ -115,6 +144,27 @@ public class UserServiceImplTest {
 
     // Assert
     assertThat(response.getUserInfo()).isEqualTo(userInfo);
+    // The stored hash is up to date, so it is left as is
+    verify(userRepository, never()).save(any());
+  }
+
+  @Test
+  void login_shouldRehashPassword_whenStoredHashIsOutdated() {
+    // Arrange
+    when(jwtUtil.generateToken(any())).thenReturn("mock.jwt.token");
+    when(userRepository.findByUsername(USERNAME)).thenReturn(Optional.of(user));
+    when(passwordEncoder.matches(PASSWORD, ENCODED_PASSWORD)).thenReturn(true);
+    // The stored hash was made with a lower cost or another algorithm
+    when(passwordEncoder.upgradeEncoding(ENCODED_PASSWORD)).thenReturn(true);
+    when(passwordEncoder.encode(PASSWORD)).thenReturn("{bcrypt}upgradedHash");
+
+    // Act
+    userService.login(userLoginInfo);
+
+    // Assert
+    ArgumentCaptor<User> userCaptor = ArgumentCaptor.forClass(User.class);
+    verify(userRepository, times(1)).save(userCaptor.capture());
+    assertThat(userCaptor.getValue().getPasswordHash()).isEqualTo("{bcrypt}upgradedHash");
   }
 
   @Test
@@ -149,13 +199,10 @@ public class UserServiceImplTest {
     // Arrange
     when(jwtUtil.generateToken(any())).thenReturn("mock.jwt.token");
 
-    // When checking if user exists, say no.
-    when(userRepository.existsByUsername(USERNAME)).thenReturn(false);
-
     // Mocking non-business logic methods
     when(userMapper.userRegisterInfoToUser(any(UserRegisterInfo.class))).thenReturn(user);
     when(passwordEncoder.encode(PASSWORD)).thenReturn(ENCODED_PASSWORD);
-    when(userRepository.save(any(User.class))).thenReturn(user);
+    when(userRepository.saveAndFlush(any(User.class))).thenReturn(user);
     when(userMapper.userToUserInfo(any(User.class))).thenReturn(userInfo);
 
     // Act
@@ -164,19 +211,26 @@ public class UserServiceImplTest {
 
     // Assert
     assertThat(createdUser).isEqualTo(userInfo);
+    // The new user can be found by searches right away
+    verify(userSearchIndex, times(1)).put(user);
+    // The username is only checked by the unique constraint of the insert
+    verify(userRepository, never()).existsByUsername(any());
   }
 
   @Test
-  void registerNewUser_shouldThrowUserAlreadyExistsException_whenUsernameIsTaken() {
+  void registerNewUser_shouldThrowDataIntegrityViolationException_whenUsernameIsTaken() {
     // Arrange
-    // When checking if the user exists, say yes.
-    when(userRepository.existsByUsername(USERNAME)).thenReturn(true);
+    when(userMapper.userRegisterInfoToUser(any(UserRegisterInfo.class))).thenReturn(user);
+    when(passwordEncoder.encode(PASSWORD)).thenReturn(ENCODED_PASSWORD);
+    // The unique constraint on the username rejects the insert
+    when(userRepository.saveAndFlush(any(User.class))).thenThrow(new DataIntegrityViolationException(User.USERNAME_CONSTRAINT));
 
     // Act & Assert that the expected exception is thrown
-    assertThrows(ResourceAlreadyExistsException.class, () -> userService.registerNewUser(userRegisterInfo));
+    assertThrows(DataIntegrityViolationException.class, () -> userService.registerNewUser(userRegisterInfo));
 
-    // Verify that the critical method "save" was never called
-    verify(userRepository, never()).save(any());
+    // Verify that the user is not searchable nor logged in
+    verify(userSearchIndex, never()).put(any());
+    verify(jwtUtil, never()).generateToken(any());
   }
 
   // Tests for findUserByUsername
@@ -219,6 +273,7 @@ public class UserServiceImplTest {
     // Assert
     // Verify that the delete method was called exactly once with the correct user object
     verify(userRepository, times(1)).delete(user);
+    verify(userSearchIndex, times(1)).remove(user.getId());
   }
 
   @Test
@@ -255,7 +310,6 @@ public class UserServiceImplTest {
     mappedUpdateUser.setContact(newBasicInfo.getContact());
 
     when(userRepository.findByUsername(USERNAME)).thenReturn(Optional.of(user));
-    when(userRepository.existsByUsername("NewJohnDoe")).thenReturn(false);
 
     // Act
     userService.updateUserProfile(USERNAME, updateInfo);
@@ -263,7 +317,7 @@ public class UserServiceImplTest {
     // Assert
     // Use ArgumentCaptor to capture the object passed to the save method
     ArgumentCaptor<User> userCaptor = ArgumentCaptor.forClass(User.class);
-    verify(userRepository).save(userCaptor.capture());
+    verify(userRepository).saveAndFlush(userCaptor.capture());
     User savedUser = userCaptor.getValue();
 
     // Verify that personal info was updated but the rest of the user data
@@ -289,7 +343,7 @@ public class UserServiceImplTest {
 
     // Assert
     ArgumentCaptor<User> userCaptor = ArgumentCaptor.forClass(User.class);
-    verify(userRepository).save(userCaptor.capture());
+    verify(userRepository).saveAndFlush(userCaptor.capture());
     User savedUser = userCaptor.getValue();
 
     // Verify that password was updated but personal info was NOT
@@ -298,7 +352,7 @@ public class UserServiceImplTest {
   }
 
   @Test
-  void updateUserProfile_shouldThrowUserAlreadyExistsException_whenNewUsernameIsTaken() {
+  void updateUserProfile_shouldThrowDataIntegrityViolationException_whenNewUsernameIsTaken() {
     // Arrange
     ChangeUserInfo updateInfo = new ChangeUserInfo();
     BasicUserInfo newBasicInfo = new BasicUserInfo();
@@ -306,14 +360,14 @@ public class UserServiceImplTest {
     updateInfo.setBasicInfo(newBasicInfo);
 
     when(userRepository.findByUsername(USERNAME)).thenReturn(Optional.of(user));
-    // Simulate that the desired new username is already taken
-    when(userRepository.existsByUsername("ExistingUser")).thenReturn(true);
+    // Simulate that the unique constraint rejects the desired new username
+    when(userRepository.saveAndFlush(any(User.class))).thenThrow(new DataIntegrityViolationException(User.USERNAME_CONSTRAINT));
 
     // Act & Assert
-    assertThrows(ResourceAlreadyExistsException.class, () -> userService.updateUserProfile(USERNAME, updateInfo));
+    assertThrows(DataIntegrityViolationException.class, () -> userService.updateUserProfile(USERNAME, updateInfo));
 
-    // Verify that save was never called
-    verify(userRepository, never()).save(any());
+    // Verify that the search index was not updated
+    verify(userSearchIndex, never()).put(any());
   }
 
 
@@ -339,6 +393,24 @@ public class UserServiceImplTest {
     assertThat(savedUser.getPermissions()).isEqualTo(UserInfo.PermissionsEnum.ADMIN);
   }
 
+  // Tests for searchUsers
+
+  @Test
+  void searchUsers_shouldQueryIndexWithSearchLimit() {
+    // Arrange
+    when(userSearchIndex.search("john", searchLimit)).thenReturn(List.of(userInfo));
+
+    // Act
+    List<UserInfo> result = userService.searchUsers("john");
+
+    // Assert
+    assertThat(result.size()).isEqualTo(1);
+    assertThat(result.getFirst()).isEqualTo(userInfo);
+
+    // Searches never reach the database
+    verifyNoInteractions(userRepository);
+  }
+
   @Test
   void changeUserPermissions_shouldThrowResourceNotFoundException_whenUserDoesNotExist() {
     // Arrange
@@ -361,27 +433,28 @@ public class UserServiceImplTest {
     int index = pageSize; // We want to test a non-zero index
     int expectedPageNumber = pageSize/index; // 64 / 64 = 1
 
-    // Mock Page object that the repository will return.
-    // This simulates the database returning a page of User entities.
-    Page<User> userPage = new PageImpl<>(List.of(user));
+    // Mock Slice object that the repository will return.
+    // This simulates the database returning a slice of User entities.
+    Slice<User> userSlice = new SliceImpl<>(List.of(user));
 
     // Use an ArgumentCaptor to capture the Pageable object that is passed
     // to the repository. This is how we will verify the page number calculation.
     ArgumentCaptor<Pageable> pageableCaptor = ArgumentCaptor.forClass(Pageable.class);
 
-    // When findAll is called with ANY Pageable, return our mock Page object.
-    when(userRepository.findAll(pageableCaptor.capture())).thenReturn(userPage);
+    // When the query is called with ANY Pageable, return our mock Slice object.
+    when(userRepository.findAllByOrderByUsernameAscIdAsc(pageableCaptor.capture())).thenReturn(userSlice);
 
     when(userMapper.userToUserInfo(user)).thenReturn(userInfo);
 
     // Act
-    List<UserInfo> result = userService.findAllUsers(index);
+    UserListing result = userService.findAllUsers(index, null);
 
     // Assert
     //Verify the result is not empty and contains the expected DTO.
-    assertThat(result).isNotNull();
-    assertThat(result.size()).isEqualTo(1);
-    assertThat(result.getFirst()).isEqualTo(userInfo);
+    assertThat(result.getUsers()).isNotNull();
+    assertThat(result.getUsers().size()).isEqualTo(1);
+    assertThat(result.getUsers().getFirst()).isEqualTo(userInfo);
+    assertThat(result.getNextCursor()).isNull();
 
     // Verify the captured Pageable object to ensure our logic was correct.
     Pageable capturedPageable = pageableCaptor.getValue();
@@ -389,7 +462,7 @@ public class UserServiceImplTest {
     assertThat(capturedPageable.getPageSize()).isEqualTo(pageSize);
 
     // Verify that the repository and mapper were called.
-    verify(userRepository, times(1)).findAll(any(Pageable.class));
+    verify(userRepository, times(1)).findAllByOrderByUsernameAscIdAsc(any(Pageable.class));
     verify(userMapper, times(1)).userToUserInfo(user);
   }
 
@@ -398,18 +471,18 @@ public class UserServiceImplTest {
     // Arrange
     int expectedPageNumber = 0; // The default
 
-    Page<User> userPage = new PageImpl<>(List.of(user));
+    Slice<User> userSlice = new SliceImpl<>(List.of(user));
     ArgumentCaptor<Pageable> pageableCaptor = ArgumentCaptor.forClass(Pageable.class);
-    when(userRepository.findAll(pageableCaptor.capture())).thenReturn(userPage);
+    when(userRepository.findAllByOrderByUsernameAscIdAsc(pageableCaptor.capture())).thenReturn(userSlice);
     when(userMapper.userToUserInfo(user)).thenReturn(userInfo);
 
     // Act
-    // Call the method with a null index, as the controller would.
-    List<UserInfo> result = userService.findAllUsers(null);
+    // Call the method with a null index and cursor, as the controller would.
+    UserListing result = userService.findAllUsers(null, null);
 
     // Assert
-    assertThat(result).isNotNull();
-    assertThat(result.size()).isEqualTo(1);
+    assertThat(result.getUsers()).isNotNull();
+    assertThat(result.getUsers().size()).isEqualTo(1);
 
     // Verify that the page number correctly defaulted to 0.
     Pageable capturedPageable = pageableCaptor.getValue();
@@ -418,21 +491,196 @@ public class UserServiceImplTest {
   }
 
   @Test
-  void findAllUsers_shouldReturnEmptyList_whenRepositoryReturnsEmptyPage() {
+  void findAllUsers_shouldReturnEmptyList_whenRepositoryReturnsEmptySlice() {
     // Arrange
     // Simulate the database returning no users for the requested page.
-    Page<User> emptyPage = new PageImpl<>(Collections.emptyList());
-    when(userRepository.findAll(any(Pageable.class))).thenReturn(emptyPage);
+    Slice<User> emptySlice = new SliceImpl<>(Collections.emptyList());
+    when(userRepository.findAllByOrderByUsernameAscIdAsc(any(Pageable.class))).thenReturn(emptySlice);
 
     // Act
-    List<UserInfo> result = userService.findAllUsers(0);
+    UserListing result = userService.findAllUsers(0, null);
 
     // Assert
-    // Verify that the final result is an empty list.
-    assertThat(result).isNotNull();
-    assertThat(result.isEmpty()).isTrue();
+    // Verify that the final result is an empty list with nothing to continue from.
+    assertThat(result.getUsers()).isNotNull();
+    assertThat(result.getUsers().isEmpty()).isTrue();
+    assertThat(result.getNextCursor()).isNull();
 
     // Verify that the mapper was never called, because there were no users to map.
     verify(userMapper, never()).userToUserInfo(any());
   }
+
+  @Test
+  void findAllUsers_shouldContinueAfterLastUser_whenCalledWithReturnedCursor() {
+    // Arrange
+    // The first slice has more users after it, so a cursor pointing at its last user is returned
+    Slice<User> firstSlice = new SliceImpl<>(List.of(user), PageRequest.of(0, pageSize), true);
+    when(userRepository.findAllByOrderByUsernameAscIdAsc(any(Pageable.class))).thenReturn(firstSlice);
+    when(userRepository.findAllAfter(eq(USERNAME), eq(1L), any(Pageable.class)))
+            .thenReturn(new SliceImpl<>(Collections.emptyList()));
+    when(userMapper.userToUserInfo(user)).thenReturn(userInfo);
+
+    // Act
+    UserListing first = userService.findAllUsers(null, null);
+    UserListing next = userService.findAllUsers(null, first.getNextCursor());
+
+    // Assert
+    assertThat(first.getNextCursor()).isNotNull();
+    assertThat(next.getUsers().isEmpty()).isTrue();
+    assertThat(next.getNextCursor()).isNull();
+
+    // The second slice is found by seeking after the (username, id) key, not by offset
+    ArgumentCaptor<Pageable> pageableCaptor = ArgumentCaptor.forClass(Pageable.class);
+    verify(userRepository, times(1)).findAllAfter(eq(USERNAME), eq(1L), pageableCaptor.capture());
+    assertThat(pageableCaptor.getValue().getPageNumber()).isEqualTo(0);
+    assertThat(pageableCaptor.getValue().getPageSize()).isEqualTo(pageSize);
+  }
+
+  @Test
+  void findAllUsers_shouldThrowValidationException_whenCursorIsMalformed() {
+    // Act & Assert
+    assertThrows(ValidationException.class, () -> userService.findAllUsers(null, "not a cursor"));
+
+    verify(userRepository, never()).findAllAfter(any(), any(), any());
+  }
+
+  // Tests for importUsers
+
+  private static String ndjsonRow(String username, String password) {
+    return "{\"basic_info\": {\"username\": \"" + username + "\", \"firstName\": \"First\", " +
+            "\"lastName\": \"Last\", \"contact\": \"" + username + "@example.com\"}, " +
+            "\"password\": \"" + password + "\"}";
+  }
+
+  @Test
+  void importUsers_shouldCreateOnlyValidAvailableRows_andReportEveryRow() {
+    // Arrange
+    String content = String.join("\n",
+            ndjsonRow("newUser", PASSWORD),
+            "{not json",
+            ndjsonRow("newUser", PASSWORD),
+            ndjsonRow(USERNAME, PASSWORD),
+            ndjsonRow("shortPassword", "12"));
+
+    when(userRepository.findUsernamesIn(any())).thenReturn(Set.of(USERNAME));
+    when(userMapper.userRegisterInfoToUser(any(UserRegisterInfo.class))).thenAnswer(invocation -> {
+      User mapped = new User();
+      mapped.setUsername(invocation.<UserRegisterInfo>getArgument(0).getBasicInfo().getUsername());
+      return mapped;
+    });
+    when(passwordEncoder.encode(PASSWORD)).thenReturn(ENCODED_PASSWORD);
+    when(userRepository.saveAll(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+    // Act
+    List<UserImportResult> results = userService.importUsers(content, MediaType.valueOf("application/x-ndjson"));
+
+    // Assert
+    assertThat(results.stream().map(UserImportResult::getStatus).toList()).isEqualTo(List.of(
+            UserImportResult.StatusEnum.CREATED,
+            UserImportResult.StatusEnum.INVALID,
+            UserImportResult.StatusEnum.CONFLICT,
+            UserImportResult.StatusEnum.CONFLICT,
+            UserImportResult.StatusEnum.INVALID));
+    assertThat(results.stream().map(UserImportResult::getRow).toList()).isEqualTo(List.of(1, 2, 3, 4, 5));
+    assertThat(results.get(4).getMessage()).contains("password");
+
+    // Taken usernames are checked with a single query
+    verify(userRepository, times(1)).findUsernamesIn(Set.of("newUser", USERNAME));
+    verify(userRepository, never()).existsByUsername(any());
+
+    // Only the first row is inserted, hashed and with default permissions
+    ArgumentCaptor<List<User>> usersCaptor = ArgumentCaptor.captor();
+    verify(userRepository, times(1)).saveAll(usersCaptor.capture());
+    List<User> savedUsers = usersCaptor.getValue();
+    assertThat(savedUsers.size()).isEqualTo(1);
+    assertThat(savedUsers.getFirst().getPasswordHash()).isEqualTo(ENCODED_PASSWORD);
+    assertThat(savedUsers.getFirst().getPermissions()).isEqualTo(UserInfo.PermissionsEnum.READ);
+    verify(userSearchIndex, times(1)).put(savedUsers.getFirst());
+  }
+
+  @Test
+  void importUsers_shouldReportRowsConflicting_whenUsernamesAreTakenWhileImporting() {
+    // Arrange
+    String content = String.join("\n", ndjsonRow("takenMeanwhile", PASSWORD), ndjsonRow("newUser", PASSWORD));
+    DataIntegrityViolationException usernameViolation = new DataIntegrityViolationException("could not execute statement",
+            new ConstraintViolationException("could not execute statement", new SQLException("Unique index violation", "23505"),
+                    "PUBLIC." + User.USERNAME_CONSTRAINT.toUpperCase() + "_INDEX_4"));
+
+    when(userRepository.findUsernamesIn(any())).thenReturn(Set.of());
+    when(userMapper.userRegisterInfoToUser(any(UserRegisterInfo.class))).thenAnswer(invocation -> {
+      User mapped = new User();
+      mapped.setUsername(invocation.<UserRegisterInfo>getArgument(0).getBasicInfo().getUsername());
+      return mapped;
+    });
+    when(passwordEncoder.encode(PASSWORD)).thenReturn(ENCODED_PASSWORD);
+    // Someone registers the first username after it was checked, which fails the batch insert
+    when(userRepository.saveAll(any())).thenAnswer(invocation -> invocation.getArgument(0));
+    doThrow(usernameViolation).when(userRepository).flush();
+    when(userRepository.saveAndFlush(any(User.class))).thenAnswer(invocation -> {
+      User inserted = invocation.getArgument(0);
+      if (inserted.getUsername().equals("takenMeanwhile"))
+        throw usernameViolation;
+      return inserted;
+    });
+
+    // Act
+    List<UserImportResult> results = userService.importUsers(content, MediaType.valueOf("application/x-ndjson"));
+
+    // Assert
+    assertThat(results.stream().map(UserImportResult::getStatus).toList()).isEqualTo(List.of(
+            UserImportResult.StatusEnum.CONFLICT,
+            UserImportResult.StatusEnum.CREATED));
+    assertThat(results.getFirst().getMessage()).isEqualTo("Username is already taken");
+    verify(userSearchIndex, times(1)).put(any());
+    verify(userSearchIndex).put(argThat(indexed -> indexed.getUsername().equals("newUser")));
+  }
+
+  @Test
+  void importUsers_shouldReadCsvColumnsInAnyOrder_withQuotedFields() {
+    // Arrange
+    String content = "password,contact,username,lastName,firstName\n" +
+            "password123,\"doe@example.com\",\"Doe, John\",Doe,\"John \"\"JD\"\"\"\n" +
+            "too,few\n";
+
+    when(userRepository.findUsernamesIn(any())).thenReturn(Set.of());
+    when(userMapper.userRegisterInfoToUser(any(UserRegisterInfo.class))).thenReturn(new User());
+    when(passwordEncoder.encode(PASSWORD)).thenReturn(ENCODED_PASSWORD);
+    when(userRepository.saveAll(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+    // Act
+    List<UserImportResult> results = userService.importUsers(content, MediaType.valueOf("text/csv"));
+
+    // Assert
+    assertThat(results.size()).isEqualTo(2);
+    assertThat(results.getFirst().getStatus()).isEqualTo(UserImportResult.StatusEnum.CREATED);
+    assertThat(results.getFirst().getUsername()).isEqualTo("Doe, John");
+    assertThat(results.get(1).getStatus()).isEqualTo(UserImportResult.StatusEnum.INVALID);
+    assertThat(results.get(1).getRow()).isEqualTo(2);
+
+    ArgumentCaptor<UserRegisterInfo> infoCaptor = ArgumentCaptor.forClass(UserRegisterInfo.class);
+    verify(userMapper).userRegisterInfoToUser(infoCaptor.capture());
+    assertThat(infoCaptor.getValue().getBasicInfo().getFirstName()).isEqualTo("John \"JD\"");
+    assertThat(infoCaptor.getValue().getBasicInfo().getContact()).isEqualTo("doe@example.com");
+  }
+
+  @Test
+  void importUsers_shouldThrowValidationException_whenCsvHeaderIsMissingColumn() {
+    // Arrange
+    String content = "username,firstName,lastName,contact\nJohnDoe,John,Doe,john@example.com";
+
+    // Act & Assert
+    assertThrows(ValidationException.class, () -> userService.importUsers(content, MediaType.valueOf("text/csv")));
+    verify(userRepository, never()).saveAll(any());
+  }
+
+  @Test
+  void importUsers_shouldThrowValidationException_whenThereAreTooManyRows() {
+    // Arrange
+    String content = String.join("\n", Collections.nCopies(importMaxRows + 1, ndjsonRow("newUser", PASSWORD)));
+
+    // Act & Assert
+    assertThrows(ValidationException.class,
+            () -> userService.importUsers(content, MediaType.valueOf("application/x-ndjson")));
+    verify(userRepository, never()).saveAll(any());
+  }
 }
@@ -0,0 +1,114 @@
+package com.mf.HerculaneumTranscriptor.storage;
+
+import com.cloudinary.Cloudinary;
+import com.cloudinary.Uploader;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class CloudinaryScrollImageStorageTest {
+  @Mock
+  private Cloudinary cloudinary;
+
+  @Mock
+  private Uploader uploader;
+
+  private ExecutorService storageExecutor;
+  private CloudinaryScrollImageStorage storage;
+
+  private static final String SCROLL_ID = "vesuvius-scroll-1";
+  private static final String LEGACY_URL =
+          "https://res.cloudinary.com/your-cloud/image/upload/s--TOKEN--/v1678886000/scrolls/vesuvius-scroll-1.png";
+
+  @BeforeEach
+  void setUp() {
+    storageExecutor = Executors.newSingleThreadExecutor();
+    storage = new CloudinaryScrollImageStorage(cloudinary, storageExecutor, "scrolls", 300, 60);
+  }
+
+  @AfterEach
+  void tearDown() {
+    storageExecutor.shutdown();
+  }
+
+  @Test
+  void publicId_shouldBeFolderAndScrollId_forNewAndLegacyLocations() {
+    // Act & Assert
+    assertThat(storage.publicId(storage.locate(SCROLL_ID, "png"))).isEqualTo("scrolls/" + SCROLL_ID);
+    assertThat(storage.publicId(LEGACY_URL)).isEqualTo("scrolls/" + SCROLL_ID);
+  }
+
+  @Test
+  void put_shouldUploadPrivateImage_underItsPublicId() throws Exception {
+    // Arrange
+    when(cloudinary.uploader()).thenReturn(uploader);
+    byte[] content = "dummy image content".getBytes();
+
+    // Act
+    storage.put(storage.locate(SCROLL_ID, "png"), ByteBuffer.wrap(content)).join();
+
+    // Assert
+    ArgumentCaptor<Map> optionsCaptor = ArgumentCaptor.forClass(Map.class);
+    verify(uploader).upload(eq(content), optionsCaptor.capture());
+    assertThat(optionsCaptor.getValue()).containsEntry("public_id", "scrolls/" + SCROLL_ID).containsEntry("type", "private");
+  }
+
+  @Test
+  void delete_shouldDestroyImage_underItsPublicId() throws Exception {
+    // Arrange
+    when(cloudinary.uploader()).thenReturn(uploader);
+
+    // Act
+    storage.delete(LEGACY_URL).join();
+
+    // Assert
+    verify(uploader).destroy(eq("scrolls/" + SCROLL_ID), anyMap());
+  }
+
+  @Test
+  void presign_shouldReuseSignedUrl_whenCachedUrlIsStillValid() throws Exception {
+    // Arrange
+    when(cloudinary.privateDownload(any(), any(), anyMap()))
+            .thenReturn("https://cloudinary.com/signed/url/1", "https://cloudinary.com/signed/url/2");
+
+    // Act
+    URI firstUri = storage.presign(SCROLL_ID, LEGACY_URL).join();
+    URI secondUri = storage.presign(SCROLL_ID, LEGACY_URL).join();
+
+    // Assert
+    // Both clients receive the same URL, which was only signed once
+    assertThat(secondUri).isEqualTo(firstUri);
+    verify(cloudinary, times(1)).privateDownload(eq("scrolls/" + SCROLL_ID), eq("png"), anyMap());
+  }
+
+  @Test
+  void presign_shouldSignNewUrl_whenImageWasDeleted() throws Exception {
+    // Arrange
+    when(cloudinary.uploader()).thenReturn(uploader);
+    when(cloudinary.privateDownload(any(), any(), anyMap()))
+            .thenReturn("https://cloudinary.com/signed/url/1", "https://cloudinary.com/signed/url/2");
+
+    // Act
+    URI firstUri = storage.presign(SCROLL_ID, LEGACY_URL).join();
+    storage.delete(LEGACY_URL).join();
+    URI secondUri = storage.presign(SCROLL_ID, LEGACY_URL).join();
+
+    // Assert
+    assertThat(secondUri).isNotEqualTo(firstUri);
+  }
+}
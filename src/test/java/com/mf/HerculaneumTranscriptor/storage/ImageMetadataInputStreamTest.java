@@ -0,0 +1,112 @@
+package com.mf.HerculaneumTranscriptor.storage;
+
+import com.mf.HerculaneumTranscriptor.domain.ImageMetadata;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ImageMetadataInputStreamTest {
+
+  private static byte[] encode(BufferedImage image, String format) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ImageIO.write(image, format, out);
+    return out.toByteArray();
+  }
+
+  // Reads the image the way staging does, until the end of the stream
+  private static ImageMetadata read(byte[] image) throws IOException {
+    try (ImageMetadataInputStream in = new ImageMetadataInputStream(new ByteArrayInputStream(image))) {
+      in.transferTo(OutputStream.nullOutputStream());
+      return in.getMetadata();
+    }
+  }
+
+  private static String sha256(byte[] bytes) throws NoSuchAlgorithmException {
+    return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+  }
+
+  @Test
+  void getMetadata_shouldReadPngHeader() throws Exception {
+    // Arrange
+    byte[] png = encode(new BufferedImage(640, 480, BufferedImage.TYPE_USHORT_GRAY), "png");
+
+    // Act
+    ImageMetadata metadata = read(png);
+
+    // Assert
+    assertThat(metadata.getWidth()).isEqualTo(640);
+    assertThat(metadata.getHeight()).isEqualTo(480);
+    assertThat(metadata.getBitDepth()).isEqualTo(16);
+    assertThat(metadata.getChecksum()).isEqualTo(sha256(png));
+  }
+
+  @Test
+  void getMetadata_shouldReadJpegFrameHeader() throws Exception {
+    // Arrange
+    byte[] jpeg = encode(new BufferedImage(321, 123, BufferedImage.TYPE_BYTE_GRAY), "jpeg");
+
+    // Act
+    ImageMetadata metadata = read(jpeg);
+
+    // Assert
+    assertThat(metadata.getWidth()).isEqualTo(321);
+    assertThat(metadata.getHeight()).isEqualTo(123);
+    assertThat(metadata.getBitDepth()).isEqualTo(8);
+    assertThat(metadata.getChecksum()).isEqualTo(sha256(jpeg));
+  }
+
+  @Test
+  void getMetadata_shouldReadTiffImageFileDirectory() throws Exception {
+    // Arrange
+    byte[] tiff = encode(new BufferedImage(70000, 2, BufferedImage.TYPE_BYTE_GRAY), "tiff");
+
+    // Act
+    ImageMetadata metadata = read(tiff);
+
+    // Assert
+    // Widths over 65535 pixels are stored as LONG values
+    assertThat(metadata.getWidth()).isEqualTo(70000);
+    assertThat(metadata.getHeight()).isEqualTo(2);
+    assertThat(metadata.getBitDepth()).isEqualTo(8);
+  }
+
+  @Test
+  void getMetadata_shouldOnlyComputeChecksum_whenFormatIsUnknown() throws Exception {
+    // Arrange
+    byte[] content = "not an image".getBytes();
+
+    // Act
+    ImageMetadata metadata = read(content);
+
+    // Assert
+    assertThat(metadata.getWidth()).isNull();
+    assertThat(metadata.getHeight()).isNull();
+    assertThat(metadata.getBitDepth()).isNull();
+    assertThat(metadata.getChecksum()).isEqualTo(sha256(content));
+  }
+
+  @Test
+  void getMetadata_shouldLeaveDimensionsUnknown_whenHeaderIsTruncated() throws Exception {
+    // Arrange
+    byte[] png = encode(new BufferedImage(640, 480, BufferedImage.TYPE_BYTE_GRAY), "png");
+    byte[] truncated = Arrays.copyOf(png, 20);
+
+    // Act
+    ImageMetadata metadata = read(truncated);
+
+    // Assert
+    assertThat(metadata.getWidth()).isNull();
+    assertThat(metadata.getChecksum()).isEqualTo(sha256(truncated));
+  }
+}
@@ -0,0 +1,162 @@
+package com.mf.HerculaneumTranscriptor.storage;
+
+import com.mf.HerculaneumTranscriptor.exception.ResourceNotFoundException;
+import jakarta.servlet.http.HttpServletRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.Resource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class LocalScrollImageStorageTest {
+  @TempDir
+  Path storageLocation;
+
+  private ExecutorService storageExecutor;
+  private LocalScrollImageStorage storage;
+
+  private static final String SCROLL_ID = "vesuvius-scroll-1";
+  private static final String CONTENT = "dummy image content";
+
+  @BeforeEach
+  void setUp() {
+    storageExecutor = Executors.newFixedThreadPool(2);
+    storage = new LocalScrollImageStorage(storageExecutor);
+    ReflectionTestUtils.setField(storage, "storageLocation", storageLocation);
+  }
+
+  @AfterEach
+  void tearDown() {
+    storageExecutor.shutdown();
+  }
+
+  private static String asString(ByteBuffer buffer) {
+    return StandardCharsets.UTF_8.decode(buffer).toString();
+  }
+
+  @Test
+  void put_shouldWriteImage_whenLocationIsNew() throws Exception {
+    // Arrange
+    String location = storage.locate(SCROLL_ID, "png");
+
+    // Act
+    storage.put(location, ByteBuffer.wrap(CONTENT.getBytes())).join();
+
+    // Assert
+    assertThat(location).isEqualTo(SCROLL_ID + ".png");
+    assertThat(Files.readString(storageLocation.resolve(location))).isEqualTo(CONTENT);
+  }
+
+  @Test
+  void put_shouldReplaceImage_whenLocationAlreadyExists() throws Exception {
+    // Arrange
+    String location = storage.locate(SCROLL_ID, "png");
+    Files.writeString(storageLocation.resolve(location), "a previous and longer image content");
+
+    // Act
+    storage.put(location, ByteBuffer.wrap(CONTENT.getBytes())).join();
+
+    // Assert
+    assertThat(Files.readString(storageLocation.resolve(location))).isEqualTo(CONTENT);
+  }
+
+  @Test
+  void getRange_shouldReturnRequestedBytes_whenImageExists() throws Exception {
+    // Arrange
+    String location = storage.locate(SCROLL_ID, "png");
+    Files.writeString(storageLocation.resolve(location), CONTENT);
+
+    // Act
+    ByteBuffer whole = storage.getRange(location, 0, -1).join();
+    ByteBuffer range = storage.getRange(location, 6, 5).join();
+    ByteBuffer pastEnd = storage.getRange(location, 14, 100).join();
+
+    // Assert
+    assertThat(asString(whole)).isEqualTo(CONTENT);
+    assertThat(asString(range)).isEqualTo("image");
+    assertThat(asString(pastEnd)).isEqualTo("ntent");
+  }
+
+  @Test
+  void getRange_shouldFailWithResourceNotFoundException_whenImageDoesNotExist() {
+    // Act & Assert
+    assertThatThrownBy(() -> storage.getRange("missing.png", 0, -1).join())
+            .isInstanceOf(CompletionException.class)
+            .hasCauseInstanceOf(ResourceNotFoundException.class);
+  }
+
+  @Test
+  void open_shouldStreamImageFromDisk_whenImageExists() throws Exception {
+    // Arrange
+    String location = storage.locate(SCROLL_ID, "png");
+    Files.writeString(storageLocation.resolve(location), CONTENT);
+
+    // Act
+    Resource image = storage.open(location).join();
+
+    // Assert
+    assertThat(image.contentLength()).isEqualTo(CONTENT.length());
+    assertThat(image.getContentAsString(StandardCharsets.UTF_8)).isEqualTo(CONTENT);
+  }
+
+  @Test
+  void open_shouldFailWithResourceNotFoundException_whenImageDoesNotExist() {
+    // Act & Assert
+    assertThatThrownBy(() -> storage.open("missing.png").join())
+            .isInstanceOf(CompletionException.class)
+            .hasCauseInstanceOf(ResourceNotFoundException.class);
+  }
+
+  @Test
+  void delete_shouldRemoveImage_andIgnoreMissingImages() throws Exception {
+    // Arrange
+    String location = storage.locate(SCROLL_ID, "png");
+    Files.writeString(storageLocation.resolve(location), CONTENT);
+
+    // Act
+    storage.delete(location).join();
+    storage.delete(location).join();
+
+    // Assert
+    assertThat(storageLocation.resolve(location)).doesNotExist();
+  }
+
+  @Test
+  void presign_shouldReturnLocalDownloadUrl() {
+    // Arrange
+    // ServletUriComponentsBuilder needs a mock HTTP request to get the context path.
+    HttpServletRequest mockRequest = mock(HttpServletRequest.class);
+    when(mockRequest.getContextPath()).thenReturn(""); // For "http://localhost"
+    when(mockRequest.getScheme()).thenReturn("http");
+    when(mockRequest.getServerName()).thenReturn("localhost");
+    when(mockRequest.getServerPort()).thenReturn(8080);
+    RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(mockRequest));
+
+    try {
+      // Act
+      URI resultUri = storage.presign(SCROLL_ID, SCROLL_ID + ".png").join();
+
+      // Assert
+      assertThat(resultUri.toString()).isEqualTo("http://localhost:8080/scrolls/" + SCROLL_ID + "/local-download");
+    } finally {
+      RequestContextHolder.resetRequestAttributes();
+    }
+  }
+}
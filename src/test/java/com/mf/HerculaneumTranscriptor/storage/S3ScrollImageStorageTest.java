@@ -0,0 +1,232 @@
+package com.mf.HerculaneumTranscriptor.storage;
+
+import com.mf.HerculaneumTranscriptor.exception.ResourceNotFoundException;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.Resource;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.checksums.RequestChecksumCalculation;
+import software.amazon.awssdk.core.checksums.ResponseChecksumValidation;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.S3Configuration;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Runs the S3 storage against a minimal in-process stand-in of an S3-compatible object store,
+ * which supports the object operations used by the backend (PUT, ranged GET and DELETE).
+ */
+public class S3ScrollImageStorageTest {
+  private static final Pattern RANGE = Pattern.compile("bytes=(\\d+)-(\\d*)");
+  private static final String BUCKET = "scrolls";
+  private static final String SCROLL_ID = "vesuvius-scroll-1";
+  private static final String CONTENT = "dummy image content";
+
+  private final Map<String, byte[]> objects = new ConcurrentHashMap<>();
+  private HttpServer server;
+  private S3AsyncClient s3Client;
+  private S3Presigner s3Presigner;
+  private S3ScrollImageStorage storage;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/", this::handle);
+    server.start();
+
+    URI endpoint = URI.create("http://localhost:" + server.getAddress().getPort());
+    StaticCredentialsProvider credentials = StaticCredentialsProvider.create(AwsBasicCredentials.create("test", "test"));
+
+    s3Client = S3AsyncClient.builder()
+            .endpointOverride(endpoint)
+            .forcePathStyle(true)
+            .region(Region.US_EAST_1)
+            .credentialsProvider(credentials)
+            .requestChecksumCalculation(RequestChecksumCalculation.WHEN_REQUIRED)
+            .responseChecksumValidation(ResponseChecksumValidation.WHEN_REQUIRED)
+            .build();
+    s3Presigner = S3Presigner.builder()
+            .endpointOverride(endpoint)
+            .serviceConfiguration(S3Configuration.builder().pathStyleAccessEnabled(true).build())
+            .region(Region.US_EAST_1)
+            .credentialsProvider(credentials)
+            .build();
+
+    storage = new S3ScrollImageStorage(s3Client, s3Presigner, BUCKET, "scrolls/", 300, 60);
+  }
+
+  @AfterEach
+  void tearDown() {
+    s3Client.close();
+    s3Presigner.close();
+    server.stop(0);
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    // Path-style requests: /{bucket}/{key}
+    String key = exchange.getRequestURI().getPath().substring(BUCKET.length() + 2);
+
+    switch (exchange.getRequestMethod()) {
+      case "PUT" -> {
+        byte[] body = exchange.getRequestBody().readAllBytes();
+        String contentSha256 = exchange.getRequestHeaders().getFirst("x-amz-content-sha256");
+        objects.put(key, contentSha256 != null && contentSha256.startsWith("STREAMING") ? decodeChunks(body) : body);
+        exchange.sendResponseHeaders(200, -1);
+      }
+      case "GET" -> {
+        byte[] object = objects.get(key);
+        if (object == null) {
+          byte[] error = "<Error><Code>NoSuchKey</Code><Message>The specified key does not exist.</Message></Error>"
+                  .getBytes(StandardCharsets.UTF_8);
+          exchange.getResponseHeaders().add("Content-Type", "application/xml");
+          exchange.sendResponseHeaders(404, error.length);
+          exchange.getResponseBody().write(error);
+          break;
+        }
+
+        Matcher range = RANGE.matcher(String.valueOf(exchange.getRequestHeaders().getFirst("Range")));
+        if (range.matches()) {
+          int start = Math.min(Integer.parseInt(range.group(1)), object.length);
+          int end = range.group(2).isEmpty() ? object.length : Math.min(Integer.parseInt(range.group(2)) + 1, object.length);
+          object = Arrays.copyOfRange(object, start, end);
+          exchange.getResponseHeaders().add("Content-Range", "bytes " + start + "-" + (end - 1) + "/*");
+          exchange.sendResponseHeaders(206, object.length);
+        } else {
+          exchange.sendResponseHeaders(200, object.length);
+        }
+        exchange.getResponseBody().write(object);
+      }
+      case "DELETE" -> {
+        objects.remove(key);
+        exchange.sendResponseHeaders(204, -1);
+      }
+      default -> exchange.sendResponseHeaders(405, -1);
+    }
+    exchange.close();
+  }
+
+  // Signed streaming uploads frame the payload as "<hex size>;chunk-signature=...\r\n<data>\r\n" chunks
+  private static byte[] decodeChunks(byte[] body) {
+    ByteArrayOutputStream payload = new ByteArrayOutputStream();
+    int position = 0;
+    while (position < body.length) {
+      int lineEnd = position;
+      while (body[lineEnd] != '\r') lineEnd++;
+
+      String header = new String(body, position, lineEnd - position, StandardCharsets.US_ASCII);
+      int size = Integer.parseInt(header.split(";")[0], 16);
+      if (size == 0)
+        break;
+
+      payload.write(body, lineEnd + 2, size);
+      position = lineEnd + 2 + size + 2;
+    }
+    return payload.toByteArray();
+  }
+
+  @Test
+  void put_shouldStoreObject_underPrefixedKey() {
+    // Arrange
+    String location = storage.locate(SCROLL_ID, "png");
+
+    // Act
+    storage.put(location, ByteBuffer.wrap(CONTENT.getBytes())).join();
+
+    // Assert
+    assertThat(location).isEqualTo("scrolls/" + SCROLL_ID + ".png");
+    assertThat(objects.get(location)).isEqualTo(CONTENT.getBytes());
+  }
+
+  @Test
+  void getRange_shouldReturnRequestedBytes_whenObjectExists() {
+    // Arrange
+    String location = storage.locate(SCROLL_ID, "png");
+    objects.put(location, CONTENT.getBytes());
+
+    // Act
+    ByteBuffer whole = storage.getRange(location, 0, -1).join();
+    ByteBuffer range = storage.getRange(location, 6, 5).join();
+
+    // Assert
+    assertThat(StandardCharsets.UTF_8.decode(whole).toString()).isEqualTo(CONTENT);
+    assertThat(StandardCharsets.UTF_8.decode(range).toString()).isEqualTo("image");
+  }
+
+  @Test
+  void getRange_shouldFailWithResourceNotFoundException_whenObjectDoesNotExist() {
+    // Act & Assert
+    assertThatThrownBy(() -> storage.getRange("scrolls/missing.png", 0, -1).join())
+            .isInstanceOf(CompletionException.class)
+            .hasCauseInstanceOf(ResourceNotFoundException.class);
+  }
+
+  @Test
+  void open_shouldStreamObject_whenObjectExists() throws IOException {
+    // Arrange
+    String location = storage.locate(SCROLL_ID, "png");
+    objects.put(location, CONTENT.getBytes());
+
+    // Act
+    Resource image = storage.open(location).join();
+
+    // Assert
+    assertThat(image.contentLength()).isEqualTo(CONTENT.length());
+    assertThat(image.getContentAsString(StandardCharsets.UTF_8)).isEqualTo(CONTENT);
+  }
+
+  @Test
+  void open_shouldFailWithResourceNotFoundException_whenObjectDoesNotExist() {
+    // Act & Assert
+    assertThatThrownBy(() -> storage.open("scrolls/missing.png").join())
+            .isInstanceOf(CompletionException.class)
+            .hasCauseInstanceOf(ResourceNotFoundException.class);
+  }
+
+  @Test
+  void delete_shouldRemoveObject() {
+    // Arrange
+    String location = storage.locate(SCROLL_ID, "png");
+    objects.put(location, CONTENT.getBytes());
+
+    // Act
+    storage.delete(location).join();
+
+    // Assert
+    assertThat(objects).doesNotContainKey(location);
+  }
+
+  @Test
+  void presign_shouldReturnCachedUrlToObject() {
+    // Arrange
+    String location = storage.locate(SCROLL_ID, "png");
+
+    // Act
+    URI firstUri = storage.presign(SCROLL_ID, location).join();
+    URI secondUri = storage.presign(SCROLL_ID, location).join();
+
+    // Assert
+    assertThat(firstUri.getPath()).isEqualTo("/" + BUCKET + "/" + location);
+    assertThat(firstUri.getQuery()).contains("X-Amz-Signature=");
+    assertThat(secondUri).isEqualTo(firstUri);
+  }
+}
@@ -0,0 +1,257 @@
+package com.mf.HerculaneumTranscriptor.storage;
+
+import com.mf.HerculaneumTranscriptor.exception.ResourceNotFoundException;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.Resource;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Runs the image cache against a local HTTP server standing in for the cloud backend.
+ */
+public class ScrollImageCacheTest {
+  @TempDir
+  Path cacheDirectory;
+
+  private final Map<String, String> images = new ConcurrentHashMap<>();
+  private final Map<String, AtomicInteger> downloads = new ConcurrentHashMap<>();
+  // Lets tests hold the origin's responses until every concurrent request has missed
+  private volatile CountDownLatch originGate = new CountDownLatch(0);
+
+  private HttpServer server;
+  private ExecutorService storageExecutor;
+  private ScrollImageStorage scrollImageStorage;
+  private ScrollImageCache scrollImageCache;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.setExecutor(Executors.newCachedThreadPool());
+    server.createContext("/", this::handle);
+    server.start();
+
+    // The storage presigns URLs pointing to the stand-in server
+    scrollImageStorage = mock(ScrollImageStorage.class);
+    when(scrollImageStorage.presign(anyString(), anyString())).thenAnswer(invocation -> CompletableFuture.completedFuture(
+            URI.create("http://localhost:" + server.getAddress().getPort() + "/" + invocation.getArgument(1))));
+
+    storageExecutor = Executors.newFixedThreadPool(4);
+    scrollImageCache = newCache(DataSize.ofBytes(50));
+  }
+
+  @AfterEach
+  void tearDown() {
+    server.stop(0);
+    storageExecutor.shutdown();
+  }
+
+  private ScrollImageCache newCache(DataSize maxSize) throws IOException {
+    return new ScrollImageCache(scrollImageStorage, storageExecutor, "s3", true, cacheDirectory, maxSize);
+  }
+
+  private static String read(CompletableFuture<Resource> image) {
+    try {
+      return image.join().getContentAsString(StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private List<Path> cachedFiles() throws IOException {
+    try (Stream<Path> files = Files.list(cacheDirectory)) {
+      return files.toList();
+    }
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    String location = exchange.getRequestURI().getPath().substring(1);
+    // The image is read as it stands when the request arrives
+    String image = images.get(location);
+    downloads.computeIfAbsent(location, key -> new AtomicInteger()).incrementAndGet();
+
+    try {
+      originGate.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+
+    if (image == null) {
+      exchange.sendResponseHeaders(404, -1);
+    } else {
+      byte[] body = image.getBytes(StandardCharsets.UTF_8);
+      exchange.sendResponseHeaders(200, body.length);
+      exchange.getResponseBody().write(body);
+    }
+    exchange.close();
+  }
+
+  private int downloadsOf(String location) {
+    return downloads.getOrDefault(location, new AtomicInteger()).get();
+  }
+
+  @Test
+  void get_shouldFetchImageOnce_andServeLaterRequestsFromDisk() throws IOException {
+    // Arrange
+    images.put("scroll-1.png", "twenty bytes image 1");
+
+    // Act
+    String first = read(scrollImageCache.get("scroll-1", "scroll-1.png"));
+    String second = read(scrollImageCache.get("scroll-1", "scroll-1.png"));
+
+    // Assert
+    assertThat(first).isEqualTo("twenty bytes image 1");
+    assertThat(second).isEqualTo(first);
+    assertThat(cachedFiles()).hasSize(1);
+    assertThat(downloadsOf("scroll-1.png")).isEqualTo(1);
+  }
+
+  @Test
+  void get_shouldCoalesceConcurrentMisses_intoSingleOriginFetch() {
+    // Arrange
+    images.put("scroll-1.png", "twenty bytes image 1");
+    originGate = new CountDownLatch(1);
+
+    // Act
+    List<CompletableFuture<Resource>> results = IntStream.range(0, 16)
+            .mapToObj(i -> CompletableFuture.supplyAsync(() -> scrollImageCache.get("scroll-1", "scroll-1.png")).join())
+            .toList();
+    originGate.countDown();
+
+    // Assert
+    // Each request gets the image opened for itself
+    assertThat(results).extracting(ScrollImageCacheTest::read).containsOnly("twenty bytes image 1");
+    assertThat(downloadsOf("scroll-1.png")).isEqualTo(1);
+  }
+
+  @Test
+  void get_shouldEvictLeastRecentlyUsedImage_whenCacheIsFull() throws IOException {
+    // Arrange
+    images.put("scroll-1.png", "twenty bytes image 1");
+    images.put("scroll-2.png", "twenty bytes image 2");
+    images.put("scroll-3.png", "twenty bytes image 3");
+
+    // Act
+    read(scrollImageCache.get("scroll-1", "scroll-1.png"));
+    read(scrollImageCache.get("scroll-2", "scroll-2.png"));
+    // Using the first image again makes the second one the least recently used
+    read(scrollImageCache.get("scroll-1", "scroll-1.png"));
+    // 60 bytes do not fit in the 50 bytes cache
+    read(scrollImageCache.get("scroll-3", "scroll-3.png"));
+
+    // Assert
+    assertThat(cachedFiles()).hasSize(2);
+    read(scrollImageCache.get("scroll-1", "scroll-1.png"));
+
+    read(scrollImageCache.get("scroll-2", "scroll-2.png"));
+    assertThat(downloadsOf("scroll-1.png")).isEqualTo(1);
+    assertThat(downloadsOf("scroll-2.png")).isEqualTo(2);
+  }
+
+  @Test
+  void get_shouldKeepCachedImages_acrossRestarts() throws IOException {
+    // Arrange
+    images.put("scroll-1.png", "twenty bytes image 1");
+    read(scrollImageCache.get("scroll-1", "scroll-1.png"));
+
+    // Act
+    ScrollImageCache restartedCache = newCache(DataSize.ofBytes(50));
+    String result = read(restartedCache.get("scroll-1", "scroll-1.png"));
+
+    // Assert
+    assertThat(result).isEqualTo("twenty bytes image 1");
+    assertThat(downloadsOf("scroll-1.png")).isEqualTo(1);
+  }
+
+  @Test
+  void evict_shouldDeleteCachedCopy_soTheImageIsFetchedAgain() throws IOException {
+    // Arrange
+    images.put("scroll-1.png", "twenty bytes image 1");
+    read(scrollImageCache.get("scroll-1", "scroll-1.png"));
+
+    // Act
+    scrollImageCache.evict("scroll-1.png");
+
+    // Assert
+    assertThat(cachedFiles()).isEmpty();
+    read(scrollImageCache.get("scroll-1", "scroll-1.png"));
+    assertThat(downloadsOf("scroll-1.png")).isEqualTo(2);
+  }
+
+  @Test
+  void evict_shouldDiscardFetchInProgress_soTheReplacedImageIsNotCached() throws Exception {
+    // Arrange
+    images.put("scroll-1.png", "twenty bytes image 1");
+    originGate = new CountDownLatch(1);
+    CompletableFuture<Resource> image = scrollImageCache.get("scroll-1", "scroll-1.png");
+    while (downloadsOf("scroll-1.png") == 0)
+      Thread.sleep(5);
+
+    // Act
+    // The scroll is deleted and created again with another image while its old image is being fetched
+    images.put("scroll-1.png", "twenty bytes image 2");
+    scrollImageCache.evict("scroll-1.png");
+    originGate.countDown();
+
+    // Assert
+    assertThat(read(image)).isEqualTo("twenty bytes image 2");
+    assertThat(read(scrollImageCache.get("scroll-1", "scroll-1.png"))).isEqualTo("twenty bytes image 2");
+    assertThat(downloadsOf("scroll-1.png")).isEqualTo(2);
+  }
+
+  @Test
+  void get_shouldFailWithResourceNotFoundException_whenOriginHasNoImage() {
+    // Act & Assert
+    assertThatThrownBy(() -> scrollImageCache.get("missing", "missing.png").join())
+            .isInstanceOf(CompletionException.class)
+            .hasCauseInstanceOf(ResourceNotFoundException.class);
+  }
+
+  @Test
+  void get_shouldSendWholeImage_whenItIsEvictedWhileBeingSent() throws IOException {
+    // Arrange
+    images.put("scroll-1.png", "twenty bytes image 1");
+    images.put("scroll-2.png", "twenty bytes image 2");
+    images.put("scroll-3.png", "twenty bytes image 3");
+    Resource sent = scrollImageCache.get("scroll-1", "scroll-1.png").join();
+
+    // Act
+    // Caching two more images evicts the first one before it is read
+    read(scrollImageCache.get("scroll-2", "scroll-2.png"));
+    read(scrollImageCache.get("scroll-3", "scroll-3.png"));
+
+    // Assert
+    assertThat(sent.getContentAsString(StandardCharsets.UTF_8)).isEqualTo("twenty bytes image 1");
+  }
+
+  @Test
+  void constructor_shouldRefuseProxy_whenImagesAreStoredLocally() {
+    // Act & Assert
+    assertThatThrownBy(() -> new ScrollImageCache(scrollImageStorage, storageExecutor, "local", true, cacheDirectory,
+            DataSize.ofBytes(50)))
+            .isInstanceOf(IllegalStateException.class);
+  }
+}
@@ -0,0 +1,98 @@
+package com.mf.HerculaneumTranscriptor.storage;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class SignedUrlCacheTest {
+  private static final String LOCATION = "scrolls/vesuvius-scroll-1.png";
+
+  private Instant now;
+  private SignedUrlCache signedUrlCache;
+  private AtomicInteger signatures;
+
+  // Signs a different URL on every call, so that reused URLs can be told apart
+  private URI sign(String location, long expiresAt) {
+    return URI.create("https://cdn.example.com/" + location + "?expires=" + expiresAt + "&n=" + signatures.incrementAndGet());
+  }
+
+  @BeforeEach
+  void setUp() {
+    now = Instant.parse("2025-01-01T00:00:00Z");
+    signatures = new AtomicInteger();
+
+    // The clock reads the current value of now, so tests can move time forward
+    Clock clock = new Clock() {
+      @Override
+      public ZoneOffset getZone() {
+        return ZoneOffset.UTC;
+      }
+
+      @Override
+      public Clock withZone(java.time.ZoneId zone) {
+        return this;
+      }
+
+      @Override
+      public Instant instant() {
+        return now;
+      }
+    };
+
+    signedUrlCache = new SignedUrlCache(300, 60, clock);
+  }
+
+  @Test
+  void get_shouldReuseSignedUrl_whenCachedUrlIsStillValid() {
+    // Act
+    URI firstUri = signedUrlCache.get(LOCATION, this::sign);
+    now = now.plus(Duration.ofSeconds(200));
+    URI secondUri = signedUrlCache.get(LOCATION, this::sign);
+
+    // Assert
+    // Both clients receive the same URL, which was only signed once
+    assertThat(secondUri).isEqualTo(firstUri);
+    assertThat(signatures.get()).isEqualTo(1);
+  }
+
+  @Test
+  void get_shouldRenewSignedUrl_whenCachedUrlIsAboutToExpire() {
+    // Act
+    URI firstUri = signedUrlCache.get(LOCATION, this::sign);
+    // Less than the refresh margin is left before the first URL expires
+    now = now.plus(Duration.ofSeconds(241));
+    URI secondUri = signedUrlCache.get(LOCATION, this::sign);
+
+    // Assert
+    assertThat(secondUri).isNotEqualTo(firstUri);
+    assertThat(secondUri.toString()).contains("expires=" + (now.getEpochSecond() + 300));
+    assertThat(signatures.get()).isEqualTo(2);
+  }
+
+  @Test
+  void get_shouldSignNewUrl_whenCachedUrlWasEvicted() {
+    // Act
+    URI firstUri = signedUrlCache.get(LOCATION, this::sign);
+    signedUrlCache.evict(LOCATION);
+    URI secondUri = signedUrlCache.get(LOCATION, this::sign);
+
+    // Assert
+    assertThat(secondUri).isNotEqualTo(firstUri);
+  }
+
+  @Test
+  void constructor_shouldThrowIllegalArgumentException_whenRefreshMarginIsNotSmallerThanExpiration() {
+    // Act & Assert
+    // Every URL would be renewed on each request, defeating the cache
+    assertThrows(IllegalArgumentException.class, () -> new SignedUrlCache(300, 300));
+  }
+}
@@ -0,0 +1,216 @@
+package com.mf.HerculaneumTranscriptor.storage;
+
+import com.mf.HerculaneumTranscriptor.domain.StorageTask;
+import com.mf.HerculaneumTranscriptor.repository.StorageTaskRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class StorageOutboxTest {
+  @InjectMocks
+  private StorageOutbox storageOutbox;
+
+  @Mock
+  private StorageTaskRepository storageTaskRepository;
+
+  @Mock
+  private ScrollImageStorage scrollImageStorage;
+
+  @Mock
+  private ScrollImageCache scrollImageCache;
+
+  @TempDir
+  Path stagingDirectory;
+
+  private static final String LOCATION = "vesuvius-scroll-1.png";
+  private static final String INSTANCE_ID = "backend-1";
+
+  @BeforeEach
+  void setUp() {
+    ReflectionTestUtils.setField(storageOutbox, "stagingDirectory", stagingDirectory);
+    ReflectionTestUtils.setField(storageOutbox, "batchSize", 32);
+    ReflectionTestUtils.setField(storageOutbox, "maxAttempts", 3);
+    ReflectionTestUtils.setField(storageOutbox, "backoff", Duration.ofSeconds(2));
+    ReflectionTestUtils.setField(storageOutbox, "lease", Duration.ofMinutes(5));
+    ReflectionTestUtils.setField(storageOutbox, "instanceId", INSTANCE_ID);
+    ReflectionTestUtils.setField(storageOutbox, "abandonAfter", Duration.ofHours(1));
+  }
+
+  private StorageTask task(long id, StorageTask.Operation operation, String stagedPath, int attempts) {
+    StorageTask task = new StorageTask();
+    task.setId(id);
+    task.setOperation(operation);
+    task.setLocation(LOCATION);
+    task.setStagedPath(stagedPath);
+    task.setAttempts(attempts);
+    return task;
+  }
+
+  // Makes the repository hand out the given tasks as the claimed batch
+  private void claim(StorageTask... tasks) {
+    List<Long> ids = Arrays.stream(tasks).map(StorageTask::getId).toList();
+    when(storageTaskRepository.findDueTaskIds(any(Instant.class), eq(INSTANCE_ID), any(Pageable.class))).thenReturn(ids);
+    when(storageTaskRepository.findByClaimTokenOrderById(any(UUID.class))).thenReturn(List.of(tasks));
+  }
+
+  @Test
+  void enqueuePut_shouldStageImageAndRecordTask() throws IOException {
+    // Arrange
+    ByteArrayInputStream image = new ByteArrayInputStream("dummy image content".getBytes());
+
+    // Act
+    storageOutbox.enqueuePut(LOCATION, image);
+
+    // Assert
+    ArgumentCaptor<StorageTask> taskCaptor = ArgumentCaptor.forClass(StorageTask.class);
+    verify(storageTaskRepository).save(taskCaptor.capture());
+    StorageTask task = taskCaptor.getValue();
+
+    assertThat(task.getOperation()).isEqualTo(StorageTask.Operation.PUT);
+    assertThat(task.getLocation()).isEqualTo(LOCATION);
+    assertThat(task.getStagedBy()).isEqualTo(INSTANCE_ID);
+    assertThat(task.getNextAttemptAt()).isNotNull();
+    assertThat(Files.readString(Path.of(task.getStagedPath()))).isEqualTo("dummy image content");
+    verifyNoInteractions(scrollImageStorage);
+  }
+
+  @Test
+  void processBatch_shouldDoNothing_whenNoTaskIsDue() {
+    // Arrange
+    when(storageTaskRepository.findDueTaskIds(any(Instant.class), eq(INSTANCE_ID), any(Pageable.class))).thenReturn(List.of());
+
+    // Act
+    int processed = storageOutbox.processBatch();
+
+    // Assert
+    assertThat(processed).isZero();
+    verify(storageTaskRepository, never()).claim(any(), any(), any(), any());
+    verifyNoInteractions(scrollImageStorage);
+  }
+
+  @Test
+  void processBatch_shouldStoreImagesAndRemoveTasks_whenStorageSucceeds() throws IOException {
+    // Arrange
+    Path stagedFile = Files.writeString(stagingDirectory.resolve("staged"), "dummy image content");
+    StorageTask put = task(1L, StorageTask.Operation.PUT, stagedFile.toString(), 0);
+    StorageTask delete = task(2L, StorageTask.Operation.DELETE, null, 0);
+    claim(put, delete);
+    when(scrollImageStorage.put(eq(LOCATION), any(ByteBuffer.class))).thenReturn(CompletableFuture.completedFuture(null));
+    when(scrollImageStorage.delete(LOCATION)).thenReturn(CompletableFuture.completedFuture(null));
+
+    // Act
+    int processed = storageOutbox.processBatch();
+
+    // Assert
+    assertThat(processed).isEqualTo(2);
+    verify(storageTaskRepository).claim(eq(List.of(1L, 2L)), any(UUID.class), any(Instant.class), any(Instant.class));
+    verify(storageTaskRepository).deleteAllInBatch(List.of(put, delete));
+    verify(scrollImageCache, times(2)).evict(LOCATION);
+    assertThat(stagedFile).doesNotExist();
+
+    ArgumentCaptor<ByteBuffer> contentCaptor = ArgumentCaptor.forClass(ByteBuffer.class);
+    verify(scrollImageStorage).put(eq(LOCATION), contentCaptor.capture());
+    assertThat(contentCaptor.getValue()).isEqualTo(ByteBuffer.wrap("dummy image content".getBytes()));
+  }
+
+  @Test
+  void processBatch_shouldScheduleRetryWithBackoff_whenStorageFails() {
+    // Arrange
+    StorageTask delete = task(1L, StorageTask.Operation.DELETE, null, 1);
+    claim(delete);
+    when(scrollImageStorage.delete(LOCATION)).thenReturn(CompletableFuture.failedFuture(new IOException("Cloudinary unavailable")));
+
+    // Act
+    Instant before = Instant.now();
+    storageOutbox.processBatch();
+
+    // Assert
+    // Second failure: the retry waits twice the backoff
+    assertThat(delete.getAttempts()).isEqualTo(2);
+    assertThat(delete.getNextAttemptAt()).isAfterOrEqualTo(before.plusSeconds(4));
+    assertThat(delete.getClaimToken()).isNull();
+    assertThat(delete.getLastError()).contains("Cloudinary unavailable");
+    verify(storageTaskRepository).saveAll(List.of(delete));
+    verify(storageTaskRepository).deleteAllInBatch(List.of());
+  }
+
+  @Test
+  void processBatch_shouldScheduleRetry_whenStorageOutlastsTheLease() {
+    // Arrange
+    ReflectionTestUtils.setField(storageOutbox, "lease", Duration.ofMillis(200));
+    StorageTask delete = task(1L, StorageTask.Operation.DELETE, null, 0);
+    claim(delete);
+    CompletableFuture<Void> hangingDelete = new CompletableFuture<>();
+    when(scrollImageStorage.delete(LOCATION)).thenReturn(hangingDelete);
+
+    // Act
+    storageOutbox.processBatch();
+
+    // Assert
+    // The task may be claimed again once the lease ended, so the worker stops waiting for it
+    assertThat(hangingDelete).isCancelled();
+    assertThat(delete.getAttempts()).isEqualTo(1);
+    assertThat(delete.getNextAttemptAt()).isNotNull();
+    assertThat(delete.getLastError()).contains("lease");
+    verify(storageTaskRepository).saveAll(List.of(delete));
+    verify(scrollImageCache, never()).evict(any());
+  }
+
+  @Test
+  void processBatch_shouldGiveUpOnTask_whenAttemptsAreExhausted() throws IOException {
+    // Arrange
+    Path stagedFile = Files.writeString(stagingDirectory.resolve("staged"), "dummy image content");
+    StorageTask put = task(1L, StorageTask.Operation.PUT, stagedFile.toString(), 2);
+    claim(put);
+    when(scrollImageStorage.put(eq(LOCATION), any(ByteBuffer.class))).thenReturn(CompletableFuture.failedFuture(new IOException("Disk full")));
+
+    // Act
+    storageOutbox.processBatch();
+
+    // Assert
+    // The task is kept for inspection, but its staged image is not
+    assertThat(put.getAttempts()).isEqualTo(3);
+    assertThat(put.getNextAttemptAt()).isNull();
+    verify(storageTaskRepository).saveAll(List.of(put));
+    assertThat(stagedFile).doesNotExist();
+  }
+
+  @Test
+  void processBatch_shouldGiveUpOnImagesOfOtherInstances_whenTheyWereDueForTooLong() {
+    // Arrange
+    when(storageTaskRepository.findDueTaskIds(any(Instant.class), eq(INSTANCE_ID), any(Pageable.class))).thenReturn(List.of());
+
+    // Act
+    Instant before = Instant.now();
+    storageOutbox.processBatch();
+
+    // Assert
+    ArgumentCaptor<Instant> abandonedBefore = ArgumentCaptor.forClass(Instant.class);
+    verify(storageTaskRepository).giveUpAbandoned(eq(INSTANCE_ID), abandonedBefore.capture(), contains("PT1H"));
+    assertThat(abandonedBefore.getValue()).isBetween(before.minus(Duration.ofHours(1)), Instant.now().minus(Duration.ofHours(1)));
+  }
+}